@@ -16,6 +16,7 @@ import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.model.ImageVideoWrapper;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformationChain;
 import com.bumptech.glide.load.resource.bitmap.Downsampler;
 import com.bumptech.glide.load.resource.bitmap.FileDescriptorBitmapDecoder;
 import com.bumptech.glide.load.resource.bitmap.ImageVideoBitmapDecoder;
@@ -261,8 +262,7 @@ public class BitmapRequestBuilder<ModelType, TranscodeType>
      * @return This request builder.
      */
     public BitmapRequestBuilder<ModelType, TranscodeType> transform(BitmapTransformation... transformations) {
-        super.transform(transformations);
-        return this;
+        return transform((Transformation<Bitmap>[]) transformations);
     }
 
     /**
@@ -297,9 +297,15 @@ public class BitmapRequestBuilder<ModelType, TranscodeType>
      * @see #fitCenter()
      * @see #centerCrop()
      */
+    @SuppressWarnings("unchecked")
     @Override
     public BitmapRequestBuilder<ModelType, TranscodeType> transform(Transformation<Bitmap>... transformations) {
-        super.transform(transformations);
+        if (transformations.length > 1) {
+            // Shares intermediate bitmaps between the transformations rather than applying each on its own.
+            super.transform(new BitmapTransformationChain(bitmapPool, transformations));
+        } else {
+            super.transform(transformations);
+        }
         return this;
     }
 
@@ -429,6 +435,15 @@ public class BitmapRequestBuilder<ModelType, TranscodeType>
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitmapRequestBuilder<ModelType, TranscodeType> diskCacheTimeToLive(long timeToLiveMillis) {
+        super.diskCacheTimeToLive(timeToLiveMillis);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
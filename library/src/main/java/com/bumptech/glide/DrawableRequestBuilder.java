@@ -14,6 +14,7 @@ import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.model.ImageVideoWrapper;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformationChain;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapper;
 import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapperTransformation;
@@ -207,13 +208,12 @@ public class DrawableRequestBuilder<ModelType>
      *
      * @return This request builder.
      */
+    @SuppressWarnings("unchecked")
     public DrawableRequestBuilder<ModelType> bitmapTransform(Transformation<Bitmap>... bitmapTransformations) {
-        GifBitmapWrapperTransformation[] transformations =
-                new GifBitmapWrapperTransformation[bitmapTransformations.length];
-        for (int i = 0; i < bitmapTransformations.length; i++) {
-            transformations[i] = new GifBitmapWrapperTransformation(glide.getBitmapPool(), bitmapTransformations[i]);
-        }
-        return transform(transformations);
+        Transformation<Bitmap> bitmapTransformation = bitmapTransformations.length == 1
+                ? bitmapTransformations[0]
+                : new BitmapTransformationChain(glide.getBitmapPool(), bitmapTransformations);
+        return transform(new GifBitmapWrapperTransformation(glide.getBitmapPool(), bitmapTransformation));
     }
 
 
@@ -380,6 +380,15 @@ public class DrawableRequestBuilder<ModelType>
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DrawableRequestBuilder<ModelType> diskCacheTimeToLive(long timeToLiveMillis) {
+        super.diskCacheTimeToLive(timeToLiveMillis);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -11,7 +11,11 @@ import com.bumptech.glide.load.MultiTransformation;
 import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.data.BandwidthEstimator;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.model.ImageVideoModelLoader;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.stream.BaseGlideUrlLoader;
 import com.bumptech.glide.load.resource.UnitTransformation;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
 import com.bumptech.glide.manager.Lifecycle;
@@ -47,6 +51,9 @@ import java.io.File;
  * @param <TranscodeType> The type of resource the decoded resource will be transcoded to.
  */
 public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeType> implements Cloneable {
+    private static final Float POOR_BANDWIDTH_THUMB_SIZE_MULTIPLIER = 0.25f;
+    private static final Float MODERATE_BANDWIDTH_THUMB_SIZE_MULTIPLIER = 0.5f;
+
     protected final Class<ModelType> modelClass;
     protected final Context context;
     protected final Glide glide;
@@ -74,6 +81,7 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
     private int overrideHeight = -1;
     private int overrideWidth = -1;
     private DiskCacheStrategy diskCacheStrategy = DiskCacheStrategy.RESULT;
+    private long diskCacheTimeToLiveMillis;
     private Transformation<ResourceType> transformation = UnitTransformation.get();
     private boolean isTransformationSet;
     private boolean isThumbnailBuilt;
@@ -88,6 +96,7 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
         this.isModelSet = other.isModelSet;
         this.signature = other.signature;
         this.diskCacheStrategy = other.diskCacheStrategy;
+        this.diskCacheTimeToLiveMillis = other.diskCacheTimeToLiveMillis;
         this.isCacheable = other.isCacheable;
     }
 
@@ -273,6 +282,29 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
         return this;
     }
 
+    /**
+     * Sets how long data this load writes to the disk cache stays valid. Once it expires, the disk cache treats the
+     * entry as missing and the data is fetched and decoded again.
+     *
+     * <p>
+     *     Only disk caches that support it, like the default
+     *     {@link com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper}, honor the time to live. Entries that are
+     *     already in the disk cache keep the time to live they were written with.
+     * </p>
+     *
+     * @param timeToLiveMillis The time to live in milliseconds, or 0, the default, if the data doesn't expire.
+     * @return This request builder.
+     */
+    public GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeType> diskCacheTimeToLive(
+            long timeToLiveMillis) {
+        if (timeToLiveMillis < 0) {
+            throw new IllegalArgumentException("Time to live must be >= 0, got " + timeToLiveMillis);
+        }
+        this.diskCacheTimeToLiveMillis = timeToLiveMillis;
+
+        return this;
+    }
+
     /**
      * Sets the {@link com.bumptech.glide.load.Encoder} to use to encode the original data directly to cache. Will only
      * be used if the original data is not already in cache and if the
@@ -774,6 +806,35 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
         return preload(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL);
     }
 
+    /**
+     * Returns a {@link RequestTemplate} with a copy of the options set so far on this builder that can start loads of
+     * any number of models with less work and garbage than building a request for each one.
+     *
+     * <p>
+     *     The model, if any, set on this builder is ignored, models are given to the template when it is bound to a
+     *     target. Changes made to this builder after the template is created don't affect the template.
+     * </p>
+     *
+     * @throws IllegalArgumentException If a thumbnail request builder has been set, since its model can't be
+     * changed by the template. Use {@link #thumbnail(float)} instead.
+     * @return A new template.
+     */
+    public RequestTemplate<ModelType, TranscodeType> template() {
+        if (thumbnailRequestBuilder != null) {
+            throw new IllegalArgumentException("Requests with thumbnail request builders can't be used as templates,"
+                    + " use thumbnail(float) instead");
+        }
+        GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeType> snapshot = clone();
+        if (snapshot.priority == null) {
+            snapshot.priority = Priority.NORMAL;
+        }
+        return new RequestTemplate<ModelType, TranscodeType>(snapshot);
+    }
+
+    boolean isTransformationSet() {
+        return isTransformationSet;
+    }
+
     void applyCenterCrop() {
         // To be implemented by subclasses when possible.
     }
@@ -840,12 +901,58 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
             coordinator.setRequests(fullRequest, thumbnailRequest);
             return coordinator;
         } else {
+            Float bandwidthThumbSizeMultiplier = parentCoordinator == null ? getBandwidthThumbSizeMultiplier() : null;
+            if (bandwidthThumbSizeMultiplier != null) {
+                // Base case: like a thumbnail multiplier, but only on slow networks.
+                ThumbnailRequestCoordinator coordinator = new ThumbnailRequestCoordinator(null);
+                Request fullRequest = obtainRequest(target, sizeMultiplier, priority, coordinator);
+                Request thumbnailRequest =
+                        obtainRequest(target, bandwidthThumbSizeMultiplier, getThumbnailPriority(), coordinator);
+                coordinator.setRequests(fullRequest, thumbnailRequest);
+                return coordinator;
+            }
             // Base case: no thumbnail.
             //上面的代码是处理缩略图的，这个是重点，没有缩略图的情况
             return obtainRequest(target, sizeMultiplier, priority, parentCoordinator);
         }
     }
 
+    /**
+     * Returns the size multiplier for a thumbnail of a remote model given the network's estimated throughput, or
+     * null if the load shouldn't have one.
+     *
+     * <p>
+     *     Only models loaded by a {@link BaseGlideUrlLoader} can be given a thumbnail, since only those can ask for a
+     *     smaller image at a different url. A thumbnail of a plain url would download the same full image again, at
+     *     the same time, on a network that's already slow.
+     * </p>
+     */
+    private Float getBandwidthThumbSizeMultiplier() {
+        if (!glide.isBandwidthAdaptiveThumbnailsEnabled() || !isLoadedBySizedUrlLoader()) {
+            return null;
+        }
+        switch (BandwidthEstimator.get().getQuality()) {
+            case POOR:
+                return POOR_BANDWIDTH_THUMB_SIZE_MULTIPLIER;
+            case MODERATE:
+                return MODERATE_BANDWIDTH_THUMB_SIZE_MULTIPLIER;
+            //$CASES-OMITTED$
+            default:
+                return null;
+        }
+    }
+
+    private boolean isLoadedBySizedUrlLoader() {
+        if (loadProvider == null) {
+            return false;
+        }
+        ModelLoader<?, ?> modelLoader = loadProvider.getModelLoader();
+        if (modelLoader instanceof ImageVideoModelLoader) {
+            modelLoader = ((ImageVideoModelLoader<?>) modelLoader).getStreamLoader();
+        }
+        return modelLoader instanceof BaseGlideUrlLoader;
+    }
+
     //这里面有调用了GenericRequest.obtain方法
     
     private Request obtainRequest(Target<TranscodeType> target, float sizeMultiplier, Priority priority,
@@ -874,6 +981,7 @@ public class GenericRequestBuilder<ModelType, DataType, ResourceType, TranscodeT
                 animationFactory,
                 overrideWidth,
                 overrideHeight,
-                diskCacheStrategy);
+                diskCacheStrategy,
+                diskCacheTimeToLiveMillis);
     }
 }
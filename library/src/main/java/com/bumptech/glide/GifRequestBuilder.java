@@ -11,6 +11,7 @@ import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformationChain;
 import com.bumptech.glide.load.resource.gif.GifDrawable;
 import com.bumptech.glide.load.resource.gif.GifDrawableTransformation;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
@@ -174,8 +175,9 @@ public class GifRequestBuilder<ModelType>
      * @param bitmapTransformations The transformations to apply in order to each frame.
      * @return This request builder.
      */
+    @SuppressWarnings("unchecked")
     public GifRequestBuilder<ModelType> transformFrame(BitmapTransformation... bitmapTransformations) {
-        return transform(toGifTransformations(bitmapTransformations));
+        return transform(toGifTransformation(bitmapTransformations));
     }
 
     /**
@@ -189,16 +191,16 @@ public class GifRequestBuilder<ModelType>
      * @param bitmapTransformations The transformations to apply in order to each frame.
      * @return This request builder.
      */
+    @SuppressWarnings("unchecked")
     public GifRequestBuilder<ModelType> transformFrame(Transformation<Bitmap>... bitmapTransformations) {
-        return transform(toGifTransformations(bitmapTransformations));
+        return transform(toGifTransformation(bitmapTransformations));
     }
 
-    private GifDrawableTransformation[] toGifTransformations(Transformation<Bitmap>[] bitmapTransformations) {
-        GifDrawableTransformation[] transformations = new GifDrawableTransformation[bitmapTransformations.length];
-        for (int i = 0; i < bitmapTransformations.length; i++) {
-            transformations[i] = new GifDrawableTransformation(bitmapTransformations[i], glide.getBitmapPool());
-        }
-        return transformations;
+    private GifDrawableTransformation toGifTransformation(Transformation<Bitmap>[] bitmapTransformations) {
+        Transformation<Bitmap> bitmapTransformation = bitmapTransformations.length == 1
+                ? bitmapTransformations[0]
+                : new BitmapTransformationChain(glide.getBitmapPool(), bitmapTransformations);
+        return new GifDrawableTransformation(bitmapTransformation, glide.getBitmapPool());
     }
 
     /**
@@ -377,6 +379,15 @@ public class GifRequestBuilder<ModelType>
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GifRequestBuilder<ModelType> diskCacheTimeToLive(long timeToLiveMillis) {
+        super.diskCacheTimeToLive(timeToLiveMillis);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -10,6 +10,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.ParcelFileDescriptor;
+import android.os.Process;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.util.Log;
@@ -17,8 +18,11 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.data.PartialDownloadCache;
 import com.bumptech.glide.load.engine.Engine;
+import com.bumptech.glide.load.engine.PrefetchBatch;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskCacheStats;
 import com.bumptech.glide.load.engine.cache.DiskLruCacheFactory;
 import com.bumptech.glide.load.engine.cache.MemoryCache;
 import com.bumptech.glide.load.engine.prefill.BitmapPreFiller;
@@ -39,6 +43,7 @@ import com.bumptech.glide.load.model.stream.StreamResourceLoader;
 import com.bumptech.glide.load.model.stream.StreamStringLoader;
 import com.bumptech.glide.load.model.stream.StreamUriLoader;
 import com.bumptech.glide.load.model.stream.StreamUrlLoader;
+import com.bumptech.glide.load.resource.bitmap.BitmapCompressPolicy;
 import com.bumptech.glide.load.resource.bitmap.CenterCrop;
 import com.bumptech.glide.load.resource.bitmap.FileDescriptorBitmapDataLoadProvider;
 import com.bumptech.glide.load.resource.bitmap.FitCenter;
@@ -49,6 +54,7 @@ import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.load.resource.file.StreamFileDataLoadProvider;
 import com.bumptech.glide.load.resource.gif.GifDrawable;
 import com.bumptech.glide.load.resource.gif.GifDrawableLoadProvider;
+import com.bumptech.glide.load.resource.gif.GifFrameCache;
 import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapper;
 import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapperTransformation;
 import com.bumptech.glide.load.resource.gifbitmap.ImageVideoGifDrawableLoadProvider;
@@ -67,11 +73,15 @@ import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.ImageViewTargetFactory;
 import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.request.target.ViewTarget;
+import com.bumptech.glide.signature.EmptySignature;
+import com.bumptech.glide.util.LogTime;
+import com.bumptech.glide.util.SizedByteArrayPool;
 import com.bumptech.glide.util.Util;
 
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -82,7 +92,12 @@ import java.util.List;
 public class Glide {
 
     private static final String TAG = "Glide";
+    // The shared frames of animated GIFs may use up to this fraction of the memory cache's size on top of it.
+    private static final int GIF_FRAME_CACHE_DIVISOR = 4;
     private static volatile Glide glide;
+    private static volatile InitializationTimings initializationTimings;
+    // Only accessed while holding the lock on Glide.class, set while modules register their components.
+    private static Glide initializingGlide;
 
     private final GenericLoaderFactory loaderFactory;
     private final Engine engine;
@@ -98,6 +113,9 @@ public class Glide {
     private final GifBitmapWrapperTransformation drawableFitCenter;
     private final Handler mainHandler;
     private final BitmapPreFiller bitmapPreFiller;
+    private final GifFrameCache gifFrameCache;
+    private final PartialDownloadCache partialDownloadCache;
+    private final boolean isBandwidthAdaptiveThumbnailsEnabled;
 
     /**
      * Returns a directory with a default name in the private cache directory of the application to use to store
@@ -144,22 +162,50 @@ public class Glide {
      */
     public static Glide get(Context context) {
         if (glide == null) {
+            long startTime = LogTime.getLogTime();
             synchronized (Glide.class) {
+                if (initializingGlide != null) {
+                    // A module is calling us from registerComponents on the thread that's creating the singleton.
+                    return initializingGlide;
+                }
                 if (glide == null) {
+                    InitializationTimings timings = new InitializationTimings();
                     Context applicationContext = context.getApplicationContext();
                     //ManifestParser的parse()方法去解析AndroidManifest.xml文件中的配置
                     List<GlideModule> modules = new ManifestParser(applicationContext).parse();
+                    timings.endPhase(InitializationTimings.PHASE_PARSE_MANIFEST);
 
                     GlideBuilder builder = new GlideBuilder(applicationContext);
                     for (GlideModule module : modules) {
                         module.applyOptions(applicationContext, builder);
                     }
+                    timings.endPhase(InitializationTimings.PHASE_APPLY_OPTIONS);
                     //这个方法主要初始化一系列的参数
                     //GlideBuilder的createGlide()方法，并返回了一个Glide对象。也就是说，Glide对象的实例就是在这里创建
-                    glide = builder.createGlide();
-                    for (GlideModule module : modules) {
-                        module.registerComponents(applicationContext, glide);
+                    Glide result = builder.createGlide(timings);
+                    timings.endPhase(InitializationTimings.PHASE_REGISTER_DEFAULTS);
+                    initializingGlide = result;
+                    try {
+                        for (GlideModule module : modules) {
+                            module.registerComponents(applicationContext, result);
+                        }
+                    } finally {
+                        initializingGlide = null;
+                    }
+                    timings.endPhase(InitializationTimings.PHASE_REGISTER_COMPONENTS);
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Initialized " + timings);
+                    }
+                    // Only publish the singleton once the modules have registered their components so that other
+                    // threads never see a partially set up Glide. setup() can't run while we hold the lock, but never
+                    // replace a singleton that other threads may already be using.
+                    if (glide == null) {
+                        initializationTimings = timings;
+                        glide = result;
                     }
+                } else if (initializationTimings != null) {
+                    // Another thread created the singleton while we were waiting for the lock.
+                    initializationTimings.addWait(LogTime.getElapsedMillis(startTime));
                 }
             }
         }
@@ -167,6 +213,45 @@ public class Glide {
         return glide;
     }
 
+    /**
+     * Starts creating the {@link Glide} singleton on a new background thread and returns immediately, so that reading
+     * the manifest, creating the caches and the {@link Engine} and registering components happen off the calling
+     * thread.
+     *
+     * <p>
+     *     Typically called early in {@link android.app.Application#onCreate()}. Later calls to {@link #get(Context)}
+     *     return the singleton as usual, blocking only until the background thread has finished if it hasn't yet. Does
+     *     nothing if the singleton has already been created.
+     * </p>
+     *
+     * @see #getInitializationTimings()
+     *
+     * @param context Any context, will not be retained.
+     */
+    public static void initializeInBackground(Context context) {
+        if (glide != null) {
+            return;
+        }
+        final Context applicationContext = context.getApplicationContext();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Not a background priority, the main thread may be about to block on this one.
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+                get(applicationContext);
+            }
+        }, "glide-init-thread");
+        thread.start();
+    }
+
+    /**
+     * Returns the time spent creating the {@link Glide} singleton, or null if it hasn't been created by
+     * {@link #get(Context)} yet.
+     */
+    public static InitializationTimings getInitializationTimings() {
+        return initializationTimings;
+    }
+
     /**
      * Returns false if the {@link Glide} singleton has not yet been created and can therefore be setup using
      * {@link #setup(GlideBuilder)}.
@@ -192,35 +277,43 @@ public class Glide {
      */
     @Deprecated
     public static void setup(GlideBuilder builder) {
-        if (isSetup()) {
-            throw new IllegalArgumentException("Glide is already setup, check with isSetup() first");
-        }
+        // Holding the lock waits for any initialization started by get() or initializeInBackground() to finish.
+        synchronized (Glide.class) {
+            if (isSetup() || initializingGlide != null) {
+                throw new IllegalArgumentException("Glide is already setup, check with isSetup() first");
+            }
 
-        glide = builder.createGlide();
+            glide = builder.createGlide();
+        }
     }
 
     // For testing.
     static void tearDown() {
         glide = null;
+        initializationTimings = null;
     }
 
-    Glide(Engine engine, MemoryCache memoryCache, BitmapPool bitmapPool, Context context, DecodeFormat decodeFormat) {
+    Glide(Engine engine, MemoryCache memoryCache, BitmapPool bitmapPool, Context context, DecodeFormat decodeFormat,
+            BitmapCompressPolicy resultCompressPolicy, boolean isBandwidthAdaptiveThumbnailsEnabled) {
         this.engine = engine;
+        this.isBandwidthAdaptiveThumbnailsEnabled = isBandwidthAdaptiveThumbnailsEnabled;
         this.bitmapPool = bitmapPool;
         this.memoryCache = memoryCache;
         this.decodeFormat = decodeFormat;
         loaderFactory = new GenericLoaderFactory(context);
         mainHandler = new Handler(Looper.getMainLooper());
         bitmapPreFiller = new BitmapPreFiller(memoryCache, bitmapPool, decodeFormat);
+        gifFrameCache = new GifFrameCache(memoryCache.getMaxSize() / GIF_FRAME_CACHE_DIVISOR);
+        partialDownloadCache = PartialDownloadCache.get(context);
 
         dataLoadProviderRegistry = new DataLoadProviderRegistry();
 
         StreamBitmapDataLoadProvider streamBitmapLoadProvider =
-                new StreamBitmapDataLoadProvider(bitmapPool, decodeFormat);
+                new StreamBitmapDataLoadProvider(bitmapPool, decodeFormat, resultCompressPolicy);
         dataLoadProviderRegistry.register(InputStream.class, Bitmap.class, streamBitmapLoadProvider);
 
         FileDescriptorBitmapDataLoadProvider fileDescriptorLoadProvider =
-                new FileDescriptorBitmapDataLoadProvider(bitmapPool, decodeFormat);
+                new FileDescriptorBitmapDataLoadProvider(bitmapPool, decodeFormat, resultCompressPolicy);
         dataLoadProviderRegistry.register(ParcelFileDescriptor.class, Bitmap.class, fileDescriptorLoadProvider);
 
         ImageVideoDataLoadProvider imageVideoDataLoadProvider =
@@ -236,19 +329,11 @@ public class Glide {
 
         dataLoadProviderRegistry.register(InputStream.class, File.class, new StreamFileDataLoadProvider());
 
-        register(File.class, ParcelFileDescriptor.class, new FileDescriptorFileLoader.Factory());
-        register(File.class, InputStream.class, new StreamFileLoader.Factory());
-        register(int.class, ParcelFileDescriptor.class, new FileDescriptorResourceLoader.Factory());
-        register(int.class, InputStream.class, new StreamResourceLoader.Factory());
-        register(Integer.class, ParcelFileDescriptor.class, new FileDescriptorResourceLoader.Factory());
-        register(Integer.class, InputStream.class, new StreamResourceLoader.Factory());
-        register(String.class, ParcelFileDescriptor.class, new FileDescriptorStringLoader.Factory());
-        register(String.class, InputStream.class, new StreamStringLoader.Factory());
-        register(Uri.class, ParcelFileDescriptor.class, new FileDescriptorUriLoader.Factory());
-        register(Uri.class, InputStream.class, new StreamUriLoader.Factory());
-        register(URL.class, InputStream.class, new StreamUrlLoader.Factory());
-        register(GlideUrl.class, InputStream.class, new HttpUrlGlideUrlLoader.Factory());
-        register(byte[].class, InputStream.class, new StreamByteArrayLoader.Factory());
+        // Loader factories are only created when a model class they handle is first loaded, most apps only load a few.
+        DefaultLoaderRegistration defaultLoaders = new DefaultLoaderRegistration();
+        for (Class<?> modelClass : DefaultLoaderRegistration.MODEL_CLASSES) {
+            loaderFactory.registerLazily(modelClass, defaultLoaders);
+        }
 
         transcoderRegistry.register(Bitmap.class, GlideBitmapDrawable.class,
                 new GlideBitmapDrawableTranscoder(context.getResources(), bitmapPool));
@@ -289,6 +374,18 @@ public class Glide {
         return bitmapPool;
     }
 
+    boolean isBandwidthAdaptiveThumbnailsEnabled() {
+        return isBandwidthAdaptiveThumbnailsEnabled;
+    }
+
+    /**
+     * Returns the cache that shares the decoded frames of small animated GIFs between all of the
+     * {@link GifDrawable}s showing them.
+     */
+    public GifFrameCache getGifFrameCache() {
+        return gifFrameCache;
+    }
+
     <Z, R> ResourceTranscoder<Z, R> buildTranscoder(Class<Z> decodedClass, Class<R> transcodedClass) {
         return transcoderRegistry.get(decodedClass, transcodedClass);
     }
@@ -375,7 +472,10 @@ public class Glide {
         Util.assertMainThread();
         // memory cache needs to be cleared before bitmap pool to clear re-pooled Bitmaps too. See #687.
         memoryCache.clearMemory();
+        gifFrameCache.clearMemory();
         bitmapPool.clearMemory();
+        SizedByteArrayPool.get().clear();
+        engine.clearDiskCacheWrites();
     }
 
     /**
@@ -388,7 +488,51 @@ public class Glide {
         Util.assertMainThread();
         // memory cache needs to be trimmed before bitmap pool to trim re-pooled Bitmaps too. See #687.
         memoryCache.trimMemory(level);
+        gifFrameCache.trimMemory(level);
         bitmapPool.trimMemory(level);
+        SizedByteArrayPool.get().trimMemory(level);
+        engine.trimDiskCacheWrites(level);
+    }
+
+    /**
+     * Returns hit rates, bytes, latencies and storage counters for the disk cache, split by transformed result and
+     * source entries.
+     */
+    public DiskCacheStats getDiskCacheStats() {
+        return engine.getDiskCacheStats();
+    }
+
+    /**
+     * Fetches the source data for each of the given models into the disk cache without decoding it, so that later
+     * loads of the models using {@link com.bumptech.glide.load.engine.DiskCacheStrategy#SOURCE} or
+     * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#ALL} don't need the network, for example to warm the
+     * cache for an offline session.
+     *
+     * <p>
+     *     Models are fetched at {@link Priority#LOW}, no more than maxConcurrency at once, and no new fetches start
+     *     while any other load is in progress, so prefetching doesn't slow down loads into the UI. Only loads that
+     *     don't set a {@link com.bumptech.glide.GenericRequestBuilder#signature(com.bumptech.glide.load.Key)} will
+     *     find the prefetched data. This method must be called on the main thread.
+     * </p>
+     *
+     * @param modelClass The class of the models, used to find the {@link ModelLoader} for {@link InputStream}s.
+     * @param models The models to prefetch.
+     * @param maxConcurrency The maximum number of models to fetch at once.
+     * @param maxBytes The number of bytes after which no more models are fetched, or
+     *                 {@link PrefetchBatch#NO_BYTE_LIMIT}.
+     * @param listener Notified of progress on the main thread.
+     * @param <T> The type of the models.
+     * @return The batch, which can be used to cancel the remaining fetches.
+     */
+    public <T> PrefetchBatch prefetch(Class<T> modelClass, Collection<? extends T> models, int maxConcurrency,
+            long maxBytes, PrefetchBatch.Listener listener) {
+        ModelLoader<T, InputStream> modelLoader = getLoaderFactory().buildModelLoader(modelClass, InputStream.class);
+        if (modelLoader == null) {
+            throw new IllegalArgumentException("No ModelLoader registered for " + modelClass + " and InputStream");
+        }
+        DataLoadProvider<InputStream, Bitmap> dataLoadProvider = buildDataProvider(InputStream.class, Bitmap.class);
+        return engine.prefetch(models, modelLoader, dataLoadProvider.getSourceEncoder(), EmptySignature.obtain(),
+                maxConcurrency, maxBytes, listener);
     }
 
     /**
@@ -401,6 +545,7 @@ public class Glide {
     public void clearDiskCache() {
         Util.assertBackgroundThread();
         getEngine().clearDiskCache();
+        partialDownloadCache.clear();
     }
 
     /**
@@ -711,4 +856,42 @@ public class Glide {
             // Do nothing.
         }
     }
+
+    /**
+     * Registers the default {@link ModelLoaderFactory}s for each model class Glide can load out of the box.
+     */
+    private static class DefaultLoaderRegistration implements GenericLoaderFactory.LazyRegistration {
+        static final Class<?>[] MODEL_CLASSES = new Class<?>[] {
+            File.class, int.class, Integer.class, String.class, Uri.class, URL.class, GlideUrl.class, byte[].class,
+        };
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void register(Class<?> modelClass, GenericLoaderFactory factories) {
+            if (modelClass == File.class) {
+                factories.registerIfAbsent(File.class, ParcelFileDescriptor.class,
+                        new FileDescriptorFileLoader.Factory());
+                factories.registerIfAbsent(File.class, InputStream.class, new StreamFileLoader.Factory());
+            } else if (modelClass == int.class || modelClass == Integer.class) {
+                factories.registerIfAbsent((Class<Integer>) modelClass, ParcelFileDescriptor.class,
+                        new FileDescriptorResourceLoader.Factory());
+                factories.registerIfAbsent((Class<Integer>) modelClass, InputStream.class,
+                        new StreamResourceLoader.Factory());
+            } else if (modelClass == String.class) {
+                factories.registerIfAbsent(String.class, ParcelFileDescriptor.class,
+                        new FileDescriptorStringLoader.Factory());
+                factories.registerIfAbsent(String.class, InputStream.class, new StreamStringLoader.Factory());
+            } else if (modelClass == Uri.class) {
+                factories.registerIfAbsent(Uri.class, ParcelFileDescriptor.class,
+                        new FileDescriptorUriLoader.Factory());
+                factories.registerIfAbsent(Uri.class, InputStream.class, new StreamUriLoader.Factory());
+            } else if (modelClass == URL.class) {
+                factories.registerIfAbsent(URL.class, InputStream.class, new StreamUrlLoader.Factory());
+            } else if (modelClass == GlideUrl.class) {
+                factories.registerIfAbsent(GlideUrl.class, InputStream.class, new HttpUrlGlideUrlLoader.Factory());
+            } else if (modelClass == byte[].class) {
+                factories.registerIfAbsent(byte[].class, InputStream.class, new StreamByteArrayLoader.Factory());
+            }
+        }
+    }
 }
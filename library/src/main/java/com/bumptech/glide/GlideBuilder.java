@@ -5,6 +5,7 @@ import android.os.Build;
 
 import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.Engine;
+import com.bumptech.glide.load.engine.RawPixelCache;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPoolAdapter;
 import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
@@ -13,7 +14,10 @@ import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
 import com.bumptech.glide.load.engine.cache.LruResourceCache;
 import com.bumptech.glide.load.engine.cache.MemoryCache;
 import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.load.engine.cache.RawPixelDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.WriteBehindDiskCache;
 import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
+import com.bumptech.glide.load.resource.bitmap.BitmapCompressPolicy;
 
 import java.util.concurrent.ExecutorService;
 
@@ -29,7 +33,13 @@ public class GlideBuilder {
     private ExecutorService sourceService;
     private ExecutorService diskCacheService;
     private DecodeFormat decodeFormat;
+    private BitmapCompressPolicy resultCompressPolicy;
     private DiskCache.Factory diskCacheFactory;
+    private boolean isDiskCacheWarmUpEnabled = true;
+    private int diskCacheWriteBehindBytes = WriteBehindDiskCache.DEFAULT_MAX_PENDING_BYTES;
+    private DiskCache.Factory rawPixelDiskCacheFactory;
+    private int rawPixelMaxEntryBytes = RawPixelCache.DEFAULT_MAX_ENTRY_BYTES;
+    private boolean isBandwidthAdaptiveThumbnailsEnabled;
 
     public GlideBuilder(Context context) {
         this.context = context.getApplicationContext();
@@ -92,6 +102,35 @@ public class GlideBuilder {
         return this;
     }
 
+    /**
+     * Sets whether or not Glide should build and open its disk cache on the disk cache thread as soon as Glide is
+     * created, rather than lazily during the first load. Defaults to true.
+     *
+     * @see com.bumptech.glide.load.engine.Engine#warmUpDiskCache()
+     *
+     * @param isEnabled True to open the disk cache in the background when Glide is created.
+     * @return This builder.
+     */
+    public GlideBuilder setDiskCacheWarmUp(boolean isEnabled) {
+        this.isDiskCacheWarmUpEnabled = isEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of encoded, transformed resources that can be queued to be written to the disk
+     * cache on a background thread, or 0 to write them synchronously before the resources are delivered. Defaults to
+     * {@link WriteBehindDiskCache#DEFAULT_MAX_PENDING_BYTES}.
+     *
+     * @see com.bumptech.glide.load.engine.cache.WriteBehindDiskCache
+     *
+     * @param maxPendingBytes The maximum number of bytes waiting to be written at any one time.
+     * @return This builder.
+     */
+    public GlideBuilder setDiskCacheWriteBehind(int maxPendingBytes) {
+        this.diskCacheWriteBehindBytes = maxPendingBytes;
+        return this;
+    }
+
     /**
      * Sets the {@link java.util.concurrent.ExecutorService} implementation to use when retrieving
      * {@link com.bumptech.glide.load.engine.Resource}s that are not already in the cache.
@@ -159,6 +198,67 @@ public class GlideBuilder {
         return this;
     }
 
+    /**
+     * Sets the disk cache used to store raw pixels for loads using
+     * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#RAW_RESULT} and the largest
+     * {@link android.graphics.Bitmap}, in bytes, stored in it.
+     *
+     * <p>
+     *     The disk cache must not share a directory with the main disk cache. Defaults to a
+     *     {@link com.bumptech.glide.load.engine.cache.RawPixelDiskCacheFactory} and
+     *     {@link com.bumptech.glide.load.engine.RawPixelCache#DEFAULT_MAX_ENTRY_BYTES}. The disk cache is only built
+     *     the first time a {@link com.bumptech.glide.load.engine.DiskCacheStrategy#RAW_RESULT} load uses it.
+     * </p>
+     *
+     * @param factory The factory for the raw pixel disk cache.
+     * @param maxEntryBytes The largest {@link android.graphics.Bitmap} to store, in bytes.
+     * @return This builder.
+     */
+    public GlideBuilder setRawPixelDiskCache(DiskCache.Factory factory, int maxEntryBytes) {
+        this.rawPixelDiskCacheFactory = factory;
+        this.rawPixelMaxEntryBytes = maxEntryBytes;
+        return this;
+    }
+
+    /**
+     * Sets the {@link com.bumptech.glide.load.resource.bitmap.BitmapCompressPolicy} the default encoders use to
+     * write transformed {@link android.graphics.Bitmap}s to the disk cache, for example a
+     * {@link com.bumptech.glide.load.resource.bitmap.WebpBitmapCompressPolicy} for smaller entries that are faster
+     * to read back.
+     *
+     * <p>
+     *     Defaults to null, which writes {@link android.graphics.Bitmap}s with alpha as PNG and all others as JPEG.
+     * </p>
+     *
+     * @param compressPolicy The policy to use, or null for the default.
+     * @return This builder.
+     */
+    public GlideBuilder setResultCompressPolicy(BitmapCompressPolicy compressPolicy) {
+        this.resultCompressPolicy = compressPolicy;
+        return this;
+    }
+
+    /**
+     * Sets whether or not loads of remote images that don't have a thumbnail of their own should start with a
+     * smaller thumbnail when the network is slow. Defaults to false.
+     *
+     * <p>
+     *     When the throughput estimated by the {@link com.bumptech.glide.load.data.BandwidthEstimator} is poor or
+     *     moderate, loads of models loaded by {@link com.bumptech.glide.load.model.stream.BaseGlideUrlLoader}s are
+     *     given a thumbnail at a quarter or at half of the target's size, as if
+     *     {@link GenericRequestBuilder#thumbnail(float)} had been called. The loader asks for a smaller image for the
+     *     thumbnail, which needs fewer bytes, so it's shown well before the full image, which replaces it once it's
+     *     loaded. Plain urls aren't given thumbnails, since the thumbnail would download the same full image again.
+     * </p>
+     *
+     * @param isEnabled True to add thumbnails to loads of remote images on slow networks.
+     * @return This builder.
+     */
+    public GlideBuilder setBandwidthAdaptiveThumbnails(boolean isEnabled) {
+        this.isBandwidthAdaptiveThumbnailsEnabled = isEnabled;
+        return this;
+    }
+
     // For testing.
     GlideBuilder setEngine(Engine engine) {
         this.engine = engine;
@@ -169,6 +269,10 @@ public class GlideBuilder {
     //这个方法中会创建BitmapPool、MemoryCache、DiskCache、DecodeFormat等对象的实例，
     // 并在最后一行创建一个Glide对象的实例，然后将前面创建的这些实例传入到Glide对象当中，以供后续的图片加载操作使用
     Glide createGlide() {
+        return createGlide(null);
+    }
+
+    Glide createGlide(InitializationTimings timings) {
         if (sourceService == null) 
         {
             final int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
@@ -197,14 +301,32 @@ public class GlideBuilder {
             diskCacheFactory = new InternalCacheDiskCacheFactory(context);
         }
 
+        if (diskCacheWriteBehindBytes > 0) {
+            diskCacheFactory = new WriteBehindDiskCache.Factory(diskCacheFactory, diskCacheWriteBehindBytes);
+        }
+
+        if (rawPixelDiskCacheFactory == null) {
+            rawPixelDiskCacheFactory = new RawPixelDiskCacheFactory(context);
+        }
+
         if (engine == null) {
-            engine = new Engine(memoryCache, diskCacheFactory, diskCacheService, sourceService);
+            engine = new Engine(memoryCache, diskCacheFactory, diskCacheService, sourceService,
+                    new RawPixelCache(rawPixelDiskCacheFactory, bitmapPool, rawPixelMaxEntryBytes));
+        }
+
+        if (isDiskCacheWarmUpEnabled) {
+            engine.warmUpDiskCache();
         }
 
         if (decodeFormat == null) {
             decodeFormat = DecodeFormat.DEFAULT;
         }
 
-        return new Glide(engine, memoryCache, bitmapPool, context, decodeFormat);
+        if (timings != null) {
+            timings.endPhase(InitializationTimings.PHASE_CREATE_ENGINE);
+        }
+
+        return new Glide(engine, memoryCache, bitmapPool, context, decodeFormat, resultCompressPolicy,
+                isBandwidthAdaptiveThumbnailsEnabled);
     }
 }
\ No newline at end of file
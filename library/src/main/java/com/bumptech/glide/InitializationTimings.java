@@ -0,0 +1,96 @@
+package com.bumptech.glide;
+
+import com.bumptech.glide.util.LogTime;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The time spent in each phase of creating the {@link Glide} singleton in {@link Glide#get(android.content.Context)}.
+ *
+ * <p>
+ *     Phases are recorded in the order they ran. Threads that call {@link Glide#get(android.content.Context)} while
+ *     another thread is creating the singleton, for example the main thread after
+ *     {@link Glide#initializeInBackground(android.content.Context)}, block until it's created, and the longest time any
+ *     of them spent waiting is recorded separately. The difference between {@link #getTotalMillis()} and
+ *     {@link #getMaxWaitMillis()} is the time taken off the waiting thread.
+ * </p>
+ */
+public final class InitializationTimings {
+    /** Reading the {@link com.bumptech.glide.module.GlideModule}s from the manifest. */
+    public static final String PHASE_PARSE_MANIFEST = "parseManifest";
+    /** Calling {@link com.bumptech.glide.module.GlideModule#applyOptions(android.content.Context, GlideBuilder)}. */
+    public static final String PHASE_APPLY_OPTIONS = "applyOptions";
+    /** Creating the executors, the caches, the bitmap pool and the {@link com.bumptech.glide.load.engine.Engine}. */
+    public static final String PHASE_CREATE_ENGINE = "createEngine";
+    /** Registering the default data load providers, transcoders and loader factories. */
+    public static final String PHASE_REGISTER_DEFAULTS = "registerDefaults";
+    /** Calling {@link com.bumptech.glide.module.GlideModule#registerComponents(android.content.Context, Glide)}. */
+    public static final String PHASE_REGISTER_COMPONENTS = "registerComponents";
+
+    private final Map<String, Double> phaseMillis = new LinkedHashMap<String, Double>();
+    private final String threadName;
+    private long phaseStartTime;
+    private double totalMillis;
+    private volatile double maxWaitMillis;
+
+    InitializationTimings() {
+        threadName = Thread.currentThread().getName();
+        phaseStartTime = LogTime.getLogTime();
+    }
+
+    /**
+     * Records the time since the previous phase ended, or since initialization started, as the time spent in the
+     * given phase.
+     */
+    void endPhase(String phase) {
+        double elapsed = LogTime.getElapsedMillis(phaseStartTime);
+        phaseStartTime = LogTime.getLogTime();
+        phaseMillis.put(phase, elapsed);
+        totalMillis += elapsed;
+    }
+
+    synchronized void addWait(double waitMillis) {
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+    }
+
+    /**
+     * Returns the time spent in each phase in millis, keyed by phase name in the order the phases ran.
+     */
+    public Map<String, Double> getPhaseMillis() {
+        return Collections.unmodifiableMap(phaseMillis);
+    }
+
+    /**
+     * Returns the time spent in all phases in millis.
+     */
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Returns the longest time in millis any other thread spent blocked waiting for initialization to finish, or 0 if
+     * no thread had to wait.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the name of the thread that created the singleton.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public String toString() {
+        return "InitializationTimings{"
+                + "thread=" + threadName
+                + ", totalMillis=" + totalMillis
+                + ", maxWaitMillis=" + maxWaitMillis
+                + ", phaseMillis=" + phaseMillis
+                + '}';
+    }
+}
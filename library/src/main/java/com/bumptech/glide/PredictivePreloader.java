@@ -0,0 +1,280 @@
+package com.bumptech.glide;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.BaseTarget;
+import com.bumptech.glide.request.target.SizeReadyCallback;
+import com.bumptech.glide.util.Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Preloads resources for the items a scrolling list is predicted to show next, based on how fast it is scrolling.
+ *
+ * <p>
+ *     Unlike {@link ListPreloader}, which always preloads a fixed number of items in the direction of scrolling, this
+ *     class tracks the scroll velocity in items per second. While the list is dragged or at rest it preloads a window
+ *     ahead of the visible items that grows with the velocity, up to {@code maxPreload} items. While the list is
+ *     flinging it estimates where the fling will stop from the velocity and the deceleration observed during
+ *     previous flings, preloads the items that will be visible there, and skips the items in between that will only
+ *     be flung past. Preloads for items that are no longer predicted to be shown are cancelled.
+ * </p>
+ *
+ * <p>
+ *     Can be set using {@link AbsListView#setOnScrollListener(android.widget.AbsListView.OnScrollListener)}. For other
+ *     scrolling views, like RecyclerView, call {@link #onScrollStateChanged(int)} and
+ *     {@link #onScrolled(float, int, int)} from the view's scroll listener.
+ * </p>
+ *
+ * @param <T> The type of the model being displayed in the list.
+ */
+public class PredictivePreloader<T> implements AbsListView.OnScrollListener {
+    /** The deceleration of a fling in items per second per second before any fling has been observed. */
+    public static final float DEFAULT_DECELERATION = 25f;
+
+    // How far ahead, in seconds of scrolling at the current velocity, to preload while dragging.
+    private static final float DRAG_LOOKAHEAD_SECONDS = 1f;
+    // Samples closer together than this are combined to avoid noisy velocities.
+    private static final long MIN_SAMPLE_INTERVAL_MS = 8;
+    // Samples further apart than this mean scrolling stopped in between.
+    private static final long MAX_SAMPLE_INTERVAL_MS = 200;
+    private static final float SMOOTHING = 0.5f;
+
+    private final ListPreloader.PreloadModelProvider<T> preloadModelProvider;
+    private final ListPreloader.PreloadSizeProvider<T> preloadDimensionProvider;
+    private final int maxPreload;
+    private final Queue<PreloadTarget> targetPool;
+    private final Map<Integer, List<PreloadTarget>> activePreloads = new HashMap<Integer, List<PreloadTarget>>();
+
+    private float deceleration = DEFAULT_DECELERATION;
+    private float velocity;
+    private float lastPosition;
+    private long lastSampleTime;
+    private int scrollState = SCROLL_STATE_IDLE;
+    private boolean isIncreasing = true;
+
+    private int preloadedCount;
+    private int displayedCount;
+    private int cancelledCount;
+
+    /**
+     * @param preloadModelProvider     Provides models to load and requests capable of loading them.
+     * @param preloadDimensionProvider Provides the dimensions of images to load.
+     * @param maxPreload               Maximum number of items to preload at once.
+     */
+    public PredictivePreloader(ListPreloader.PreloadModelProvider<T> preloadModelProvider,
+            ListPreloader.PreloadSizeProvider<T> preloadDimensionProvider, int maxPreload) {
+        this.preloadModelProvider = preloadModelProvider;
+        this.preloadDimensionProvider = preloadDimensionProvider;
+        this.maxPreload = maxPreload;
+        this.targetPool = Util.createQueue(maxPreload);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView absListView, int scrollState) {
+        onScrollStateChanged(scrollState);
+    }
+
+    @Override
+    public void onScroll(AbsListView absListView, int firstVisible, int visibleCount, int totalCount) {
+        float position = firstVisible;
+        View first = absListView.getChildAt(0);
+        if (first != null && first.getHeight() > 0) {
+            // Include how far the first item has scrolled out of view for smoother velocities.
+            position += -first.getTop() / (float) first.getHeight();
+        }
+        onScrolled(position, visibleCount, totalCount);
+    }
+
+    /**
+     * Updates the scroll state, one of {@link #SCROLL_STATE_IDLE}, {@link #SCROLL_STATE_TOUCH_SCROLL} or
+     * {@link #SCROLL_STATE_FLING}.
+     */
+    public void onScrollStateChanged(int scrollState) {
+        this.scrollState = scrollState;
+        if (scrollState == SCROLL_STATE_IDLE) {
+            velocity = 0;
+            lastSampleTime = 0;
+        }
+    }
+
+    /**
+     * Updates the preloads for the current scroll position.
+     *
+     * @param firstVisiblePosition The adapter position of the first visible item, plus the fraction of it that has
+     *                             scrolled out of view if known.
+     * @param visibleCount The number of visible items.
+     * @param totalCount The number of items in the adapter.
+     */
+    public void onScrolled(float firstVisiblePosition, int visibleCount, int totalCount) {
+        updateVelocity(firstVisiblePosition, SystemClock.uptimeMillis());
+
+        int visibleStart = (int) firstVisiblePosition;
+        int visibleEnd = Math.min(totalCount, visibleStart + visibleCount);
+        List<Integer> positions = getPredictedPositions(visibleStart, visibleEnd, visibleCount, totalCount);
+
+        // Release preloads that have been displayed or that are no longer predicted to be.
+        Iterator<Map.Entry<Integer, List<PreloadTarget>>> iterator = activePreloads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, List<PreloadTarget>> entry = iterator.next();
+            int position = entry.getKey();
+            boolean isVisible = position >= visibleStart && position < visibleEnd;
+            if (isVisible) {
+                displayedCount++;
+            } else if (positions.contains(position)) {
+                continue;
+            } else {
+                cancelledCount++;
+            }
+            // Loads that finished stay in the memory cache for the view to pick up.
+            release(entry.getValue());
+            iterator.remove();
+        }
+
+        for (int position : positions) {
+            if (!activePreloads.containsKey(position)) {
+                preloadAdapterPosition(position);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of adapter positions a preload was started for.
+     */
+    public int getPreloadedCount() {
+        return preloadedCount;
+    }
+
+    /**
+     * Returns the number of preloaded adapter positions that were later displayed.
+     */
+    public int getDisplayedCount() {
+        return displayedCount;
+    }
+
+    /**
+     * Returns the number of preloaded adapter positions whose preloads were cancelled because they were no longer
+     * predicted to be displayed.
+     */
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * Returns the current estimate of the fling deceleration, in items per second per second.
+     */
+    public float getDeceleration() {
+        return deceleration;
+    }
+
+    private void updateVelocity(float position, long now) {
+        long elapsed = now - lastSampleTime;
+        if (lastSampleTime == 0 || elapsed > MAX_SAMPLE_INTERVAL_MS) {
+            lastPosition = position;
+            lastSampleTime = now;
+            return;
+        }
+        if (elapsed < MIN_SAMPLE_INTERVAL_MS) {
+            return;
+        }
+        float sample = (position - lastPosition) * 1000f / elapsed;
+        if (scrollState == SCROLL_STATE_FLING && Math.signum(sample) == Math.signum(velocity)
+                && Math.abs(sample) < Math.abs(velocity)) {
+            float observed = (Math.abs(velocity) - Math.abs(sample)) * 1000f / elapsed;
+            deceleration = deceleration * (1 - SMOOTHING) + observed * SMOOTHING;
+        }
+        velocity = velocity * (1 - SMOOTHING) + sample * SMOOTHING;
+        if (velocity != 0) {
+            isIncreasing = velocity > 0;
+        }
+        lastPosition = position;
+        lastSampleTime = now;
+    }
+
+    // Returns the positions to preload, nearest first.
+    private List<Integer> getPredictedPositions(int visibleStart, int visibleEnd, int visibleCount, int totalCount) {
+        float speed = Math.abs(velocity);
+        int windowStart;
+        int windowSize;
+        if (scrollState == SCROLL_STATE_FLING && deceleration > 0) {
+            // Constant deceleration: the fling stops after v^2 / 2a items.
+            int distance = Math.round(speed * speed / (2 * deceleration));
+            windowStart = Math.max(visibleCount, distance);
+            windowSize = Math.min(maxPreload, Math.max(1, visibleCount));
+        } else {
+            windowStart = visibleCount;
+            windowSize = Math.min(maxPreload,
+                    Math.max(Math.min(visibleCount, maxPreload), (int) Math.ceil(speed * DRAG_LOOKAHEAD_SECONDS)));
+        }
+
+        List<Integer> positions = new ArrayList<Integer>(windowSize);
+        for (int i = 0; i < windowSize; i++) {
+            int position = isIncreasing ? visibleStart + windowStart + i : visibleEnd - 1 - windowStart - i;
+            if (position < 0 || position >= totalCount) {
+                break;
+            }
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void preloadAdapterPosition(int position) {
+        List<T> items = preloadModelProvider.getPreloadItems(position);
+        List<PreloadTarget> targets = new ArrayList<PreloadTarget>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            int[] dimensions = preloadDimensionProvider.getPreloadSize(item, position, i);
+            if (dimensions != null) {
+                PreloadTarget target = obtainTarget(dimensions[0], dimensions[1]);
+                GenericRequestBuilder preloadRequestBuilder = preloadModelProvider.getPreloadRequestBuilder(item);
+                preloadRequestBuilder.into(target);
+                targets.add(target);
+            }
+        }
+        if (!targets.isEmpty()) {
+            activePreloads.put(position, targets);
+            preloadedCount++;
+        }
+    }
+
+    private PreloadTarget obtainTarget(int width, int height) {
+        PreloadTarget result = targetPool.poll();
+        if (result == null) {
+            result = new PreloadTarget();
+        }
+        result.photoWidth = width;
+        result.photoHeight = height;
+        return result;
+    }
+
+    private void release(List<PreloadTarget> targets) {
+        for (PreloadTarget target : targets) {
+            Glide.clear(target);
+            targetPool.offer(target);
+        }
+    }
+
+    private static class PreloadTarget extends BaseTarget<Object> {
+        private int photoHeight;
+        private int photoWidth;
+
+        @Override
+        public void onResourceReady(Object resource, GlideAnimation<? super Object> glideAnimation) {
+            // Do nothing.
+        }
+
+        @Override
+        public void getSize(SizeReadyCallback cb) {
+            cb.onSizeReady(photoWidth, photoHeight);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 
 import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.data.BandwidthEstimator;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.file_descriptor.FileDescriptorModelLoader;
@@ -808,6 +809,8 @@ public class RequestManager implements LifecycleListener {
         @Override
         public void onConnectivityChanged(boolean isConnected) {
             if (isConnected) {
+                // The device may have moved to a different network, estimate it from scratch.
+                BandwidthEstimator.get().reset();
                 requestTracker.restartRequests();
             }
         }
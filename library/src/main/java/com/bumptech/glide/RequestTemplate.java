@@ -0,0 +1,99 @@
+package com.bumptech.glide;
+
+import android.widget.ImageView;
+
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.util.Util;
+
+/**
+ * An immutable set of request options, created with {@link GenericRequestBuilder#template()}, that can start loads of
+ * any number of models without building a new request builder for each one.
+ *
+ * <p>
+ *     Starting a load from a {@link GenericRequestBuilder} usually means creating a new builder, and its load
+ *     provider, for every model and applying every option again. A template resolves the options once, so binding a
+ *     model to a {@link Target} with {@link #into(Object, Target)} only obtains a pooled request. This makes templates
+ *     a good fit for adapters that bind many items per second. To avoid allocating anything per bind, keep one
+ *     {@link Target} per view, for example in a view holder, and pass it to {@link #into(Object, Target)} each time
+ *     the view is bound.
+ * </p>
+ *
+ * <p>
+ *     Loads started by a template follow the lifecycle of the {@link RequestManager} the template's builder came
+ *     from. Like the builder, a template must only be used on the main thread.
+ * </p>
+ *
+ * @param <ModelType> The type of model representing the resource.
+ * @param <TranscodeType> The type of resource loaded into targets.
+ */
+public final class RequestTemplate<ModelType, TranscodeType> {
+    private final GenericRequestBuilder<ModelType, ?, ?, TranscodeType> requestBuilder;
+    private GenericRequestBuilder<ModelType, ?, ?, TranscodeType> centerCropRequestBuilder;
+    private GenericRequestBuilder<ModelType, ?, ?, TranscodeType> fitCenterRequestBuilder;
+
+    RequestTemplate(GenericRequestBuilder<ModelType, ?, ?, TranscodeType> requestBuilder) {
+        this.requestBuilder = requestBuilder;
+    }
+
+    /**
+     * Starts a load of the given model into the given target, cancelling any previous load into the target.
+     *
+     * @see GenericRequestBuilder#into(Target)
+     *
+     * @param model The model to load.
+     * @param target The target to load the resource into.
+     * @return The given target.
+     */
+    public <Y extends Target<TranscodeType>> Y into(ModelType model, Y target) {
+        return requestBuilder.load(model).into(target);
+    }
+
+    /**
+     * Starts a load of the given model into the given view, applying a transformation that matches the view's scale
+     * type if the template doesn't already have one.
+     *
+     * <p>
+     *     Allocates a new {@link Target} for the view on every call, use {@link #into(Object, Target)} with a reused
+     *     target instead where possible.
+     * </p>
+     *
+     * @see GenericRequestBuilder#into(ImageView)
+     *
+     * @param model The model to load.
+     * @param view The view to load the resource into.
+     * @return The {@link Target} used to wrap the given view.
+     */
+    public Target<TranscodeType> into(ModelType model, ImageView view) {
+        Util.assertMainThread();
+        if (view == null) {
+            throw new IllegalArgumentException("You must pass in a non null View");
+        }
+        GenericRequestBuilder<ModelType, ?, ?, TranscodeType> builder = getRequestBuilder(view.getScaleType());
+        return builder.load(model).into(builder.glide.buildImageViewTarget(view, builder.transcodeClass));
+    }
+
+    private GenericRequestBuilder<ModelType, ?, ?, TranscodeType> getRequestBuilder(ImageView.ScaleType scaleType) {
+        if (requestBuilder.isTransformationSet() || scaleType == null) {
+            return requestBuilder;
+        }
+        switch (scaleType) {
+            case CENTER_CROP:
+                if (centerCropRequestBuilder == null) {
+                    centerCropRequestBuilder = requestBuilder.clone();
+                    centerCropRequestBuilder.applyCenterCrop();
+                }
+                return centerCropRequestBuilder;
+            case FIT_CENTER:
+            case FIT_START:
+            case FIT_END:
+                if (fitCenterRequestBuilder == null) {
+                    fitCenterRequestBuilder = requestBuilder.clone();
+                    fitCenterRequestBuilder.applyFitCenter();
+                }
+                return fitCenterRequestBuilder;
+            //$CASES-OMITTED$
+            default:
+                return requestBuilder;
+        }
+    }
+}
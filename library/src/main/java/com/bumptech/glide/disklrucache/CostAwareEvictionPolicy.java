@@ -0,0 +1,45 @@
+package com.bumptech.glide.disklrucache;
+
+/**
+ * An {@link EvictionPolicy} that keeps entries that are used often and are
+ * expensive to fetch again relative to the space they take up, similar to
+ * Greedy-Dual-Size-Frequency.
+ *
+ * <p>An entry's weight is its access count times its estimated re-fetch cost
+ * divided by its size. The re-fetch cost is the recorded fetch time if there
+ * is one, otherwise it's estimated from the size, an assumed bandwidth and a
+ * fixed per request latency. Single use prefetched entries therefore tend to
+ * be evicted before frequently used or slow to fetch originals.
+ */
+public class CostAwareEvictionPolicy implements EvictionPolicy {
+  /** Assume roughly 1 Mbps, a slow mobile connection. */
+  public static final long DEFAULT_BYTES_PER_MS = 128;
+  public static final long DEFAULT_REQUEST_LATENCY_MS = 200;
+
+  private final long bytesPerMs;
+  private final long requestLatencyMs;
+
+  public CostAwareEvictionPolicy() {
+    this(DEFAULT_BYTES_PER_MS, DEFAULT_REQUEST_LATENCY_MS);
+  }
+
+  /**
+   * @param bytesPerMs The bandwidth used to estimate the cost of entries
+   *     without a recorded fetch time.
+   * @param requestLatencyMs The fixed cost of a request used to estimate the
+   *     cost of entries without a recorded fetch time.
+   */
+  public CostAwareEvictionPolicy(long bytesPerMs, long requestLatencyMs) {
+    if (bytesPerMs <= 0) {
+      throw new IllegalArgumentException("bytesPerMs <= 0");
+    }
+    this.bytesPerMs = bytesPerMs;
+    this.requestLatencyMs = requestLatencyMs;
+  }
+
+  @Override
+  public double getRetentionWeight(long size, int accessCount, long fetchCostMillis) {
+    long cost = fetchCostMillis > 0 ? fetchCostMillis : requestLatencyMs + size / bytesPerMs;
+    return (double) accessCount * cost / Math.max(1, size);
+  }
+}
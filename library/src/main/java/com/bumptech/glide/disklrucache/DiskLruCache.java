@@ -88,11 +88,15 @@ public final class DiskLruCache implements Closeable {
   static final String JOURNAL_FILE_BACKUP = "journal.bkp";
   static final String MAGIC = "libcore.io.DiskLruCache";
   static final String VERSION_1 = "1";
+  static final String VERSION_2 = "2";
   static final long ANY_SEQUENCE_NUMBER = -1;
   private static final String CLEAN = "CLEAN";
   private static final String DIRTY = "DIRTY";
   private static final String REMOVE = "REMOVE";
   private static final String READ = "READ";
+  private static final String META = "META";
+  /** The number of least recently used entries an {@link EvictionPolicy} chooses between. */
+  static final int EVICTION_WINDOW = 16;
 
     /*
      * This cache uses a journal file named "journal". A typical journal file
@@ -110,6 +114,7 @@ public final class DiskLruCache implements Closeable {
      *     CLEAN 1ab96a171faeeee38496d8b330771a7a 1600 234
      *     READ 335c4c6028171cfddfbaae1a9c313c52
      *     READ 3400330d1dfc7f3f7f4b8d4d803dfcf6
+     *     META 3400330d1dfc7f3f7f4b8d4d803dfcf6 2 850 0
      *
      * The first five lines of the journal form its header. They are the
      * constant string "libcore.io.DiskLruCache", the disk cache's version,
@@ -127,6 +132,13 @@ public final class DiskLruCache implements Closeable {
      *     its values.
      *   o READ lines track accesses for LRU.
      *   o REMOVE lines track entries that have been deleted.
+     *   o META lines record an entry's eviction metadata: its access count,
+     *     its fetch cost in milliseconds and the wall clock time it expires
+     *     at, or 0 if it doesn't expire. READ and CLEAN lines after a META
+     *     line each add one to the access count.
+     *
+     * Journals written with version 1 have no META lines, they're still read
+     * and are rewritten as version 2 when the journal is next rebuilt.
      *
      * The journal file is appended to as cache operations occur. The journal may
      * occasionally be compacted by dropping redundant lines. A temporary file named
@@ -141,11 +153,15 @@ public final class DiskLruCache implements Closeable {
   private final int appVersion;
   private long maxSize;
   private final int valueCount;
+  private final EvictionPolicy evictionPolicy;
   private long size = 0;
   private Writer journalWriter;
   private final LinkedHashMap<String, Entry> lruEntries =
       new LinkedHashMap<String, Entry>(0, 0.75f, true);
   private int redundantOpCount;
+  private long evictionCount;
+  private int journalRebuildCount;
+  private long journalRebuildNanos;
 
   /**
    * To differentiate between old and current snapshots, each entry is given
@@ -173,7 +189,8 @@ public final class DiskLruCache implements Closeable {
     }
   };
 
-  private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
+  private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize,
+      EvictionPolicy evictionPolicy) {
     this.directory = directory;
     this.appVersion = appVersion;
     this.journalFile = new File(directory, JOURNAL_FILE);
@@ -181,6 +198,7 @@ public final class DiskLruCache implements Closeable {
     this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
     this.valueCount = valueCount;
     this.maxSize = maxSize;
+    this.evictionPolicy = evictionPolicy;
   }
 
   /**
@@ -194,6 +212,21 @@ public final class DiskLruCache implements Closeable {
    */
   public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize)
       throws IOException {
+    return open(directory, appVersion, valueCount, maxSize, EvictionPolicy.LRU);
+  }
+
+  /**
+   * Opens the cache in {@code directory}, creating a cache if none exists
+   * there, evicting entries using the given policy.
+   *
+   * @param directory a writable directory
+   * @param valueCount the number of values per cache entry. Must be positive.
+   * @param maxSize the maximum number of bytes this cache should use to store
+   * @param evictionPolicy decides which entry to evict when over maxSize
+   * @throws IOException if reading or writing the cache directory fails
+   */
+  public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize,
+      EvictionPolicy evictionPolicy) throws IOException {
     if (maxSize <= 0) {
       throw new IllegalArgumentException("maxSize <= 0");
     }
@@ -214,11 +247,15 @@ public final class DiskLruCache implements Closeable {
     }
 
     // Prefer to pick up where we left off.
-    DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+    DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, evictionPolicy);
     if (cache.journalFile.exists()) {
       try {
         cache.readJournal();
         cache.processJournal();
+        // Trim and compact on the cleanup thread rather than on the thread opening the cache.
+        if (cache.size > cache.maxSize || cache.journalRebuildRequired()) {
+          cache.executorService.submit(cache.cleanupCallable);
+        }
         return cache;
       } catch (IOException journalIsCorrupt) {
         System.out
@@ -233,7 +270,7 @@ public final class DiskLruCache implements Closeable {
 
     // Create a new empty cache.
     directory.mkdirs();
-    cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+    cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, evictionPolicy);
     cache.rebuildJournal();
     return cache;
   }
@@ -247,7 +284,7 @@ public final class DiskLruCache implements Closeable {
       String valueCountString = reader.readLine();
       String blank = reader.readLine();
       if (!MAGIC.equals(magic)
-          || !VERSION_1.equals(version)
+          || !(VERSION_1.equals(version) || VERSION_2.equals(version))
           || !Integer.toString(appVersion).equals(appVersionString)
           || !Integer.toString(valueCount).equals(valueCountString)
           || !"".equals(blank)) {
@@ -308,10 +345,14 @@ public final class DiskLruCache implements Closeable {
       entry.readable = true;
       entry.currentEditor = null;
       entry.setLengths(parts);
+      entry.accessCount++;
     } else if (secondSpace == -1 && firstSpace == DIRTY.length() && line.startsWith(DIRTY)) {
       entry.currentEditor = new Editor(entry);
     } else if (secondSpace == -1 && firstSpace == READ.length() && line.startsWith(READ)) {
-      // This work was already done by calling lruEntries.get().
+      // The LRU order was already updated by calling lruEntries.get().
+      entry.accessCount++;
+    } else if (secondSpace != -1 && firstSpace == META.length() && line.startsWith(META)) {
+      entry.setMetadata(line.substring(secondSpace + 1).split(" "));
     } else {
       throw new IOException("unexpected journal line: " + line);
     }
@@ -345,6 +386,7 @@ public final class DiskLruCache implements Closeable {
    * current journal if it exists.
    */
   private synchronized void rebuildJournal() throws IOException {
+    long startTime = System.nanoTime();
     if (journalWriter != null) {
       journalWriter.close();
     }
@@ -354,7 +396,7 @@ public final class DiskLruCache implements Closeable {
     try {
       writer.write(MAGIC);
       writer.write("\n");
-      writer.write(VERSION_1);
+      writer.write(VERSION_2);
       writer.write("\n");
       writer.write(Integer.toString(appVersion));
       writer.write("\n");
@@ -367,6 +409,9 @@ public final class DiskLruCache implements Closeable {
           writer.write(DIRTY + ' ' + entry.key + '\n');
         } else {
           writer.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+          if (entry.hasMetadata()) {
+            writer.write(META + ' ' + entry.key + entry.getMetadata() + '\n');
+          }
         }
       }
     } finally {
@@ -381,6 +426,8 @@ public final class DiskLruCache implements Closeable {
 
     journalWriter = new BufferedWriter(
         new OutputStreamWriter(new FileOutputStream(journalFile, true), Util.US_ASCII));
+    journalRebuildCount++;
+    journalRebuildNanos += System.nanoTime() - startTime;
   }
 
   private static void deleteIfExists(File file) throws IOException {
@@ -414,6 +461,11 @@ public final class DiskLruCache implements Closeable {
       return null;
     }
 
+    if (entry.isExpired(System.currentTimeMillis())) {
+      remove(key);
+      return null;
+    }
+
     for (File file : entry.cleanFiles) {
         // A file must have been deleted manually!
         if (!file.exists()) {
@@ -422,6 +474,7 @@ public final class DiskLruCache implements Closeable {
     }
 
     redundantOpCount++;
+    entry.accessCount++;
     journalWriter.append(READ);
     journalWriter.append(' ');
     journalWriter.append(key);
@@ -489,6 +542,24 @@ public final class DiskLruCache implements Closeable {
     executorService.submit(cleanupCallable);
   }
 
+  /** Returns the number of entries evicted to stay within the max size. */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Returns the number of times the journal has been written from scratch,
+   * including when the cache is created.
+   */
+  public synchronized int getJournalRebuildCount() {
+    return journalRebuildCount;
+  }
+
+  /** Returns the total time spent rebuilding the journal in milliseconds. */
+  public synchronized long getJournalRebuildMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(journalRebuildNanos);
+  }
+
   /**
    * Returns the number of bytes currently being used to store the values in
    * this cache. This may be greater than the max size if a background
@@ -533,16 +604,28 @@ public final class DiskLruCache implements Closeable {
         deleteIfExists(dirty);
       }
     }
+    if (success) {
+      entry.fetchCostMillis = editor.fetchCostMillis;
+      entry.expiresAt = editor.expiresAt;
+    }
 
     redundantOpCount++;
     entry.currentEditor = null;
     if (entry.readable | success) {
       entry.readable = true;
+      entry.accessCount++;
       journalWriter.append(CLEAN);
       journalWriter.append(' ');
       journalWriter.append(entry.key);
       journalWriter.append(entry.getLengths());
       journalWriter.append('\n');
+      if (entry.hasMetadata()) {
+        journalWriter.append(META);
+        journalWriter.append(' ');
+        journalWriter.append(entry.key);
+        journalWriter.append(entry.getMetadata());
+        journalWriter.append('\n');
+      }
 
       if (success) {
         entry.sequenceNumber = nextSequenceNumber++;
@@ -643,9 +726,45 @@ public final class DiskLruCache implements Closeable {
 
   private void trimToSize() throws IOException {
     while (size > maxSize) {
-      Map.Entry<String, Entry> toEvict = lruEntries.entrySet().iterator().next();
-      remove(toEvict.getKey());
+      final boolean removed;
+      if (evictionPolicy == EvictionPolicy.LRU) {
+        Map.Entry<String, Entry> toEvict = lruEntries.entrySet().iterator().next();
+        removed = remove(toEvict.getKey());
+      } else {
+        removed = remove(selectEvictionVictim(System.currentTimeMillis()));
+      }
+      if (removed) {
+        evictionCount++;
+      }
+    }
+  }
+
+  /**
+   * Returns the key of the entry with the lowest retention weight among the
+   * least recently used entries, preferring expired entries.
+   */
+  private String selectEvictionVictim(long now) {
+    String victim = null;
+    double victimWeight = Double.MAX_VALUE;
+    int examined = 0;
+    for (Entry entry : lruEntries.values()) {
+      if (examined++ == EVICTION_WINDOW) {
+        break;
+      }
+      if (entry.currentEditor != null) {
+        continue;
+      }
+      if (entry.isExpired(now)) {
+        return entry.key;
+      }
+      double weight = evictionPolicy.getRetentionWeight(entry.getTotalLength(),
+          Math.max(1, entry.accessCount), entry.fetchCostMillis);
+      if (weight < victimWeight) {
+        victim = entry.key;
+        victimWeight = weight;
+      }
     }
+    return victim != null ? victim : lruEntries.keySet().iterator().next();
   }
 
   /**
@@ -706,10 +825,32 @@ public final class DiskLruCache implements Closeable {
     private final Entry entry;
     private final boolean[] written;
     private boolean committed;
+    private long fetchCostMillis;
+    private long expiresAt;
 
     private Editor(Entry entry) {
       this.entry = entry;
       this.written = (entry.readable) ? null : new boolean[valueCount];
+      this.fetchCostMillis = entry.fetchCostMillis;
+      this.expiresAt = entry.expiresAt;
+    }
+
+    /**
+     * Records how long it took to fetch the data being written, in
+     * milliseconds, for the cache's {@link EvictionPolicy}. Takes effect
+     * when this edit is committed.
+     */
+    public void setFetchCost(long fetchCostMillis) {
+      this.fetchCostMillis = fetchCostMillis;
+    }
+
+    /**
+     * Sets the wall clock time in milliseconds after which the entry is no
+     * longer returned by {@link DiskLruCache#get} and is evicted first, or 0
+     * if it never expires. Takes effect when this edit is committed.
+     */
+    public void setExpiresAt(long expiresAt) {
+      this.expiresAt = expiresAt;
     }
 
     /**
@@ -819,6 +960,15 @@ public final class DiskLruCache implements Closeable {
     /** The sequence number of the most recently committed edit to this entry. */
     private long sequenceNumber;
 
+    /** The number of times this entry has been written or read. */
+    private int accessCount;
+
+    /** How long it took to fetch this entry's data, or 0 if unknown. */
+    private long fetchCostMillis;
+
+    /** The wall clock time this entry expires at, or 0 if it doesn't expire. */
+    private long expiresAt;
+
     private Entry(String key) {
       this.key = key;
       this.lengths = new long[valueCount];
@@ -860,6 +1010,40 @@ public final class DiskLruCache implements Closeable {
       }
     }
 
+    private long getTotalLength() {
+      long total = 0;
+      for (long length : lengths) {
+        total += length;
+      }
+      return total;
+    }
+
+    private boolean isExpired(long now) {
+      return expiresAt != 0 && now >= expiresAt;
+    }
+
+    private boolean hasMetadata() {
+      return accessCount > 1 || fetchCostMillis != 0 || expiresAt != 0;
+    }
+
+    private String getMetadata() {
+      return " " + accessCount + " " + fetchCostMillis + " " + expiresAt;
+    }
+
+    /** Set metadata from a META line like "2 850 0". */
+    private void setMetadata(String[] strings) throws IOException {
+      if (strings.length != 3) {
+        throw new IOException("unexpected journal line: " + java.util.Arrays.toString(strings));
+      }
+      try {
+        accessCount = Integer.parseInt(strings[0]);
+        fetchCostMillis = Long.parseLong(strings[1]);
+        expiresAt = Long.parseLong(strings[2]);
+      } catch (NumberFormatException e) {
+        throw new IOException("unexpected journal line: " + java.util.Arrays.toString(strings));
+      }
+    }
+
     private IOException invalidLengths(String[] strings) throws IOException {
       throw new IOException("unexpected journal line: " + java.util.Arrays.toString(strings));
     }
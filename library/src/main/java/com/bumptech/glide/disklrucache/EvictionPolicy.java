@@ -0,0 +1,34 @@
+package com.bumptech.glide.disklrucache;
+
+/**
+ * Decides which entry {@link DiskLruCache} evicts when it is over its max size.
+ *
+ * <p>When the cache needs space it looks at a small window of its least
+ * recently used entries and evicts the one with the lowest retention weight,
+ * so recency still matters but an entry that is expensive to replace can
+ * outlive cheaper entries that were used slightly more recently. Ties go to
+ * the least recently used entry. Expired entries are always evicted first.
+ */
+public interface EvictionPolicy {
+
+  /** Evicts in pure access order, the default. */
+  EvictionPolicy LRU = new EvictionPolicy() {
+    @Override
+    public double getRetentionWeight(long size, int accessCount, long fetchCostMillis) {
+      return 0;
+    }
+  };
+
+  /**
+   * Returns how valuable it is to keep an entry, higher weights are kept
+   * longer.
+   *
+   * @param size The total size of the entry's values in bytes.
+   * @param accessCount The number of times the entry has been written or
+   *     read, at least 1.
+   * @param fetchCostMillis The time it took to fetch the entry's data as
+   *     recorded with {@link DiskLruCache.Editor#setFetchCost(long)}, or 0
+   *     if unknown.
+   */
+  double getRetentionWeight(long size, int accessCount, long fetchCostMillis);
+}
@@ -76,6 +76,10 @@ public class GifDecoder {
      * max decoder pixel stack size.
      */
     private static final int MAX_STACK_SIZE = 4096;
+    /**
+     * Initial size of the copy of a frame's image data when the raw data isn't backed by an array.
+     */
+    private static final int MIN_IMAGE_DATA_SIZE = 4096;
 
     /**
      * GIF Disposal Method meaning take no action.
@@ -110,20 +114,19 @@ public class GifDecoder {
     // Raw GIF data from input source.
     private ByteBuffer rawData;
 
-    // Raw data read working array.
-    private final byte[] block = new byte[256];
-
     private GifHeaderParser parser;
 
     // LZW decoder working arrays.
     private short[] prefix;
     private byte[] suffix;
-    private byte[] pixelStack;
+    // The length of the string each code expands to.
+    private short[] lengths;
     private byte[] mainPixels;
+    // Image data of the current frame, copied from raw data that isn't backed by an array.
+    private byte[] imageData;
     private int[] mainScratch;
 
     private int framePointer;
-    private byte[] data;
     private GifHeader header;
     private BitmapProvider bitmapProvider;
     private Bitmap previousImage;
@@ -164,10 +167,36 @@ public class GifDecoder {
         return header.height;
     }
 
+    /**
+     * Returns the GIF's data as an array, copying it if it isn't backed by one, see {@link #getBuffer()}.
+     */
     public byte[] getData() {
+        if (rawData == null) {
+            return null;
+        }
+        if (rawData.hasArray() && rawData.arrayOffset() == 0 && rawData.array().length == rawData.capacity()) {
+            return rawData.array();
+        }
+        byte[] data = new byte[rawData.capacity()];
+        ByteBuffer copy = rawData.duplicate();
+        copy.position(0);
+        copy.get(data);
         return data;
     }
 
+    /**
+     * Returns a view of the GIF's data, which may be memory mapped, positioned at the start. The data must not be
+     * modified.
+     */
+    public ByteBuffer getBuffer() {
+        if (rawData == null) {
+            return null;
+        }
+        ByteBuffer buffer = rawData.duplicate();
+        buffer.position(0);
+        return buffer;
+    }
+
     /**
      * Returns the current status of the decoder.
      *
@@ -345,9 +374,9 @@ public class GifDecoder {
 
     public void clear() {
         header = null;
-        data = null;
         mainPixels = null;
         mainScratch = null;
+        imageData = null;
         if (previousImage != null) {
             bitmapProvider.release(previousImage);
         }
@@ -356,16 +385,21 @@ public class GifDecoder {
     }
 
     public void setData(GifHeader header, byte[] data) {
+        setData(header, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Sets the GIF data to decode, for example a buffer memory mapped from a file, without copying it.
+     */
+    public void setData(GifHeader header, ByteBuffer data) {
         this.header = header;
-        this.data = data;
         this.status = STATUS_OK;
         framePointer = INITIAL_FRAME_POINTER;
-        // Initialize the raw data buffer.
-        rawData = ByteBuffer.wrap(data);
+        // Initialize the raw data buffer, our own view so we don't change the caller's position or byte order.
+        rawData = data.duplicate();
         rawData.rewind();
         rawData.order(ByteOrder.LITTLE_ENDIAN);
 
-
         // No point in specially saving an old frame if we're never going to use it.
         savePrevious = false;
         for (GifFrame frame : header.frames) {
@@ -394,11 +428,20 @@ public class GifDecoder {
      * @return read status code (0 = no errors).
      */
     public int read(byte[] data) {
-        this.data = data;
+        return read(data != null ? ByteBuffer.wrap(data) : null);
+    }
+
+    /**
+     * Reads GIF image from a buffer, for example one memory mapped from a file, without copying it.
+     *
+     * @param data containing GIF file.
+     * @return read status code (0 = no errors).
+     */
+    public int read(ByteBuffer data) {
         this.header = getHeaderParser().setData(data).parseHeader();
         if (data != null) {
             // Initialize the raw data buffer.
-            rawData = ByteBuffer.wrap(data);
+            rawData = data.duplicate();
             rawData.rewind();
             rawData.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -450,6 +493,10 @@ public class GifDecoder {
         // Decode pixels for this frame  into the global pixels[] scratch.
         decodeBitmapData(currentFrame);
 
+        // Read from locals in the copy loop below.
+        final int[] colorTable = act;
+        final byte[] pixels = mainPixels;
+
         // Copy each source line to the appropriate place in the destination.
         int pass = 1;
         int inc = 8;
@@ -493,8 +540,7 @@ public class GifDecoder {
                 int sx = i * currentFrame.iw;
                 while (dx < dlim) {
                     // Map color and insert in destination.
-                    int index = ((int) mainPixels[sx++]) & 0xff;
-                    int c = act[index];
+                    int c = colorTable[pixels[sx++] & 0xff];
                     if (c != 0) {
                         dest[dx] = c;
                     }
@@ -520,6 +566,12 @@ public class GifDecoder {
 
     /**
      * Decodes LZW image data into pixel array. Adapted from John Cristy's BitmapMagick.
+     *
+     * <p>
+     *     Codes are read through a bit buffer directly from the raw data, a whole data sub-block at a time, and each
+     *     code's string is written backwards straight into the pixel array using the length of the string recorded
+     *     when the code was added, rather than being pushed onto and popped off of a stack one pixel at a time.
+     * </p>
      */
     private void decodeBitmapData(GifFrame frame) {
         if (frame != null) {
@@ -527,10 +579,7 @@ public class GifDecoder {
             rawData.position(frame.bufferFrameStart);
         }
 
-        int npix = (frame == null) ? header.width * header.height : frame.iw * frame.ih;
-        int available, clear, codeMask, codeSize, endOfInformation, inCode, oldCode, bits, code, count, i, datum,
-                dataSize, first, top, bi, pi;
-
+        final int npix = (frame == null) ? header.width * header.height : frame.iw * frame.ih;
         if (mainPixels == null || mainPixels.length < npix) {
             // Allocate new pixel array.
             mainPixels = new byte[npix];
@@ -541,47 +590,75 @@ public class GifDecoder {
         if (suffix == null) {
             suffix = new byte[MAX_STACK_SIZE];
         }
-        if (pixelStack == null) {
-            pixelStack = new byte[MAX_STACK_SIZE + 1];
+        if (lengths == null) {
+            lengths = new short[MAX_STACK_SIZE];
+        }
+        // Locals rather than fields so the loops below only read from registers.
+        final byte[] pixels = mainPixels;
+        final short[] prefix = this.prefix;
+        final byte[] suffix = this.suffix;
+        final short[] lengths = this.lengths;
+        final boolean hasArray = rawData.hasArray();
+        final byte[] source;
+        final int limit;
+        int position;
+        if (hasArray) {
+            source = rawData.array();
+            limit = rawData.arrayOffset() + rawData.limit();
+            position = rawData.arrayOffset() + rawData.position();
+        } else {
+            // Usually a memory mapped file, copy out only this frame's image data.
+            limit = readImageData();
+            source = imageData;
+            position = 0;
         }
 
         // Initialize GIF data stream decoder.
-        dataSize = read();
-        clear = 1 << dataSize;
-        endOfInformation = clear + 1;
-        available = clear + 2;
-        oldCode = NULL_CODE;
-        codeSize = dataSize + 1;
-        codeMask = (1 << codeSize) - 1;
-        for (code = 0; code < clear; code++) {
-            // XXX ArrayIndexOutOfBoundsException.
+        int dataSize = position < limit ? source[position++] & 0xff : 0;
+        final int clear = 1 << dataSize;
+        if (clear + 2 > MAX_STACK_SIZE) {
+            status = STATUS_FORMAT_ERROR;
+            Arrays.fill(pixels, 0, npix, (byte) 0);
+            return;
+        }
+        final int endOfInformation = clear + 1;
+        int available = clear + 2;
+        int oldCode = NULL_CODE;
+        int codeSize = dataSize + 1;
+        int codeMask = (1 << codeSize) - 1;
+        for (int code = 0; code < clear; code++) {
             prefix[code] = 0;
             suffix[code] = (byte) code;
+            lengths[code] = 1;
         }
 
         // Decode GIF pixel stream.
-        datum = bits = count = first = top = pi = bi = 0;
-        for (i = 0; i < npix; ) {
-            // Load bytes until there are enough bits for a code.
+        int datum = 0;
+        int bits = 0;
+        int count = 0;
+        int first = 0;
+        int pi = 0;
+        decode:
+        while (pi < npix) {
             if (count == 0) {
-                // Read a new data block.
-                count = readBlock();
-                if (count <= 0) {
+                // Start a new data sub-block.
+                count = position < limit ? source[position++] & 0xff : 0;
+                if (count == 0 || position + count > limit) {
                     status = STATUS_PARTIAL_DECODE;
                     break;
                 }
-                bi = 0;
             }
-
-            datum += (((int) block[bi]) & 0xff) << bits;
-            bits += 8;
-            bi++;
-            count--;
+            // Fill the bit buffer with as many whole bytes from the sub-block as fit.
+            do {
+                datum |= (source[position++] & 0xff) << bits;
+                bits += 8;
+                count--;
+            } while (bits <= 24 && count > 0);
 
             while (bits >= codeSize) {
                 // Get the next code.
-                code = datum & codeMask;
-                datum >>= codeSize;
+                int code = datum & codeMask;
+                datum >>>= codeSize;
                 bits -= codeSize;
 
                 // Interpret the code.
@@ -593,38 +670,61 @@ public class GifDecoder {
                     oldCode = NULL_CODE;
                     continue;
                 }
-
-                if (code > available) {
+                if (code > available || code == endOfInformation) {
                     status = STATUS_PARTIAL_DECODE;
-                    break;
+                    break decode;
                 }
-
-                if (code == endOfInformation) {
-                    break;
-                }
-
                 if (oldCode == NULL_CODE) {
-                    pixelStack[top++] = suffix[code];
+                    pixels[pi++] = suffix[code];
                     oldCode = code;
-                    first = code;
+                    first = suffix[code] & 0xff;
+                    if (pi == npix) {
+                        break decode;
+                    }
                     continue;
                 }
-                inCode = code;
-                if (code >= available) {
-                    pixelStack[top++] = (byte) first;
+
+                int inCode = code;
+                int length;
+                if (code == available) {
+                    // The string for the previous code followed by its own first pixel.
+                    length = lengths[oldCode] + 1;
                     code = oldCode;
+                    if (pi + length <= npix) {
+                        pixels[pi + length - 1] = (byte) first;
+                    }
+                } else {
+                    length = lengths[code];
                 }
-                while (code >= clear) {
-                    pixelStack[top++] = suffix[code];
-                    code = prefix[code];
+                int end = pi + length - (inCode == available ? 1 : 0);
+                if (end <= npix) {
+                    // Write the string backwards from its last pixel.
+                    int p = end - 1;
+                    while (code >= clear) {
+                        pixels[p--] = suffix[code];
+                        code = prefix[code];
+                    }
+                    first = suffix[code] & 0xff;
+                    pixels[p] = (byte) first;
+                } else {
+                    // The string runs past the end of the frame, only write the pixels that fit.
+                    int p = end - 1;
+                    while (code >= clear) {
+                        if (p < npix) {
+                            pixels[p] = suffix[code];
+                        }
+                        p--;
+                        code = prefix[code];
+                    }
+                    first = suffix[code] & 0xff;
+                    pixels[p] = (byte) first;
                 }
-                first = ((int) suffix[code]) & 0xff;
-                pixelStack[top++] = (byte) first;
 
                 // Add a new string to the string table.
                 if (available < MAX_STACK_SIZE) {
                     prefix[available] = (short) oldCode;
                     suffix[available] = (byte) first;
+                    lengths[available] = (short) (lengths[oldCode] + 1);
                     available++;
                     if (((available & codeMask) == 0) && (available < MAX_STACK_SIZE)) {
                         codeSize++;
@@ -633,57 +733,54 @@ public class GifDecoder {
                 }
                 oldCode = inCode;
 
-                while (top > 0) {
-                    // Pop a pixel off the pixel stack.
-                    top--;
-                    mainPixels[pi++] = pixelStack[top];
-                    i++;
+                pi += length;
+                if (pi >= npix) {
+                    break decode;
                 }
             }
         }
+        if (hasArray) {
+            rawData.position(position - rawData.arrayOffset());
+        }
 
         // Clear missing pixels.
-        for (i = pi; i < npix; i++) {
-            mainPixels[i] = 0;
+        if (pi < npix) {
+            Arrays.fill(pixels, pi, npix, (byte) 0);
         }
     }
 
     /**
-     * Reads a single byte from the input stream.
+     * Copies the LZW minimum code size and the data sub-blocks at the buffer's position into {@link #imageData} and
+     * returns the number of bytes copied.
      */
-    private int read() {
-        int curByte = 0;
-        try {
-            curByte = rawData.get() & 0xFF;
-        } catch (Exception e) {
-            status = STATUS_FORMAT_ERROR;
+    private int readImageData() {
+        int length = 0;
+        if (rawData.hasRemaining()) {
+            ensureImageDataCapacity(1);
+            imageData[length++] = rawData.get();
+        }
+        while (rawData.hasRemaining()) {
+            int count = rawData.get() & 0xff;
+            int available = Math.min(count, rawData.remaining());
+            ensureImageDataCapacity(length + 1 + available);
+            imageData[length++] = (byte) count;
+            rawData.get(imageData, length, available);
+            length += available;
+            if (count == 0 || available < count) {
+                break;
+            }
         }
-        return curByte;
+        return length;
     }
 
-    /**
-     * Reads next variable length block from input.
-     *
-     * @return number of bytes stored in "buffer".
-     */
-    private int readBlock() {
-        int blockSize = read();
-        int n = 0;
-        if (blockSize > 0) {
-            try {
-                int count;
-                while (n < blockSize) {
-                    count = blockSize - n;
-                    rawData.get(block, n, count);
-
-                    n += count;
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error Reading Block", e);
-                status = STATUS_FORMAT_ERROR;
+    private void ensureImageDataCapacity(int capacity) {
+        if (imageData == null || imageData.length < capacity) {
+            int newCapacity = imageData == null ? MIN_IMAGE_DATA_SIZE : imageData.length;
+            while (newCapacity < capacity) {
+                newCapacity *= 2;
             }
+            imageData = imageData == null ? new byte[newCapacity] : Arrays.copyOf(imageData, newCapacity);
         }
-        return n;
     }
 
     private Bitmap getNextBitmap() {
@@ -30,10 +30,19 @@ public class GifHeaderParser {
     private int blockSize = 0;
 
     public GifHeaderParser setData(byte[] data) {
+        return setData(data != null ? ByteBuffer.wrap(data) : null);
+    }
+
+    /**
+     * Sets the GIF data to parse, for example a buffer memory mapped from a file, without copying it. Only the parts
+     * of the buffer holding the header, color tables and extensions are read, image data is skipped over.
+     */
+    public GifHeaderParser setData(ByteBuffer data) {
         reset();
         if (data != null) {
-            rawData = ByteBuffer.wrap(data);
-            rawData.rewind();
+            // Our own view of the buffer, so we don't change the caller's position or byte order.
+            rawData = data.asReadOnlyBuffer();
+            rawData.position(0);
             rawData.order(ByteOrder.LITTLE_ENDIAN);
         } else {
             rawData = null;
@@ -7,9 +7,17 @@ import android.graphics.Color;
 import android.util.Log;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * Class AnimatedGifEncoder - Encodes a GIF file consisting of one or more
@@ -30,6 +38,15 @@ import java.io.OutputStream;
  * the associated LZWEncoder class. Please forward any corrections to
  * kweiner@fmsware.com.
  *
+ * <p>
+ * Frames can be quantized and compressed on an {@link Executor} set with
+ * {@link #setExecutor(Executor)} while later frames are being added. They're
+ * still written in the order they were added. Frames with no more than 256
+ * colors are written with an exact palette rather than being quantized, and
+ * frames whose colors are all in the first frame's palette use it as the
+ * global color table instead of writing a local one.
+ * </p>
+ *
  * @author Kevin Weiner, FM Software
  * @version 1.03 November 2003
  *
@@ -41,14 +58,17 @@ public class AnimatedGifEncoder {
     // The minimum % of an images pixels that must be transparent for us to set a transparent index automatically.
     private static final double MIN_TRANSPARENT_PERCENTAGE = 4d;
 
+    // The maximum number of frames being encoded on the executor at once, each holds on to its pixels.
+    private static final int MAX_PENDING_FRAMES = 4;
+
+    private static final int MAX_COLORS = 256;
+
     private int width; // image size
 
     private int height;
 
     private Integer transparent = null; // transparent color if given
 
-    private int transIndex; // transparent index in color table
-
     private int repeat = -1; // no repeat
 
     private int delay = 0; // frame delay (hundredths)
@@ -57,20 +77,6 @@ public class AnimatedGifEncoder {
 
     private OutputStream out;
 
-    private Bitmap image; // current frame
-
-    private byte[] pixels; // BGR byte array from frame
-
-    private byte[] indexedPixels; // converted frame indexed to palette
-
-    private int colorDepth; // number of bit planes
-
-    private byte[] colorTab; // RGB palette
-
-    private boolean[] usedEntry = new boolean[256]; // active palette entries
-
-    private int palSize = 7; // color table size (bits-1)
-
     private int dispose = -1; // disposal code (-1 = use default)
 
     private boolean closeStream = false; // close stream when finished
@@ -81,7 +87,13 @@ public class AnimatedGifEncoder {
 
     private int sample = 10; // default sample interval for quantizer
 
-    private boolean hasTransparentPixels;
+    private Executor executor; // encodes frames other than the first, if set
+
+    private final Queue<FutureTask<Frame>> pending = new ArrayDeque<FutureTask<Frame>>(); // frames being encoded
+
+    private Frame globalFrame; // the first frame, whose palette is the global color table
+
+    private ColorIndex globalColors; // the colors in the global color table
 
     /**
      * Sets the delay time between each frame, or changes it for subsequent frames
@@ -137,11 +149,29 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Adds next GIF frame. The frame is not written immediately, but is actually
-     * deferred until the next frame is received so that timing data can be
-     * inserted. Invoking <code>finish()</code> flushes all frames. If
-     * <code>setSize</code> was not invoked, the size of the first image is used
-     * for all subsequent frames.
+     * Sets the executor frames after the first are quantized and compressed on,
+     * or null to encode them on the thread that adds them. Must be invoked before
+     * the first image is added.
+     *
+     * @param executor
+     *          Executor to encode frames on.
+     */
+    public void setExecutor(Executor executor) {
+        if (started && !firstFrame)
+            return;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds next GIF frame. The frame is written once it and all of the frames
+     * before it have been encoded. Invoking <code>finish()</code> flushes all
+     * frames. If <code>setSize</code> was not invoked, the size of the first
+     * image is used for all subsequent frames.
+     *
+     * <p>
+     * The frame's pixels are copied before this method returns, so the given
+     * bitmap may be reused or recycled right away.
+     * </p>
      *
      * @param im
      *          BufferedImage containing frame to write.
@@ -151,35 +181,36 @@ public class AnimatedGifEncoder {
         if ((im == null) || !started) {
             return false;
         }
-        boolean ok = true;
+        if (!sizeSet) {
+            // use first frame's size
+            setSize(im.getWidth(), im.getHeight());
+        }
+        return addFrame(getImagePixels(im));
+    }
+
+    // Visible for testing.
+    boolean addFrame(int[] argb) {
+        Frame frame = new Frame(argb, width, height, delay, dispose, transparent, sample, globalFrame, globalColors);
         try {
-            if (!sizeSet) {
-                // use first frame's size
-                setSize(im.getWidth(), im.getHeight());
-            }
-            image = im;
-            getImagePixels(); // convert to correct format if necessary
-            analyzePixels(); // build color table & map pixels
             if (firstFrame) {
-                writeLSD(); // logical screen descriptior
-                writePalette(); // global color table
-                if (repeat >= 0) {
-                    // use NS app extension to indicate reps
-                    writeNetscapeExt();
-                }
-            }
-            writeGraphicCtrlExt(); // write graphic control extension
-            writeImageDesc(); // image descriptor
-            if (!firstFrame) {
-                writePalette(); // local color table
+                // Later frames need the first frame's palette to decide whether they can share it.
+                frame.call();
+                globalFrame = frame;
+                globalColors = frame.exactColors;
+                writeFrame(frame);
+                firstFrame = false;
+            } else if (executor == null) {
+                writeFrame(frame.call());
+            } else {
+                FutureTask<Frame> task = new FutureTask<Frame>(frame);
+                pending.add(task);
+                executor.execute(task);
+                writePending(pending.size() >= MAX_PENDING_FRAMES);
             }
-            writePixels(); // encode and write pixel data
-            firstFrame = false;
         } catch (IOException e) {
-            ok = false;
+            return false;
         }
-
-        return ok;
+        return true;
     }
 
     /**
@@ -192,6 +223,9 @@ public class AnimatedGifEncoder {
         boolean ok = true;
         started = false;
         try {
+            while (!pending.isEmpty()) {
+                writePending(true /*waitForHead*/);
+            }
             out.write(0x3b); // gif trailer
             out.flush();
             if (closeStream) {
@@ -202,12 +236,13 @@ public class AnimatedGifEncoder {
         }
 
         // reset for subsequent use
-        transIndex = 0;
+        for (FutureTask<Frame> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
         out = null;
-        image = null;
-        pixels = null;
-        indexedPixels = null;
-        colorTab = null;
+        globalFrame = null;
+        globalColors = null;
         closeStream = false;
         firstFrame = true;
 
@@ -305,126 +340,78 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Analyzes image colors and creates color map.
+     * Writes the frames at the head of the queue that have finished encoding,
+     * first waiting for the head to finish if requested.
      */
-    private void analyzePixels() {
-        int len = pixels.length;
-        int nPix = len / 3;
-        indexedPixels = new byte[nPix];
-        NeuQuant nq = new NeuQuant(pixels, len, sample);
-        // initialize quantizer
-        colorTab = nq.process(); // create reduced palette
-        // convert map from BGR to RGB
-        for (int i = 0; i < colorTab.length; i += 3) {
-            byte temp = colorTab[i];
-            colorTab[i] = colorTab[i + 2];
-            colorTab[i + 2] = temp;
-            usedEntry[i / 3] = false;
-        }
-        // map image pixels to new palette
-        int k = 0;
-        for (int i = 0; i < nPix; i++) {
-            int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
-            usedEntry[index] = true;
-            indexedPixels[i] = (byte) index;
-        }
-        pixels = null;
-        colorDepth = 8;
-        palSize = 7;
-        // get closest match to transparent color if specified
-        if (transparent != null) {
-            transIndex = findClosest(transparent);
-        } else if (hasTransparentPixels) {
-            transIndex = findClosest(Color.TRANSPARENT);
-        }
-    }
-
-    /**
-     * Returns index of palette color closest to c
-     *
-     */
-    private int findClosest(int color) {
-        if (colorTab == null)
-            return -1;
-        int r = Color.red(color);
-        int g = Color.green(color);
-        int b = Color.blue(color);
-        int minpos = 0;
-        int dmin = 256 * 256 * 256;
-        int len = colorTab.length;
-        for (int i = 0; i < len;) {
-            int dr = r - (colorTab[i++] & 0xff);
-            int dg = g - (colorTab[i++] & 0xff);
-            int db = b - (colorTab[i] & 0xff);
-            int d = dr * dr + dg * dg + db * db;
-            int index = i / 3;
-            if (usedEntry[index] && (d < dmin)) {
-                dmin = d;
-                minpos = index;
+    private void writePending(boolean waitForHead) throws IOException {
+        FutureTask<Frame> task;
+        while ((task = pending.peek()) != null && (waitForHead || task.isDone())) {
+            pending.remove();
+            waitForHead = false;
+            Frame frame;
+            try {
+                frame = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while encoding frame");
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to encode frame: " + e.getCause());
             }
-            i++;
+            writeFrame(frame);
         }
-        return minpos;
     }
 
     /**
-     * Extracts image pixels into byte array "pixels"
+     * Extracts image pixels, drawn at the GIF's size if the image's size is
+     * different.
      */
-    private void getImagePixels() {
-        int w = image.getWidth();
-        int h = image.getHeight();
-
-        if ((w != width) || (h != height)) {
+    private int[] getImagePixels(Bitmap image) {
+        if ((image.getWidth() != width) || (image.getHeight() != height)) {
             // create new image with right size/format
             Bitmap temp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(temp);
-            canvas.drawBitmap(temp, 0, 0, null);
+            canvas.drawBitmap(image, 0, 0, null);
             image = temp;
         }
-        int[] pixelsInt = new int[w * h];
-        image.getPixels(pixelsInt, 0, w, 0, 0, w, h);
-
-        // The algorithm requires 3 bytes per pixel as RGB.
-        pixels = new byte[pixelsInt.length * 3];
+        int[] pixelsInt = new int[width * height];
+        image.getPixels(pixelsInt, 0, width, 0, 0, width, height);
+        return pixelsInt;
+    }
 
-        int pixelsIndex = 0;
-        hasTransparentPixels = false;
-        int totalTransparentPixels = 0;
-        for (final int pixel : pixelsInt) {
-            if (pixel == Color.TRANSPARENT) {
-                totalTransparentPixels++;
+    private void writeFrame(Frame frame) throws IOException {
+        if (frame == globalFrame) {
+            writeLSD(frame); // logical screen descriptior
+            writePalette(frame); // global color table
+            if (repeat >= 0) {
+                // use NS app extension to indicate reps
+                writeNetscapeExt();
             }
-            pixels[pixelsIndex++] = (byte) (pixel & 0xFF);
-            pixels[pixelsIndex++] = (byte) ((pixel >> 8) & 0xFF);
-            pixels[pixelsIndex++] = (byte) ((pixel >> 16) & 0xFF);
         }
-
-        double transparentPercentage = 100 * totalTransparentPixels / (double) pixelsInt.length;
-        // Assume images with greater where more than n% of the pixels are transparent actually have transparency.
-        // See issue #214.
-        hasTransparentPixels = transparentPercentage > MIN_TRANSPARENT_PERCENTAGE;
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "got pixels for frame with " + transparentPercentage + "% transparent pixels");
+        writeGraphicCtrlExt(frame); // write graphic control extension
+        writeImageDesc(frame); // image descriptor
+        if (!frame.usesGlobalPalette) {
+            writePalette(frame); // local color table
         }
+        out.write(frame.imageData); // encoded pixel data
     }
 
     /**
      * Writes Graphic Control Extension
      */
-    private void writeGraphicCtrlExt() throws IOException {
+    private void writeGraphicCtrlExt(Frame frame) throws IOException {
         out.write(0x21); // extension introducer
         out.write(0xf9); // GCE label
         out.write(4); // data block size
         int transp, disp;
-        if (transparent == null && !hasTransparentPixels) {
+        if (frame.transparent == null && !frame.hasTransparentPixels) {
             transp = 0;
             disp = 0; // dispose = no action
         } else {
             transp = 1;
             disp = 2; // force clear if using transparent color
         }
-        if (dispose >= 0) {
-            disp = dispose & 7; // user override
+        if (frame.dispose >= 0) {
+            disp = frame.dispose & 7; // user override
         }
         disp <<= 2;
 
@@ -434,23 +421,23 @@ public class AnimatedGifEncoder {
                 0 | // 7 user input - 0 = none
                 transp); // 8 transparency flag
 
-        writeShort(delay); // delay x 1/100 sec
-        out.write(transIndex); // transparent color index
+        writeShort(frame.delay); // delay x 1/100 sec
+        out.write(frame.transIndex); // transparent color index
         out.write(0); // block terminator
     }
 
     /**
      * Writes Image Descriptor
      */
-    private void writeImageDesc() throws IOException {
+    private void writeImageDesc(Frame frame) throws IOException {
         out.write(0x2c); // image separator
         writeShort(0); // image position x,y = 0,0
         writeShort(0);
         writeShort(width); // image size
         writeShort(height);
         // packed fields
-        if (firstFrame) {
-            // no LCT - GCT is used for first (or only) frame
+        if (frame.usesGlobalPalette) {
+            // no LCT - GCT is used for the first frame and frames that share its colors
             out.write(0);
         } else {
             // specify normal LCT
@@ -458,14 +445,14 @@ public class AnimatedGifEncoder {
                     0 | // 2 interlace - 0=no
                     0 | // 3 sorted - 0=no
                     0 | // 4-5 reserved
-                    palSize); // 6-8 size of color table
+                    frame.palSize); // 6-8 size of color table
         }
     }
 
     /**
      * Writes Logical Screen Descriptor
      */
-    private void writeLSD() throws IOException {
+    private void writeLSD(Frame frame) throws IOException {
         // logical screen size
         writeShort(width);
         writeShort(height);
@@ -473,7 +460,7 @@ public class AnimatedGifEncoder {
         out.write((0x80 | // 1 : global color table flag = 1 (gct used)
                 0x70 | // 2-4 : color resolution = 7
                 0x00 | // 5 : gct sort flag = 0
-                palSize)); // 6-8 : gct size
+                frame.palSize)); // 6-8 : gct size
 
         out.write(0); // background color index
         out.write(0); // pixel aspect ratio - assume 1:1
@@ -496,22 +483,15 @@ public class AnimatedGifEncoder {
     /**
      * Writes color table
      */
-    private void writePalette() throws IOException {
+    private void writePalette(Frame frame) throws IOException {
+        byte[] colorTab = frame.colorTab;
         out.write(colorTab, 0, colorTab.length);
-        int n = (3 * 256) - colorTab.length;
+        int n = (3 * (1 << frame.colorDepth)) - colorTab.length;
         for (int i = 0; i < n; i++) {
             out.write(0);
         }
     }
 
-    /**
-     * Encodes and writes pixel data
-     */
-    private void writePixels() throws IOException {
-        LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
-        encoder.encode(out);
-    }
-
     /**
      * Write 16-bit value to output stream, LSB first
      */
@@ -528,4 +508,362 @@ public class AnimatedGifEncoder {
             out.write((byte) s.charAt(i));
         }
     }
+
+    /**
+     * A single frame, quantized and compressed by {@link #call()}, which may be
+     * run on any thread.
+     */
+    private static final class Frame implements Callable<Frame> {
+        // Colors mapped by NeuQuant are remembered in a direct mapped cache, most frames have far fewer
+        // distinct colors than pixels.
+        private static final int MAP_CACHE_SIZE = 4096;
+        // How much worse than the first frame's own palette the global palette may map a later frame's colors
+        // before the later frame gets a palette of its own.
+        private static final float MAX_GLOBAL_PALETTE_ERROR_RATIO = 1.25f;
+        // Every this many pixels are mapped to estimate whether the global palette fits before mapping all of them.
+        private static final int ERROR_SAMPLE_STEP = 64;
+
+        private final int width;
+        private final int height;
+        private final int delay;
+        private final int dispose;
+        private final Integer transparent;
+        private final int sample;
+        private final Frame globalFrame;
+        private final ColorIndex globalColors;
+        private int[] argb;
+
+        private byte[] colorTab; // RGB palette
+        private int colorDepth; // number of bit planes
+        private int palSize; // color table size (bits-1)
+        private boolean usesGlobalPalette;
+        private ColorIndex exactColors; // the colors in the palette, if they're exact
+        private NeuQuant quantizer; // the quantizer that made the palette, if it isn't exact
+        private long mappingError; // the sum of the differences between pixels and their palette colors
+        private boolean[] usedEntry; // active palette entries
+        private int transIndex; // transparent index in color table
+        private boolean hasTransparentPixels;
+        private byte[] imageData; // LZW encoded pixels
+
+        Frame(int[] argb, int width, int height, int delay, int dispose, Integer transparent, int sample,
+                Frame globalFrame, ColorIndex globalColors) {
+            this.argb = argb;
+            this.width = width;
+            this.height = height;
+            this.delay = delay;
+            this.dispose = dispose;
+            this.transparent = transparent;
+            this.sample = sample;
+            this.globalFrame = globalFrame;
+            this.globalColors = globalColors;
+        }
+
+        @Override
+        public Frame call() throws IOException {
+            findTransparentPixels();
+            byte[] indexedPixels = new byte[argb.length];
+            if (!mapToGlobalPalette(indexedPixels) && !mapToExactPalette(indexedPixels)
+                    && !mapToGlobalQuantizer(indexedPixels)) {
+                quantize(indexedPixels);
+            }
+            argb = null;
+            if (transparent != null) {
+                // get closest match to transparent color if specified
+                transIndex = findClosest(transparent);
+            } else if (hasTransparentPixels) {
+                transIndex = findClosest(Color.TRANSPARENT);
+            }
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream(indexedPixels.length / 2);
+            new LZWEncoder(width, height, indexedPixels, colorDepth).encode(os);
+            imageData = os.toByteArray();
+            return this;
+        }
+
+        private void findTransparentPixels() {
+            int totalTransparentPixels = 0;
+            for (final int pixel : argb) {
+                if (pixel == Color.TRANSPARENT) {
+                    totalTransparentPixels++;
+                }
+            }
+            double transparentPercentage = 100 * totalTransparentPixels / (double) argb.length;
+            // Assume images with greater where more than n% of the pixels are transparent actually have
+            // transparency. See issue #214.
+            hasTransparentPixels = transparentPercentage > MIN_TRANSPARENT_PERCENTAGE;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "got pixels for frame with " + transparentPercentage + "% transparent pixels");
+            }
+        }
+
+        /**
+         * Maps the frame to the global color table if it contains all of the
+         * frame's colors exactly.
+         */
+        private boolean mapToGlobalPalette(byte[] indexedPixels) {
+            if (globalColors == null) {
+                return false;
+            }
+            int lastColor = -1;
+            int lastIndex = 0;
+            for (int i = 0; i < argb.length; i++) {
+                int color = argb[i] & 0xffffff;
+                if (color != lastColor) {
+                    lastIndex = globalColors.get(color);
+                    if (lastIndex < 0) {
+                        return false;
+                    }
+                    lastColor = color;
+                }
+                indexedPixels[i] = (byte) lastIndex;
+            }
+            colorTab = globalFrame.colorTab;
+            colorDepth = globalFrame.colorDepth;
+            palSize = globalFrame.palSize;
+            usesGlobalPalette = true;
+            setUsedEntries(indexedPixels);
+            return true;
+        }
+
+        /**
+         * Maps the frame to a palette of exactly its colors if it has no more
+         * than 256 of them.
+         */
+        private boolean mapToExactPalette(byte[] indexedPixels) {
+            ColorIndex colors = new ColorIndex();
+            int lastColor = -1;
+            int lastIndex = 0;
+            for (int i = 0; i < argb.length; i++) {
+                int color = argb[i] & 0xffffff;
+                if (color != lastColor) {
+                    lastIndex = colors.getOrAdd(color);
+                    if (lastIndex < 0) {
+                        return false;
+                    }
+                    lastColor = color;
+                }
+                indexedPixels[i] = (byte) lastIndex;
+            }
+            colorTab = colors.toColorTable();
+            colorDepth = 1;
+            while ((1 << colorDepth) < colors.size()) {
+                colorDepth++;
+            }
+            palSize = colorDepth - 1;
+            exactColors = colors;
+            usesGlobalPalette = globalFrame == null;
+            setUsedEntries(indexedPixels);
+            return true;
+        }
+
+        /**
+         * Maps the frame to the global color table chosen by the first frame's
+         * quantizer if it fits the frame's colors about as well as it fits the
+         * first frame's, which saves quantizing frames with similar colors again.
+         */
+        private boolean mapToGlobalQuantizer(byte[] indexedPixels) {
+            if (globalFrame == null || globalFrame.quantizer == null) {
+                return false;
+            }
+            NeuQuant nq = globalFrame.quantizer;
+            byte[] globalColorTab = globalFrame.colorTab;
+            // All frames have the same number of pixels.
+            long maxError = (long) (globalFrame.mappingError * MAX_GLOBAL_PALETTE_ERROR_RATIO);
+            long sampledError = 0;
+            int sampled = 0;
+            for (int i = 0; i < argb.length; i += ERROR_SAMPLE_STEP) {
+                int color = argb[i];
+                sampledError += error(globalColorTab, nq.map(color & 0xff, (color >> 8) & 0xff, (color >> 16) & 0xff),
+                        color);
+                sampled++;
+            }
+            if (sampledError * argb.length > maxError * sampled
+                    || !map(nq, globalColorTab, indexedPixels, maxError)) {
+                return false;
+            }
+            colorTab = globalFrame.colorTab;
+            colorDepth = globalFrame.colorDepth;
+            palSize = globalFrame.palSize;
+            usesGlobalPalette = true;
+            setUsedEntries(indexedPixels);
+            return true;
+        }
+
+        /**
+         * Analyzes image colors and creates color map.
+         */
+        private void quantize(byte[] indexedPixels) {
+            // The algorithm requires 3 bytes per pixel as BGR.
+            byte[] pixels = new byte[argb.length * 3];
+            int pixelsIndex = 0;
+            for (final int pixel : argb) {
+                pixels[pixelsIndex++] = (byte) (pixel & 0xFF);
+                pixels[pixelsIndex++] = (byte) ((pixel >> 8) & 0xFF);
+                pixels[pixelsIndex++] = (byte) ((pixel >> 16) & 0xFF);
+            }
+            NeuQuant nq = new NeuQuant(pixels, pixels.length, sample);
+            // initialize quantizer
+            colorTab = nq.process(); // create reduced palette
+            // convert map from BGR to RGB
+            for (int i = 0; i < colorTab.length; i += 3) {
+                byte temp = colorTab[i];
+                colorTab[i] = colorTab[i + 2];
+                colorTab[i + 2] = temp;
+            }
+            // map image pixels to new palette, only the first frame's error is needed to decide whether later frames
+            // can use its palette
+            map(nq, colorTab, indexedPixels, globalFrame == null ? Long.MAX_VALUE : -1);
+            quantizer = nq;
+            colorDepth = 8;
+            palSize = 7;
+            usesGlobalPalette = globalFrame == null;
+            setUsedEntries(indexedPixels);
+        }
+
+        /**
+         * Maps each pixel to the closest color in the given quantizer's palette,
+         * or returns false once the total difference between the pixels and
+         * their palette colors exceeds the given maximum. The difference isn't
+         * tracked if the given maximum is negative.
+         */
+        private boolean map(NeuQuant nq, byte[] colorTab, byte[] indexedPixels, long maxError) {
+            int[] cachedColors = new int[MAP_CACHE_SIZE];
+            byte[] cachedIndices = new byte[MAP_CACHE_SIZE];
+            int[] cachedErrors = new int[MAP_CACHE_SIZE];
+            Arrays.fill(cachedColors, -1);
+            long error = 0;
+            boolean trackError = maxError >= 0;
+            for (int i = 0; i < argb.length; i++) {
+                int color = argb[i] & 0xffffff;
+                int slot = (color ^ (color >>> 12)) & (MAP_CACHE_SIZE - 1);
+                if (cachedColors[slot] != color) {
+                    int index = nq.map(color & 0xff, (color >> 8) & 0xff, color >> 16);
+                    cachedColors[slot] = color;
+                    cachedIndices[slot] = (byte) index;
+                    if (trackError) {
+                        cachedErrors[slot] = error(colorTab, index, color);
+                    }
+                }
+                indexedPixels[i] = cachedIndices[slot];
+                if (trackError) {
+                    error += cachedErrors[slot];
+                    if (error > maxError) {
+                        return false;
+                    }
+                }
+            }
+            mappingError = error;
+            return true;
+        }
+
+        /**
+         * Returns the difference between the given RGB color and the color at the
+         * given index of the given color table.
+         */
+        private static int error(byte[] colorTab, int index, int color) {
+            return Math.abs(((color >> 16) & 0xff) - (colorTab[index * 3] & 0xff))
+                    + Math.abs(((color >> 8) & 0xff) - (colorTab[index * 3 + 1] & 0xff))
+                    + Math.abs((color & 0xff) - (colorTab[index * 3 + 2] & 0xff));
+        }
+
+        private void setUsedEntries(byte[] indexedPixels) {
+            usedEntry = new boolean[MAX_COLORS];
+            for (byte index : indexedPixels) {
+                usedEntry[index & 0xff] = true;
+            }
+        }
+
+        /**
+         * Returns index of palette color closest to c
+         *
+         */
+        private int findClosest(int color) {
+            if (colorTab == null)
+                return -1;
+            int r = Color.red(color);
+            int g = Color.green(color);
+            int b = Color.blue(color);
+            int minpos = 0;
+            int dmin = 256 * 256 * 256;
+            int len = colorTab.length;
+            for (int i = 0; i < len;) {
+                int dr = r - (colorTab[i++] & 0xff);
+                int dg = g - (colorTab[i++] & 0xff);
+                int db = b - (colorTab[i] & 0xff);
+                int d = dr * dr + dg * dg + db * db;
+                int index = i / 3;
+                if (usedEntry[index] && (d < dmin)) {
+                    dmin = d;
+                    minpos = index;
+                }
+                i++;
+            }
+            return minpos;
+        }
+    }
+
+    /**
+     * Maps up to 256 RGB colors to their palette indices with an open
+     * addressing hash table.
+     */
+    private static final class ColorIndex {
+        // A power of two, so the table is never more than a quarter full.
+        private static final int CAPACITY = 1024;
+
+        private final int[] colors = new int[CAPACITY];
+        private final byte[] indices = new byte[CAPACITY];
+        private final int[] palette = new int[MAX_COLORS];
+        private int size;
+
+        ColorIndex() {
+            Arrays.fill(colors, -1);
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the index of the given color, or -1 if it isn't in the table.
+         */
+        int get(int color) {
+            int slot = slot(color);
+            return colors[slot] == color ? indices[slot] & 0xff : -1;
+        }
+
+        /**
+         * Returns the index of the given color, adding it if it isn't in the table
+         * yet, or -1 if the table already has 256 other colors.
+         */
+        int getOrAdd(int color) {
+            int slot = slot(color);
+            if (colors[slot] == color) {
+                return indices[slot] & 0xff;
+            } else if (size == MAX_COLORS) {
+                return -1;
+            }
+            colors[slot] = color;
+            indices[slot] = (byte) size;
+            palette[size] = color;
+            return size++;
+        }
+
+        private int slot(int color) {
+            int slot = (color * 0x9E3779B1) >>> 22;
+            while (colors[slot] != -1 && colors[slot] != color) {
+                slot = (slot + 1) & (CAPACITY - 1);
+            }
+            return slot;
+        }
+
+        byte[] toColorTable() {
+            byte[] colorTab = new byte[size * 3];
+            for (int i = 0; i < size; i++) {
+                colorTab[i * 3] = (byte) (palette[i] >> 16);
+                colorTab[i * 3 + 1] = (byte) (palette[i] >> 8);
+                colorTab[i * 3 + 2] = (byte) palette[i];
+            }
+            return colorTab;
+        }
+    }
 }
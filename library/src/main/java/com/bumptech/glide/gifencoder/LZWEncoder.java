@@ -2,6 +2,7 @@ package com.bumptech.glide.gifencoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 // ==============================================================================
 // Adapted from Jef Poskanzer's Java port by way of J. M. G. Elliott.
@@ -9,18 +10,12 @@ import java.io.OutputStream;
 
 class LZWEncoder {
 
-    private static final int EOF = -1;
-
     private int imgW, imgH;
 
     private byte[] pixAry;
 
     private int initCodeSize;
 
-    private int remaining;
-
-    private int curPixel;
-
     // GIFCOMPR.C - GIF Image compression routines
     //
     // Lempel-Ziv compression based on 'compress'. GIF modifications by
@@ -138,8 +133,7 @@ class LZWEncoder {
 
     // reset code table
     void cl_hash(int hsize) {
-        for (int i = 0; i < hsize; ++i)
-            htab[i] = -1;
+        Arrays.fill(htab, 0, hsize, -1);
     }
 
     void compress(int init_bits, OutputStream outs) throws IOException {
@@ -165,7 +159,11 @@ class LZWEncoder {
 
         a_count = 0; // clear packet
 
-        ent = nextPixel();
+        // Walk the pixels and tables through locals, this loop runs once per pixel.
+        final byte[] pixels = pixAry;
+        final int[] htab = this.htab;
+        final int[] codetab = this.codetab;
+        final int pixelCount = imgW * imgH;
 
         hshift = 0;
         for (fcode = hsize; fcode < 65536; fcode *= 2)
@@ -177,8 +175,15 @@ class LZWEncoder {
 
         output(ClearCode, outs);
 
+        if (pixelCount == 0) {
+            output(EOFCode, outs);
+            return;
+        }
+        ent = pixels[0] & 0xff;
+
         outer_loop:
-        while ((c = nextPixel()) != EOF) {
+        for (int p = 1; p < pixelCount; p++) {
+            c = pixels[p] & 0xff;
             fcode = (c << maxbits) + ent;
             i = (c << hshift) ^ ent; // xor hashing
 
@@ -217,9 +222,6 @@ class LZWEncoder {
     void encode(OutputStream os) throws IOException {
         os.write(initCodeSize); // write "initial code size" byte
 
-        remaining = imgW * imgH; // reset navigation variables
-        curPixel = 0;
-
         compress(initCodeSize + 1, os); // compress and write the pixel data
 
         os.write(0); // write block terminator
@@ -238,20 +240,6 @@ class LZWEncoder {
         return (1 << n_bits) - 1;
     }
 
-    // ----------------------------------------------------------------------------
-    // Return the next pixel from the image
-    // ----------------------------------------------------------------------------
-    private int nextPixel() {
-        if (remaining == 0)
-            return EOF;
-
-        --remaining;
-
-        byte pix = pixAry[curPixel++];
-
-        return pix & 0xff;
-    }
-
     void output(int code, OutputStream outs) throws IOException {
         cur_accum &= masks[cur_bits];
 
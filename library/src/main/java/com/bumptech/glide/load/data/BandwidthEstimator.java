@@ -0,0 +1,114 @@
+package com.bumptech.glide.load.data;
+
+import android.util.Log;
+
+/**
+ * Estimates the throughput of the current network from the transfers completed by {@link HttpUrlFetcher}s.
+ *
+ * <p>
+ *     Each transfer large enough for its throughput not to be dominated by latency adds a sample of the bytes it read
+ *     and the time it took from the response headers to the end of the body. Samples are combined in an exponentially
+ *     weighted moving average, so the estimate follows the network as it changes without jumping on a single slow
+ *     or fast transfer. Transfers running at the same time share the network, so the estimate is of the throughput
+ *     a single load can expect, which is what matters when choosing how many bytes to ask for.
+ * </p>
+ *
+ * <p>
+ *     The estimate should be {@link #reset()} when the device moves to a different network. Thread safe.
+ * </p>
+ */
+public final class BandwidthEstimator {
+    private static final String TAG = "BandwidthEstimator";
+    // Smaller transfers mostly measure round trips rather than throughput.
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;
+    private static final double MIN_SAMPLE_MILLIS = 10d;
+    private static final int MIN_SAMPLE_COUNT = 2;
+    // The weight of each new sample in the moving average.
+    private static final double SAMPLE_WEIGHT = 0.25d;
+    // 48 KB/s.
+    private static final long MAX_POOR_BYTES_PER_SECOND = 48 * 1024;
+    // 256 KB/s.
+    private static final long MAX_MODERATE_BYTES_PER_SECOND = 256 * 1024;
+    private static final BandwidthEstimator ESTIMATOR = new BandwidthEstimator();
+
+    /**
+     * Coarse classes of network throughput.
+     */
+    public enum Quality {
+        /** Too few transfers have completed to estimate the throughput. */
+        UNKNOWN,
+        /** Less than 48 KB/s, a large photo takes several seconds. */
+        POOR,
+        /** Between 48 KB/s and 256 KB/s. */
+        MODERATE,
+        /** More than 256 KB/s. */
+        GOOD,
+    }
+
+    private double bytesPerSecond;
+    private int sampleCount;
+
+    /**
+     * Returns the estimator shared by all {@link HttpUrlFetcher}s.
+     */
+    public static BandwidthEstimator get() {
+        return ESTIMATOR;
+    }
+
+    // Visible for testing.
+    BandwidthEstimator() {
+        // Use get().
+    }
+
+    /**
+     * Adds a completed transfer to the estimate.
+     *
+     * @param bytes The number of bytes read.
+     * @param elapsedMillis The time taken to read them.
+     */
+    public void addSample(long bytes, double elapsedMillis) {
+        if (bytes < MIN_SAMPLE_BYTES || elapsedMillis < MIN_SAMPLE_MILLIS) {
+            return;
+        }
+        double sample = bytes * 1000d / elapsedMillis;
+        synchronized (this) {
+            bytesPerSecond = sampleCount == 0 ? sample : bytesPerSecond + SAMPLE_WEIGHT * (sample - bytesPerSecond);
+            sampleCount++;
+        }
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Added sample, bytes: " + bytes + ", millis: " + elapsedMillis + ", bytes/s: " + (long) sample
+                    + ", estimate: " + getBytesPerSecond());
+        }
+    }
+
+    /**
+     * Returns the estimated throughput in bytes per second, or -1 if there isn't an estimate yet.
+     */
+    public synchronized long getBytesPerSecond() {
+        return sampleCount >= MIN_SAMPLE_COUNT ? (long) bytesPerSecond : -1;
+    }
+
+    /**
+     * Returns the class of the estimated throughput.
+     */
+    public Quality getQuality() {
+        long estimate = getBytesPerSecond();
+        if (estimate < 0) {
+            return Quality.UNKNOWN;
+        } else if (estimate < MAX_POOR_BYTES_PER_SECOND) {
+            return Quality.POOR;
+        } else if (estimate < MAX_MODERATE_BYTES_PER_SECOND) {
+            return Quality.MODERATE;
+        } else {
+            return Quality.GOOD;
+        }
+    }
+
+    /**
+     * Discards the estimate, for example because the device has connected to a different network.
+     */
+    public synchronized void reset() {
+        bytesPerSecond = 0;
+        sampleCount = 0;
+    }
+}
@@ -6,43 +6,88 @@ import android.util.Log;
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.util.ContentLengthInputStream;
+import com.bumptech.glide.util.LogTime;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * A DataFetcher that retrieves an {@link java.io.InputStream} for a Url.
+ *
+ * <p>
+ *     If given a {@link PartialDownloadCache}, large responses with an ETag or Last-Modified validator are recorded as
+ *     they're read. If a load is cancelled or fails part way through, the next load of the same url requests only the
+ *     remaining bytes with a Range request and an If-Range validator, and falls back to the full response if the
+ *     server's copy has changed or it doesn't support ranges.
+ * </p>
+ *
+ * <p>
+ *     The throughput of each response body is reported to the shared {@link BandwidthEstimator}.
+ * </p>
  */
 public class HttpUrlFetcher implements DataFetcher<InputStream> {
     private static final String TAG = "HttpUrlFetcher";
     private static final int MAXIMUM_REDIRECTS = 5;
     private static final HttpUrlConnectionFactory DEFAULT_CONNECTION_FACTORY = new DefaultHttpUrlConnectionFactory();
+    private static final int STATUS_PARTIAL_CONTENT = 206;
+    private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
 
     private final GlideUrl glideUrl;
     private final HttpUrlConnectionFactory connectionFactory;
+    private final PartialDownloadCache partialDownloadCache;
+    private final BandwidthEstimator bandwidthEstimator = BandwidthEstimator.get();
 
     private HttpURLConnection urlConnection;
     private InputStream stream;
+    private PartialDownloadCache.Entry partialDownload;
     private volatile boolean isCancelled;
 
     public HttpUrlFetcher(GlideUrl glideUrl) {
-        this(glideUrl, DEFAULT_CONNECTION_FACTORY);
+        this(glideUrl, (PartialDownloadCache) null);
+    }
+
+    /**
+     * @param glideUrl The url to load.
+     * @param partialDownloadCache The cache to record and resume partial downloads in, or null to always download
+     *                             the full response.
+     */
+    public HttpUrlFetcher(GlideUrl glideUrl, PartialDownloadCache partialDownloadCache) {
+        this(glideUrl, DEFAULT_CONNECTION_FACTORY, partialDownloadCache);
     }
 
     // Visible for testing.
     HttpUrlFetcher(GlideUrl glideUrl, HttpUrlConnectionFactory connectionFactory) {
+        this(glideUrl, connectionFactory, null);
+    }
+
+    // Visible for testing.
+    HttpUrlFetcher(GlideUrl glideUrl, HttpUrlConnectionFactory connectionFactory,
+            PartialDownloadCache partialDownloadCache) {
         this.glideUrl = glideUrl;
         this.connectionFactory = connectionFactory;
+        this.partialDownloadCache = partialDownloadCache;
     }
 
     //执行的方法
     @Override
     public InputStream loadData(Priority priority) throws Exception {
-        return loadDataWithRedirects(glideUrl.toURL(), 0 /*redirects*/, null /*lastUrl*/, glideUrl.getHeaders());
+        Map<String, String> headers = glideUrl.getHeaders();
+        if (partialDownloadCache != null) {
+            partialDownload = partialDownloadCache.acquire(glideUrl.getCacheKey());
+            if (partialDownload != null && partialDownload.getResumeOffset() > 0) {
+                headers = new HashMap<String, String>(headers);
+                headers.put("Range", "bytes=" + partialDownload.getResumeOffset() + "-");
+                // The server sends the full response instead of a range if its copy has changed.
+                headers.put("If-Range", partialDownload.getValidator());
+            }
+        }
+        return loadDataWithRedirects(glideUrl.toURL(), 0 /*redirects*/, null /*lastUrl*/, headers);
     }
 //todo 经过一层一层地跋山涉水，我们终于在这里找到网络通讯的代码了，不过也别高兴得太早，现在离最终分析完还早着呢。
 // 可以看到，loadData()方法只是返回了一个InputStream，服务器返回的数据连读都还没开始读呢
@@ -78,7 +123,9 @@ public class HttpUrlFetcher implements DataFetcher<InputStream> {
         }
         final int statusCode = urlConnection.getResponseCode();
         if (statusCode / 100 == 2) {
-            return getStreamForSuccessfulRequest(urlConnection);
+            return getStreamForSuccessfulRequest(urlConnection, statusCode);
+        } else if (statusCode == STATUS_RANGE_NOT_SATISFIABLE && isResuming()) {
+            return restartWithoutRange();
         } else if (statusCode / 100 == 3) {
             String redirectUrlString = urlConnection.getHeaderField("Location");
             if (TextUtils.isEmpty(redirectUrlString)) {
@@ -94,20 +141,100 @@ public class HttpUrlFetcher implements DataFetcher<InputStream> {
         }
     }
 
-    private InputStream getStreamForSuccessfulRequest(HttpURLConnection urlConnection)
+    private InputStream getStreamForSuccessfulRequest(HttpURLConnection urlConnection, int statusCode)
             throws IOException {
-        if (TextUtils.isEmpty(urlConnection.getContentEncoding())) {
-            int contentLength = urlConnection.getContentLength();
-            stream = ContentLengthInputStream.obtain(urlConnection.getInputStream(), contentLength);
+        boolean isEncoded = !TextUtils.isEmpty(urlConnection.getContentEncoding());
+        int bodyLength = isEncoded ? -1 : urlConnection.getContentLength();
+        InputStream body = new SamplingInputStream(urlConnection.getInputStream(), bodyLength, bandwidthEstimator);
+        if (!isEncoded) {
+            stream = ContentLengthInputStream.obtain(body, bodyLength);
         } else {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Got non empty content encoding: " + urlConnection.getContentEncoding());
             }
-            stream = urlConnection.getInputStream();
+            stream = body;
+        }
+
+        if (partialDownload == null) {
+            return stream;
+        }
+        if (isResuming() && statusCode == STATUS_PARTIAL_CONTENT) {
+            if (isEncoded || !isExpectedContentRange(urlConnection.getHeaderField("Content-Range"))) {
+                return restartWithoutRange();
+            }
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Resuming download of " + glideUrl.toStringUrl() + " at byte "
+                        + partialDownload.getResumeOffset());
+            }
+            stream = partialDownload.resume(stream);
+            return stream;
+        }
+
+        // A full response, either because nothing was downloaded before or because the server's copy has changed.
+        partialDownload.discard();
+        long contentLength = parseLong(urlConnection.getHeaderField("Content-Length"));
+        String validator = getValidator(urlConnection);
+        if (statusCode != STATUS_PARTIAL_CONTENT && !isEncoded && validator != null
+                && contentLength >= partialDownloadCache.getMinContentLength()
+                && !"none".equalsIgnoreCase(urlConnection.getHeaderField("Accept-Ranges"))) {
+            stream = partialDownload.record(stream, validator, contentLength);
         }
         return stream;
     }
 
+    private boolean isResuming() {
+        return partialDownload != null && partialDownload.getResumeOffset() > 0;
+    }
+
+    private InputStream restartWithoutRange() throws IOException {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Unable to resume download of " + glideUrl.toStringUrl() + ", restarting");
+        }
+        partialDownload.discard();
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+        urlConnection.disconnect();
+        return loadDataWithRedirects(glideUrl.toURL(), 0 /*redirects*/, null /*lastUrl*/, glideUrl.getHeaders());
+    }
+
+    // Expects "bytes <resumeOffset>-<totalLength - 1>/<totalLength>".
+    private boolean isExpectedContentRange(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return false;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash == -1 || slash < dash) {
+            return false;
+        }
+        long start = parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        long total = parseLong(contentRange.substring(slash + 1).trim());
+        return start == partialDownload.getResumeOffset() && total == partialDownload.getTotalLength();
+    }
+
+    // Weak ETags can't be used with If-Range.
+    private static String getValidator(HttpURLConnection urlConnection) {
+        String eTag = urlConnection.getHeaderField("ETag");
+        if (!TextUtils.isEmpty(eTag) && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        String lastModified = urlConnection.getHeaderField("Last-Modified");
+        return TextUtils.isEmpty(lastModified) ? null : lastModified;
+    }
+
+    private static long parseLong(String value) {
+        if (TextUtils.isEmpty(value)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     @Override
     public void cleanup() {
         if (stream != null) {
@@ -120,6 +247,10 @@ public class HttpUrlFetcher implements DataFetcher<InputStream> {
         if (urlConnection != null) {
             urlConnection.disconnect();
         }
+        if (partialDownload != null) {
+            partialDownloadCache.release(partialDownload);
+            partialDownload = null;
+        }
     }
 
     @Override
@@ -134,6 +265,76 @@ public class HttpUrlFetcher implements DataFetcher<InputStream> {
         isCancelled = true;
     }
 
+    /**
+     * Reports the number of bytes read and the time taken to read them to a {@link BandwidthEstimator} once the
+     * expected length has been read, the stream is exhausted or it's closed.
+     *
+     * <p>
+     *     Bodies are decoded as they're read, so the time includes decoding. Decoding is much faster than slow
+     *     networks, so this only lowers estimates that are well above the point where they'd change anything.
+     * </p>
+     */
+    private static class SamplingInputStream extends FilterInputStream {
+        private final BandwidthEstimator bandwidthEstimator;
+        private final long startTime = LogTime.getLogTime();
+        // Readers that know the length, like ContentLengthInputStream, stop at it rather than reading to the end.
+        private final long expectedLength;
+        private long bytesRead;
+        private boolean isReported;
+
+        SamplingInputStream(InputStream in, long expectedLength, BandwidthEstimator bandwidthEstimator) {
+            super(in);
+            this.expectedLength = expectedLength;
+            this.bandwidthEstimator = bandwidthEstimator;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            onRead(result == -1 ? -1 : 1);
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+            int result = super.read(buffer, byteOffset, byteCount);
+            onRead(result);
+            return result;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            long result = super.skip(byteCount);
+            onRead(result);
+            return result;
+        }
+
+        private void onRead(long read) {
+            if (read == -1) {
+                report();
+                return;
+            }
+            bytesRead += read;
+            if (expectedLength > 0 && bytesRead >= expectedLength) {
+                report();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Loads that are cancelled or fail part way through still measured the network for as long as they ran.
+            report();
+            super.close();
+        }
+
+        private void report() {
+            if (!isReported) {
+                isReported = true;
+                bandwidthEstimator.addSample(bytesRead, LogTime.getElapsedMillis(startTime));
+            }
+        }
+    }
+
     interface HttpUrlConnectionFactory {
         HttpURLConnection build(URL url) throws IOException;
     }
@@ -0,0 +1,599 @@
+package com.bumptech.glide.load.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bumptech.glide.util.TeeInputStream;
+import com.bumptech.glide.util.Util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the bytes of large http responses that were only partially read, along with the validator (the ETag or
+ * Last-Modified date) of the response they came from, so that a later attempt to load the same url can request only
+ * the remaining bytes.
+ *
+ * <p>
+ *     Each url has a body file, containing a prefix of the response body, and a small metadata file with the total
+ *     length and validator of the response. Bytes are only ever appended to the body file in order, so it is always a
+ *     valid prefix even if the process dies mid write. Once every byte of a response has been read the files are
+ *     deleted, by then the complete data has been handed to the load and is written to the disk cache as a normal
+ *     source entry if the load's {@link com.bumptech.glide.load.engine.DiskCacheStrategy} caches source data.
+ * </p>
+ *
+ * <p>
+ *     Only responses of at least a minimum length are kept, refetching a small image is cheaper than the disk I/O
+ *     to resume it. The partial downloads on disk are listed once, the first time the cache is used, and tracked in
+ *     memory from then on, so loads of urls without a partial download don't touch the disk until a large response
+ *     starts to be recorded. The directory is only trimmed, oldest entries first, once it grows over its maximum size.
+ * </p>
+ */
+public class PartialDownloadCache {
+    private static final String TAG = "PartialDownloadCache";
+    /** 50 MB. */
+    public static final long DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
+    /** 256 KB. */
+    public static final long DEFAULT_MIN_CONTENT_LENGTH = 256 * 1024;
+    public static final String DEFAULT_PARTIAL_DOWNLOAD_DIR = "image_manager_partial_cache";
+
+    private static final int VERSION = 1;
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static PartialDownloadCache instance;
+
+    private final Context context;
+    private final File directory;
+    private final long maxSize;
+    private final long minContentLength;
+    // The entries currently owned by a load, by cache key.
+    private final Map<String, Entry> inUse = new HashMap<String, Entry>();
+    // The bytes on disk of each partial download, by entry name. Null until the directory has been listed.
+    private Map<String, Long> entrySizes;
+    private long currentSize;
+    private File resolvedDirectory;
+
+    /**
+     * Returns the shared cache in the application's internal cache directory.
+     *
+     * <p>
+     *     The directory is only resolved and created the first time a download uses it, on a background thread.
+     * </p>
+     */
+    public static synchronized PartialDownloadCache get(Context context) {
+        if (instance == null) {
+            instance = new PartialDownloadCache(context.getApplicationContext(), null /*directory*/,
+                    DEFAULT_MAX_SIZE, DEFAULT_MIN_CONTENT_LENGTH);
+        }
+        return instance;
+    }
+
+    /**
+     * @param directory The directory to keep partial downloads in, used only by this cache.
+     * @param maxSize The maximum number of bytes of partial downloads to keep.
+     * @param minContentLength The smallest response, in bytes, worth keeping partial downloads of.
+     */
+    public PartialDownloadCache(File directory, long maxSize, long minContentLength) {
+        this(null /*context*/, directory, maxSize, minContentLength);
+    }
+
+    private PartialDownloadCache(Context context, File directory, long maxSize, long minContentLength) {
+        this.context = context;
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.minContentLength = minContentLength;
+    }
+
+    // Called with the inUse lock held.
+    private File getDirectory() {
+        if (resolvedDirectory != null) {
+            return resolvedDirectory;
+        }
+        File result = directory;
+        if (result == null) {
+            File cacheDirectory = context.getCacheDir();
+            if (cacheDirectory == null) {
+                return null;
+            }
+            result = new File(cacheDirectory, DEFAULT_PARTIAL_DOWNLOAD_DIR);
+        }
+        if (!result.mkdirs() && (!result.exists() || !result.isDirectory())) {
+            return null;
+        }
+        resolvedDirectory = result;
+        return result;
+    }
+
+    // Called with the inUse lock held.
+    private Map<String, Long> getEntrySizes() {
+        if (entrySizes == null) {
+            entrySizes = new HashMap<String, Long>();
+            currentSize = 0;
+            File dir = getDirectory();
+            File[] files = dir == null ? null : dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    String name = getEntryName(file);
+                    Long size = entrySizes.get(name);
+                    entrySizes.put(name, (size == null ? 0 : size) + file.length());
+                    currentSize += file.length();
+                }
+            }
+        }
+        return entrySizes;
+    }
+
+    /**
+     * Returns the entry for the given cache key, or null if the key is already being downloaded by another load.
+     *
+     * <p>
+     *     The entry must be passed to {@link #release(Entry)} once the load is finished with it.
+     * </p>
+     */
+    Entry acquire(String cacheKey) {
+        Entry entry = new Entry(cacheKey);
+        boolean hasPartialDownload;
+        synchronized (inUse) {
+            if (inUse.containsKey(cacheKey)) {
+                return null;
+            }
+            inUse.put(cacheKey, entry);
+            Map<String, Long> sizes = getEntrySizes();
+            hasPartialDownload = !sizes.isEmpty() && sizes.containsKey(entry.getName());
+        }
+        if (hasPartialDownload) {
+            entry.readMetadata();
+        }
+        return entry;
+    }
+
+    /**
+     * Closes the given entry, deleting its files if the download completed or recording it failed, and trims the
+     * cache if it's grown over its maximum size.
+     */
+    void release(Entry entry) {
+        entry.close();
+        if (entry.isOnDisk
+                && (entry.isComplete || entry.isWriteFailed() || entry.bodyFile.length() >= entry.totalLength)) {
+            entry.delete();
+        }
+        long size = entry.isOnDisk ? entry.bodyFile.length() + entry.metaFile.length() : 0;
+        synchronized (inUse) {
+            inUse.remove(entry.cacheKey);
+            // Entries that never had a name never had files either, so there's nothing to update.
+            if (entry.name == null) {
+                return;
+            }
+            Map<String, Long> sizes = getEntrySizes();
+            Long previous = entry.isOnDisk ? sizes.put(entry.name, size) : sizes.remove(entry.name);
+            currentSize += size - (previous == null ? 0 : previous);
+            if (currentSize > maxSize) {
+                trimToSize();
+            }
+        }
+    }
+
+    /**
+     * Deletes every partial download that isn't currently in use.
+     */
+    public void clear() {
+        synchronized (inUse) {
+            File dir = getDirectory();
+            File[] files = dir == null ? null : dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            Set<String> inUseNames = getInUseNames();
+            for (File file : files) {
+                if (!inUseNames.contains(getEntryName(file))) {
+                    deleteQuietly(file);
+                }
+            }
+            // Sizes are listed again the next time they're needed.
+            entrySizes = null;
+        }
+    }
+
+    long getMinContentLength() {
+        return minContentLength;
+    }
+
+    // Called with the inUse lock held.
+    private Set<String> getInUseNames() {
+        Set<String> result = new HashSet<String>();
+        for (Entry entry : inUse.values()) {
+            result.add(entry.getName());
+        }
+        return result;
+    }
+
+    // Called with the inUse lock held.
+    private void trimToSize() {
+        File dir = getDirectory();
+        if (dir == null) {
+            return;
+        }
+        List<String> names = new ArrayList<String>(entrySizes.keySet());
+        final Map<String, Long> lastModified = new HashMap<String, Long>();
+        for (String name : names) {
+            lastModified.put(name, new File(dir, name + BODY_SUFFIX).lastModified());
+        }
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String lhs, String rhs) {
+                long lhsModified = lastModified.get(lhs);
+                long rhsModified = lastModified.get(rhs);
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        Set<String> inUseNames = getInUseNames();
+        for (String name : names) {
+            if (currentSize <= maxSize) {
+                break;
+            }
+            if (inUseNames.contains(name)) {
+                continue;
+            }
+            deleteQuietly(new File(dir, name + BODY_SUFFIX));
+            deleteQuietly(new File(dir, name + META_SUFFIX));
+            currentSize -= entrySizes.remove(name);
+        }
+    }
+
+    private static String getEntryName(File file) {
+        String fileName = file.getName();
+        int suffixStart = fileName.lastIndexOf('.');
+        return suffixStart == -1 ? fileName : fileName.substring(0, suffixStart);
+    }
+
+    private static String getSafeName(String cacheKey) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(cacheKey.getBytes("UTF-8"));
+            return Util.sha256BytesToHex(messageDigest.digest());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        if (!file.delete() && file.exists() && Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Failed to delete " + file);
+        }
+    }
+
+    /**
+     * The partial download of a single url, owned by one load at a time.
+     */
+    final class Entry {
+        private final String cacheKey;
+        private String name;
+        private File bodyFile;
+        private File metaFile;
+        // True once the entry's files may exist.
+        private boolean isOnDisk;
+        private String validator;
+        private long totalLength = Long.MAX_VALUE;
+        private long resumeOffset;
+        private OutputStream os;
+        private RecordingInputStream recordingStream;
+        private boolean isComplete;
+
+        Entry(String cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+
+        private String getName() {
+            if (name == null) {
+                name = getSafeName(cacheKey);
+            }
+            return name;
+        }
+
+        // Returns false if the cache directory isn't available.
+        private boolean resolveFiles() {
+            if (bodyFile != null) {
+                return true;
+            }
+            File dir;
+            synchronized (inUse) {
+                dir = getDirectory();
+            }
+            if (dir == null) {
+                return false;
+            }
+            bodyFile = new File(dir, getName() + BODY_SUFFIX);
+            metaFile = new File(dir, getName() + META_SUFFIX);
+            return true;
+        }
+
+        /**
+         * Returns the number of bytes already downloaded, or 0 if there's nothing to resume.
+         */
+        long getResumeOffset() {
+            return resumeOffset;
+        }
+
+        /**
+         * Returns the ETag or Last-Modified date of the response the downloaded bytes came from.
+         */
+        String getValidator() {
+            return validator;
+        }
+
+        long getTotalLength() {
+            return totalLength;
+        }
+
+        /**
+         * Returns a stream containing the bytes already downloaded followed by the bytes read from the given stream of
+         * the rest of the response, which are appended to the partial download as they're read.
+         */
+        InputStream resume(InputStream remaining) throws IOException {
+            InputStream downloaded = new FileInputStream(bodyFile);
+            try {
+                os = new BufferedOutputStream(new FileOutputStream(bodyFile, true /*append*/), BUFFER_SIZE);
+            } catch (IOException e) {
+                downloaded.close();
+                throw e;
+            }
+            recordingStream = new RecordingInputStream(remaining, os, resumeOffset);
+            return new ResumedInputStream(downloaded, resumeOffset, recordingStream);
+        }
+
+        /**
+         * Replaces any previous partial download with a new one for a response with the given validator and length and
+         * returns a stream that appends the bytes read from the given stream of the response body to it, or the given
+         * stream if the cache directory isn't available.
+         */
+        InputStream record(InputStream body, String validator, long totalLength) throws IOException {
+            if (!resolveFiles()) {
+                return body;
+            }
+            this.validator = validator;
+            this.totalLength = totalLength;
+            this.resumeOffset = 0;
+            isOnDisk = true;
+            writeMetadata();
+            os = new BufferedOutputStream(new FileOutputStream(bodyFile, false /*append*/), BUFFER_SIZE);
+            recordingStream = new RecordingInputStream(body, os, 0);
+            return recordingStream;
+        }
+
+        /**
+         * Deletes the partial download, for example because the server's copy has changed.
+         */
+        void discard() {
+            close();
+            if (isOnDisk) {
+                delete();
+            }
+            validator = null;
+            totalLength = Long.MAX_VALUE;
+            resumeOffset = 0;
+        }
+
+        private boolean isWriteFailed() {
+            return recordingStream != null && recordingStream.isWriteFailed();
+        }
+
+        private void readMetadata() {
+            if (!resolveFiles()) {
+                return;
+            }
+            isOnDisk = true;
+            if (!metaFile.exists() || !bodyFile.exists()) {
+                delete();
+                return;
+            }
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new FileReader(metaFile));
+                int version = Integer.parseInt(reader.readLine());
+                long length = Long.parseLong(reader.readLine());
+                String storedValidator = reader.readLine();
+                long downloaded = bodyFile.length();
+                if (version != VERSION || storedValidator == null || storedValidator.length() == 0
+                        || downloaded <= 0 || downloaded >= length) {
+                    delete();
+                    return;
+                }
+                validator = storedValidator;
+                totalLength = length;
+                resumeOffset = downloaded;
+            } catch (IOException e) {
+                delete();
+            } catch (NumberFormatException e) {
+                delete();
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        // Ignored.
+                    }
+                }
+            }
+        }
+
+        private void writeMetadata() throws IOException {
+            Writer writer = new FileWriter(metaFile);
+            try {
+                writer.write(VERSION + "\n" + totalLength + "\n" + validator + "\n");
+            } finally {
+                writer.close();
+            }
+        }
+
+        private void close() {
+            if (recordingStream != null) {
+                isComplete = recordingStream.isComplete(totalLength);
+            }
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    if (recordingStream != null) {
+                        recordingStream.onWriteFailed();
+                    }
+                }
+                os = null;
+            }
+        }
+
+        private void delete() {
+            deleteQuietly(bodyFile);
+            deleteQuietly(metaFile);
+            isOnDisk = false;
+        }
+    }
+
+    /**
+     * Appends the bytes of the response to the partial download and tracks how much of the response has been read.
+     */
+    private static final class RecordingInputStream extends TeeInputStream {
+        private final OutputStream os;
+        private long position;
+        private boolean isExhausted;
+        private boolean isWriteFailed;
+
+        RecordingInputStream(InputStream in, OutputStream os, long startPosition) {
+            super(in, os);
+            this.os = os;
+            this.position = startPosition;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result == -1) {
+                isExhausted = true;
+            } else {
+                position++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+            int read = super.read(buffer, byteOffset, byteCount);
+            if (read == -1) {
+                isExhausted = true;
+            } else {
+                position += read;
+            }
+            return read;
+        }
+
+        void onWriteFailed() {
+            isWriteFailed = true;
+        }
+
+        @Override
+        public boolean isWriteFailed() {
+            return isWriteFailed || super.isWriteFailed();
+        }
+
+        boolean isComplete(long totalLength) {
+            return isExhausted && position == totalLength;
+        }
+
+        /**
+         * Unlike a {@link TeeInputStream}, owns both streams, so closes the response body and the partial download.
+         */
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignored.
+            }
+            try {
+                os.close();
+            } catch (IOException e) {
+                onWriteFailed();
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes already downloaded followed by the rest of the response.
+     */
+    private static final class ResumedInputStream extends InputStream {
+        private final InputStream downloaded;
+        private final InputStream remaining;
+        private long downloadedRemaining;
+
+        ResumedInputStream(InputStream downloaded, long downloadedLength, InputStream remaining) {
+            this.downloaded = downloaded;
+            this.downloadedRemaining = downloadedLength;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (downloadedRemaining > 0) {
+                int result = downloaded.read();
+                if (result == -1) {
+                    throw new IOException("Partial download truncated");
+                }
+                downloadedRemaining--;
+                return result;
+            }
+            return remaining.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+            if (downloadedRemaining > 0) {
+                // Only the bytes that were downloaded before this attempt, not those appended during it.
+                int read = downloaded.read(buffer, byteOffset, (int) Math.min(byteCount, downloadedRemaining));
+                if (read == -1) {
+                    throw new IOException("Partial download truncated");
+                }
+                downloadedRemaining -= read;
+                return read;
+            }
+            return remaining.read(buffer, byteOffset, byteCount);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return downloadedRemaining > 0 ? (int) Math.min(Integer.MAX_VALUE, downloadedRemaining)
+                    : remaining.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                downloaded.close();
+            } finally {
+                remaining.close();
+            }
+        }
+    }
+}
@@ -5,18 +5,31 @@ import android.util.Log;
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.Encoder;
 import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskCacheEntryMetadata;
+import com.bumptech.glide.load.engine.cache.DiskCacheStats;
+import com.bumptech.glide.load.engine.cache.StreamingDiskCache;
+import com.bumptech.glide.load.engine.cache.WriteBehindDiskCache;
+import com.bumptech.glide.load.model.ImageVideoWrapper;
+import com.bumptech.glide.load.model.ImageVideoWrapperEncoder;
+import com.bumptech.glide.load.model.StreamEncoder;
+import com.bumptech.glide.load.resource.file.FileToStreamDecoder;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
 import com.bumptech.glide.provider.DataLoadProvider;
+import com.bumptech.glide.util.CountingOutputStream;
 import com.bumptech.glide.util.LogTime;
+import com.bumptech.glide.util.TeeInputStream;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
@@ -40,23 +53,36 @@ class DecodeJob<A, T, Z> {
     private final ResourceTranscoder<T, Z> transcoder;
     private final DiskCacheProvider diskCacheProvider;
     private final DiskCacheStrategy diskCacheStrategy;
+    private final long diskCacheTimeToLiveMillis;
     private final Priority priority;
     private final FileOpener fileOpener;
+    private final RawPixelCache rawPixelCache;
 
     private volatile boolean isCancelled;
+    // When fetching the source data started, used to record how expensive the source data is to fetch again.
+    private long fetchStartTime;
 
     public DecodeJob(EngineKey resultKey, int width, int height, DataFetcher<A> fetcher,
             DataLoadProvider<A, T> loadProvider, Transformation<T> transformation, ResourceTranscoder<T, Z> transcoder,
-            DiskCacheProvider diskCacheProvider, DiskCacheStrategy diskCacheStrategy, Priority priority) {
+            DiskCacheProvider diskCacheProvider, DiskCacheStrategy diskCacheStrategy, Priority priority,
+            RawPixelCache rawPixelCache) {
         this(resultKey, width, height, fetcher, loadProvider, transformation, transcoder, diskCacheProvider,
-                diskCacheStrategy, priority, DEFAULT_FILE_OPENER);
+                diskCacheStrategy, 0 /*diskCacheTimeToLiveMillis*/, priority, rawPixelCache);
+    }
+
+    public DecodeJob(EngineKey resultKey, int width, int height, DataFetcher<A> fetcher,
+            DataLoadProvider<A, T> loadProvider, Transformation<T> transformation, ResourceTranscoder<T, Z> transcoder,
+            DiskCacheProvider diskCacheProvider, DiskCacheStrategy diskCacheStrategy, long diskCacheTimeToLiveMillis,
+            Priority priority, RawPixelCache rawPixelCache) {
+        this(resultKey, width, height, fetcher, loadProvider, transformation, transcoder, diskCacheProvider,
+                diskCacheStrategy, diskCacheTimeToLiveMillis, priority, rawPixelCache, DEFAULT_FILE_OPENER);
     }
 
     // Visible for testing.
     DecodeJob(EngineKey resultKey, int width, int height, DataFetcher<A> fetcher,
             DataLoadProvider<A, T> loadProvider, Transformation<T> transformation, ResourceTranscoder<T, Z> transcoder,
-            DiskCacheProvider diskCacheProvider, DiskCacheStrategy diskCacheStrategy, Priority priority, FileOpener
-            fileOpener) {
+            DiskCacheProvider diskCacheProvider, DiskCacheStrategy diskCacheStrategy, long diskCacheTimeToLiveMillis,
+            Priority priority, RawPixelCache rawPixelCache, FileOpener fileOpener) {
         this.resultKey = resultKey;
         this.width = width;
         this.height = height;
@@ -66,8 +92,10 @@ class DecodeJob<A, T, Z> {
         this.transcoder = transcoder;
         this.diskCacheProvider = diskCacheProvider;
         this.diskCacheStrategy = diskCacheStrategy;
+        this.diskCacheTimeToLiveMillis = diskCacheTimeToLiveMillis;
         this.priority = priority;
         this.fileOpener = fileOpener;
+        this.rawPixelCache = rawPixelCache;
     }
 
     /**
@@ -82,9 +110,23 @@ class DecodeJob<A, T, Z> {
         }
 
         long startTime = LogTime.getLogTime();
-        Resource<T> transformed = loadFromCache(resultKey);
-        if (Log.isLoggable(TAG, Log.VERBOSE)) {
-            logWithTimeAndKey("Decoded transformed from cache", startTime);
+        Resource<T> transformed = null;
+        if (isRawPixelCacheEnabled()) {
+            transformed = rawPixelCache.get(resultKey);
+            if (Log.isLoggable(TAG, Log.VERBOSE) && transformed != null) {
+                logWithTimeAndKey("Copied transformed from raw pixel cache", startTime);
+            }
+        }
+        if (transformed == null) {
+            transformed = loadFromCache(resultKey);
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                logWithTimeAndKey("Decoded transformed from cache", startTime);
+            }
+            // Only results that are loaded from the disk cache again are promoted, so one off loads don't fill the
+            // raw pixel tier and the next hit skips decoding.
+            if (transformed != null && isRawPixelCacheEnabled()) {
+                rawPixelCache.put(resultKey, transformed);
+            }
         }
         startTime = LogTime.getLogTime();
         Resource<Z> result = transcode(transformed);
@@ -110,7 +152,7 @@ class DecodeJob<A, T, Z> {
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             logWithTimeAndKey("Decoded source from cache", startTime);
         }
-        return transformEncodeAndTranscode(decoded);
+        return transformEncodeAndTranscode(decoded, startTime);
     }
 
     /**
@@ -130,7 +172,7 @@ class DecodeJob<A, T, Z> {
         Resource<T> decoded = decodeSource();
         //上一步得到的是Resource<GifBitmapWrapper>对象，下面这个方法进行解析
         //而transformEncodeAndTranscode()则是用来对图片进行转换和转码的
-        return transformEncodeAndTranscode(decoded);
+        return transformEncodeAndTranscode(decoded, fetchStartTime);
     }
 
     public void cancel() {
@@ -138,7 +180,8 @@ class DecodeJob<A, T, Z> {
         fetcher.cancel();
     }
 
-    private Resource<Z> transformEncodeAndTranscode(Resource<T> decoded) {
+    // The given start time is when producing the decoded resource started, used as the cost of producing the result.
+    private Resource<Z> transformEncodeAndTranscode(Resource<T> decoded, long decodeStartTime) {
         long startTime = LogTime.getLogTime();
         //调用transform()方法来对图片进行转换
         Resource<T> transformed = transform(decoded);
@@ -147,7 +190,7 @@ class DecodeJob<A, T, Z> {
         }
 
         //转换过后的图片写入到硬盘缓存中,调用的同样是DiskLruCache实例的put()方法，不过这里用的缓存Key是resultKey。
-        writeTransformedToCache(transformed);
+        writeTransformedToCache(transformed, decodeStartTime);
 
         startTime = LogTime.getLogTime();
         //解码
@@ -158,13 +201,35 @@ class DecodeJob<A, T, Z> {
         return result;
     }
 
-    private void writeTransformedToCache(Resource<T> transformed) {
+    private boolean isRawPixelCacheEnabled() {
+        return rawPixelCache != null && diskCacheStrategy.cacheRawPixels();
+    }
+
+    private void writeTransformedToCache(Resource<T> transformed, long decodeStartTime) {
         if (transformed == null || !diskCacheStrategy.cacheResult()) {
             return;
         }
         long startTime = LogTime.getLogTime();
-        SourceWriter<Resource<T>> writer = new SourceWriter<Resource<T>>(loadProvider.getEncoder(), transformed);
-        diskCacheProvider.getDiskCache().put(resultKey, writer);
+        DiskCache diskCache = diskCacheProvider.getDiskCache();
+        if (diskCache instanceof WriteBehindDiskCache) {
+            // Encode into memory so the resource can be delivered without waiting for the disk write.
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            if (loadProvider.getEncoder().encode(transformed, os)) {
+                long fetchCostMillis = decodeStartTime != 0 ? (long) LogTime.getElapsedMillis(decodeStartTime) : 0;
+                ((WriteBehindDiskCache) diskCache).putAsync(resultKey, os.toByteArray(), fetchCostMillis,
+                        diskCacheTimeToLiveMillis, new PutRecorder(getKeyStats(resultKey)));
+            }
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                logWithTimeAndKey("Queued transformed from source for cache", startTime);
+            }
+            return;
+        }
+        SourceWriter<Resource<T>> writer =
+                new SourceWriter<Resource<T>>(loadProvider.getEncoder(), transformed, decodeStartTime);
+        diskCache.put(resultKey, writer);
+        if (writer.bytesWritten > 0) {
+            getKeyStats(resultKey).recordPut(writer.bytesWritten, startTime);
+        }
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             logWithTimeAndKey("Wrote transformed from source to cache", startTime);
         }
@@ -174,6 +239,7 @@ class DecodeJob<A, T, Z> {
         Resource<T> decoded = null;
         try {
             long startTime = LogTime.getLogTime();
+            fetchStartTime = startTime;
             //这个fetcher是什么呢？其实就是刚才在onSizeReady()方法中得到的ImageVideoFetcher对象，这里调用它的loadData()方法
             //这里的A就是ImageWrapper对象
             final A data = fetcher.loadData(priority);
@@ -216,46 +282,175 @@ class DecodeJob<A, T, Z> {
     }
 
     private Resource<T> cacheAndDecodeSourceData(A data) throws IOException {
+        if (getTeeableStream(data) != null) {
+            return teeAndDecodeSourceData(data);
+        }
         long startTime = LogTime.getLogTime();
         //方法中同样调用了getDiskCache()方法来获取DiskLruCache实例，接着调用它的put()方法就可以写入硬盘缓存了，
-        SourceWriter<A> writer = new SourceWriter<A>(loadProvider.getSourceEncoder(), data);
+        SourceWriter<A> writer = new SourceWriter<A>(loadProvider.getSourceEncoder(), data, fetchStartTime);
         // 注意原始图片的缓存Key是用的resultKey.getOriginalKey()
         diskCacheProvider.getDiskCache().put(resultKey.getOriginalKey(), writer);
+        if (writer.bytesWritten > 0) {
+            getKeyStats(resultKey.getOriginalKey()).recordPut(writer.bytesWritten, startTime);
+        }
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             logWithTimeAndKey("Wrote source to cache", startTime);
         }
 
         startTime = LogTime.getLogTime();
         //然后再取出来返回去。
-        Resource<T> result = loadFromCache(resultKey.getOriginalKey());
+        Resource<T> result = loadFromCache(resultKey.getOriginalKey(), false /*isLookup*/);
         if (Log.isLoggable(TAG, Log.VERBOSE) && result != null) {
             logWithTimeAndKey("Decoded source from cache", startTime);
         }
         return result;
     }
 
+    /**
+     * Decodes the source data while the same bytes are written to the disk cache so that the source data is only read
+     * once. The disk cache entry is only committed if both the decode and the write succeed.
+     */
+    private Resource<T> teeAndDecodeSourceData(A data) throws IOException {
+        long startTime = LogTime.getLogTime();
+        TeeWriter writer = new TeeWriter(data);
+        diskCacheProvider.getDiskCache().put(resultKey.getOriginalKey(), writer);
+        if (writer.exception != null) {
+            throw writer.exception;
+        }
+        if (writer.bytesWritten > 0) {
+            // The write can't be timed separately from the decode it was interleaved with.
+            getKeyStats(resultKey.getOriginalKey()).recordPut(writer.bytesWritten, 0);
+        }
+
+        final Resource<T> result;
+        if (writer.isInvoked) {
+            result = writer.decoded;
+            if (Log.isLoggable(TAG, Log.VERBOSE) && result != null) {
+                logWithTimeAndKey("Decoded source while writing to cache", startTime);
+            }
+        } else {
+            // The disk cache didn't call our writer, usually because another load is writing the same key, so nothing
+            // has been read from the source data yet.
+            result = loadProvider.getSourceDecoder().decode(data, width, height);
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                logWithTimeAndKey("Decoded from source without writing to cache", startTime);
+            }
+        }
+        return result;
+    }
+
+    // Returns the stream that the source encoder would copy to the disk cache as is, or null if the source data has
+    // to go through the source encoder.
+    private InputStream getTeeableStream(A data) {
+        Encoder<A> sourceEncoder = loadProvider.getSourceEncoder();
+        if (data instanceof InputStream && sourceEncoder instanceof StreamEncoder) {
+            return (InputStream) data;
+        } else if (data instanceof ImageVideoWrapper && sourceEncoder instanceof ImageVideoWrapperEncoder) {
+            return ((ImageVideoWrapper) data).getStream();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A replaceStream(A data, InputStream stream) {
+        if (data instanceof ImageVideoWrapper) {
+            return (A) new ImageVideoWrapper(stream, ((ImageVideoWrapper) data).getFileDescriptor());
+        }
+        return (A) stream;
+    }
+
     //调用getDiskCache()方法获取到的就是Glide自己编写的DiskLruCache工具类的实例，然后调用它的get()方法并把缓存Key传入
     // ，就能得到硬盘缓存的文件了。如果文件为空就返回null，如果文件不为空则将它解码成Resource对象后返回即可。
     //而key 原始图片其实也就相当于url，有大小的是resultKey,不一样哦
     //解决了查找，再去看看在哪储存的。
     private Resource<T> loadFromCache(Key key) throws IOException {
-        File cacheFile = diskCacheProvider.getDiskCache().get(key);
+        return loadFromCache(key, true);
+    }
+
+    // Reading back data that was just written isn't a lookup, so it isn't recorded as a hit or miss.
+    private Resource<T> loadFromCache(Key key, boolean isLookup) throws IOException {
+        DiskCache diskCache = diskCacheProvider.getDiskCache();
+        ResourceDecoder<InputStream, T> streamDecoder = getCacheStreamDecoder();
+        if (streamDecoder != null && diskCache instanceof StreamingDiskCache) {
+            return loadStreamFromCache((StreamingDiskCache) diskCache, streamDecoder, key, isLookup);
+        }
+
+        long startTime = LogTime.getLogTime();
+        File cacheFile = diskCache.get(key);
         if (cacheFile == null) {
+            if (isLookup) {
+                getKeyStats(key).recordMiss(startTime);
+            }
+            return null;
+        }
+        if (isLookup) {
+            getKeyStats(key).recordHit(cacheFile.length(), startTime);
+        }
+
+        //将硬盘中的文件解码变成资源返回去
+        Resource<T> result = loadProvider.getCacheDecoder().decode(cacheFile, width, height);
+        if (result == null) {
+            deleteUndecodable(diskCache, key);
+        }
+        return result;
+    }
+
+    // Reads entries without asking the cache for a file, which caches that pack entries together would have to create.
+    private Resource<T> loadStreamFromCache(StreamingDiskCache diskCache, ResourceDecoder<InputStream, T> streamDecoder,
+            Key key, boolean isLookup) throws IOException {
+        long startTime = LogTime.getLogTime();
+        InputStream is = diskCache.openStream(key);
+        if (is == null) {
+            if (isLookup) {
+                getKeyStats(key).recordMiss(startTime);
+            }
             return null;
         }
 
-        Resource<T> result = null;
+        Resource<T> result;
         try {
-            //将硬盘中的文件解码变成资源返回去
-            result = loadProvider.getCacheDecoder().decode(cacheFile, width, height);
+            if (isLookup) {
+                getKeyStats(key).recordHit(is.available(), startTime);
+            }
+            result = streamDecoder.decode(is, width, height);
         } finally {
-            if (result == null) {
-                diskCacheProvider.getDiskCache().delete(key);
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Do nothing.
             }
         }
+        if (result == null) {
+            deleteUndecodable(diskCache, key);
+        }
         return result;
     }
 
+    // Only entries that were read but couldn't be decoded are deleted. Entries that fail to be read, for example
+    // because they were moved or evicted while we were reading them, are left alone since the failure may be
+    // transient and the entry may still be valid.
+    private void deleteUndecodable(DiskCache diskCache, Key key) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Deleting disk cache entry that can't be decoded, key: " + key);
+        }
+        diskCache.delete(key);
+    }
+
+    // Returns the stream decoder wrapped by the cache decoder, or null if the cache decoder needs a file.
+    @SuppressWarnings("unchecked")
+    private ResourceDecoder<InputStream, T> getCacheStreamDecoder() {
+        ResourceDecoder<File, T> cacheDecoder = loadProvider.getCacheDecoder();
+        if (cacheDecoder instanceof FileToStreamDecoder) {
+            return ((FileToStreamDecoder<T>) cacheDecoder).getStreamDecoder();
+        }
+        return null;
+    }
+
+    private DiskCacheStats.KeyStats getKeyStats(Key key) {
+        DiskCacheStats stats = diskCacheProvider.getDiskCacheStats();
+        return key == resultKey ? stats.getResultStats() : stats.getSourceStats();
+    }
+
     private Resource<T> transform(Resource<T> decoded) {
         if (decoded == null) {
             return null;
@@ -282,18 +477,86 @@ class DecodeJob<A, T, Z> {
         Log.v(TAG, message + " in " + LogTime.getElapsedMillis(startTime) + ", key: " + resultKey);
     }
 
-    class SourceWriter<DataType> implements DiskCache.Writer {
+    // Records queued writes in the disk cache stats once they've actually been written.
+    private static class PutRecorder implements WriteBehindDiskCache.WriteListener {
+        private final DiskCacheStats.KeyStats stats;
+
+        PutRecorder(DiskCacheStats.KeyStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void onWritten(int length, long startTime) {
+            stats.recordPut(length, startTime);
+        }
+    }
+
+    class SourceWriter<DataType> implements DiskCache.StreamWriter, DiskCacheEntryMetadata {
 
         private final Encoder<DataType> encoder;
         private final DataType data;
+        private final long fetchStartTime;
+        private long fetchCostMillis;
+        long bytesWritten;
 
         public SourceWriter(Encoder<DataType> encoder, DataType data) {
+            this(encoder, data, 0);
+        }
+
+        /**
+         * @param fetchStartTime The {@link LogTime} fetching the data started at, or 0 if the data wasn't fetched.
+         */
+        public SourceWriter(Encoder<DataType> encoder, DataType data, long fetchStartTime) {
             this.encoder = encoder;
             this.data = data;
+            this.fetchStartTime = fetchStartTime;
+        }
+
+        @Override
+        public long getFetchCostMillis() {
+            return fetchCostMillis;
+        }
+
+        @Override
+        public long getTimeToLiveMillis() {
+            return diskCacheTimeToLiveMillis;
         }
 
         @Override
         public boolean write(File file) {
+            try {
+                boolean success = writeData(file);
+                if (success) {
+                    bytesWritten = file.length();
+                }
+                return success;
+            } finally {
+                recordFetchCost();
+            }
+        }
+
+        @Override
+        public boolean write(OutputStream os) {
+            try {
+                CountingOutputStream counting = new CountingOutputStream(os);
+                boolean success = encoder.encode(data, counting);
+                if (success) {
+                    bytesWritten = counting.getCount();
+                }
+                return success;
+            } finally {
+                recordFetchCost();
+            }
+        }
+
+        private void recordFetchCost() {
+            // Streamed data is only fully fetched once it has been written.
+            if (fetchStartTime != 0) {
+                fetchCostMillis = (long) LogTime.getElapsedMillis(fetchStartTime);
+            }
+        }
+
+        private boolean writeData(File file) {
             boolean success = false;
             OutputStream os = null;
             try {
@@ -316,8 +579,101 @@ class DecodeJob<A, T, Z> {
         }
     }
 
+    class TeeWriter implements DiskCache.StreamWriter, DiskCacheEntryMetadata {
+        private final A data;
+        boolean isInvoked;
+        Resource<T> decoded;
+        IOException exception;
+        long bytesWritten;
+
+        public TeeWriter(A data) {
+            this.data = data;
+        }
+
+        @Override
+        public long getFetchCostMillis() {
+            // Includes the time spent decoding, which is also paid again if the source data is evicted.
+            return (long) LogTime.getElapsedMillis(fetchStartTime);
+        }
+
+        @Override
+        public long getTimeToLiveMillis() {
+            return diskCacheTimeToLiveMillis;
+        }
+
+        @Override
+        public boolean write(File file) {
+            isInvoked = true;
+            OutputStream os;
+            try {
+                os = fileOpener.open(file);
+            } catch (FileNotFoundException e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to find file to write to disk cache", e);
+                }
+                try {
+                    decoded = loadProvider.getSourceDecoder().decode(data, width, height);
+                } catch (IOException decodeException) {
+                    exception = decodeException;
+                }
+                return false;
+            }
+
+            boolean success = false;
+            try {
+                success = teeAndDecode(os);
+            } finally {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    success = false;
+                }
+            }
+            if (success) {
+                bytesWritten = file.length();
+            }
+            return success;
+        }
+
+        @Override
+        public boolean write(OutputStream os) {
+            isInvoked = true;
+            CountingOutputStream counting = new CountingOutputStream(os);
+            boolean success = teeAndDecode(counting);
+            if (success) {
+                bytesWritten = counting.getCount();
+            }
+            return success;
+        }
+
+        private boolean teeAndDecode(OutputStream os) {
+            try {
+                TeeInputStream tee = new TeeInputStream(getTeeableStream(data), os);
+                decoded = loadProvider.getSourceDecoder().decode(replaceStream(data, tee), width, height);
+                if (decoded == null) {
+                    return false;
+                }
+                try {
+                    // Decoders don't necessarily read trailing bytes, but the cached copy needs to be complete.
+                    tee.drain();
+                    return !tee.isWriteFailed();
+                } catch (IOException e) {
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Failed to read remaining source data, not caching", e);
+                    }
+                    return false;
+                }
+            } catch (IOException e) {
+                exception = e;
+                return false;
+            }
+        }
+    }
+
     interface DiskCacheProvider {
         DiskCache getDiskCache();
+
+        DiskCacheStats getDiskCacheStats();
     }
 
     static class FileOpener {
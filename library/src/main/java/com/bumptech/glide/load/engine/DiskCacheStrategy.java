@@ -11,14 +11,26 @@ public enum DiskCacheStrategy {
     /** Saves just the original data to cache. */
     SOURCE(true, false),
     /** Saves the media item after all transformations to cache. */
-    RESULT(false, true);
+    RESULT(false, true),
+    /**
+     * Caches like {@link #RESULT} and also keeps small transformed {@link android.graphics.Bitmap}s as raw pixels in
+     * a separate tier so that hits skip decoding, see {@link RawPixelCache}. Results are added to the tier when they
+     * are loaded from the disk cache again. Intended for small, frequently shown thumbnails.
+     */
+    RAW_RESULT(false, true, true);
 
     private final boolean cacheSource;
     private final boolean cacheResult;
+    private final boolean cacheRawPixels;
 
     DiskCacheStrategy(boolean cacheSource, boolean cacheResult) {
+        this(cacheSource, cacheResult, false);
+    }
+
+    DiskCacheStrategy(boolean cacheSource, boolean cacheResult, boolean cacheRawPixels) {
         this.cacheSource = cacheSource;
         this.cacheResult = cacheResult;
+        this.cacheRawPixels = cacheRawPixels;
     }
 
     /**
@@ -34,4 +46,11 @@ public enum DiskCacheStrategy {
     public boolean cacheResult() {
         return cacheResult;
     }
+
+    /**
+     * Returns true if this request should also cache the decoded pixels of the final transformed result.
+     */
+    public boolean cacheRawPixels() {
+        return cacheRawPixels;
+    }
 }
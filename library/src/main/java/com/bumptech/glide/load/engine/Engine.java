@@ -5,12 +5,20 @@ import android.os.MessageQueue;
 import android.util.Log;
 
 import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Encoder;
 import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.engine.cache.DiskCache;
 import com.bumptech.glide.load.engine.cache.DiskCacheAdapter;
+import com.bumptech.glide.load.engine.cache.DiskCacheStats;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
 import com.bumptech.glide.load.engine.cache.MemoryCache;
+import com.bumptech.glide.load.engine.cache.VariantIndex;
+import com.bumptech.glide.load.engine.cache.VariantKey;
+import com.bumptech.glide.load.engine.cache.WriteBehindDiskCache;
+import com.bumptech.glide.load.engine.executor.Prioritized;
+import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
 import com.bumptech.glide.provider.DataLoadProvider;
 import com.bumptech.glide.request.ResourceCallback;
@@ -19,7 +27,12 @@ import com.bumptech.glide.util.Util;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
@@ -28,8 +41,18 @@ import java.util.concurrent.ExecutorService;
  */
 public class Engine implements EngineJobListener,
         MemoryCache.ResourceRemovedListener,
-        EngineResource.ResourceListener {
+        EngineResource.ResourceListener,
+        PreviewJob.PreviewJobListener {
     private static final String TAG = "Engine";
+    private static final int MAX_INDEXED_ORIGINALS = 1000;
+    private static final Comparator<EngineKey> AREA_ORDER = new Comparator<EngineKey>() {
+        @Override
+        public int compare(EngineKey lhs, EngineKey rhs) {
+            long lhsArea = (long) lhs.getWidth() * lhs.getHeight();
+            long rhsArea = (long) rhs.getWidth() * rhs.getHeight();
+            return lhsArea < rhsArea ? -1 : (lhsArea == rhsArea ? 0 : 1);
+        }
+    };
     private final Map<Key, EngineJob> jobs;
     private final EngineKeyFactory keyFactory;
     private final MemoryCache cache;
@@ -37,6 +60,12 @@ public class Engine implements EngineJobListener,
     private final Map<Key, WeakReference<EngineResource<?>>> activeResources;
     private final ResourceRecycler resourceRecycler;
     private final LazyDiskCacheProvider diskCacheProvider;
+    private final ExecutorService diskCacheService;
+    private final ExecutorService sourceService;
+    private final RawPixelCache rawPixelCache;
+    private final List<Runnable> idleCallbacks = new ArrayList<Runnable>();
+    // The keys of resources that are active or in the memory cache, by their original keys.
+    private final VariantIndex memoryVariants = new VariantIndex(MAX_INDEXED_ORIGINALS);
 
     // Lazily instantiate to avoid exceptions if Glide is initialized on a background thread. See #295.
     private ReferenceQueue<EngineResource<?>> resourceReferenceQueue;
@@ -47,29 +76,73 @@ public class Engine implements EngineJobListener,
     public static class LoadStatus {
         private final EngineJob engineJob;
         private final ResourceCallback cb;
+        private final PreviewJob previewJob;
 
         public LoadStatus(ResourceCallback cb, EngineJob engineJob) {
+            this(cb, engineJob, null);
+        }
+
+        LoadStatus(ResourceCallback cb, EngineJob engineJob, PreviewJob previewJob) {
             this.cb = cb;
             this.engineJob = engineJob;
+            this.previewJob = previewJob;
         }
 
         public void cancel() {
             engineJob.removeCallback(cb);
+            if (previewJob != null) {
+                previewJob.cancel();
+            }
         }
     }
 
+    /**
+     * A {@link ResourceCallback} that can show a variant of the resource being loaded, like a different size of the
+     * same image that's already in the memory or disk cache, until the exact resource is ready.
+     */
+    public interface PreviewCallback extends ResourceCallback {
+        /**
+         * Returns true if the callback can show a preview, checked before one is looked for.
+         */
+        boolean canShowPreview();
+
+        /**
+         * Called on the main thread, at most once per load and only before
+         * {@link #onResourceReady(Resource)}, with an acquired variant of the resource being loaded.
+         *
+         * <p>
+         *     The variant is of the same type as the resource being loaded, and must be released with
+         *     {@link Engine#release(Resource)} once it's no longer shown, whether or not it's used at all.
+         * </p>
+         */
+        void onPreviewReady(Resource<?> preview);
+    }
+
     public Engine(MemoryCache memoryCache, DiskCache.Factory diskCacheFactory, ExecutorService diskCacheService,
             ExecutorService sourceService) {
-        this(memoryCache, diskCacheFactory, diskCacheService, sourceService, null, null, null, null, null);
+        this(memoryCache, diskCacheFactory, diskCacheService, sourceService, null);
+    }
+
+    /**
+     * @param rawPixelCache The tier used by {@link DiskCacheStrategy#RAW_RESULT} loads, or null to cache those loads
+     *                      like {@link DiskCacheStrategy#RESULT}.
+     */
+    public Engine(MemoryCache memoryCache, DiskCache.Factory diskCacheFactory, ExecutorService diskCacheService,
+            ExecutorService sourceService, RawPixelCache rawPixelCache) {
+        this(memoryCache, diskCacheFactory, diskCacheService, sourceService, rawPixelCache, null, null, null, null,
+                null);
     }
 
     // Visible for testing.
     Engine(MemoryCache cache, DiskCache.Factory diskCacheFactory, ExecutorService diskCacheService,
-            ExecutorService sourceService, Map<Key, EngineJob> jobs, EngineKeyFactory keyFactory,
-            Map<Key, WeakReference<EngineResource<?>>> activeResources, EngineJobFactory engineJobFactory,
-            ResourceRecycler resourceRecycler) {
+            ExecutorService sourceService, RawPixelCache rawPixelCache, Map<Key, EngineJob> jobs,
+            EngineKeyFactory keyFactory, Map<Key, WeakReference<EngineResource<?>>> activeResources,
+            EngineJobFactory engineJobFactory, ResourceRecycler resourceRecycler) {
         this.cache = cache;
         this.diskCacheProvider = new LazyDiskCacheProvider(diskCacheFactory);
+        this.diskCacheService = diskCacheService;
+        this.sourceService = sourceService;
+        this.rawPixelCache = rawPixelCache;
 
         if (activeResources == null) {
             activeResources = new HashMap<Key, WeakReference<EngineResource<?>>>();
@@ -113,6 +186,15 @@ public class Engine implements EngineJobListener,
      * </p>
      *
      * <p>
+     *     If the given callback is a {@link PreviewCallback}, the load is memory cacheable and the exact resource isn't
+     *     in memory, it's also given the cheapest variant of the resource that's available, one that differs only in
+     *     size.
+     *     The largest variant that's active or in the memory cache is given right away. Otherwise, if the exact
+     *     resource isn't in the disk cache, the smallest variant in the disk cache is decoded on the disk cache
+     *     thread, queued after the load so that it never delays the exact resource.
+     * </p>
+     *
+     * <p>
      *     Active resources are those that have been provided to at least one request and have not yet been released.
      *     Once all consumers of a resource have released that resource, the resource then goes to cache. If the
      *     resource is ever returned to a new consumer from cache, it is re-added to the active resources. If the
@@ -143,6 +225,22 @@ public class Engine implements EngineJobListener,
     public <T, Z, R> LoadStatus load(Key signature, int width, int height, DataFetcher<T> fetcher,
             DataLoadProvider<T, Z> loadProvider, Transformation<Z> transformation, ResourceTranscoder<Z, R> transcoder,
             Priority priority, boolean isMemoryCacheable, DiskCacheStrategy diskCacheStrategy, ResourceCallback cb) {
+        return load(signature, width, height, fetcher, loadProvider, transformation, transcoder, priority,
+                isMemoryCacheable, diskCacheStrategy, 0 /*diskCacheTimeToLiveMillis*/, cb);
+    }
+
+    /**
+     * Starts a load like {@link #load(Key, int, int, DataFetcher, DataLoadProvider, Transformation,
+     * ResourceTranscoder, Priority, boolean, DiskCacheStrategy, ResourceCallback)}, but data the load writes to the
+     * disk cache expires after the given time.
+     *
+     * @param diskCacheTimeToLiveMillis How long in milliseconds data written to the disk cache stays valid, or 0 if it
+     *                                  doesn't expire.
+     */
+    public <T, Z, R> LoadStatus load(Key signature, int width, int height, DataFetcher<T> fetcher,
+            DataLoadProvider<T, Z> loadProvider, Transformation<Z> transformation, ResourceTranscoder<Z, R> transcoder,
+            Priority priority, boolean isMemoryCacheable, DiskCacheStrategy diskCacheStrategy,
+            long diskCacheTimeToLiveMillis, ResourceCallback cb) {
         Util.assertMainThread();
         long startTime = LogTime.getLogTime();
 
@@ -188,14 +286,15 @@ public class Engine implements EngineJobListener,
             if (Log.isLoggable(TAG, Log.VERBOSE)) {
                 logWithTimeAndKey("Added to existing load", startTime, key);
             }
-            return new LoadStatus(cb, current);
+            return new LoadStatus(cb, current, loadPreview(key, fetcher, loadProvider, transformation, transcoder,
+                    priority, isMemoryCacheable, cb));
         }
 
         //2018-05-04 在这里面，构建一个EngineJob，它的主要作用就是用来开启线程的，为后面的异步加载图片做准备
         EngineJob engineJob = engineJobFactory.build(key, isMemoryCacheable);
         //这个家伙任务繁重。
         DecodeJob<T, Z, R> decodeJob = new DecodeJob<T, Z, R>(key, width, height, fetcher, loadProvider, transformation,
-                transcoder, diskCacheProvider, diskCacheStrategy, priority);
+                transcoder, diskCacheProvider, diskCacheStrategy, diskCacheTimeToLiveMillis, priority, rawPixelCache);
         //创建了一个EngineRunnable对象，并且在51行调用了EngineJob的start()方法来运行EngineRunnable对象，
         // 这实际上就是让EngineRunnable的run()方法在子线程当中执行了
         EngineRunnable runnable = new EngineRunnable(engineJob, decodeJob, priority);
@@ -207,7 +306,126 @@ public class Engine implements EngineJobListener,
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             logWithTimeAndKey("Started new load", startTime, key);
         }
-        return new LoadStatus(cb, engineJob);
+        // Started after the exact load so that, on the disk cache thread, decoding a preview never delays looking up
+        // the exact resource.
+        PreviewJob previewJob = loadPreview(key, fetcher, loadProvider, transformation, transcoder, priority,
+                isMemoryCacheable, cb);
+        return new LoadStatus(cb, engineJob, previewJob);
+    }
+
+    // Gives the callback a preview from memory or returns a job that decodes one from disk, if the callback wants one.
+    private <T, Z, R> PreviewJob loadPreview(EngineKey key, DataFetcher<T> fetcher,
+            DataLoadProvider<T, Z> loadProvider, Transformation<Z> transformation, ResourceTranscoder<Z, R> transcoder,
+            Priority priority, boolean isMemoryCacheable, ResourceCallback resourceCallback) {
+        // Previews are released as soon as the exact resource is set, usually while it's still fading in over them.
+        // Only resources that can be memory cached go back to the memory cache rather than the bitmap pool then.
+        if (!isMemoryCacheable || !(resourceCallback instanceof PreviewCallback)
+                || !((PreviewCallback) resourceCallback).canShowPreview()) {
+            return null;
+        }
+        PreviewCallback cb = (PreviewCallback) resourceCallback;
+        // Variants in memory are all free to show, the largest looks the most like the exact resource.
+        List<EngineKey> variants = getVariants(memoryVariants, key);
+        for (int i = variants.size() - 1; i >= 0; i--) {
+            EngineKey variant = variants.get(i);
+            EngineResource<?> preview = loadFromCache(variant, true /*isMemoryCacheable*/);
+            if (preview == null) {
+                preview = loadFromActiveResources(variant, true /*isMemoryCacheable*/);
+            }
+            if (preview != null) {
+                if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                    Log.v(TAG, "Loaded preview from memory, variant: " + variant + ", key: " + key);
+                }
+                cb.onPreviewReady(preview);
+                return null;
+            }
+            memoryVariants.remove(variant);
+        }
+
+        VariantIndex diskVariants = getDiskVariantIndex();
+        // If the exact resource is in the disk cache, it's decoded about as quickly as any variant would be.
+        if (diskVariants == null || diskVariants.contains(key)) {
+            return null;
+        }
+        variants = getVariants(diskVariants, key);
+        if (variants.isEmpty()) {
+            return null;
+        }
+        // Variants on disk have to be decoded, the smallest is the quickest.
+        EngineKey variant = variants.get(0);
+        DecodeJob<T, Z, R> decodeJob = new DecodeJob<T, Z, R>(variant, variant.getWidth(), variant.getHeight(),
+                fetcher, loadProvider, transformation, transcoder, diskCacheProvider, DiskCacheStrategy.RESULT,
+                priority, null /*rawPixelCache*/);
+        PreviewJob previewJob = new PreviewJob(variant, decodeJob, priority, isMemoryCacheable, cb, this);
+        diskCacheService.submit(previewJob);
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Started preview from disk, variant: " + variant + ", key: " + key);
+        }
+        return previewJob;
+    }
+
+    // Returns the variants of the given key in the given index, smallest first.
+    private static List<EngineKey> getVariants(VariantIndex index, EngineKey key) {
+        List<VariantKey> indexed = index.get(key.getOriginalKey());
+        if (indexed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<EngineKey> result = new ArrayList<EngineKey>(indexed.size());
+        for (VariantKey variant : indexed) {
+            if (variant instanceof EngineKey && key.isVariantOf((EngineKey) variant)) {
+                result.add((EngineKey) variant);
+            }
+        }
+        Collections.sort(result, AREA_ORDER);
+        return result;
+    }
+
+    // Returns the index of the disk cache if it has been built and can find variants, without building it.
+    private VariantIndex getDiskVariantIndex() {
+        DiskCache diskCache = diskCacheProvider.peekDiskCache();
+        if (diskCache instanceof WriteBehindDiskCache) {
+            diskCache = ((WriteBehindDiskCache) diskCache).getDelegate();
+        }
+        return diskCache instanceof DiskLruCacheWrapper ? ((DiskLruCacheWrapper) diskCache).getVariantIndex() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void onPreviewJobComplete(PreviewJob job, Resource<?> resource) {
+        Util.assertMainThread();
+        EngineKey key = job.getKey();
+        if (resource == null) {
+            // The variant was evicted from the disk cache after it was indexed.
+            VariantIndex diskVariants = getDiskVariantIndex();
+            if (diskVariants != null) {
+                diskVariants.remove(key);
+            }
+            return;
+        }
+
+        // Another load may have put the same variant in memory while it was decoded.
+        EngineResource<?> preview = loadFromCache(key, job.isMemoryCacheable());
+        if (preview == null) {
+            preview = loadFromActiveResources(key, job.isMemoryCacheable());
+        }
+        if (preview != null) {
+            resource.recycle();
+        } else {
+            preview = new EngineResource(resource, job.isMemoryCacheable());
+            preview.setResourceListener(key, this);
+            preview.acquire();
+            if (preview.isCacheable()) {
+                activeResources.put(key, new ResourceWeakReference(key, preview, getReferenceQueue()));
+                memoryVariants.add(key);
+            }
+        }
+
+        if (job.isCancelled()) {
+            // Nobody is waiting for the preview anymore, keep it in memory for later loads of the variant.
+            preview.release();
+        } else {
+            job.getCallback().onPreviewReady(preview);
+        }
     }
 
     private static void logWithTimeAndKey(String log, long startTime, Key key) {
@@ -288,10 +506,14 @@ public class Engine implements EngineJobListener,
             //图片先是存在弱引用的缓存中，此时并没有存到LruCache内存中去
             if (resource.isCacheable()) {
                 activeResources.put(key, new ResourceWeakReference(key, resource, getReferenceQueue()));
+                if (key instanceof VariantKey) {
+                    memoryVariants.add((VariantKey) key);
+                }
             }
         }
         // TODO: should this check that the engine job is still current?
         jobs.remove(key);
+        notifyIfIdle();
     }
 
     @Override
@@ -301,11 +523,65 @@ public class Engine implements EngineJobListener,
         if (engineJob.equals(current)) {
             jobs.remove(key);
         }
+        notifyIfIdle();
+    }
+
+    /**
+     * Starts fetching the source data of the given models into the disk cache without decoding it. Must be called on
+     * the main thread.
+     *
+     * @see PrefetchBatch
+     *
+     * @param models The models to prefetch.
+     * @param modelLoader The loader used to obtain fetchers for the models.
+     * @param encoder The encoder used to write the fetched data to the disk cache, the source encoder of the
+     *                {@link DataLoadProvider} loads of the models will use.
+     * @param signature The signature loads of the models will use.
+     * @param maxConcurrency The maximum number of models to fetch at once.
+     * @param maxBytes The number of bytes after which no more models are fetched, or
+     *                 {@link PrefetchBatch#NO_BYTE_LIMIT}.
+     * @param listener The listener to notify of progress.
+     * @param <T> The type of the models.
+     * @param <Y> The type of data fetched for the models.
+     */
+    public <T, Y> PrefetchBatch prefetch(Collection<? extends T> models, ModelLoader<T, Y> modelLoader,
+            Encoder<Y> encoder, Key signature, int maxConcurrency, long maxBytes, PrefetchBatch.Listener listener) {
+        Util.assertMainThread();
+        PrefetchBatch batch = new PrefetchBatch(this, diskCacheProvider, sourceService, models, modelLoader, encoder,
+                signature, maxConcurrency, maxBytes, listener);
+        batch.start();
+        return batch;
+    }
+
+    // Whether any loads are in progress, background work like prefetching waits for them to finish.
+    boolean hasActiveJobs() {
+        Util.assertMainThread();
+        return !jobs.isEmpty();
+    }
+
+    // Runs the given callback on the main thread once no loads are in progress.
+    void addIdleCallback(Runnable callback) {
+        Util.assertMainThread();
+        idleCallbacks.add(callback);
+    }
+
+    private void notifyIfIdle() {
+        if (!jobs.isEmpty() || idleCallbacks.isEmpty()) {
+            return;
+        }
+        List<Runnable> callbacks = new ArrayList<Runnable>(idleCallbacks);
+        idleCallbacks.clear();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
     }
 
     @Override
     public void onResourceRemoved(final Resource<?> resource) {
         Util.assertMainThread();
+        if (resource instanceof EngineResource && ((EngineResource<?>) resource).getKey() instanceof VariantKey) {
+            memoryVariants.remove((VariantKey) ((EngineResource<?>) resource).getKey());
+        }
         resourceRecycler.recycle(resource);
     }
 
@@ -324,13 +600,59 @@ public class Engine implements EngineJobListener,
 
     public void clearDiskCache() {
         diskCacheProvider.getDiskCache().clear();
+        if (rawPixelCache != null) {
+            rawPixelCache.clear();
+        }
+    }
+
+    /**
+     * Builds and opens the disk cache on the disk cache thread ahead of the first load so that the first load doesn't
+     * pay for creating the cache directory and replaying the journal.
+     *
+     * <p>
+     *     The warm up runs with {@link Priority#IMMEDIATE} so loads queued behind it on the disk cache thread simply
+     *     wait for it. Puts from source threads that arrive while the cache is still opening wait for a short timeout
+     *     and are then skipped.
+     * </p>
+     */
+    public void warmUpDiskCache() {
+        diskCacheService.submit(new DiskCacheWarmUpRunnable(diskCacheProvider));
+    }
+
+    /**
+     * Returns hit, miss, put and storage counters for the disk cache.
+     */
+    public DiskCacheStats getDiskCacheStats() {
+        return diskCacheProvider.getDiskCacheStats();
+    }
+
+    /**
+     * Drops some or all disk cache writes that are queued but haven't started yet depending on the given level.
+     *
+     * @see WriteBehindDiskCache#trimMemory(int)
+     */
+    public void trimDiskCacheWrites(int level) {
+        DiskCache diskCache = diskCacheProvider.peekDiskCache();
+        if (diskCache instanceof WriteBehindDiskCache) {
+            ((WriteBehindDiskCache) diskCache).trimMemory(level);
+        }
+    }
+
+    /**
+     * Drops all disk cache writes that are queued but haven't started yet.
+     */
+    public void clearDiskCacheWrites() {
+        DiskCache diskCache = diskCacheProvider.peekDiskCache();
+        if (diskCache instanceof WriteBehindDiskCache) {
+            ((WriteBehindDiskCache) diskCache).clearPending();
+        }
     }
 
     private ReferenceQueue<EngineResource<?>> getReferenceQueue() {
         if (resourceReferenceQueue == null) {
             resourceReferenceQueue = new ReferenceQueue<EngineResource<?>>();
             MessageQueue queue = Looper.myQueue();
-            queue.addIdleHandler(new RefQueueIdleHandler(activeResources, resourceReferenceQueue));
+            queue.addIdleHandler(new RefQueueIdleHandler(activeResources, memoryVariants, resourceReferenceQueue));
         }
         return resourceReferenceQueue;
     }
@@ -338,6 +660,7 @@ public class Engine implements EngineJobListener,
     private static class LazyDiskCacheProvider implements DecodeJob.DiskCacheProvider {
 
         private final DiskCache.Factory factory;
+        private final DiskCacheStats diskCacheStats = new DiskCacheStats();
         private volatile DiskCache diskCache;
 
         public LazyDiskCacheProvider(DiskCache.Factory factory) {
@@ -354,10 +677,53 @@ public class Engine implements EngineJobListener,
                     if (diskCache == null) {
                         diskCache = new DiskCacheAdapter();
                     }
+                    DiskCache storage = diskCache instanceof WriteBehindDiskCache
+                            ? ((WriteBehindDiskCache) diskCache).getDelegate() : diskCache;
+                    if (storage instanceof DiskLruCacheWrapper) {
+                        diskCacheStats.setStorage((DiskLruCacheWrapper) storage);
+                    }
                 }
             }
             return diskCache;
         }
+
+        @Override
+        public DiskCacheStats getDiskCacheStats() {
+            return diskCacheStats;
+        }
+
+        // Returns the disk cache if it has been built, without building it.
+        public DiskCache peekDiskCache() {
+            return diskCache;
+        }
+    }
+
+    private static class DiskCacheWarmUpRunnable implements Runnable, Prioritized {
+        private final DecodeJob.DiskCacheProvider diskCacheProvider;
+
+        public DiskCacheWarmUpRunnable(DecodeJob.DiskCacheProvider diskCacheProvider) {
+            this.diskCacheProvider = diskCacheProvider;
+        }
+
+        @Override
+        public void run() {
+            long startTime = LogTime.getLogTime();
+            DiskCache diskCache = diskCacheProvider.getDiskCache();
+            if (diskCache instanceof WriteBehindDiskCache) {
+                diskCache = ((WriteBehindDiskCache) diskCache).getDelegate();
+            }
+            if (diskCache instanceof DiskLruCacheWrapper) {
+                ((DiskLruCacheWrapper) diskCache).warmUp();
+            }
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Warmed up disk cache in " + LogTime.getElapsedMillis(startTime) + "ms");
+            }
+        }
+
+        @Override
+        public int getPriority() {
+            return Priority.IMMEDIATE.ordinal();
+        }
     }
 
     private static class ResourceWeakReference extends WeakReference<EngineResource<?>> {
@@ -372,11 +738,13 @@ public class Engine implements EngineJobListener,
     // Responsible for cleaning up the active resource map by remove weak references that have been cleared.
     private static class RefQueueIdleHandler implements MessageQueue.IdleHandler {
         private final Map<Key, WeakReference<EngineResource<?>>> activeResources;
+        private final VariantIndex memoryVariants;
         private final ReferenceQueue<EngineResource<?>> queue;
 
         public RefQueueIdleHandler(Map<Key, WeakReference<EngineResource<?>>> activeResources,
-                ReferenceQueue<EngineResource<?>> queue) {
+                VariantIndex memoryVariants, ReferenceQueue<EngineResource<?>> queue) {
             this.activeResources = activeResources;
+            this.memoryVariants = memoryVariants;
             this.queue = queue;
         }
 
@@ -385,6 +753,9 @@ public class Engine implements EngineJobListener,
             ResourceWeakReference ref = (ResourceWeakReference) queue.poll();
             if (ref != null) {
                 activeResources.remove(ref.key);
+                if (ref.key instanceof VariantKey) {
+                    memoryVariants.remove((VariantKey) ref.key);
+                }
             }
 
             return true;
@@ -5,6 +5,7 @@ import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.cache.VariantKey;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
 
 import java.io.UnsupportedEncodingException;
@@ -12,7 +13,7 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 
 @SuppressWarnings("rawtypes")
-class EngineKey implements Key {
+class EngineKey implements VariantKey {
     private static final String EMPTY_LOG_STRING = "";
     private final String id;
     private final int width;
@@ -43,6 +44,7 @@ class EngineKey implements Key {
         this.sourceEncoder = sourceEncoder;
     }
 
+    @Override
     public Key getOriginalKey() {
         if (originalKey == null) {
             originalKey = new OriginalKey(id, signature);
@@ -50,6 +52,46 @@ class EngineKey implements Key {
         return originalKey;
     }
 
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns true if the given key is for a different size of the same data, decoded, transformed, encoded and
+     * transcoded in the same way, so that its resource looks like and is of the same type as this key's and can be
+     * shown in its place.
+     */
+    boolean isVariantOf(EngineKey other) {
+        return (width != other.width || height != other.height)
+                && id.equals(other.id)
+                && signature.equals(other.signature)
+                && getId(cacheDecoder).equals(getId(other.cacheDecoder))
+                && getId(decoder).equals(getId(other.decoder))
+                && getId(transformation).equals(getId(other.transformation))
+                && getId(encoder).equals(getId(other.encoder))
+                && getId(transcoder).equals(getId(other.transcoder));
+    }
+
+    private static String getId(ResourceDecoder decoder) {
+        return decoder != null ? decoder.getId() : EMPTY_LOG_STRING;
+    }
+
+    private static String getId(Transformation transformation) {
+        return transformation != null ? transformation.getId() : EMPTY_LOG_STRING;
+    }
+
+    private static String getId(ResourceEncoder encoder) {
+        return encoder != null ? encoder.getId() : EMPTY_LOG_STRING;
+    }
+
+    private static String getId(ResourceTranscoder transcoder) {
+        return transcoder != null ? transcoder.getId() : EMPTY_LOG_STRING;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -37,6 +37,10 @@ class EngineResource<Z> implements Resource<Z> {
         this.listener = listener;
     }
 
+    Key getKey() {
+        return key;
+    }
+
     boolean isCacheable() {
         return isCacheable;
     }
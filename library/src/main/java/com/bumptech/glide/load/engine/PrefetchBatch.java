@@ -0,0 +1,404 @@
+package com.bumptech.glide.load.engine;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Encoder;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskCacheEntryMetadata;
+import com.bumptech.glide.load.engine.executor.Prioritized;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.util.CountingOutputStream;
+import com.bumptech.glide.util.LogTime;
+import com.bumptech.glide.util.Util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A group of models whose source data is fetched and written to the disk cache without being decoded, started with
+ * {@link Engine#prefetch(Collection, ModelLoader, Encoder, Key, int, long, Listener)}.
+ *
+ * <p>
+ *     Each model's data is written to the disk cache with the same key a load of the model with the same signature and
+ *     a {@link DiskCacheStrategy} that caches source data would use, models whose data is already cached are skipped.
+ *     At most a fixed number of models are fetched at once, each at {@link Priority#LOW} on the source executor, so
+ *     queued interactive loads always run first. No new fetches are started while the {@link Engine} has any loads in
+ *     progress or once the given number of bytes has been written, fetches already running are allowed to finish.
+ * </p>
+ *
+ * <p>
+ *     All methods must be called on the main thread and the {@link Listener} is called on the main thread.
+ * </p>
+ */
+public class PrefetchBatch {
+    private static final String TAG = "PrefetchBatch";
+    /** Passed as the byte budget to write as many bytes as the models have. */
+    public static final long NO_BYTE_LIMIT = Long.MAX_VALUE;
+
+    private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives the progress of a {@link PrefetchBatch} on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called each time a model has been fetched, skipped because it was already cached, or failed.
+         */
+        void onProgress(PrefetchBatch batch);
+
+        /**
+         * Called once when every model has been handled, the byte budget has been used up, or the batch was cancelled
+         * and its running fetches have stopped.
+         */
+        void onFinished(PrefetchBatch batch);
+    }
+
+    private final Engine engine;
+    private final DecodeJob.DiskCacheProvider diskCacheProvider;
+    private final ExecutorService sourceService;
+    private final Source<?, ?> source;
+    private final int totalCount;
+    private final int maxConcurrency;
+    private final long maxBytes;
+    private final Listener listener;
+    private final Set<PrefetchRunnable<?>> running = new HashSet<PrefetchRunnable<?>>();
+    private final Runnable resumeWhenIdle = new Runnable() {
+        @Override
+        public void run() {
+            isWaitingForIdle = false;
+            startFetches();
+        }
+    };
+
+    private int fetchedCount;
+    private int cachedCount;
+    private int failedCount;
+    private long bytesWritten;
+    private boolean isWaitingForIdle;
+    private boolean isCancelled;
+    private boolean isFinished;
+
+    <T, Y> PrefetchBatch(Engine engine, DecodeJob.DiskCacheProvider diskCacheProvider, ExecutorService sourceService,
+            Collection<? extends T> models, ModelLoader<T, Y> modelLoader, Encoder<Y> encoder, Key signature,
+            int maxConcurrency, long maxBytes, Listener listener) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be > 0");
+        }
+        this.engine = engine;
+        this.diskCacheProvider = diskCacheProvider;
+        this.sourceService = sourceService;
+        this.source = new Source<T, Y>(models.iterator(), modelLoader, encoder, signature);
+        this.totalCount = models.size();
+        this.maxConcurrency = maxConcurrency;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+    }
+
+    void start() {
+        startFetches();
+    }
+
+    /**
+     * Stops starting new fetches and cancels the running ones.
+     */
+    public void cancel() {
+        Util.assertMainThread();
+        if (isCancelled || isFinished) {
+            return;
+        }
+        isCancelled = true;
+        for (PrefetchRunnable<?> runnable : running) {
+            runnable.cancel();
+        }
+        finishIfDone();
+    }
+
+    /**
+     * Returns the number of models in the batch.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the number of models whose data was fetched and written to the disk cache.
+     */
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    /**
+     * Returns the number of models skipped because their data was already in the disk cache.
+     */
+    public int getCachedCount() {
+        return cachedCount;
+    }
+
+    /**
+     * Returns the number of models that couldn't be fetched or written.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the number of bytes written to the disk cache so far.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Returns true if no more fetches will be started because the byte budget has been used up.
+     */
+    public boolean isBudgetExhausted() {
+        return bytesWritten >= maxBytes;
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    private void startFetches() {
+        while (!isCancelled && !isBudgetExhausted() && running.size() < maxConcurrency && source.hasNext()) {
+            // Interactive loads take precedence, wait until the Engine has nothing in progress.
+            if (engine.hasActiveJobs()) {
+                if (!isWaitingForIdle) {
+                    isWaitingForIdle = true;
+                    engine.addIdleCallback(resumeWhenIdle);
+                }
+                return;
+            }
+            PrefetchRunnable<?> runnable = source.next(this);
+            if (runnable == null) {
+                failedCount++;
+                continue;
+            }
+            running.add(runnable);
+            sourceService.submit(runnable);
+        }
+        finishIfDone();
+    }
+
+    private void onPrefetchComplete(PrefetchRunnable<?> runnable) {
+        running.remove(runnable);
+        if (runnable.isCached) {
+            cachedCount++;
+        } else if (runnable.isSuccess) {
+            fetchedCount++;
+            bytesWritten += runnable.bytesWritten;
+        } else {
+            failedCount++;
+        }
+        if (!isFinished) {
+            listener.onProgress(this);
+        }
+        startFetches();
+    }
+
+    private void finishIfDone() {
+        if (isFinished || !running.isEmpty()) {
+            return;
+        }
+        if (isCancelled || isBudgetExhausted() || !source.hasNext()) {
+            isFinished = true;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Finished prefetching, fetched: " + fetchedCount + ", cached: " + cachedCount
+                        + ", failed: " + failedCount + ", bytes: " + bytesWritten + ", cancelled: " + isCancelled);
+            }
+            listener.onFinished(this);
+        }
+    }
+
+    /**
+     * Creates the fetchers for the models on the main thread, where model loaders expect to be called.
+     */
+    private static class Source<T, Y> {
+        private final Iterator<? extends T> models;
+        private final ModelLoader<T, Y> modelLoader;
+        private final Encoder<Y> encoder;
+        private final Key signature;
+
+        Source(Iterator<? extends T> models, ModelLoader<T, Y> modelLoader, Encoder<Y> encoder, Key signature) {
+            this.models = models;
+            this.modelLoader = modelLoader;
+            this.encoder = encoder;
+            this.signature = signature;
+        }
+
+        boolean hasNext() {
+            return models.hasNext();
+        }
+
+        PrefetchRunnable<Y> next(PrefetchBatch batch) {
+            T model = models.next();
+            // Source data doesn't depend on the size, the key only includes the id and signature.
+            DataFetcher<Y> fetcher = modelLoader.getResourceFetcher(model, Target.SIZE_ORIGINAL,
+                    Target.SIZE_ORIGINAL);
+            if (fetcher == null) {
+                return null;
+            }
+            return new PrefetchRunnable<Y>(batch, fetcher, encoder, new OriginalKey(fetcher.getId(), signature));
+        }
+    }
+
+    /**
+     * Fetches the data for a single model and writes it to the disk cache on a source thread.
+     */
+    private static class PrefetchRunnable<Y> implements Runnable, Prioritized {
+        private final PrefetchBatch batch;
+        private final DataFetcher<Y> fetcher;
+        private final Encoder<Y> encoder;
+        private final Key key;
+        private volatile boolean isCancelled;
+        boolean isCached;
+        boolean isSuccess;
+        long bytesWritten;
+
+        PrefetchRunnable(PrefetchBatch batch, DataFetcher<Y> fetcher, Encoder<Y> encoder, Key key) {
+            this.batch = batch;
+            this.fetcher = fetcher;
+            this.encoder = encoder;
+            this.key = key;
+        }
+
+        void cancel() {
+            isCancelled = true;
+            fetcher.cancel();
+        }
+
+        @Override
+        public int getPriority() {
+            return Priority.LOW.ordinal();
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!isCancelled) {
+                    prefetch();
+                }
+            } catch (Exception e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to prefetch " + fetcher.getId(), e);
+                }
+            } finally {
+                MAIN_THREAD_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        batch.onPrefetchComplete(PrefetchRunnable.this);
+                    }
+                });
+            }
+        }
+
+        private void prefetch() throws Exception {
+            DiskCache diskCache = batch.diskCacheProvider.getDiskCache();
+            if (diskCache.get(key) != null) {
+                isCached = true;
+                return;
+            }
+            long startTime = LogTime.getLogTime();
+            try {
+                Y data = fetcher.loadData(Priority.LOW);
+                if (data == null || isCancelled) {
+                    return;
+                }
+                PrefetchWriter<Y> writer = new PrefetchWriter<Y>(encoder, data, startTime);
+                diskCache.put(key, writer);
+                isSuccess = writer.bytesWritten > 0;
+                bytesWritten = writer.bytesWritten;
+                if (isSuccess) {
+                    batch.diskCacheProvider.getDiskCacheStats().getSourceStats().recordPut(bytesWritten, startTime);
+                }
+            } finally {
+                fetcher.cleanup();
+            }
+        }
+    }
+
+    private static class PrefetchWriter<Y> implements DiskCache.StreamWriter, DiskCacheEntryMetadata {
+        private final Encoder<Y> encoder;
+        private final Y data;
+        private final long fetchStartTime;
+        private long fetchCostMillis;
+        long bytesWritten;
+
+        PrefetchWriter(Encoder<Y> encoder, Y data, long fetchStartTime) {
+            this.encoder = encoder;
+            this.data = data;
+            this.fetchStartTime = fetchStartTime;
+        }
+
+        @Override
+        public long getFetchCostMillis() {
+            return fetchCostMillis;
+        }
+
+        @Override
+        public long getTimeToLiveMillis() {
+            return 0;
+        }
+
+        @Override
+        public boolean write(File file) {
+            boolean success = false;
+            OutputStream os = null;
+            try {
+                os = new BufferedOutputStream(new FileOutputStream(file));
+                success = encoder.encode(data, os);
+            } catch (FileNotFoundException e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to find file to write to disk cache", e);
+                }
+            } finally {
+                if (os != null) {
+                    try {
+                        os.close();
+                    } catch (IOException e) {
+                        // Do nothing.
+                    }
+                }
+                // Streamed data is only fully fetched once it has been written.
+                fetchCostMillis = (long) LogTime.getElapsedMillis(fetchStartTime);
+            }
+            if (success) {
+                bytesWritten = file.length();
+            }
+            return success;
+        }
+
+        @Override
+        public boolean write(OutputStream os) {
+            try {
+                CountingOutputStream counting = new CountingOutputStream(os);
+                boolean success = encoder.encode(data, counting);
+                if (success) {
+                    bytesWritten = counting.getCount();
+                }
+                return success;
+            } finally {
+                fetchCostMillis = (long) LogTime.getElapsedMillis(fetchStartTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.bumptech.glide.load.engine;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.engine.executor.Prioritized;
+
+/**
+ * Decodes a variant of a resource from the result disk cache on the disk cache thread so that it can be shown while
+ * the exact resource is loaded, and passes it back to the {@link Engine} on the main thread.
+ *
+ * <p>
+ *     Unlike an {@link EngineRunnable}, a preview never falls back to the source data, if the variant is no longer in
+ *     the disk cache there's simply no preview.
+ * </p>
+ */
+class PreviewJob implements Runnable, Prioritized {
+    private static final String TAG = "PreviewJob";
+    private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final EngineKey key;
+    private final DecodeJob<?, ?, ?> decodeJob;
+    private final Priority priority;
+    private final boolean isMemoryCacheable;
+    private final Engine.PreviewCallback cb;
+    private final PreviewJobListener listener;
+    // Set on the main thread, read on the disk cache thread to skip decoding.
+    private volatile boolean isCancelled;
+
+    interface PreviewJobListener {
+        /**
+         * Called on the main thread with the decoded variant, or null if it couldn't be decoded.
+         */
+        void onPreviewJobComplete(PreviewJob job, Resource<?> resource);
+    }
+
+    PreviewJob(EngineKey key, DecodeJob<?, ?, ?> decodeJob, Priority priority, boolean isMemoryCacheable,
+            Engine.PreviewCallback cb, PreviewJobListener listener) {
+        this.key = key;
+        this.decodeJob = decodeJob;
+        this.priority = priority;
+        this.isMemoryCacheable = isMemoryCacheable;
+        this.cb = cb;
+        this.listener = listener;
+    }
+
+    EngineKey getKey() {
+        return key;
+    }
+
+    Engine.PreviewCallback getCallback() {
+        return cb;
+    }
+
+    boolean isMemoryCacheable() {
+        return isMemoryCacheable;
+    }
+
+    boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Stops the preview from being passed to the callback. Must be called on the main thread.
+     *
+     * <p>
+     *     The decode job isn't cancelled, because that would cancel the fetcher it shares with the job loading the
+     *     exact resource for every request waiting on it. A preview only reads from the disk cache, so there's nothing
+     *     to interrupt.
+     * </p>
+     */
+    void cancel() {
+        isCancelled = true;
+    }
+
+    @Override
+    public void run() {
+        if (isCancelled) {
+            // Nobody is waiting for the preview any more, and a null result would mean the variant wasn't on disk.
+            return;
+        }
+        Resource<?> resource = null;
+        try {
+            resource = decodeJob.decodeResultFromCache();
+        } catch (Exception e) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Exception decoding preview from cache: " + e);
+            }
+        }
+        postResult(resource);
+    }
+
+    private void postResult(final Resource<?> result) {
+        MAIN_THREAD_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onPreviewJobComplete(PreviewJob.this, result);
+            }
+        });
+    }
+
+    @Override
+    public int getPriority() {
+        return priority.ordinal();
+    }
+}
@@ -0,0 +1,228 @@
+package com.bumptech.glide.load.engine;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskCacheAdapter;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapper;
+import com.bumptech.glide.load.resource.gifbitmap.GifBitmapWrapperResource;
+import com.bumptech.glide.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A disk cache tier that stores the decoded pixels of small transformed {@link Bitmap}s so that cache hits are copied
+ * straight into a pooled {@link Bitmap} rather than decoded, used by {@link DiskCacheStrategy#RAW_RESULT}.
+ *
+ * <p>
+ *     Each entry is a small header with the kind of resource, the {@link Bitmap.Config}, the dimensions and the row
+ *     stride followed by the pixels exactly as {@link Bitmap#copyPixelsToBuffer(java.nio.Buffer)} writes them. Entries
+ *     are written and read through memory mapped files. Raw pixels are several times larger than compressed images so
+ *     only {@link Bitmap}s up to a maximum byte size are stored and the tier has its own {@link DiskCache} and byte
+ *     budget, separate from the main disk cache.
+ * </p>
+ */
+public class RawPixelCache {
+    private static final String TAG = "RawPixelCache";
+    /** 256kb, a 256x256 ARGB_8888 thumbnail. */
+    public static final int DEFAULT_MAX_ENTRY_BYTES = 256 * 1024;
+
+    // "GRAW".
+    private static final int MAGIC = 0x47524157;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int KIND_BITMAP = 0;
+    private static final int KIND_GIF_BITMAP_WRAPPER = 1;
+    // Stable codes so the files don't depend on the order of Bitmap.Config's constants.
+    private static final Bitmap.Config[] CONFIGS = new Bitmap.Config[] {
+        Bitmap.Config.ARGB_8888,
+        Bitmap.Config.RGB_565,
+        Bitmap.Config.ALPHA_8,
+    };
+
+    private final DiskCache.Factory diskCacheFactory;
+    private final BitmapPool bitmapPool;
+    private final int maxEntryBytes;
+    private volatile DiskCache diskCache;
+
+    /**
+     * @param diskCacheFactory Builds the disk cache, with its own directory and size, entries are written to. Only
+     *                         called the first time the tier is used.
+     * @param bitmapPool The pool cache hits are copied into.
+     * @param maxEntryBytes The largest {@link Bitmap}, in bytes, to store.
+     */
+    public RawPixelCache(DiskCache.Factory diskCacheFactory, BitmapPool bitmapPool, int maxEntryBytes) {
+        this.diskCacheFactory = diskCacheFactory;
+        this.bitmapPool = bitmapPool;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    private DiskCache getDiskCache() {
+        if (diskCache == null) {
+            synchronized (this) {
+                if (diskCache == null) {
+                    diskCache = diskCacheFactory.build();
+                }
+                if (diskCache == null) {
+                    diskCache = new DiskCacheAdapter();
+                }
+            }
+        }
+        return diskCache;
+    }
+
+    /**
+     * Removes every entry from this tier.
+     */
+    public void clear() {
+        getDiskCache().clear();
+    }
+
+    /**
+     * Returns the resource stored for the given key, or null if there isn't one or it can't be read.
+     */
+    @SuppressWarnings("unchecked")
+    <T> Resource<T> get(Key key) {
+        File file = getDiskCache().get(key);
+        if (file == null) {
+            return null;
+        }
+
+        Resource<?> result = null;
+        try {
+            result = read(file);
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Failed to read raw pixels", e);
+            }
+        }
+        if (result == null) {
+            getDiskCache().delete(key);
+        }
+        // The kind recorded in the entry matches the resource type of every load with the same key.
+        return (Resource<T>) result;
+    }
+
+    /**
+     * Stores the pixels of the given resource if it's a small enough {@link Bitmap} or a {@link GifBitmapWrapper}
+     * containing one, otherwise does nothing.
+     */
+    <T> void put(Key key, Resource<T> resource) {
+        final Object value = resource.get();
+        final int kind;
+        final Bitmap bitmap;
+        if (value instanceof Bitmap) {
+            kind = KIND_BITMAP;
+            bitmap = (Bitmap) value;
+        } else if (value instanceof GifBitmapWrapper && ((GifBitmapWrapper) value).getBitmapResource() != null) {
+            kind = KIND_GIF_BITMAP_WRAPPER;
+            bitmap = ((GifBitmapWrapper) value).getBitmapResource().get();
+        } else {
+            return;
+        }
+        final int configCode = getConfigCode(bitmap.getConfig());
+        if (configCode == -1 || Util.getBitmapByteSize(bitmap) > maxEntryBytes) {
+            return;
+        }
+
+        getDiskCache().put(key, new DiskCache.Writer() {
+            @Override
+            public boolean write(File file) {
+                try {
+                    RawPixelCache.write(file, kind, configCode, bitmap);
+                    return true;
+                } catch (IOException e) {
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Failed to write raw pixels", e);
+                    }
+                    return false;
+                }
+            }
+        });
+    }
+
+    private static void write(File file, int kind, int configCode, Bitmap bitmap) throws IOException {
+        int byteCount = bitmap.getRowBytes() * bitmap.getHeight();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + byteCount);
+            buffer.putInt(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.put((byte) kind);
+            buffer.put((byte) configCode);
+            buffer.put((byte) (bitmap.hasAlpha() ? 1 : 0));
+            buffer.putInt(bitmap.getWidth());
+            buffer.putInt(bitmap.getHeight());
+            buffer.putInt(bitmap.getRowBytes());
+            bitmap.copyPixelsToBuffer(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private Resource<?> read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                return null;
+            }
+            int kind = buffer.get();
+            int configCode = buffer.get();
+            boolean hasAlpha = buffer.get() != 0;
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int rowBytes = buffer.getInt();
+            if ((kind != KIND_BITMAP && kind != KIND_GIF_BITMAP_WRAPPER) || configCode < 0
+                    || configCode >= CONFIGS.length || width <= 0 || height <= 0
+                    || buffer.remaining() != (long) rowBytes * height) {
+                return null;
+            }
+
+            Bitmap.Config config = CONFIGS[configCode];
+            // Every pixel is overwritten, so a dirty Bitmap is fine.
+            Bitmap bitmap = bitmapPool.getDirty(width, height, config);
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(width, height, config);
+            }
+            if (bitmap.getRowBytes() != rowBytes) {
+                if (!bitmapPool.put(bitmap)) {
+                    bitmap.recycle();
+                }
+                return null;
+            }
+            bitmap.copyPixelsFromBuffer(buffer);
+            bitmap.setHasAlpha(hasAlpha);
+
+            BitmapResource bitmapResource = new BitmapResource(bitmap, bitmapPool);
+            if (kind == KIND_GIF_BITMAP_WRAPPER) {
+                return new GifBitmapWrapperResource(new GifBitmapWrapper(bitmapResource, null));
+            }
+            return bitmapResource;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int getConfigCode(Bitmap.Config config) {
+        for (int i = 0; i < CONFIGS.length; i++) {
+            if (CONFIGS[i] == config) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
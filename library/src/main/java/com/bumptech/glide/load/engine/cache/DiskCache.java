@@ -3,6 +3,7 @@ package com.bumptech.glide.load.engine.cache;
 import com.bumptech.glide.load.Key;
 
 import java.io.File;
+import java.io.OutputStream;
 
 /**
  * An interface for writing to and reading from a disk cache.
@@ -37,6 +38,20 @@ public interface DiskCache {
         boolean write(File file);
     }
 
+    /**
+     * A {@link Writer} that can also write its data to a stream rather than to a file, so that caches that don't
+     * store each entry in a file of its own, like {@link PackedDiskCache}, don't need a temporary file to write to.
+     */
+    interface StreamWriter extends Writer {
+        /**
+         * Writes data to the stream and returns true if the write was successful and should be committed, and false
+         * if the write should be aborted. The stream is owned by the cache and must not be closed.
+         *
+         * @param os The stream the Writer should write to.
+         */
+        boolean write(OutputStream os);
+    }
+
     /**
      * Get the cache for the value at the given key.
      *
@@ -0,0 +1,24 @@
+package com.bumptech.glide.load.engine.cache;
+
+/**
+ * Optionally implemented by {@link DiskCache.Writer}s that know how expensive the data they write was to obtain or
+ * how long it stays valid.
+ *
+ * <p>
+ *     Disk caches that support it, like {@link DiskLruCacheWrapper} with a
+ *     {@link com.bumptech.glide.disklrucache.CostAwareEvictionPolicy}, use this information to decide what to evict.
+ *     Other disk caches ignore it.
+ * </p>
+ */
+public interface DiskCacheEntryMetadata {
+
+    /**
+     * Returns how long it took in milliseconds to fetch the data being written, or 0 if unknown.
+     */
+    long getFetchCostMillis();
+
+    /**
+     * Returns how long in milliseconds the written data stays valid, or 0 if it doesn't expire.
+     */
+    long getTimeToLiveMillis();
+}
@@ -0,0 +1,297 @@
+package com.bumptech.glide.load.engine.cache;
+
+import com.bumptech.glide.util.LogTime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters describing how well the disk cache is working, split by transformed result entries and source entries.
+ *
+ * <p>
+ *     Recording is a handful of atomic increments per disk cache operation so the stats are always collected. Counts
+ *     are cumulative since Glide was created or {@link #reset()} was last called. Eviction, journal and open time
+ *     counters are only available when the disk cache is, or wraps, a {@link DiskLruCacheWrapper}, otherwise they're
+ *     always 0.
+ * </p>
+ *
+ * @see com.bumptech.glide.Glide#getDiskCacheStats()
+ */
+public final class DiskCacheStats {
+    private final KeyStats resultStats = new KeyStats();
+    private final KeyStats sourceStats = new KeyStats();
+    private volatile DiskLruCacheWrapper storage;
+
+    /**
+     * Returns the stats for entries containing transformed resources, see
+     * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#RESULT}.
+     */
+    public KeyStats getResultStats() {
+        return resultStats;
+    }
+
+    /**
+     * Returns the stats for entries containing unmodified source data, see
+     * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#SOURCE}.
+     */
+    public KeyStats getSourceStats() {
+        return sourceStats;
+    }
+
+    /**
+     * Sets the cache that eviction, journal and open time counters are read from.
+     */
+    public void setStorage(DiskLruCacheWrapper storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the max size.
+     */
+    public long getEvictionCount() {
+        DiskLruCacheWrapper storage = this.storage;
+        return storage == null ? 0 : storage.getEvictionCount();
+    }
+
+    /**
+     * Returns the number of times the disk cache journal has been compacted.
+     */
+    public long getJournalRebuildCount() {
+        DiskLruCacheWrapper storage = this.storage;
+        return storage == null ? 0 : storage.getJournalRebuildCount();
+    }
+
+    /**
+     * Returns the total time spent compacting the disk cache journal in milliseconds.
+     */
+    public long getJournalRebuildTimeMillis() {
+        DiskLruCacheWrapper storage = this.storage;
+        return storage == null ? 0 : storage.getJournalRebuildTimeMillis();
+    }
+
+    /**
+     * Returns how long opening the disk cache, including replaying its journal, took in milliseconds or -1 if it
+     * hasn't been opened yet.
+     */
+    public long getOpenTimeMillis() {
+        DiskLruCacheWrapper storage = this.storage;
+        return storage == null ? -1 : storage.getOpenTimeMillis();
+    }
+
+    /**
+     * Resets the hit, miss and put counters. Eviction, journal and open time counters belong to the cache and are not
+     * reset.
+     */
+    public void reset() {
+        resultStats.reset();
+        sourceStats.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "DiskCacheStats{"
+                + "result=" + resultStats
+                + ", source=" + sourceStats
+                + ", evictions=" + getEvictionCount()
+                + ", journalRebuilds=" + getJournalRebuildCount()
+                + ", journalRebuildTimeMillis=" + getJournalRebuildTimeMillis()
+                + ", openTimeMillis=" + getOpenTimeMillis()
+                + '}';
+    }
+
+    /**
+     * Counters for one kind of disk cache entry.
+     */
+    public static final class KeyStats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong puts = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final LatencyHistogram readLatency = new LatencyHistogram();
+        private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+        KeyStats() {
+            // Only created by DiskCacheStats.
+        }
+
+        /**
+         * Records a lookup that found an entry of the given size.
+         *
+         * @param startTime The {@link LogTime} the lookup started at.
+         */
+        public void recordHit(long bytes, long startTime) {
+            hits.incrementAndGet();
+            bytesRead.addAndGet(bytes);
+            readLatency.record(LogTime.getElapsedMillis(startTime));
+        }
+
+        /**
+         * Records a lookup that didn't find an entry.
+         *
+         * @param startTime The {@link LogTime} the lookup started at.
+         */
+        public void recordMiss(long startTime) {
+            misses.incrementAndGet();
+            readLatency.record(LogTime.getElapsedMillis(startTime));
+        }
+
+        /**
+         * Records a write of the given number of bytes.
+         *
+         * @param startTime The {@link LogTime} the write started at, or 0 if the time spent writing can't be separated
+         *                  from other work and shouldn't be recorded.
+         */
+        public void recordPut(long bytes, long startTime) {
+            puts.incrementAndGet();
+            bytesWritten.addAndGet(bytes);
+            if (startTime != 0) {
+                writeLatency.record(LogTime.getElapsedMillis(startTime));
+            }
+        }
+
+        public long getHitCount() {
+            return hits.get();
+        }
+
+        public long getMissCount() {
+            return misses.get();
+        }
+
+        /**
+         * Returns the fraction of lookups that found an entry, or 0 if there haven't been any lookups.
+         */
+        public double getHitRate() {
+            long hitCount = hits.get();
+            long total = hitCount + misses.get();
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+
+        public long getPutCount() {
+            return puts.get();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        /**
+         * Returns the time taken by lookups, both hits and misses.
+         */
+        public LatencyHistogram getReadLatency() {
+            return readLatency;
+        }
+
+        /**
+         * Returns the time taken by writes, including encoding the data being written.
+         */
+        public LatencyHistogram getWriteLatency() {
+            return writeLatency;
+        }
+
+        void reset() {
+            hits.set(0);
+            misses.set(0);
+            puts.set(0);
+            bytesRead.set(0);
+            bytesWritten.set(0);
+            readLatency.reset();
+            writeLatency.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "{hits=" + getHitCount()
+                    + ", misses=" + getMissCount()
+                    + ", puts=" + getPutCount()
+                    + ", bytesRead=" + getBytesRead()
+                    + ", bytesWritten=" + getBytesWritten()
+                    + ", readLatency=" + readLatency
+                    + ", writeLatency=" + writeLatency
+                    + '}';
+        }
+    }
+
+    /**
+     * A histogram of latencies with power of two millisecond buckets: [0, 1), [1, 2), [2, 4) ... [512, 1024) and
+     * [1024, infinity).
+     */
+    public static final class LatencyHistogram {
+        public static final int BUCKET_COUNT = 12;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+        LatencyHistogram() {
+            // Only created by DiskCacheStats.
+        }
+
+        void record(double millis) {
+            int bucket = 0;
+            long upperBound = 1;
+            while (bucket < BUCKET_COUNT - 1 && millis >= upperBound) {
+                bucket++;
+                upperBound <<= 1;
+            }
+            counts.incrementAndGet(bucket);
+        }
+
+        /**
+         * Returns the exclusive upper bound of the given bucket in milliseconds, or {@link Long#MAX_VALUE} for the
+         * last bucket.
+         */
+        public static long getBucketUpperBoundMillis(int bucket) {
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        public long getCount(int bucket) {
+            return counts.get(bucket);
+        }
+
+        public long getTotalCount() {
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * Returns the upper bound of the bucket containing the given percentile, between 0 and 100, or 0 if nothing
+         * has been recorded.
+         */
+        public long getPercentileUpperBoundMillis(double percentile) {
+            long total = getTotalCount();
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return getBucketUpperBoundMillis(i);
+                }
+            }
+            return getBucketUpperBoundMillis(BUCKET_COUNT - 1);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + getTotalCount()
+                    + ", p50<" + getPercentileUpperBoundMillis(50)
+                    + "ms, p90<" + getPercentileUpperBoundMillis(90)
+                    + "ms, p99<" + getPercentileUpperBoundMillis(99)
+                    + "ms}";
+        }
+    }
+}
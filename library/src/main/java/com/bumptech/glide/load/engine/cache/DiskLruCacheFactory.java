@@ -1,5 +1,7 @@
 package com.bumptech.glide.load.engine.cache;
 
+import com.bumptech.glide.disklrucache.EvictionPolicy;
+
 import java.io.File;
 
 /**
@@ -13,6 +15,7 @@ public class DiskLruCacheFactory implements DiskCache.Factory {
 
     private final int diskCacheSize;
     private final CacheDirectoryGetter cacheDirectoryGetter;
+    private final EvictionPolicy evictionPolicy;
 
     /**
      * Interface called out of UI thread to get the cache folder.
@@ -47,8 +50,21 @@ public class DiskLruCacheFactory implements DiskCache.Factory {
      * @param diskCacheSize        Desired max bytes size for the LRU disk cache.
      */
     public DiskLruCacheFactory(CacheDirectoryGetter cacheDirectoryGetter, int diskCacheSize) {
+        this(cacheDirectoryGetter, diskCacheSize, EvictionPolicy.LRU);
+    }
+
+    /**
+     * @param cacheDirectoryGetter Interface called out of UI thread to get the cache folder.
+     * @param diskCacheSize        Desired max bytes size for the disk cache.
+     * @param evictionPolicy       Decides which entry to evict when the cache is full, for example a
+     *                             {@link com.bumptech.glide.disklrucache.CostAwareEvictionPolicy} to keep originals
+     *                             that are expensive to download over one off prefetched images.
+     */
+    public DiskLruCacheFactory(CacheDirectoryGetter cacheDirectoryGetter, int diskCacheSize,
+            EvictionPolicy evictionPolicy) {
         this.diskCacheSize = diskCacheSize;
         this.cacheDirectoryGetter = cacheDirectoryGetter;
+        this.evictionPolicy = evictionPolicy;
     }
 
     @Override
@@ -63,6 +79,6 @@ public class DiskLruCacheFactory implements DiskCache.Factory {
             return null;
         }
 
-        return DiskLruCacheWrapper.get(cacheDir, diskCacheSize);
+        return DiskLruCacheWrapper.get(cacheDir, diskCacheSize, evictionPolicy);
     }
 }
@@ -7,10 +7,17 @@ package com.bumptech.glide.load.engine.cache;
 import android.util.Log;
 
 import com.bumptech.glide.disklrucache.DiskLruCache;
+import com.bumptech.glide.disklrucache.EvictionPolicy;
 import com.bumptech.glide.load.Key;
+import com.bumptech.glide.util.LogTime;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The default DiskCache implementation. There must be no more than one active instance for a given
@@ -23,13 +30,20 @@ public class DiskLruCacheWrapper implements DiskCache {
 
     private static final int APP_VERSION = 1;
     private static final int VALUE_COUNT = 1;
+    // Long enough to cover a typical journal replay, short enough that a slow disk degrades to a source load.
+    private static final long OPEN_TIMEOUT_MS = 1000;
+    private static final int MAX_INDEXED_ORIGINALS = 1000;
     private static DiskLruCacheWrapper wrapper = null;
 
     private final DiskCacheWriteLocker writeLocker = new DiskCacheWriteLocker();
     private final SafeKeyGenerator safeKeyGenerator;
     private final File directory;
     private final int maxSize;
-    private DiskLruCache diskLruCache;
+    private final EvictionPolicy evictionPolicy;
+    // Only holds entries written since the cache was created, the journal doesn't record original keys.
+    private final VariantIndex variantIndex = new VariantIndex(MAX_INDEXED_ORIGINALS);
+    private FutureTask<DiskLruCache> openTask;
+    private volatile long openTimeMillis = -1;
 
     /**
      * Get a DiskCache in the given directory and size. If a disk cache has alread been created with
@@ -41,28 +55,173 @@ public class DiskLruCacheWrapper implements DiskCache {
      * @return The new disk cache with the given arguments, or the current cache if one already exists
      */
     public static synchronized DiskCache get(File directory, int maxSize) {
+        return get(directory, maxSize, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Get a DiskCache in the given directory and size that evicts using the given policy. If a disk cache has
+     * already been created with different arguments, it will be returned instead and the new arguments will be
+     * ignored.
+     *
+     * @param directory The directory for the disk cache
+     * @param maxSize The max size for the disk cache
+     * @param evictionPolicy The policy used to choose which entry to evict when the cache is full
+     * @return The new disk cache with the given arguments, or the current cache if one already exists
+     */
+    public static synchronized DiskCache get(File directory, int maxSize, EvictionPolicy evictionPolicy) {
         // TODO calling twice with different arguments makes it return the cache for the same directory, it's public!
         if (wrapper == null) {
-            wrapper = new DiskLruCacheWrapper(directory, maxSize);
+            wrapper = new DiskLruCacheWrapper(directory, maxSize, evictionPolicy);
         }
         return wrapper;
     }
 
     protected DiskLruCacheWrapper(File directory, int maxSize) {
+        this(directory, maxSize, EvictionPolicy.LRU);
+    }
+
+    protected DiskLruCacheWrapper(File directory, int maxSize, EvictionPolicy evictionPolicy) {
         this.directory = directory;
         this.maxSize = maxSize;
+        this.evictionPolicy = evictionPolicy;
         this.safeKeyGenerator = new SafeKeyGenerator();
     }
 
-    private synchronized DiskLruCache getDiskCache() throws IOException {
-        if (diskLruCache == null) {
-            diskLruCache = DiskLruCache.open(directory, APP_VERSION, VALUE_COUNT, maxSize);
+    /**
+     * Opens the underlying {@link DiskLruCache}, replaying its journal, if it hasn't been opened already.
+     *
+     * <p>
+     *     This method blocks and should be called on a background thread, typically while Glide is being
+     *     initialized, so that the first load doesn't pay for opening the cache.
+     * </p>
+     */
+    public void warmUp() {
+        try {
+            openDiskCache(Long.MAX_VALUE);
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to warm up disk cache", e);
+            }
+        }
+    }
+
+    private DiskLruCache getDiskCache() throws IOException {
+        return openDiskCache(OPEN_TIMEOUT_MS);
+    }
+
+    /**
+     * Returns the opened cache, or null if another thread is still opening the cache after the given timeout. The
+     * first caller opens the cache itself, others wait for it.
+     */
+    private DiskLruCache openDiskCache(long timeoutMs) throws IOException {
+        final FutureTask<DiskLruCache> task;
+        boolean isOwner = false;
+        synchronized (this) {
+            if (openTask == null) {
+                openTask = new FutureTask<DiskLruCache>(new Callable<DiskLruCache>() {
+                    @Override
+                    public DiskLruCache call() throws Exception {
+                        long startTime = LogTime.getLogTime();
+                        DiskLruCache result =
+                                DiskLruCache.open(directory, APP_VERSION, VALUE_COUNT, maxSize, evictionPolicy);
+                        openTimeMillis = (long) LogTime.getElapsedMillis(startTime);
+                        return result;
+                    }
+                });
+                isOwner = true;
+            }
+            task = openTask;
+        }
+
+        if (isOwner) {
+            task.run();
+        }
+
+        try {
+            return task.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Timed out waiting for disk cache to open");
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // Allow the next caller to try again.
+            synchronized (this) {
+                if (openTask == task) {
+                    openTask = null;
+                }
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Unable to open disk cache", cause);
         }
-        return diskLruCache;
     }
 
     private synchronized void resetDiskCache() {
-        diskLruCache = null;
+        openTask = null;
+    }
+
+    // Returns the cache if it has been opened successfully, without opening it or waiting for it to open.
+    private DiskLruCache peekDiskCache() {
+        final FutureTask<DiskLruCache> task;
+        synchronized (this) {
+            task = openTask;
+        }
+        if (task == null || !task.isDone()) {
+            return null;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns how long opening the cache took in milliseconds, or -1 if it hasn't been opened.
+     */
+    public long getOpenTimeMillis() {
+        return openTimeMillis;
+    }
+
+    /**
+     * Returns the index of the entries written with {@link VariantKey}s, so other variants of the data being loaded
+     * can be found.
+     */
+    public VariantIndex getVariantIndex() {
+        return variantIndex;
+    }
+
+    /**
+     * Returns the number of entries evicted since the cache was opened.
+     */
+    public long getEvictionCount() {
+        DiskLruCache diskLruCache = peekDiskCache();
+        return diskLruCache == null ? 0 : diskLruCache.getEvictionCount();
+    }
+
+    /**
+     * Returns the number of times the journal has been rebuilt since the cache was opened.
+     */
+    public long getJournalRebuildCount() {
+        DiskLruCache diskLruCache = peekDiskCache();
+        return diskLruCache == null ? 0 : diskLruCache.getJournalRebuildCount();
+    }
+
+    /**
+     * Returns the total time spent rebuilding the journal since the cache was opened in milliseconds.
+     */
+    public long getJournalRebuildTimeMillis() {
+        DiskLruCache diskLruCache = peekDiskCache();
+        return diskLruCache == null ? 0 : diskLruCache.getJournalRebuildMillis();
     }
 
     @Override
@@ -73,7 +232,9 @@ public class DiskLruCacheWrapper implements DiskCache {
             //It is possible that the there will be a put in between these two gets. If so that shouldn't be a problem
             //because we will always put the same value at the same key so our input streams will still represent
             //the same data
-            final DiskLruCache.Value value = getDiskCache().get(safeKey);
+            final DiskLruCache diskLruCache = getDiskCache();
+            // A null cache means it's still being opened, treat the lookup as a miss and load from source.
+            final DiskLruCache.Value value = diskLruCache != null ? diskLruCache.get(safeKey) : null;
             if (value != null) {
                 result = value.getFile(0);
             }
@@ -90,13 +251,20 @@ public class DiskLruCacheWrapper implements DiskCache {
         String safeKey = safeKeyGenerator.getSafeKey(key);
         writeLocker.acquire(key);
         try {
-            DiskLruCache.Editor editor = getDiskCache().edit(safeKey);
+            final DiskLruCache diskLruCache = getDiskCache();
             // Editor will be null if there are two concurrent puts. In the worst case we will just silently fail.
+            DiskLruCache.Editor editor = diskLruCache != null ? diskLruCache.edit(safeKey) : null;
             if (editor != null) {
                 try {
                     File file = editor.getFile(0);
                     if (writer.write(file)) {
+                        if (writer instanceof DiskCacheEntryMetadata) {
+                            setMetadata(editor, (DiskCacheEntryMetadata) writer);
+                        }
                         editor.commit();
+                        if (key instanceof VariantKey) {
+                            variantIndex.add((VariantKey) key);
+                        }
                     }
                 } finally {
                     editor.abortUnlessCommitted();
@@ -111,11 +279,23 @@ public class DiskLruCacheWrapper implements DiskCache {
         }
     }
 
+    private static void setMetadata(DiskLruCache.Editor editor, DiskCacheEntryMetadata metadata) {
+        editor.setFetchCost(metadata.getFetchCostMillis());
+        long timeToLiveMillis = metadata.getTimeToLiveMillis();
+        editor.setExpiresAt(timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : 0);
+    }
+
     @Override
     public void delete(Key key) {
+        if (key instanceof VariantKey) {
+            variantIndex.remove((VariantKey) key);
+        }
         String safeKey = safeKeyGenerator.getSafeKey(key);
         try {
-            getDiskCache().remove(safeKey);
+            final DiskLruCache diskLruCache = getDiskCache();
+            if (diskLruCache != null) {
+                diskLruCache.remove(safeKey);
+            }
         } catch (IOException e) {
             if (Log.isLoggable(TAG, Log.WARN)) {
                 Log.w(TAG, "Unable to delete from disk cache", e);
@@ -125,9 +305,13 @@ public class DiskLruCacheWrapper implements DiskCache {
 
     @Override
     public synchronized void clear() {
+        variantIndex.clear();
         try {
-            getDiskCache().delete();
-            resetDiskCache();
+            final DiskLruCache diskLruCache = openDiskCache(Long.MAX_VALUE);
+            if (diskLruCache != null) {
+                diskLruCache.delete();
+                resetDiskCache();
+            }
         }  catch (IOException e) {
             if (Log.isLoggable(TAG, Log.WARN)) {
                 Log.w(TAG, "Unable to clear disk cache", e);
@@ -0,0 +1,894 @@
+package com.bumptech.glide.load.engine.cache;
+
+import android.util.Log;
+
+import com.bumptech.glide.load.Key;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DiskCache} that appends small entries to a handful of large segment files and keeps an index of the
+ * segment, offset and length of each entry, rather than storing every entry in its own file like
+ * {@link DiskLruCacheWrapper}. Cache hits don't need a file per entry and writes don't create and rename a file per
+ * entry, which matters for thumbnails that are only a few kilobytes each.
+ *
+ * <p>
+ *     Entries larger than the max entry size are written to a second, file per entry, {@link DiskCache} instead.
+ * </p>
+ *
+ * <p>
+ *     Packed entries are read with {@link #openStream(com.bumptech.glide.load.Key)}, which reads the entry's range of
+ *     bytes straight from its segment file. Packed entries don't have a file of their own, so
+ *     {@link #get(com.bumptech.glide.load.Key)} moves a packed entry to the large entry cache before returning it,
+ *     which makes reading small entries as files, for example with {@code downloadOnly()}, more expensive than
+ *     reading them as streams.
+ * </p>
+ *
+ * <p>
+ *     Removed and evicted entries leave dead space in their segment. Segments that are mostly dead are compacted on a
+ *     background thread by copying their live entries to the end of the current segment. There must be no more than
+ *     one active instance for a given directory at a time.
+ * </p>
+ */
+public class PackedDiskCache implements StreamingDiskCache {
+    private static final String TAG = "PackedDiskCache";
+
+    /** 64 KB, larger entries are written to the large entry cache. */
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 64 * 1024;
+    /** 4 MB per segment file. */
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    static final String INDEX_FILE = "index";
+    private static final String INDEX_FILE_TEMP = "index.tmp";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SCRATCH_PREFIX = "scratch-";
+    private static final String MAGIC = "glide.PackedDiskCache";
+    private static final String VERSION_1 = "1";
+    private static final String PUT = "PUT";
+    private static final String REMOVE = "REMOVE";
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    // Segments with less than this fraction of their bytes still in use are compacted.
+    private static final float COMPACTION_THRESHOLD = 0.5f;
+    private static final int INDEX_REBUILD_THRESHOLD = 2000;
+    private static final int INITIAL_ENTRY_BUFFER_SIZE = 8 * 1024;
+
+    private final SafeKeyGenerator safeKeyGenerator = new SafeKeyGenerator();
+    private final DiskCacheWriteLocker writeLocker = new DiskCacheWriteLocker();
+    private final File directory;
+    private final long maxSize;
+    private final int maxEntrySize;
+    private final int segmentSize;
+    private final DiskCache largeEntryCache;
+    private final ExecutorService compactionService =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    // All of the following are guarded by this.
+    private final LinkedHashMap<String, Extent> index = new LinkedHashMap<String, Extent>(0, 0.75f, true);
+    private final Map<Integer, Segment> segments = new HashMap<Integer, Segment>();
+    private Segment activeSegment;
+    private int nextSegmentId;
+    private BufferedWriter indexWriter;
+    private long size;
+    private int redundantOpCount;
+    private boolean isCompactionScheduled;
+
+    private final Runnable compactionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                compact();
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.WARN)) {
+                    Log.w(TAG, "Unable to compact disk cache", e);
+                }
+            }
+        }
+    };
+
+    /**
+     * Constructor for a cache using the default max entry and segment sizes.
+     *
+     * @param directory The directory for the segment files and the index, must be exclusive to this cache.
+     * @param maxSize The max number of bytes of packed entries to keep.
+     * @param largeEntryCache The cache to write entries larger than the max entry size to.
+     */
+    public PackedDiskCache(File directory, long maxSize, DiskCache largeEntryCache) {
+        this(directory, maxSize, DEFAULT_MAX_ENTRY_SIZE, DEFAULT_SEGMENT_SIZE, largeEntryCache);
+    }
+
+    public PackedDiskCache(File directory, long maxSize, int maxEntrySize, int segmentSize,
+            DiskCache largeEntryCache) {
+        if (maxEntrySize > segmentSize) {
+            throw new IllegalArgumentException("maxEntrySize must be <= segmentSize, maxEntrySize: " + maxEntrySize
+                    + ", segmentSize: " + segmentSize);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+        this.segmentSize = segmentSize;
+        this.largeEntryCache = largeEntryCache;
+    }
+
+    /**
+     * Returns a file holding the data at the given key, or null if there is no such entry.
+     *
+     * <p>
+     *     Packed entries don't have a file of their own, so they're copied to the large entry cache and removed from
+     *     this cache first. Callers that can read a stream should use {@link #openStream(Key)} instead.
+     * </p>
+     */
+    @Override
+    public File get(Key key) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        writeLocker.acquire(key);
+        try {
+            InputStream is = openPacked(safeKey);
+            if (is != null) {
+                try {
+                    largeEntryCache.put(key, new StreamCopyWriter(is));
+                } finally {
+                    is.close();
+                }
+                File file = largeEntryCache.get(key);
+                // Keep the packed entry if the large entry cache didn't take it.
+                if (file != null) {
+                    remove(safeKey);
+                }
+                return file;
+            }
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to get from disk cache", e);
+            }
+        } finally {
+            writeLocker.release(key);
+        }
+        return largeEntryCache.get(key);
+    }
+
+    @Override
+    public InputStream openStream(Key key) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        try {
+            InputStream is = openPacked(safeKey);
+            if (is != null) {
+                return is;
+            }
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to open stream from disk cache", e);
+            }
+        }
+        File file = largeEntryCache.get(key);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            // Evicted from the large entry cache since we looked it up.
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Key key, DiskCache.Writer writer) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        writeLocker.acquire(key);
+        try {
+            synchronized (this) {
+                openIfNeeded();
+            }
+            // Each thread re-uses a single scratch file so that writes don't create and rename a file per entry.
+            File scratch = new File(directory, SCRATCH_PREFIX + Thread.currentThread().getId());
+            if (writer instanceof DiskCache.StreamWriter) {
+                putFromStream(key, safeKey, (DiskCache.StreamWriter) writer, scratch);
+                return;
+            }
+            if (!writer.write(scratch)) {
+                return;
+            }
+            long length = scratch.length();
+            if (length > maxEntrySize) {
+                remove(safeKey);
+                largeEntryCache.put(key, new ScratchWriter(scratch, writer));
+            } else {
+                append(safeKey, scratch, (int) length);
+                largeEntryCache.delete(key);
+            }
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to put to disk cache", e);
+            }
+        } finally {
+            writeLocker.release(key);
+        }
+    }
+
+    @Override
+    public void delete(Key key) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        // Serialized with get() so that an entry being moved to the large entry cache isn't brought back.
+        writeLocker.acquire(key);
+        try {
+            remove(safeKey);
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to delete from disk cache", e);
+            }
+        } finally {
+            writeLocker.release(key);
+        }
+        largeEntryCache.delete(key);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            try {
+                close();
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (!file.delete() && Log.isLoggable(TAG, Log.WARN)) {
+                            Log.w(TAG, "Unable to delete " + file);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.WARN)) {
+                    Log.w(TAG, "Unable to clear disk cache", e);
+                }
+            }
+        }
+        largeEntryCache.clear();
+    }
+
+    /**
+     * Returns the number of bytes of packed entries currently in the cache, excluding dead space in segments and
+     * entries in the large entry cache.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns a stream of the packed entry with the given key, or null if there is no such packed entry.
+     *
+     * <p>
+     *     The segment file is opened while holding the lock, so it can't be compacted away between looking up the
+     *     entry and opening it. Once opened, the stream keeps reading the same bytes even if the segment is deleted.
+     * </p>
+     */
+    private synchronized InputStream openPacked(String safeKey) throws IOException {
+        openIfNeeded();
+        Extent extent = index.get(safeKey);
+        if (extent == null) {
+            return null;
+        }
+        RandomAccessFile file;
+        try {
+            file = new RandomAccessFile(extent.segmentFile, "r");
+        } catch (FileNotFoundException e) {
+            // The segment was deleted behind our back, the entry is gone for good.
+            remove(safeKey);
+            return null;
+        }
+        return new ExtentInputStream(file, extent.offset, extent.length);
+    }
+
+    private synchronized void remove(String safeKey) throws IOException {
+        openIfNeeded();
+        Extent removed = index.remove(safeKey);
+        if (removed != null) {
+            release(removed);
+            writeIndexLine(REMOVE + ' ' + safeKey);
+            indexWriter.flush();
+        }
+    }
+
+    // Entries that fit in a packed entry are buffered in memory and written to their segment once, only larger entries
+    // go through the scratch file, which is then moved to the large entry cache without copying.
+    private void putFromStream(Key key, String safeKey, DiskCache.StreamWriter writer, File scratch)
+            throws IOException {
+        EntryOutputStream os = new EntryOutputStream(scratch);
+        boolean success = false;
+        try {
+            success = writer.write(os);
+        } finally {
+            try {
+                os.close();
+            } catch (IOException e) {
+                success = false;
+            }
+        }
+        if (!success) {
+            return;
+        }
+        if (os.isSpilled()) {
+            remove(safeKey);
+            largeEntryCache.put(key, new ScratchWriter(scratch, writer));
+        } else {
+            append(safeKey, os.buffer, os.count);
+            largeEntryCache.delete(key);
+        }
+    }
+
+    private synchronized void append(String safeKey, File scratch, int length) throws IOException {
+        openIfNeeded();
+        Segment segment = getWritableSegment(length);
+        long offset = segment.length;
+        FileInputStream is = new FileInputStream(scratch);
+        try {
+            transfer(is.getChannel(), 0, segment.channel, offset, length);
+        } finally {
+            is.close();
+        }
+        addToIndex(safeKey, segment, offset, length);
+    }
+
+    private synchronized void append(String safeKey, byte[] data, int length) throws IOException {
+        openIfNeeded();
+        Segment segment = getWritableSegment(length);
+        long offset = segment.length;
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            segment.channel.write(buffer, offset + buffer.position());
+        }
+        addToIndex(safeKey, segment, offset, length);
+    }
+
+    private void addToIndex(String safeKey, Segment segment, long offset, int length) throws IOException {
+        segment.length += length;
+
+        Extent previous = index.put(safeKey, new Extent(safeKey, segment.id, segment.file, offset, length));
+        if (previous != null) {
+            release(previous);
+        }
+        segment.liveBytes += length;
+        size += length;
+        writeIndexLine(PUT + ' ' + safeKey + ' ' + segment.id + ' ' + offset + ' ' + length);
+        indexWriter.flush();
+
+        trimToSize();
+    }
+
+    private void trimToSize() throws IOException {
+        Iterator<Map.Entry<String, Extent>> iterator = index.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Extent> eldest = iterator.next();
+            iterator.remove();
+            release(eldest.getValue());
+            writeIndexLine(REMOVE + ' ' + eldest.getKey());
+        }
+        indexWriter.flush();
+    }
+
+    // Accounts for the bytes of an entry that is no longer in the index.
+    private void release(Extent extent) {
+        size -= extent.length;
+        redundantOpCount++;
+        Segment segment = segments.get(extent.segmentId);
+        if (segment == null) {
+            return;
+        }
+        segment.liveBytes -= extent.length;
+        if (segment != activeSegment && segment.liveBytes < segment.length * COMPACTION_THRESHOLD) {
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (!isCompactionScheduled) {
+            isCompactionScheduled = true;
+            compactionService.execute(compactionRunnable);
+        }
+    }
+
+    private Segment getWritableSegment(int length) throws IOException {
+        if (activeSegment == null || activeSegment.length + length > segmentSize) {
+            if (activeSegment != null) {
+                activeSegment.closeChannel();
+                if (activeSegment.liveBytes < activeSegment.length * COMPACTION_THRESHOLD) {
+                    scheduleCompaction();
+                }
+            }
+            int id = nextSegmentId++;
+            activeSegment = new Segment(id, new File(directory, SEGMENT_PREFIX + id));
+            activeSegment.openChannel();
+            segments.put(id, activeSegment);
+        }
+        return activeSegment;
+    }
+
+    /**
+     * Copies the live entries out of mostly empty segments into the active segment, deletes the old segments and
+     * rewrites the index if it has accumulated enough redundant lines.
+     */
+    private synchronized void compact() throws IOException {
+        isCompactionScheduled = false;
+        if (indexWriter == null) {
+            // Closed.
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        List<Segment> toCompact = new ArrayList<Segment>();
+        for (Segment segment : segments.values()) {
+            if (segment != activeSegment && segment.liveBytes < segment.length * COMPACTION_THRESHOLD) {
+                toCompact.add(segment);
+            }
+        }
+
+        for (Segment segment : toCompact) {
+            if (segment.liveBytes > 0) {
+                FileInputStream is = new FileInputStream(segment.file);
+                try {
+                    FileChannel source = is.getChannel();
+                    // Updating values through the entry set doesn't change the access order.
+                    for (Map.Entry<String, Extent> entry : index.entrySet()) {
+                        Extent extent = entry.getValue();
+                        if (extent.segmentId != segment.id) {
+                            continue;
+                        }
+                        Segment target = getWritableSegment(extent.length);
+                        long offset = target.length;
+                        transfer(source, extent.offset, target.channel, offset, extent.length);
+                        target.length += extent.length;
+                        target.liveBytes += extent.length;
+                        entry.setValue(new Extent(extent.safeKey, target.id, target.file, offset, extent.length));
+                        writeIndexLine(PUT + ' ' + extent.safeKey + ' ' + target.id + ' ' + offset + ' '
+                                + extent.length);
+                        redundantOpCount++;
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+            indexWriter.flush();
+            segments.remove(segment.id);
+            // Streams that are already open keep reading from the unlinked file. Entries are only resolved to a
+            // segment while holding the lock, so later reads find the entry at its new offset.
+            if (!segment.file.delete() && Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Unable to delete compacted segment " + segment.file);
+            }
+        }
+
+        if (redundantOpCount >= INDEX_REBUILD_THRESHOLD && redundantOpCount >= index.size()) {
+            rebuildIndex();
+        }
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Compacted " + toCompact.size() + " segments in " + (System.currentTimeMillis() - startTime)
+                    + "ms");
+        }
+    }
+
+    private void openIfNeeded() throws IOException {
+        if (indexWriter != null) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory: " + directory);
+        }
+
+        int maxSegmentId = -1;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SCRATCH_PREFIX)) {
+                    // Left over from a previous process, open() is always called before scratch files are written.
+                    file.delete();
+                } else if (name.startsWith(SEGMENT_PREFIX)) {
+                    try {
+                        int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+                        Segment segment = new Segment(id, file);
+                        segment.length = file.length();
+                        segments.put(id, segment);
+                        maxSegmentId = Math.max(maxSegmentId, id);
+                    } catch (NumberFormatException e) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+        nextSegmentId = maxSegmentId + 1;
+
+        File indexFile = new File(directory, INDEX_FILE);
+        if (indexFile.exists()) {
+            try {
+                readIndex(indexFile);
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.WARN)) {
+                    Log.w(TAG, "Index is corrupt, clearing cache", e);
+                }
+                index.clear();
+            }
+        }
+
+        // Drop segments without live entries, anything written to them after the last index line is lost anyway.
+        for (Iterator<Segment> iterator = segments.values().iterator(); iterator.hasNext();) {
+            Segment segment = iterator.next();
+            if (segment.liveBytes == 0) {
+                segment.file.delete();
+                iterator.remove();
+            }
+        }
+        rebuildIndex();
+        if (size > maxSize) {
+            trimToSize();
+        }
+    }
+
+    private void readIndex(File indexFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), US_ASCII));
+        try {
+            String magic = reader.readLine();
+            String version = reader.readLine();
+            if (!MAGIC.equals(magic) || !VERSION_1.equals(version)) {
+                throw new IOException("unexpected index header: [" + magic + ", " + version + "]");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readIndexLine(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (Extent extent : index.values()) {
+            segments.get(extent.segmentId).liveBytes += extent.length;
+            size += extent.length;
+        }
+    }
+
+    private void readIndexLine(String line) throws IOException {
+        String[] parts = line.split(" ");
+        if (parts.length == 2 && REMOVE.equals(parts[0])) {
+            index.remove(parts[1]);
+        } else if (parts.length == 5 && PUT.equals(parts[0])) {
+            final int segmentId;
+            final long offset;
+            final int length;
+            try {
+                segmentId = Integer.parseInt(parts[2]);
+                offset = Long.parseLong(parts[3]);
+                length = Integer.parseInt(parts[4]);
+            } catch (NumberFormatException e) {
+                throw new IOException("unexpected index line: " + line);
+            }
+            Segment segment = segments.get(segmentId);
+            if (segment != null && offset + length <= segment.length) {
+                index.put(parts[1], new Extent(parts[1], segmentId, segment.file, offset, length));
+            } else {
+                // The bytes never made it to disk, treat the put as if it never happened.
+                index.remove(parts[1]);
+            }
+        } else {
+            throw new IOException("unexpected index line: " + line);
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        if (indexWriter != null) {
+            indexWriter.close();
+        }
+        File indexFileTemp = new File(directory, INDEX_FILE_TEMP);
+        BufferedWriter writer =
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFileTemp), US_ASCII));
+        try {
+            writer.write(MAGIC);
+            writer.write('\n');
+            writer.write(VERSION_1);
+            writer.write('\n');
+            for (Extent extent : index.values()) {
+                writer.write(PUT + ' ' + extent.safeKey + ' ' + extent.segmentId + ' ' + extent.offset + ' '
+                        + extent.length + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+        File indexFile = new File(directory, INDEX_FILE);
+        if (!indexFileTemp.renameTo(indexFile)) {
+            throw new IOException("Unable to replace index file");
+        }
+        redundantOpCount = 0;
+        indexWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile, true), US_ASCII));
+    }
+
+    private void writeIndexLine(String line) throws IOException {
+        indexWriter.write(line);
+        indexWriter.write('\n');
+    }
+
+    private void close() throws IOException {
+        if (indexWriter != null) {
+            indexWriter.close();
+            indexWriter = null;
+        }
+        if (activeSegment != null) {
+            activeSegment.closeChannel();
+            activeSegment = null;
+        }
+        index.clear();
+        segments.clear();
+        size = 0;
+        redundantOpCount = 0;
+    }
+
+    private static void transfer(FileChannel source, long sourceOffset, FileChannel target, long targetOffset,
+            long length) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = source.transferTo(sourceOffset + transferred, length - transferred,
+                    target.position(targetOffset + transferred));
+            if (count <= 0) {
+                throw new IOException("Unexpected end of file, transferred " + transferred + " of " + length);
+            }
+            transferred += count;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final File file;
+        // Total bytes appended to this segment, including bytes of entries that have since been removed.
+        long length;
+        long liveBytes;
+        FileChannel channel;
+        private RandomAccessFile randomAccessFile;
+
+        Segment(int id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        void openChannel() throws IOException {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+        }
+
+        void closeChannel() throws IOException {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+                randomAccessFile = null;
+                channel = null;
+            }
+        }
+    }
+
+    // Holds an entry in memory while it fits in a packed entry and spills it to the scratch file once it doesn't.
+    private final class EntryOutputStream extends OutputStream {
+        private final File scratch;
+        byte[] buffer = new byte[Math.min(maxEntrySize, INITIAL_ENTRY_BUFFER_SIZE)];
+        int count;
+        private OutputStream spill;
+
+        EntryOutputStream(File scratch) {
+            this.scratch = scratch;
+        }
+
+        boolean isSpilled() {
+            return spill != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (spill != null) {
+                spill.write(b);
+            } else if (count < buffer.length) {
+                buffer[count++] = (byte) b;
+            } else {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (spill != null) {
+                spill.write(b, off, len);
+                return;
+            }
+            if (count + len > maxEntrySize) {
+                spill = new BufferedOutputStream(new FileOutputStream(scratch));
+                spill.write(buffer, 0, count);
+                spill.write(b, off, len);
+                buffer = null;
+                return;
+            }
+            if (count + len > buffer.length) {
+                byte[] larger = new byte[Math.min(maxEntrySize, Math.max(count + len, buffer.length * 2))];
+                System.arraycopy(buffer, 0, larger, 0, count);
+                buffer = larger;
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+    }
+
+    // Moves an already written scratch file into the large entry cache, passing on the original writer's metadata.
+    private static final class ScratchWriter implements DiskCache.Writer, DiskCacheEntryMetadata {
+        private final File scratch;
+        private final DiskCacheEntryMetadata metadata;
+
+        ScratchWriter(File scratch, DiskCache.Writer writer) {
+            this.scratch = scratch;
+            this.metadata = writer instanceof DiskCacheEntryMetadata ? (DiskCacheEntryMetadata) writer : null;
+        }
+
+        @Override
+        public boolean write(File file) {
+            return scratch.renameTo(file);
+        }
+
+        @Override
+        public long getFetchCostMillis() {
+            return metadata != null ? metadata.getFetchCostMillis() : 0;
+        }
+
+        @Override
+        public long getTimeToLiveMillis() {
+            return metadata != null ? metadata.getTimeToLiveMillis() : 0;
+        }
+    }
+
+    // The location of a single packed entry, a range of bytes in a segment file.
+    private static final class Extent {
+        final String safeKey;
+        final int segmentId;
+        final File segmentFile;
+        final long offset;
+        final int length;
+
+        Extent(String safeKey, int segmentId, File segmentFile, long offset, int length) {
+            this.safeKey = safeKey;
+            this.segmentId = segmentId;
+            this.segmentFile = segmentFile;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // Copies a stream of a packed entry into a file in the large entry cache.
+    private static final class StreamCopyWriter implements DiskCache.Writer {
+        private final InputStream is;
+
+        StreamCopyWriter(InputStream is) {
+            this.is = is;
+        }
+
+        @Override
+        public boolean write(File file) {
+            OutputStream os = null;
+            try {
+                os = new FileOutputStream(file);
+                byte[] buffer = new byte[8 * 1024];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, read);
+                }
+                return true;
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to move packed entry to the large entry cache", e);
+                }
+                return false;
+            } finally {
+                if (os != null) {
+                    try {
+                        os.close();
+                    } catch (IOException e) {
+                        // Do nothing.
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class ExtentInputStream extends InputStream {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long end;
+        private final byte[] single = new byte[1];
+        private long position;
+        private long mark;
+
+        ExtentInputStream(RandomAccessFile file, long offset, int length) {
+            this.file = file;
+            this.channel = file.getChannel();
+            this.position = offset;
+            this.mark = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(byteCount, end - position);
+            int read = channel.read(ByteBuffer.wrap(buffer, byteOffset, toRead), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long byteCount) {
+            long skipped = Math.max(0, Math.min(byteCount, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) (end - position);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mark = position;
+        }
+
+        @Override
+        public synchronized void reset() {
+            position = mark;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bumptech.glide.load.engine.cache;
+
+import java.io.File;
+
+/**
+ * Creates a {@link PackedDiskCache} in the specified disk cache directory that writes entries too large to pack to a
+ * {@link com.bumptech.glide.disklrucache.DiskLruCache} based cache in a sibling directory.
+ *
+ * @see DiskLruCacheFactory
+ */
+public class PackedDiskCacheFactory implements DiskCache.Factory {
+    private static final String PACKED_DIR = "packed";
+    private static final String LARGE_ENTRY_DIR = "large";
+
+    private final DiskLruCacheFactory.CacheDirectoryGetter cacheDirectoryGetter;
+    private final int packedCacheSize;
+    private final int largeEntryCacheSize;
+
+    public PackedDiskCacheFactory(final String diskCacheFolder, int packedCacheSize, int largeEntryCacheSize) {
+        this(new DiskLruCacheFactory.CacheDirectoryGetter() {
+            @Override
+            public File getCacheDirectory() {
+                return new File(diskCacheFolder);
+            }
+        }, packedCacheSize, largeEntryCacheSize);
+    }
+
+    /**
+     * When using this constructor {@link DiskLruCacheFactory.CacheDirectoryGetter#getCacheDirectory()} will be called
+     * out of UI thread, allowing to do I/O access without performance impacts.
+     *
+     * @param cacheDirectoryGetter Interface called out of UI thread to get the cache folder.
+     * @param packedCacheSize Desired max bytes size for entries small enough to be packed into segment files.
+     * @param largeEntryCacheSize Desired max bytes size for the LRU disk cache used for larger entries.
+     */
+    public PackedDiskCacheFactory(DiskLruCacheFactory.CacheDirectoryGetter cacheDirectoryGetter, int packedCacheSize,
+            int largeEntryCacheSize) {
+        this.cacheDirectoryGetter = cacheDirectoryGetter;
+        this.packedCacheSize = packedCacheSize;
+        this.largeEntryCacheSize = largeEntryCacheSize;
+    }
+
+    @Override
+    public DiskCache build() {
+        File cacheDir = cacheDirectoryGetter.getCacheDirectory();
+
+        if (cacheDir == null) {
+            return null;
+        }
+
+        File packedDir = new File(cacheDir, PACKED_DIR);
+        File largeEntryDir = new File(cacheDir, LARGE_ENTRY_DIR);
+        if (!mkdirs(packedDir) || !mkdirs(largeEntryDir)) {
+            return null;
+        }
+
+        return new PackedDiskCache(packedDir, packedCacheSize,
+                new DiskLruCacheWrapper(largeEntryDir, largeEntryCacheSize));
+    }
+
+    private static boolean mkdirs(File dir) {
+        return dir.mkdirs() || (dir.exists() && dir.isDirectory());
+    }
+}
@@ -0,0 +1,47 @@
+package com.bumptech.glide.load.engine.cache;
+
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * Creates the {@link com.bumptech.glide.disklrucache.DiskLruCache} based disk cache used by
+ * {@link com.bumptech.glide.load.engine.RawPixelCache} in its own directory in the internal cache directory.
+ *
+ * <p>
+ *     Unlike {@link DiskLruCacheFactory}, each cache built by this factory is a separate instance with its own size
+ *     so that raw pixels don't compete with compressed entries in the main disk cache.
+ * </p>
+ */
+public final class RawPixelDiskCacheFactory implements DiskCache.Factory {
+    /** 10 MB of raw pixels, forty 256x256 ARGB_8888 thumbnails. */
+    public static final int DEFAULT_RAW_PIXEL_DISK_CACHE_SIZE = 10 * 1024 * 1024;
+    public static final String DEFAULT_RAW_PIXEL_DISK_CACHE_DIR = "image_manager_raw_pixel_cache";
+
+    private final Context context;
+    private final String diskCacheName;
+    private final int diskCacheSize;
+
+    public RawPixelDiskCacheFactory(Context context) {
+        this(context, DEFAULT_RAW_PIXEL_DISK_CACHE_DIR, DEFAULT_RAW_PIXEL_DISK_CACHE_SIZE);
+    }
+
+    public RawPixelDiskCacheFactory(Context context, String diskCacheName, int diskCacheSize) {
+        this.context = context;
+        this.diskCacheName = diskCacheName;
+        this.diskCacheSize = diskCacheSize;
+    }
+
+    @Override
+    public DiskCache build() {
+        File cacheDirectory = context.getCacheDir();
+        if (cacheDirectory == null) {
+            return null;
+        }
+        File cacheDir = new File(cacheDirectory, diskCacheName);
+        if (!cacheDir.mkdirs() && (!cacheDir.exists() || !cacheDir.isDirectory())) {
+            return null;
+        }
+        return new DiskLruCacheWrapper(cacheDir, diskCacheSize);
+    }
+}
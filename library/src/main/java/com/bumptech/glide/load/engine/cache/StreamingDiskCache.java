@@ -0,0 +1,32 @@
+package com.bumptech.glide.load.engine.cache;
+
+import com.bumptech.glide.load.Key;
+
+import java.io.InputStream;
+
+/**
+ * A {@link DiskCache} that can also read entries as streams, without handing out a file per entry.
+ *
+ * <p>
+ *     Caches that don't store every entry in a file of its own, like {@link PackedDiskCache}, have to create a file
+ *     when an entry is read with {@link #get(com.bumptech.glide.load.Key)}. Callers that only need the bytes, like
+ *     decoders wrapped in a {@link com.bumptech.glide.load.resource.file.FileToStreamDecoder}, should read them with
+ *     {@link #openStream(com.bumptech.glide.load.Key)} instead.
+ * </p>
+ */
+public interface StreamingDiskCache extends DiskCache {
+
+    /**
+     * Returns a stream of the data at the given key, or null if there is no such entry or it can't be read. The
+     * caller must close the stream.
+     *
+     * <p>
+     *     The stream reads the entry as it was when the stream was opened, even if the entry is removed, replaced or
+     *     moved within the cache afterwards. Before anything is read, {@link InputStream#available()} returns the
+     *     length of the entry.
+     * </p>
+     *
+     * @param key The key in the cache.
+     */
+    InputStream openStream(Key key);
+}
@@ -0,0 +1,76 @@
+package com.bumptech.glide.load.engine.cache;
+
+import com.bumptech.glide.load.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the {@link VariantKey}s stored in a cache by their original keys, so that other variants of the data
+ * being loaded can be found without knowing their exact keys.
+ *
+ * <p>
+ *     The index doesn't know when a cache evicts an entry, so keys it returns may no longer be in the cache and
+ *     should be {@link #remove(VariantKey) removed} when a lookup finds them missing. The index is bounded, the least
+ *     recently used original keys and the oldest variants of each original key are forgotten first. Thread safe.
+ * </p>
+ */
+public final class VariantIndex {
+    private static final int MAX_VARIANTS_PER_ORIGINAL = 8;
+
+    private final Map<Key, List<VariantKey>> variants;
+
+    /**
+     * @param maxOriginals The maximum number of original keys to remember variants for.
+     */
+    public VariantIndex(final int maxOriginals) {
+        variants = new LinkedHashMap<Key, List<VariantKey>>(16, 0.75f, true /*accessOrder*/) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<VariantKey>> eldest) {
+                return size() > maxOriginals;
+            }
+        };
+    }
+
+    public synchronized void add(VariantKey key) {
+        Key originalKey = key.getOriginalKey();
+        List<VariantKey> keys = variants.get(originalKey);
+        if (keys == null) {
+            keys = new ArrayList<VariantKey>(2);
+            variants.put(originalKey, keys);
+        } else if (keys.contains(key)) {
+            return;
+        } else if (keys.size() == MAX_VARIANTS_PER_ORIGINAL) {
+            keys.remove(0);
+        }
+        keys.add(key);
+    }
+
+    public synchronized void remove(VariantKey key) {
+        Key originalKey = key.getOriginalKey();
+        List<VariantKey> keys = variants.get(originalKey);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            variants.remove(originalKey);
+        }
+    }
+
+    public synchronized boolean contains(VariantKey key) {
+        List<VariantKey> keys = variants.get(key.getOriginalKey());
+        return keys != null && keys.contains(key);
+    }
+
+    /**
+     * Returns a copy of the variants stored for the given original key, which may include the variant being loaded.
+     */
+    public synchronized List<VariantKey> get(Key originalKey) {
+        List<VariantKey> keys = variants.get(originalKey);
+        return keys != null ? new ArrayList<VariantKey>(keys) : Collections.<VariantKey>emptyList();
+    }
+
+    public synchronized void clear() {
+        variants.clear();
+    }
+}
@@ -0,0 +1,16 @@
+package com.bumptech.glide.load.engine.cache;
+
+import com.bumptech.glide.load.Key;
+
+/**
+ * A {@link Key} for one of several variants, like different sizes or transformations, of the same original data.
+ *
+ * @see VariantIndex
+ */
+public interface VariantKey extends Key {
+
+    /**
+     * Returns the key of the original data, which is the same for every variant of the data.
+     */
+    Key getOriginalKey();
+}
@@ -0,0 +1,406 @@
+package com.bumptech.glide.load.engine.cache;
+
+import android.annotation.SuppressLint;
+import android.util.Log;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
+import com.bumptech.glide.util.LogTime;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DiskCache} that wraps another {@link DiskCache} and can write already encoded data to it on a background
+ * thread so that loads don't wait for disk writes before their resources are delivered.
+ *
+ * <p>
+ *     Writes queued with {@link #putAsync(com.bumptech.glide.load.Key, byte[])} own their bytes, so the resource they
+ *     were encoded from can be released as soon as the write is queued. The fetch cost and time to live given to
+ *     {@link #putAsync(com.bumptech.glide.load.Key, byte[], long, long, WriteListener)} are passed on to the wrapped
+ *     cache as {@link DiskCacheEntryMetadata} when the data is written. Queuing a write for a key that already has a
+ *     pending write replaces the pending data. The queue is bounded by a number of bytes, writes that don't fit are
+ *     written synchronously instead. Pending writes can be dropped entirely under memory pressure, see
+ *     {@link #trimMemory(int)}.
+ * </p>
+ *
+ * <p>
+ *     Every write for a given key happens while holding a per key lock and pending data is only dequeued once it has
+ *     been committed, so a {@link #get(com.bumptech.glide.load.Key)} for a key with a pending or in progress write
+ *     waits for or performs that write rather than missing or observing a partial entry.
+ * </p>
+ */
+public class WriteBehindDiskCache implements StreamingDiskCache {
+    private static final String TAG = "WriteBehindDiskCache";
+
+    /** 4 MB of encoded data waiting to be written. */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    private final DiskCacheWriteLocker writeLocker = new DiskCacheWriteLocker();
+    private final DiskCache delegate;
+    private final int maxPendingBytes;
+    private final ExecutorService writeService = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new FifoPriorityThreadPoolExecutor.DefaultThreadFactory());
+
+    // All of the following are guarded by this.
+    private final LinkedHashMap<Key, BytesWriter> pending = new LinkedHashMap<Key, BytesWriter>();
+    private int pendingBytes;
+    private boolean isDrainScheduled;
+
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Notified when data queued with {@link #putAsync(Key, byte[], long, long, WriteListener)} has been written to the
+     * wrapped cache. Isn't notified for data that is replaced, dropped or fails to write.
+     */
+    public interface WriteListener {
+        /**
+         * Called on the thread that wrote the data, after the wrapped cache has finished the write.
+         *
+         * @param length The number of bytes written.
+         * @param startTime The {@link com.bumptech.glide.util.LogTime} the write started at.
+         */
+        void onWritten(int length, long startTime);
+    }
+
+    /**
+     * A {@link DiskCache.Factory} that wraps the disk cache built by another factory in a {@link WriteBehindDiskCache}.
+     */
+    public static class Factory implements DiskCache.Factory {
+        private final DiskCache.Factory delegateFactory;
+        private final int maxPendingBytes;
+
+        public Factory(DiskCache.Factory delegateFactory) {
+            this(delegateFactory, DEFAULT_MAX_PENDING_BYTES);
+        }
+
+        public Factory(DiskCache.Factory delegateFactory, int maxPendingBytes) {
+            this.delegateFactory = delegateFactory;
+            this.maxPendingBytes = maxPendingBytes;
+        }
+
+        @Override
+        public DiskCache build() {
+            DiskCache delegate = delegateFactory.build();
+            return delegate == null ? null : new WriteBehindDiskCache(delegate, maxPendingBytes);
+        }
+    }
+
+    public WriteBehindDiskCache(DiskCache delegate, int maxPendingBytes) {
+        this.delegate = delegate;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Returns the wrapped {@link DiskCache}.
+     */
+    public DiskCache getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Queues the given encoded data to be written to the given key on a background thread.
+     *
+     * <p>
+     *     The cache takes ownership of the given array, callers must not modify it after calling this method.
+     * </p>
+     */
+    public void putAsync(Key key, byte[] data) {
+        putAsync(key, data, 0 /*fetchCostMillis*/, 0 /*timeToLiveMillis*/, null /*listener*/);
+    }
+
+    /**
+     * Queues the given encoded data to be written to the given key on a background thread.
+     *
+     * <p>
+     *     The cache takes ownership of the given array, callers must not modify it after calling this method.
+     * </p>
+     *
+     * @param fetchCostMillis How long it took to obtain the data, or 0 if unknown.
+     * @param timeToLiveMillis How long the data stays valid, or 0 if it doesn't expire.
+     * @param listener An optional listener to notify once the data has been written.
+     *
+     * @see DiskCacheEntryMetadata
+     */
+    public void putAsync(Key key, byte[] data, long fetchCostMillis, long timeToLiveMillis, WriteListener listener) {
+        BytesWriter writer = new BytesWriter(data, fetchCostMillis, timeToLiveMillis, listener);
+        synchronized (this) {
+            BytesWriter previous = pending.get(key);
+            int previousLength = previous == null ? 0 : previous.data.length;
+            if (pendingBytes - previousLength + data.length <= maxPendingBytes) {
+                pending.put(key, writer);
+                pendingBytes += data.length - previousLength;
+                if (!isDrainScheduled) {
+                    isDrainScheduled = true;
+                    writeService.execute(drainRunnable);
+                }
+                return;
+            }
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Write queue is full, writing synchronously, key: " + key);
+        }
+        writeLocker.acquire(key);
+        try {
+            removePending(key);
+            write(key, writer);
+        } finally {
+            writeLocker.release(key);
+        }
+    }
+
+    @Override
+    public File get(Key key) {
+        flushPending(key);
+        return delegate.get(key);
+    }
+
+    /**
+     * Returns a stream from the wrapped cache if it's a {@link StreamingDiskCache}, or a stream of the file returned
+     * from the wrapped cache otherwise.
+     */
+    @Override
+    public InputStream openStream(Key key) {
+        flushPending(key);
+        if (delegate instanceof StreamingDiskCache) {
+            return ((StreamingDiskCache) delegate).openStream(key);
+        }
+        File file = delegate.get(key);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            // Removed from the wrapped cache since we looked it up.
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Key key, Writer writer) {
+        writeLocker.acquire(key);
+        try {
+            // A synchronous write replaces any pending data for the key.
+            removePending(key);
+            delegate.put(key, writer);
+        } finally {
+            writeLocker.release(key);
+        }
+    }
+
+    @Override
+    public void delete(Key key) {
+        writeLocker.acquire(key);
+        try {
+            removePending(key);
+            delegate.delete(key);
+        } finally {
+            writeLocker.release(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        clearPending();
+        delegate.clear();
+    }
+
+    /**
+     * Drops all writes that haven't started yet.
+     */
+    public synchronized void clearPending() {
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    /**
+     * Drops some or all writes that haven't started yet depending on the given level.
+     *
+     * @see android.content.ComponentCallbacks2#onTrimMemory(int)
+     */
+    @SuppressLint("InlinedApi")
+    public synchronized void trimMemory(int level) {
+        if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            clearPending();
+        } else if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            int targetBytes = pendingBytes / 2;
+            Iterator<BytesWriter> iterator = pending.values().iterator();
+            while (pendingBytes > targetBytes && iterator.hasNext()) {
+                pendingBytes -= iterator.next().data.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void flushPending(Key key) {
+        if (isPending(key)) {
+            writeLocker.acquire(key);
+            try {
+                // Either we write the pending data here or the background thread has finished writing it.
+                writePending(key);
+            } finally {
+                writeLocker.release(key);
+            }
+        }
+    }
+
+    private synchronized boolean isPending(Key key) {
+        return pending.containsKey(key);
+    }
+
+    private synchronized void removePending(Key key) {
+        BytesWriter removed = pending.remove(key);
+        if (removed != null) {
+            pendingBytes -= removed.data.length;
+        }
+    }
+
+    private void drain() {
+        boolean isDrained = false;
+        try {
+            while (true) {
+                Key key;
+                synchronized (this) {
+                    Iterator<Key> iterator = pending.keySet().iterator();
+                    if (!iterator.hasNext()) {
+                        isDrainScheduled = false;
+                        isDrained = true;
+                        return;
+                    }
+                    key = iterator.next();
+                }
+
+                writeLocker.acquire(key);
+                try {
+                    writePending(key);
+                } finally {
+                    writeLocker.release(key);
+                }
+            }
+        } finally {
+            if (!isDrained) {
+                // Otherwise no drain would ever be scheduled again and every later write would be synchronous.
+                synchronized (this) {
+                    isDrainScheduled = false;
+                }
+            }
+        }
+    }
+
+    // Must be called while holding the write lock for the given key.
+    private void writePending(Key key) {
+        BytesWriter writer;
+        synchronized (this) {
+            writer = pending.get(key);
+        }
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            write(key, writer);
+        } catch (RuntimeException e) {
+            // Dropped below like a successful write, retrying would most likely fail the same way.
+            if (Log.isLoggable(TAG, Log.WARN)) {
+                Log.w(TAG, "Failed to write queued data to disk cache, dropping it, key: " + key, e);
+            }
+        }
+
+        synchronized (this) {
+            // Data queued while we were writing replaces what we wrote and is written later.
+            if (pending.get(key) == writer) {
+                pending.remove(key);
+                pendingBytes -= writer.data.length;
+            }
+        }
+    }
+
+    private void write(Key key, BytesWriter writer) {
+        long startTime = LogTime.getLogTime();
+        delegate.put(key, writer);
+        if (writer.isWritten && writer.listener != null) {
+            writer.listener.onWritten(writer.data.length, startTime);
+        }
+    }
+
+    private static class BytesWriter implements StreamWriter, DiskCacheEntryMetadata {
+        private final byte[] data;
+        private final long fetchCostMillis;
+        private final long timeToLiveMillis;
+        private final WriteListener listener;
+        private boolean isWritten;
+
+        public BytesWriter(byte[] data, long fetchCostMillis, long timeToLiveMillis, WriteListener listener) {
+            this.data = data;
+            this.fetchCostMillis = fetchCostMillis;
+            this.timeToLiveMillis = timeToLiveMillis;
+            this.listener = listener;
+        }
+
+        @Override
+        public long getFetchCostMillis() {
+            return fetchCostMillis;
+        }
+
+        @Override
+        public long getTimeToLiveMillis() {
+            return timeToLiveMillis;
+        }
+
+        @Override
+        public boolean write(File file) {
+            OutputStream os = null;
+            try {
+                os = new FileOutputStream(file);
+                os.write(data);
+                isWritten = true;
+                return true;
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to write queued data to disk cache", e);
+                }
+                return false;
+            } finally {
+                if (os != null) {
+                    try {
+                        os.close();
+                    } catch (IOException e) {
+                        // Do nothing.
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean write(OutputStream os) {
+            try {
+                os.write(data);
+                isWritten = true;
+                return true;
+            } catch (IOException e) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Failed to write queued data to disk cache", e);
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -3,21 +3,35 @@ package com.bumptech.glide.load.model;
 import android.content.Context;
 
 import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.util.ClassPairMap;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Maintains a map of model class to factory to retrieve a {@link ModelLoaderFactory} and/or a {@link ModelLoader}
  * for a given model type.
+ *
+ * <p>
+ *     Each pair of model and resource classes is resolved to a {@link ModelLoader}, or to the lack of one, the first
+ *     time it's requested, and the result is published in an immutable table of resolved loaders that is replaced
+ *     rather than modified. Requests for a pair that has already been resolved, which are almost all of them, are a
+ *     single read of the table and don't lock. Resolving a new pair and registering or unregistering factories are
+ *     serialized, and registering or unregistering a factory starts a new, empty table.
+ * </p>
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 // this is a general class capable of handling any generic combination
 public class GenericLoaderFactory {
     private final Map<Class/*T*/, Map<Class/*Y*/, ModelLoaderFactory/*T, Y*/>> modelClassToResourceFactories =
             new HashMap<Class, Map<Class, ModelLoaderFactory>>();
-    private final Map<Class/*T*/, Map<Class/*Y*/, ModelLoader/*T, Y*/>> cachedModelLoaders =
-            new HashMap<Class, Map<Class, ModelLoader>>();
+    // Only written while holding the lock on this object, read without it.
+    private volatile ClassPairMap<ModelLoader/*T, Y*/> cachedModelLoaders = ClassPairMap.empty();
+    private final Map<Class/*T*/, List<LazyRegistration>> pendingRegistrations =
+            new HashMap<Class, List<LazyRegistration>>();
 
     private static final ModelLoader NULL_MODEL_LOADER = new ModelLoader() {
         @Override
@@ -33,10 +47,46 @@ public class GenericLoaderFactory {
 
     private final Context context;
 
+    /**
+     * Registers {@link ModelLoaderFactory}s for a model class the first time a {@link ModelLoader} is built for that
+     * class or one of its subclasses, so that factories for models an application never loads are never created.
+     *
+     * @see #registerLazily(Class, LazyRegistration)
+     */
+    public interface LazyRegistration {
+        /**
+         * Registers the factories for the given model class, typically using
+         * {@link GenericLoaderFactory#registerIfAbsent(Class, Class, ModelLoaderFactory)} so that factories
+         * registered directly in the mean time take precedence. Called at most once per model class.
+         *
+         * @param modelClass The model class the registration was added for.
+         * @param factories The factory to register with.
+         */
+        void register(Class<?> modelClass, GenericLoaderFactory factories);
+    }
+
     public GenericLoaderFactory(Context context) {
        this.context = context.getApplicationContext();
     }
 
+    /**
+     * Adds a registration that will be run the first time a {@link ModelLoader} is built for the given model class or
+     * one of its subclasses, or before a factory is unregistered for the given model class.
+     *
+     * @param modelClass The model class.
+     * @param registration The registration.
+     */
+    public synchronized void registerLazily(Class<?> modelClass, LazyRegistration registration) {
+        // A class pair that couldn't be loaded before may be loadable once the registration has run.
+        cachedModelLoaders = ClassPairMap.empty();
+        List<LazyRegistration> registrations = pendingRegistrations.get(modelClass);
+        if (registrations == null) {
+            registrations = new ArrayList<LazyRegistration>(1);
+            pendingRegistrations.put(modelClass, registrations);
+        }
+        registrations.add(registration);
+    }
+
     /**
      * Removes and returns the registered {@link ModelLoaderFactory} for the given model and resource classes. Returns
      * null if no such factory is registered. Clears all cached model loaders.
@@ -47,7 +97,12 @@ public class GenericLoaderFactory {
      * @param <Y> The type of the resource class.
      */
     public synchronized <T, Y> ModelLoaderFactory<T, Y> unregister(Class<T> modelClass, Class<Y> resourceClass) {
-        cachedModelLoaders.clear();
+        // Otherwise a lazy registration could bring the factory back later.
+        List<LazyRegistration> registrations = pendingRegistrations.remove(modelClass);
+        if (registrations != null) {
+            runRegistrations(modelClass, registrations);
+        }
+        cachedModelLoaders = ClassPairMap.empty();
 
         ModelLoaderFactory/*T, Y*/ result = null;
         Map<Class/*Y*/, ModelLoaderFactory/*T, Y*/> resourceToFactories = modelClassToResourceFactories.get(modelClass);
@@ -70,7 +125,7 @@ public class GenericLoaderFactory {
      */
     public synchronized <T, Y> ModelLoaderFactory<T, Y> register(Class<T> modelClass, Class<Y> resourceClass,
             ModelLoaderFactory<T, Y> factory) {
-        cachedModelLoaders.clear();
+        cachedModelLoaders = ClassPairMap.empty();
 
         Map<Class/*Y*/, ModelLoaderFactory/*T, Y*/> resourceToFactories = modelClassToResourceFactories.get(modelClass);
         if (resourceToFactories == null) {
@@ -94,6 +149,26 @@ public class GenericLoaderFactory {
         return previous;
     }
 
+    /**
+     * Registers the given {@link ModelLoaderFactory} for the given model and resource classes unless a factory is
+     * already registered for exactly those classes, and returns true if the factory was registered.
+     *
+     * @param modelClass The model class.
+     * @param resourceClass The resource class.
+     * @param factory The factory to register.
+     * @param <T> The type of the model.
+     * @param <Y> The type of the resource.
+     */
+    public synchronized <T, Y> boolean registerIfAbsent(Class<T> modelClass, Class<Y> resourceClass,
+            ModelLoaderFactory<T, Y> factory) {
+        Map<Class/*Y*/, ModelLoaderFactory/*T, Y*/> resourceToFactories = modelClassToResourceFactories.get(modelClass);
+        if (resourceToFactories != null && resourceToFactories.containsKey(resourceClass)) {
+            return false;
+        }
+        register(modelClass, resourceClass, factory);
+        return true;
+    }
+
     /**
      * Returns a {@link ModelLoader} for the given model and resource classes by either returning a cached
      * {@link ModelLoader} or building a new a new {@link ModelLoader} using registered {@link ModelLoaderFactory}s.
@@ -107,7 +182,7 @@ public class GenericLoaderFactory {
      * @param <Y> The type of the resource.
      */
     @Deprecated
-    public synchronized <T, Y> ModelLoader<T, Y> buildModelLoader(Class<T> modelClass, Class<Y> resourceClass,
+    public <T, Y> ModelLoader<T, Y> buildModelLoader(Class<T> modelClass, Class<Y> resourceClass,
             Context context) {
         return buildModelLoader(modelClass, resourceClass);
     }
@@ -122,51 +197,76 @@ public class GenericLoaderFactory {
      * @param <T> The type of the model.
      * @param <Y> The type of the resource.
      */
-    public synchronized <T, Y> ModelLoader<T, Y> buildModelLoader(Class<T> modelClass, Class<Y> resourceClass) {
+    public <T, Y> ModelLoader<T, Y> buildModelLoader(Class<T> modelClass, Class<Y> resourceClass) {
+        ModelLoader<T, Y> result = getCachedLoader(modelClass, resourceClass);
+        if (result == null) {
+            result = resolveModelLoader(modelClass, resourceClass);
+        }
+        // We've already tried to create a model loader and can't with the currently registered set of factories,
+        // but we can't use null to demonstrate that failure because model loaders that haven't been requested
+        // yet will be null in the cache. To avoid this, we use a special signal model loader.
+        return NULL_MODEL_LOADER.equals(result) ? null : result;
+    }
+
+    private synchronized <T, Y> ModelLoader<T, Y> resolveModelLoader(Class<T> modelClass, Class<Y> resourceClass) {
+        // Another thread may have resolved the same classes while we were waiting for the lock.
         ModelLoader<T, Y> result = getCachedLoader(modelClass, resourceClass);
         if (result != null) {
-            // We've already tried to create a model loader and can't with the currently registered set of factories,
-            // but we can't use null to demonstrate that failure because model loaders that haven't been requested
-            // yet will be null in the cache. To avoid this, we use a special signal model loader.
-            if (NULL_MODEL_LOADER.equals(result)) {
-                return null;
-            } else {
-                return result;
-            }
+            return result;
         }
 
+        runPendingRegistrations(modelClass);
         final ModelLoaderFactory<T, Y> factory = getFactory(modelClass, resourceClass);
         if (factory != null) {
             result = factory.build(context, this);
-            cacheModelLoader(modelClass, resourceClass, result);
         } else {
             // We can't generate a model loader for the given arguments with the currently registered set of factories.
-            cacheNullLoader(modelClass, resourceClass);
+            result = NULL_MODEL_LOADER;
+        }
+        if (result != null) {
+            cacheModelLoader(modelClass, resourceClass, result);
         }
         return result;
     }
 
-    private <T, Y> void cacheNullLoader(Class<T> modelClass, Class<Y> resourceClass) {
-        cacheModelLoader(modelClass, resourceClass, NULL_MODEL_LOADER);
+    private <T, Y> void cacheModelLoader(Class<T> modelClass, Class<Y> resourceClass, ModelLoader<T, Y> modelLoader) {
+        // Factories may build other loaders from this factory while they're building theirs, so the table has to be
+        // read again rather than before the factory was called.
+        cachedModelLoaders = cachedModelLoaders.with(modelClass, resourceClass, modelLoader);
     }
 
-    private <T, Y> void cacheModelLoader(Class<T> modelClass, Class<Y> resourceClass, ModelLoader<T, Y> modelLoader) {
-        Map<Class/*Y*/, ModelLoader/*T, Y*/> resourceToLoaders = cachedModelLoaders.get(modelClass);
-        if (resourceToLoaders == null) {
-            resourceToLoaders = new HashMap<Class/*Y*/, ModelLoader/*T, Y*/>();
-            cachedModelLoaders.put(modelClass, resourceToLoaders);
+    private void runPendingRegistrations(Class<?> modelClass) {
+        if (pendingRegistrations.isEmpty()) {
+            return;
+        }
+        // Registrations for super classes are needed too, since their factories can load the given class.
+        Map<Class, List<LazyRegistration>> toRun = null;
+        Iterator<Map.Entry<Class, List<LazyRegistration>>> iterator = pendingRegistrations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Class, List<LazyRegistration>> entry = iterator.next();
+            if (entry.getKey().isAssignableFrom(modelClass)) {
+                if (toRun == null) {
+                    toRun = new HashMap<Class, List<LazyRegistration>>();
+                }
+                toRun.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        if (toRun != null) {
+            for (Map.Entry<Class, List<LazyRegistration>> entry : toRun.entrySet()) {
+                runRegistrations(entry.getKey(), entry.getValue());
+            }
         }
-        resourceToLoaders.put(resourceClass, modelLoader);
     }
 
-    private <T, Y> ModelLoader<T, Y> getCachedLoader(Class<T> modelClass, Class<Y> resourceClass) {
-        Map<Class/*Y*/, ModelLoader/*T, Y*/> resourceToLoaders = cachedModelLoaders.get(modelClass);
-        ModelLoader/*T, Y*/ result = null;
-        if (resourceToLoaders != null) {
-            result = resourceToLoaders.get(resourceClass);
+    private void runRegistrations(Class<?> modelClass, List<LazyRegistration> registrations) {
+        for (LazyRegistration registration : registrations) {
+            registration.register(modelClass, this);
         }
+    }
 
-        return result;
+    private <T, Y> ModelLoader<T, Y> getCachedLoader(Class<T> modelClass, Class<Y> resourceClass) {
+        return cachedModelLoaders.get(modelClass, resourceClass);
     }
 
     private <T, Y> ModelLoaderFactory<T, Y> getFactory(Class<T> modelClass, Class<Y> resourceClass) {
@@ -32,6 +32,13 @@ public class ImageVideoModelLoader<A> implements ModelLoader<A, ImageVideoWrappe
         this.fileDescriptorLoader = fileDescriptorLoader;
     }
 
+    /**
+     * Returns the loader for {@link java.io.InputStream}s, or null if there isn't one.
+     */
+    public ModelLoader<A, InputStream> getStreamLoader() {
+        return streamLoader;
+    }
+
     @Override
     public DataFetcher<ImageVideoWrapper> getResourceFetcher(A model, int width, int height) {
         DataFetcher<InputStream> streamFetcher = null;
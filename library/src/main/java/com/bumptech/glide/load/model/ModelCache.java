@@ -41,7 +41,21 @@ public class ModelCache<A, B> {
      * @return The cached result, or null.
      */
     public B get(A model, int width, int height) {
-        ModelKey<A> key = ModelKey.get(model, width, height);
+        return get(model, width, height, 0);
+    }
+
+    /**
+     * Get a value stored for one of several variants of the same model and dimensions.
+     *
+     * @param model The model.
+     * @param width The width in pixels of the view the image is being loaded into.
+     * @param height The height in pixels of the view the image is being loaded into.
+     * @param variant An identifier for the variant, like the ordinal of the quality the value was created for.
+     *
+     * @return The cached result, or null.
+     */
+    public B get(A model, int width, int height, int variant) {
+        ModelKey<A> key = ModelKey.get(model, width, height, variant);
         B result = cache.get(key);
         key.release();
         return result;
@@ -56,7 +70,20 @@ public class ModelCache<A, B> {
      * @param value The value to store.
      */
     public void put(A model, int width, int height, B value) {
-        ModelKey<A> key = ModelKey.get(model, width, height);
+        put(model, width, height, 0, value);
+    }
+
+    /**
+     * Add a value for one of several variants of the same model and dimensions.
+     *
+     * @param model The model.
+     * @param width The width in pixels of the view the image is being loaded into.
+     * @param height The height in pixels of the view the image is being loaded into.
+     * @param variant An identifier for the variant, like the ordinal of the quality the value was created for.
+     * @param value The value to store.
+     */
+    public void put(A model, int width, int height, int variant, B value) {
+        ModelKey<A> key = ModelKey.get(model, width, height, variant);
         cache.put(key, value);
     }
 
@@ -66,25 +93,27 @@ public class ModelCache<A, B> {
 
         private int height;
         private int width;
+        private int variant;
         private A model;
 
-        static <A> ModelKey<A> get(A model, int width, int height) {
+        static <A> ModelKey<A> get(A model, int width, int height, int variant) {
             @SuppressWarnings("unchecked")
             ModelKey<A> modelKey = (ModelKey<A>) KEY_QUEUE.poll();
             if (modelKey == null) {
                 modelKey = new ModelKey<A>();
             }
 
-            modelKey.init(model, width, height);
+            modelKey.init(model, width, height, variant);
             return modelKey;
         }
 
         private ModelKey() {  }
 
-        private void init(A model, int width, int height) {
+        private void init(A model, int width, int height, int variant) {
             this.model = model;
             this.width = width;
             this.height = height;
+            this.variant = variant;
         }
 
         public void release() {
@@ -95,7 +124,8 @@ public class ModelCache<A, B> {
         public boolean equals(Object o) {
             if (o instanceof ModelKey) {
                 ModelKey other = (ModelKey) o;
-                return width == other.width && height == other.height && model.equals(other.model);
+                return width == other.width && height == other.height && variant == other.variant
+                        && model.equals(other.model);
             }
             return false;
         }
@@ -104,6 +134,7 @@ public class ModelCache<A, B> {
         public int hashCode() {
             int result = height;
             result = 31 * result + width;
+            result = 31 * result + variant;
             result = 31 * result + model.hashCode();
             return result;
         }
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.data.BandwidthEstimator;
 import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.Headers;
@@ -16,11 +17,19 @@ import java.io.InputStream;
  * A base class for loading images over http/https. Can be subclassed for use with any model that can be translated
  * in to {@link java.io.InputStream} data.
  *
+ * <p>
+ *     Subclasses that can serve several qualities or sizes of the same image can override
+ *     {@link #getUrl(Object, int, int, BandwidthEstimator.Quality)} to pick one from the throughput estimated by the
+ *     shared {@link BandwidthEstimator}. Loads on slow networks can also start with a smaller thumbnail, see
+ *     {@link com.bumptech.glide.GlideBuilder#setBandwidthAdaptiveThumbnails(boolean)}.
+ * </p>
+ *
  * @param <T> The type of the model.
  */
 public abstract class BaseGlideUrlLoader<T> implements StreamModelLoader<T> {
     private final ModelLoader<GlideUrl, InputStream> concreteLoader;
     private final ModelCache<T, GlideUrl> modelCache;
+    private final BandwidthEstimator bandwidthEstimator = BandwidthEstimator.get();
 
     public BaseGlideUrlLoader(Context context) {
         this(context, null);
@@ -42,12 +51,14 @@ public abstract class BaseGlideUrlLoader<T> implements StreamModelLoader<T> {
     @Override
     public DataFetcher<InputStream> getResourceFetcher(T model, int width, int height) {
         GlideUrl result = null;
+        BandwidthEstimator.Quality quality = bandwidthEstimator.getQuality();
+        // Urls may differ by quality, so each quality has its own entries.
         if (modelCache != null) {
-            result = modelCache.get(model, width, height);
+            result = modelCache.get(model, width, height, quality.ordinal());
         }
 
         if (result == null) {
-            String stringURL = getUrl(model, width, height);
+            String stringURL = getUrl(model, width, height, quality);
             if (TextUtils.isEmpty(stringURL)) {
                return null;
             }
@@ -55,7 +66,7 @@ public abstract class BaseGlideUrlLoader<T> implements StreamModelLoader<T> {
             result = new GlideUrl(stringURL, getHeaders(model, width, height));
 
             if (modelCache != null) {
-                modelCache.put(model, width, height, result);
+                modelCache.put(model, width, height, quality.ordinal(), result);
             }
         }
 
@@ -72,6 +83,27 @@ public abstract class BaseGlideUrlLoader<T> implements StreamModelLoader<T> {
      */
     protected abstract String getUrl(T model, int width, int height);
 
+    /**
+     * Get a valid url http:// or https:// for the given model and dimensions as a string, choosing a variant of the
+     * image that suits the estimated throughput of the network. Defaults to {@link #getUrl(Object, int, int)}.
+     *
+     * <p>
+     *     For example, a subclass could ask for a lower JPEG quality or a smaller size when the quality is
+     *     {@link BandwidthEstimator.Quality#POOR}. Urls are cached separately for each quality by the
+     *     {@link ModelCache}, if any.
+     * </p>
+     *
+     * @param model The model.
+     * @param width The width in pixels of the view/target the image will be loaded into.
+     * @param height The height in pixels of the view/target the image will be loaded into.
+     * @param quality The class of the network's estimated throughput, {@link BandwidthEstimator.Quality#UNKNOWN}
+     *                until enough images have been loaded to estimate it.
+     * @return The String url.
+     */
+    protected String getUrl(T model, int width, int height, BandwidthEstimator.Quality quality) {
+        return getUrl(model, width, height);
+    }
+
     /**
      * Get the headers for the given model and dimensions as a map of strings to sets of strings.
      *
@@ -4,6 +4,7 @@ import android.content.Context;
 
 import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.data.HttpUrlFetcher;
+import com.bumptech.glide.load.data.PartialDownloadCache;
 import com.bumptech.glide.load.model.GenericLoaderFactory;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.ModelCache;
@@ -19,16 +20,18 @@ import java.io.InputStream;
 public class HttpUrlGlideUrlLoader implements ModelLoader<GlideUrl, InputStream> {
 
     private final ModelCache<GlideUrl, GlideUrl> modelCache;
+    private final PartialDownloadCache partialDownloadCache;
 
     /**
-     * The default factory for {@link com.bumptech.glide.load.model.stream.HttpUrlGlideUrlLoader}s.
+     * The default factory for {@link com.bumptech.glide.load.model.stream.HttpUrlGlideUrlLoader}s, which resume
+     * partial downloads using the shared {@link PartialDownloadCache}.
      */
     public static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
         private final ModelCache<GlideUrl, GlideUrl> modelCache = new ModelCache<GlideUrl, GlideUrl>(500);
 
         @Override
         public ModelLoader<GlideUrl, InputStream> build(Context context, GenericLoaderFactory factories) {
-            return new HttpUrlGlideUrlLoader(modelCache);
+            return new HttpUrlGlideUrlLoader(modelCache, PartialDownloadCache.get(context));
         }
 
         @Override
@@ -42,7 +45,17 @@ public class HttpUrlGlideUrlLoader implements ModelLoader<GlideUrl, InputStream>
     }
 
     public HttpUrlGlideUrlLoader(ModelCache<GlideUrl, GlideUrl> modelCache) {
+        this(modelCache, null);
+    }
+
+    /**
+     * @param modelCache An optional cache of parsed urls.
+     * @param partialDownloadCache An optional cache to record and resume partial downloads in.
+     */
+    public HttpUrlGlideUrlLoader(ModelCache<GlideUrl, GlideUrl> modelCache,
+            PartialDownloadCache partialDownloadCache) {
         this.modelCache = modelCache;
+        this.partialDownloadCache = partialDownloadCache;
     }
 
     @Override
@@ -56,6 +69,6 @@ public class HttpUrlGlideUrlLoader implements ModelLoader<GlideUrl, InputStream>
                 url = model;
             }
         }
-        return new HttpUrlFetcher(url);
+        return new HttpUrlFetcher(url, partialDownloadCache);
     }
 }
@@ -0,0 +1,30 @@
+package com.bumptech.glide.load.resource.bitmap;
+
+import android.graphics.Bitmap;
+
+/**
+ * Chooses the format and quality {@link BitmapEncoder} uses to write each {@link Bitmap} to the result cache.
+ *
+ * <p>
+ *     The chosen format only needs to be one {@link android.graphics.BitmapFactory} and {@link ImageHeaderParser} can
+ *     read, {@link Downsampler} relies on the header of the encoded data to find out whether or not the cached image
+ *     has alpha.
+ * </p>
+ */
+public interface BitmapCompressPolicy {
+
+    /**
+     * Returns the format to compress the given {@link Bitmap} with.
+     */
+    Bitmap.CompressFormat getFormat(Bitmap bitmap);
+
+    /**
+     * Returns the quality hint, between 0 and 100, to compress the given {@link Bitmap} with in the given format.
+     */
+    int getQuality(Bitmap bitmap, Bitmap.CompressFormat format);
+
+    /**
+     * Returns a unique id for this policy and its options, included in the cache key for results it encodes.
+     */
+    String getId();
+}
@@ -17,7 +17,8 @@ import java.io.OutputStream;
  * <p>
  *     {@link android.graphics.Bitmap}s that return true from {@link android.graphics.Bitmap#hasAlpha()}} are written
  *     using {@link android.graphics.Bitmap.CompressFormat#PNG} to preserve alpha and all other bitmaps are written
- *     using {@link android.graphics.Bitmap.CompressFormat#JPEG}.
+ *     using {@link android.graphics.Bitmap.CompressFormat#JPEG}, unless a format or a {@link BitmapCompressPolicy} is
+ *     given.
  * </p>
  *
  * @see android.graphics.Bitmap#compress(android.graphics.Bitmap.CompressFormat, int, java.io.OutputStream)
@@ -27,6 +28,7 @@ public class BitmapEncoder implements ResourceEncoder<Bitmap> {
     private static final int DEFAULT_COMPRESSION_QUALITY = 90;
     private Bitmap.CompressFormat compressFormat;
     private int quality;
+    private final BitmapCompressPolicy compressPolicy;
 
     public BitmapEncoder() {
         this(null, DEFAULT_COMPRESSION_QUALITY);
@@ -35,6 +37,14 @@ public class BitmapEncoder implements ResourceEncoder<Bitmap> {
     public BitmapEncoder(Bitmap.CompressFormat compressFormat, int quality) {
         this.compressFormat = compressFormat;
         this.quality = quality;
+        this.compressPolicy = null;
+    }
+
+    /**
+     * Compresses each {@link android.graphics.Bitmap} with the format and quality chosen by the given policy.
+     */
+    public BitmapEncoder(BitmapCompressPolicy compressPolicy) {
+        this.compressPolicy = compressPolicy;
     }
 
     @Override
@@ -43,6 +53,7 @@ public class BitmapEncoder implements ResourceEncoder<Bitmap> {
 
         long start = LogTime.getLogTime();
         Bitmap.CompressFormat format = getFormat(bitmap);
+        int quality = compressPolicy != null ? compressPolicy.getQuality(bitmap, format) : this.quality;
         bitmap.compress(format, quality, os);
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             Log.v(TAG, "Compressed with type: " + format + " of size " + Util.getBitmapByteSize(bitmap) + " in "
@@ -53,11 +64,16 @@ public class BitmapEncoder implements ResourceEncoder<Bitmap> {
 
     @Override
     public String getId() {
+        if (compressPolicy != null) {
+            return "BitmapEncoder.com.bumptech.glide.load.resource.bitmap" + compressPolicy.getId();
+        }
         return "BitmapEncoder.com.bumptech.glide.load.resource.bitmap";
     }
 
     private Bitmap.CompressFormat getFormat(Bitmap bitmap) {
-        if (compressFormat != null) {
+        if (compressPolicy != null) {
+            return compressPolicy.getFormat(bitmap);
+        } else if (compressFormat != null) {
             return compressFormat;
         } else if (bitmap.hasAlpha()) {
             return Bitmap.CompressFormat.PNG;
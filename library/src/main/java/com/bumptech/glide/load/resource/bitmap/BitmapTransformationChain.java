@@ -0,0 +1,162 @@
+package com.bumptech.glide.load.resource.bitmap;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.util.Util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies one or more {@link Bitmap} transformations in order, like
+ * {@link com.bumptech.glide.load.MultiTransformation}, while owning at most two intermediate bitmaps at a time.
+ *
+ * <p>
+ *     {@link ChainableBitmapTransformation}s are given the bitmap to draw into by the chain. Those that can work in
+ *     place transform the bitmap the chain already owns, without drawing into another bitmap at all. The others draw
+ *     into the bitmap left over from the step before last when it's the right size, so the chain ping-pongs between
+ *     two bitmaps rather than getting a bitmap from the pool and putting one back for every step. Resizing steps that
+ *     wouldn't change the size are skipped. Other transformations are run as they would be by
+ *     {@link com.bumptech.glide.load.MultiTransformation}.
+ * </p>
+ *
+ * <p>
+ *     The bitmap being transformed is never modified, so the first step that changes it always draws into a new
+ *     bitmap.
+ * </p>
+ */
+public class BitmapTransformationChain implements Transformation<Bitmap> {
+    private static final String TAG = "TransformationChain";
+
+    private final BitmapPool bitmapPool;
+    private final List<? extends Transformation<Bitmap>> transformations;
+    private String id;
+
+    @SafeVarargs
+    public BitmapTransformationChain(BitmapPool bitmapPool, Transformation<Bitmap>... transformations) {
+        this(bitmapPool, Arrays.asList(transformations));
+    }
+
+    public BitmapTransformationChain(BitmapPool bitmapPool, List<? extends Transformation<Bitmap>> transformations) {
+        if (transformations.size() < 1) {
+            throw new IllegalArgumentException("BitmapTransformationChain must contain at least one Transformation");
+        }
+        this.bitmapPool = bitmapPool;
+        this.transformations = transformations;
+    }
+
+    @Override
+    public Resource<Bitmap> transform(Resource<Bitmap> resource, int outWidth, int outHeight) {
+        if (!Util.isValidDimensions(outWidth, outHeight)) {
+            throw new IllegalArgumentException("Cannot apply transformation on width: " + outWidth + " or height: "
+                    + outHeight + " less than or equal to zero and not Target.SIZE_ORIGINAL");
+        }
+        // Exactly one of owned, a bitmap drawn by the chain, and current, a resource the chain was given or that a
+        // transformation returned, holds the current bitmap.
+        Bitmap owned = null;
+        Resource<Bitmap> current = resource;
+        // An owned bitmap that no longer holds anything.
+        Bitmap spare = null;
+        int inPlaceCount = 0;
+        int reusedCount = 0;
+
+        for (int i = 0; i < transformations.size(); i++) {
+            Transformation<Bitmap> transformation = transformations.get(i);
+            Bitmap toTransform = owned != null ? owned : current.get();
+            if (transformation instanceof ChainableBitmapTransformation) {
+                ChainableBitmapTransformation step = (ChainableBitmapTransformation) transformation;
+                int targetWidth = outWidth == Target.SIZE_ORIGINAL ? toTransform.getWidth() : outWidth;
+                int targetHeight = outHeight == Target.SIZE_ORIGINAL ? toTransform.getHeight() : outHeight;
+                int width = step.getOutputWidth(toTransform.getWidth(), toTransform.getHeight(), targetWidth,
+                        targetHeight);
+                int height = step.getOutputHeight(toTransform.getWidth(), toTransform.getHeight(), targetWidth,
+                        targetHeight);
+                boolean isSameSize = width == toTransform.getWidth() && height == toTransform.getHeight();
+                if (isSameSize && step.isResizeOnly()) {
+                    continue;
+                } else if (isSameSize && owned != null && step.canTransformInPlace()) {
+                    step.transformInto(owned, owned, targetWidth, targetHeight);
+                    inPlaceCount++;
+                    continue;
+                }
+
+                Bitmap.Config config = TransformationUtils.getSafeConfig(toTransform);
+                Bitmap result;
+                if (spare != null && spare.getWidth() == width && spare.getHeight() == height
+                        && spare.getConfig() == config) {
+                    spare.eraseColor(Color.TRANSPARENT);
+                    result = spare;
+                    reusedCount++;
+                } else {
+                    release(spare);
+                    result = obtain(bitmapPool, width, height, config);
+                }
+                spare = null;
+                TransformationUtils.setAlpha(toTransform, result);
+                step.transformInto(toTransform, result, targetWidth, targetHeight);
+
+                if (owned != null) {
+                    spare = owned;
+                } else if (current != resource) {
+                    current.recycle();
+                }
+                owned = result;
+                current = null;
+            } else {
+                Resource<Bitmap> toTransformResource = owned != null ? new BitmapResource(owned, bitmapPool) : current;
+                Resource<Bitmap> transformed = transformation.transform(toTransformResource, outWidth, outHeight);
+                if (toTransformResource.equals(transformed)) {
+                    continue;
+                }
+                if (owned != null) {
+                    release(spare);
+                    spare = owned;
+                } else if (current != resource) {
+                    current.recycle();
+                }
+                owned = null;
+                current = transformed;
+            }
+        }
+        release(spare);
+
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Applied " + transformations.size() + " transformations, " + inPlaceCount + " in place, "
+                    + reusedCount + " into reused bitmaps");
+        }
+        return owned != null ? new BitmapResource(owned, bitmapPool) : current;
+    }
+
+    private void release(Bitmap bitmap) {
+        if (bitmap != null && !bitmapPool.put(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    static Bitmap obtain(BitmapPool pool, int width, int height, Bitmap.Config config) {
+        Bitmap result = pool.get(width, height, config);
+        if (result == null) {
+            result = Bitmap.createBitmap(width, height, config);
+        }
+        return result;
+    }
+
+    @Override
+    public String getId() {
+        if (id == null) {
+            // The same as a MultiTransformation of the same transformations, so either shares cached results.
+            StringBuilder sb = new StringBuilder();
+            for (Transformation<Bitmap> transformation : transformations) {
+                sb.append(transformation.getId());
+            }
+            id = sb.toString();
+        }
+        return id;
+    }
+}
@@ -12,7 +12,7 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
  * Does not maintain the image's aspect ratio
  * Glide自带的一种图片转换效果，以中心自适应填充ImageView
  */
-public class CenterCrop extends BitmapTransformation {
+public class CenterCrop extends ChainableBitmapTransformation {
 
     public CenterCrop(Context context) {
         super(context);
@@ -22,21 +22,27 @@ public class CenterCrop extends BitmapTransformation {
         super(bitmapPool);
     }
 
-    // Bitmap doesn't implement equals, so == and .equals are equivalent here.
-    @SuppressWarnings("PMD.CompareObjectsWithEquals")
-    //四个参数依次为 第一个参数pool，这个是Glide中的一个Bitmap缓存池，用于对Bitmap对象进行重用
-    //第二个参数toTransform，这个是原始图片的Bitmap对象，我们就是要对它来进行图片变换
-    //第三和第四个参数比较简单，分别代表图片变换后的宽度和高度，其实也就是override()方法中传入的宽和高的值了
     @Override
-    protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
-        //首先第一行就从Bitmap缓存池中尝试获取一个可重用的Bitmap对象，
-        // 然后把这个对象连同toTransform、outWidth、outHeight参数一起传入到了TransformationUtils.centerCrop()方法当中
-        final Bitmap toReuse = pool.get(outWidth, outHeight, toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888);
-        Bitmap transformed = TransformationUtils.centerCrop(toReuse, toTransform, outWidth, outHeight);
-        if (toReuse != null && toReuse != transformed && !pool.put(toReuse)) {
-            toReuse.recycle();
-        }
-        return transformed;
+    protected int getOutputWidth(int width, int height, int outWidth, int outHeight) {
+        return outWidth;
+    }
+
+    @Override
+    protected int getOutputHeight(int width, int height, int outWidth, int outHeight) {
+        return outHeight;
+    }
+
+    @Override
+    protected boolean isResizeOnly() {
+        return true;
+    }
+
+    //四个参数依次为 第一个参数toTransform，这个是原始图片的Bitmap对象，我们就是要对它来进行图片变换
+    //第二个参数result，这个是从Bitmap缓存池中取出的，可重用的Bitmap对象，大小已经是outWidth和outHeight了
+    //第三和第四个参数分别代表图片变换后的宽度和高度，其实也就是override()方法中传入的宽和高的值了
+    @Override
+    protected void transformInto(Bitmap toTransform, Bitmap result, int outWidth, int outHeight) {
+        TransformationUtils.centerCrop(result, toTransform, outWidth, outHeight);
     }
 
     @Override
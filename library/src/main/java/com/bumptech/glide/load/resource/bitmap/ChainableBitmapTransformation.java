@@ -0,0 +1,124 @@
+package com.bumptech.glide.load.resource.bitmap;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+/**
+ * A {@link BitmapTransformation} that draws its result into a bitmap it's given rather than obtaining one itself, so
+ * that a {@link BitmapTransformationChain} can plan which bitmaps each step of a chain uses.
+ *
+ * <p>
+ *     Transformations declare the size of their result with {@link #getOutputWidth(int, int, int, int)} and
+ *     {@link #getOutputHeight(int, int, int, int)}, and whether they can draw their result over the bitmap they're
+ *     transforming with {@link #canTransformInPlace()}. A chain runs transformations that can work in place on the
+ *     bitmap it already owns and alternates between two pooled bitmaps for the others, so no step needs a bitmap of
+ *     its own. Used on its own, a chainable transformation behaves like any other {@link BitmapTransformation}.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * public class Grayscale extends ChainableBitmapTransformation {
+ *     {@literal @Override}
+ *     protected boolean canTransformInPlace() {
+ *         return true;
+ *     }
+ *
+ *     {@literal @Override}
+ *     protected void transformInto(Bitmap toTransform, Bitmap result, int outWidth, int outHeight) {
+ *         ColorMatrix matrix = new ColorMatrix();
+ *         matrix.setSaturation(0);
+ *         Paint paint = new Paint();
+ *         paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+ *         new Canvas(result).drawBitmap(toTransform, 0, 0, paint);
+ *     }
+ * }
+ * </code>
+ * </pre>
+ */
+public abstract class ChainableBitmapTransformation extends BitmapTransformation {
+
+    public ChainableBitmapTransformation(Context context) {
+        super(context);
+    }
+
+    public ChainableBitmapTransformation(BitmapPool bitmapPool) {
+        super(bitmapPool);
+    }
+
+    /**
+     * Returns the width of the bitmap this transformation produces from a bitmap with the given dimensions, the
+     * width of the given bitmap by default.
+     *
+     * @param width The width of the bitmap to transform.
+     * @param height The height of the bitmap to transform.
+     * @param outWidth The ideal width of the transformed bitmap, never
+     *                 {@link com.bumptech.glide.request.target.Target#SIZE_ORIGINAL}.
+     * @param outHeight The ideal height of the transformed bitmap, never
+     *                  {@link com.bumptech.glide.request.target.Target#SIZE_ORIGINAL}.
+     */
+    protected int getOutputWidth(int width, int height, int outWidth, int outHeight) {
+        return width;
+    }
+
+    /**
+     * Returns the height of the bitmap this transformation produces from a bitmap with the given dimensions, the
+     * height of the given bitmap by default.
+     *
+     * @see #getOutputWidth(int, int, int, int)
+     */
+    protected int getOutputHeight(int width, int height, int outWidth, int outHeight) {
+        return height;
+    }
+
+    /**
+     * Returns true if {@link #transformInto(Bitmap, Bitmap, int, int)} can be given the same bitmap to transform and to
+     * draw the result into when the result is the same size, false by default.
+     */
+    protected boolean canTransformInPlace() {
+        return false;
+    }
+
+    /**
+     * Returns true if this transformation only changes the size of bitmaps, so bitmaps that are already the size
+     * it would produce are left as they are, false by default.
+     */
+    protected boolean isResizeOnly() {
+        return false;
+    }
+
+    /**
+     * Draws the transformed toTransform into result.
+     *
+     * <p>
+     *     result is mutable, has the dimensions returned by {@link #getOutputWidth(int, int, int, int)} and
+     *     {@link #getOutputHeight(int, int, int, int)}, and is either transparent or, if
+     *     {@link #canTransformInPlace()} returns true, may be toTransform itself. Neither bitmap may be recycled or
+     *     returned to the pool.
+     * </p>
+     *
+     * @param toTransform The {@link android.graphics.Bitmap} to transform.
+     * @param result The {@link android.graphics.Bitmap} to draw the transformed bitmap into.
+     * @param outWidth The ideal width of the transformed bitmap, as given to
+     *                 {@link #getOutputWidth(int, int, int, int)}.
+     * @param outHeight The ideal height of the transformed bitmap, as given to
+     *                  {@link #getOutputHeight(int, int, int, int)}.
+     */
+    protected abstract void transformInto(Bitmap toTransform, Bitmap result, int outWidth, int outHeight);
+
+    @Override
+    protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
+        int width = getOutputWidth(toTransform.getWidth(), toTransform.getHeight(), outWidth, outHeight);
+        int height = getOutputHeight(toTransform.getWidth(), toTransform.getHeight(), outWidth, outHeight);
+        if (isResizeOnly() && width == toTransform.getWidth() && height == toTransform.getHeight()) {
+            return toTransform;
+        }
+        // We don't own toTransform, so even transformations that can work in place need a bitmap of their own here.
+        Bitmap result = BitmapTransformationChain.obtain(pool, width, height, TransformationUtils.getSafeConfig(
+                toTransform));
+        TransformationUtils.setAlpha(toTransform, result);
+        transformInto(toTransform, result, outWidth, outHeight);
+        return result;
+    }
+}
@@ -25,9 +25,18 @@ public class FileDescriptorBitmapDataLoadProvider implements DataLoadProvider<Pa
     private final Encoder<ParcelFileDescriptor> sourceEncoder;
 
     public FileDescriptorBitmapDataLoadProvider(BitmapPool bitmapPool, DecodeFormat decodeFormat) {
+        this(bitmapPool, decodeFormat, null);
+    }
+
+    /**
+     * @param compressPolicy The policy used to encode transformed results, or null to use the default PNG or JPEG
+     *                       encoding.
+     */
+    public FileDescriptorBitmapDataLoadProvider(BitmapPool bitmapPool, DecodeFormat decodeFormat,
+            BitmapCompressPolicy compressPolicy) {
         cacheDecoder = new FileToStreamDecoder<Bitmap>(new StreamBitmapDecoder(bitmapPool, decodeFormat));
         sourceDecoder = new FileDescriptorBitmapDecoder(bitmapPool, decodeFormat);
-        encoder = new BitmapEncoder();
+        encoder = compressPolicy != null ? new BitmapEncoder(compressPolicy) : new BitmapEncoder();
         sourceEncoder = NullEncoder.get();
     }
 
@@ -2,6 +2,9 @@ package com.bumptech.glide.load.resource.bitmap;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
@@ -9,7 +12,7 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
  * Scales the image uniformly (maintaining the image's aspect ratio) so that one of the dimensions of the image
  * will be equal to the given dimension and the other will be less than the given dimension.
  */
-public class FitCenter extends BitmapTransformation {
+public class FitCenter extends ChainableBitmapTransformation {
 
     public FitCenter(Context context) {
         super(context);
@@ -20,8 +23,28 @@ public class FitCenter extends BitmapTransformation {
     }
 
     @Override
-    protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth, int outHeight) {
-        return TransformationUtils.fitCenter(toTransform, pool, outWidth, outHeight);
+    protected int getOutputWidth(int width, int height, int outWidth, int outHeight) {
+        // Floored rather than rounded like TransformationUtils#fitCenter, so we slightly overdraw.
+        return (int) (TransformationUtils.getFitCenterScale(width, height, outWidth, outHeight) * width);
+    }
+
+    @Override
+    protected int getOutputHeight(int width, int height, int outWidth, int outHeight) {
+        return (int) (TransformationUtils.getFitCenterScale(width, height, outWidth, outHeight) * height);
+    }
+
+    @Override
+    protected boolean isResizeOnly() {
+        return true;
+    }
+
+    @Override
+    protected void transformInto(Bitmap toTransform, Bitmap result, int outWidth, int outHeight) {
+        float scale = TransformationUtils.getFitCenterScale(toTransform.getWidth(), toTransform.getHeight(), outWidth,
+                outHeight);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        new Canvas(result).drawBitmap(toTransform, matrix, new Paint(TransformationUtils.PAINT_FLAGS));
     }
 
     @Override
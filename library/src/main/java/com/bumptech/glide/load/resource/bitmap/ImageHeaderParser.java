@@ -5,6 +5,8 @@ import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageTyp
 import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageType.PNG;
 import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageType.PNG_A;
 import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageType.UNKNOWN;
+import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageType.WEBP;
+import static com.bumptech.glide.load.resource.bitmap.ImageHeaderParser.ImageType.WEBP_A;
 
 import android.util.Log;
 
@@ -32,6 +34,10 @@ public class ImageHeaderParser {
         PNG_A(true),
         /** PNG type without alpha. */
         PNG(false),
+        /** WebP type with alpha. */
+        WEBP_A(true),
+        /** WebP type without alpha. */
+        WEBP(false),
         /** Unrecognized type. */
         UNKNOWN(false);
         private final boolean hasAlpha;
@@ -47,6 +53,15 @@ public class ImageHeaderParser {
 
     private static final int GIF_HEADER = 0x474946;
     private static final int PNG_HEADER = 0x89504E47;
+    // "RIFF".
+    private static final int RIFF_HEADER = 0x52494646;
+    // "WEBP".
+    private static final int WEBP_HEADER = 0x57454250;
+    // "VP8" followed by a space, "L" or "X" for lossy, lossless and extended WebP respectively.
+    private static final int VP8_HEADER = 0x56503800;
+    private static final int VP8_HEADER_MASK = 0xFFFFFF00;
+    private static final int WEBP_EXTENDED_ALPHA_FLAG = 1 << 4;
+    private static final int WEBP_LOSSLESS_ALPHA_FLAG = 1 << 4;
     private static final int EXIF_MAGIC_NUMBER = 0xFFD8;
     // "MM".
     private static final int MOTOROLA_TIFF_MAGIC_NUMBER = 0x4D4D;
@@ -106,9 +121,43 @@ public class ImageHeaderParser {
             return GIF;
         }
 
+        // WebP, the container records whether or not the image has alpha, so encoded results don't need to.
+        if (firstFourBytes == RIFF_HEADER) {
+            return getWebpType();
+        }
+
         return UNKNOWN;
     }
 
+    // See https://developers.google.com/speed/webp/docs/riff_container.
+    private ImageType getWebpType() throws IOException {
+        // Skip the file size.
+        streamReader.skip(4);
+        if (getUInt32() != WEBP_HEADER) {
+            return UNKNOWN;
+        }
+        final int chunkHeader = getUInt32();
+        if ((chunkHeader & VP8_HEADER_MASK) != VP8_HEADER) {
+            return UNKNOWN;
+        }
+        // Skip the chunk size.
+        streamReader.skip(4);
+        final char format = (char) (chunkHeader & 0xFF);
+        if (format == 'X') {
+            return (streamReader.getByte() & WEBP_EXTENDED_ALPHA_FLAG) != 0 ? WEBP_A : WEBP;
+        } else if (format == 'L') {
+            // A one byte signature followed by 14 bits of width, 14 bits of height and the alpha bit.
+            streamReader.skip(4);
+            return (streamReader.getByte() & WEBP_LOSSLESS_ALPHA_FLAG) != 0 ? WEBP_A : WEBP;
+        }
+        // Simple lossy WebP can't have alpha.
+        return WEBP;
+    }
+
+    private int getUInt32() throws IOException {
+        return streamReader.getUInt16() << 16 & 0xFFFF0000 | streamReader.getUInt16() & 0xFFFF;
+    }
+
     /**
      * Parse the orientation from the image header. If it doesn't handle this image type (or this is not an image)
      * it will return a default value rather than throwing an exception.
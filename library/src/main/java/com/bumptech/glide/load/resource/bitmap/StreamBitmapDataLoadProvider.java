@@ -25,9 +25,18 @@ public class StreamBitmapDataLoadProvider implements DataLoadProvider<InputStrea
     private final FileToStreamDecoder<Bitmap> cacheDecoder;
 
     public StreamBitmapDataLoadProvider(BitmapPool bitmapPool, DecodeFormat decodeFormat) {
+        this(bitmapPool, decodeFormat, null);
+    }
+
+    /**
+     * @param compressPolicy The policy used to encode transformed results, or null to use the default PNG or JPEG
+     *                       encoding.
+     */
+    public StreamBitmapDataLoadProvider(BitmapPool bitmapPool, DecodeFormat decodeFormat,
+            BitmapCompressPolicy compressPolicy) {
         sourceEncoder = new StreamEncoder();
         decoder = new StreamBitmapDecoder(bitmapPool, decodeFormat);
-        encoder = new BitmapEncoder();
+        encoder = compressPolicy != null ? new BitmapEncoder(compressPolicy) : new BitmapEncoder();
         cacheDecoder = new FileToStreamDecoder<Bitmap>(decoder);
     }
 
@@ -102,11 +102,7 @@ public final class TransformationUtils {
             }
             return toFit;
         }
-        //需要的宽高和实际图片的宽高取值
-        final float widthPercentage = width / (float) toFit.getWidth();
-        final float heightPercentage = height / (float) toFit.getHeight();
-        //取两者的最小值，理解就是保持充满屏幕的前提下，比例不失真，取小的。
-        final float minPercentage = Math.min(widthPercentage, heightPercentage);
+        final float minPercentage = getFitCenterScale(toFit.getWidth(), toFit.getHeight(), width, height);
 
         // take the floor of the target width/height, not round. If the matrix
         // passed into drawBitmap rounds differently, we want to slightly
@@ -150,6 +146,18 @@ public final class TransformationUtils {
         return toReuse;
     }
 
+    /**
+     * Returns the scale {@link #fitCenter(Bitmap, BitmapPool, int, int)} shrinks an image with the given dimensions
+     * by to fit it within the given target dimensions.
+     */
+    static float getFitCenterScale(int imageWidth, int imageHeight, int width, int height) {
+        //需要的宽高和实际图片的宽高取值
+        final float widthPercentage = width / (float) imageWidth;
+        final float heightPercentage = height / (float) imageHeight;
+        //取两者的最小值，理解就是保持充满屏幕的前提下，比例不失真，取小的。
+        return Math.min(widthPercentage, heightPercentage);
+    }
+
     /**
      * Sets the alpha of the Bitmap we're going to re-use to the alpha of the Bitmap we're going to transform. This
      * keeps {@link android.graphics.Bitmap#hasAlpha()}} consistent before and after the transformation for
@@ -301,7 +309,7 @@ public final class TransformationUtils {
         return result;
     }
 
-    private static Bitmap.Config getSafeConfig(Bitmap bitmap) {
+    static Bitmap.Config getSafeConfig(Bitmap bitmap) {
       return bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
     }
 
@@ -0,0 +1,70 @@
+package com.bumptech.glide.load.resource.bitmap;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * A {@link BitmapCompressPolicy} that writes results as WebP, which is typically much smaller than PNG and smaller
+ * than JPEG at the same visual quality, and so is faster to read back from the disk cache.
+ *
+ * <p>
+ *     {@link Bitmap}s with alpha are written as lossless WebP where the platform supports it and lossy WebP with a
+ *     lossless alpha plane otherwise, rather than as PNG. Opaque {@link Bitmap}s are written as lossy WebP at the
+ *     quality target, or as JPEG if JPEG is preferred for opaque images because it is cheaper to encode. A quality
+ *     target of 100 writes opaque {@link Bitmap}s losslessly too.
+ * </p>
+ */
+public class WebpBitmapCompressPolicy implements BitmapCompressPolicy {
+    // Android Q, from which compressing WebP with a quality of 100 is lossless.
+    private static final int LOSSLESS_WEBP_SDK_INT = 29;
+    private static final int LOSSLESS_QUALITY = 100;
+    private static final int DEFAULT_QUALITY = 80;
+
+    private final int quality;
+    private final boolean preferJpegForOpaque;
+
+    public WebpBitmapCompressPolicy() {
+        this(DEFAULT_QUALITY, false);
+    }
+
+    /**
+     * @param quality The quality target between 0 and 100 for lossy formats.
+     * @param preferJpegForOpaque True to write opaque {@link Bitmap}s as JPEG, trading some disk space for encoding
+     *                            speed.
+     */
+    public WebpBitmapCompressPolicy(int quality, boolean preferJpegForOpaque) {
+        if (quality < 0 || quality > LOSSLESS_QUALITY) {
+            throw new IllegalArgumentException("Quality must be between 0 and 100, but given: " + quality);
+        }
+        this.quality = quality;
+        this.preferJpegForOpaque = preferJpegForOpaque;
+    }
+
+    @Override
+    public Bitmap.CompressFormat getFormat(Bitmap bitmap) {
+        if (bitmap.hasAlpha()) {
+            return Bitmap.CompressFormat.WEBP;
+        } else if (quality == LOSSLESS_QUALITY) {
+            return isLosslessWebpSupported() ? Bitmap.CompressFormat.WEBP : Bitmap.CompressFormat.PNG;
+        } else {
+            return preferJpegForOpaque ? Bitmap.CompressFormat.JPEG : Bitmap.CompressFormat.WEBP;
+        }
+    }
+
+    @Override
+    public int getQuality(Bitmap bitmap, Bitmap.CompressFormat format) {
+        if (format == Bitmap.CompressFormat.WEBP && bitmap.hasAlpha() && isLosslessWebpSupported()) {
+            return LOSSLESS_QUALITY;
+        }
+        return quality;
+    }
+
+    @Override
+    public String getId() {
+        return "WebpBitmapCompressPolicy.com.bumptech.glide.load.resource.bitmap" + quality + preferJpegForOpaque;
+    }
+
+    private static boolean isLosslessWebpSupported() {
+        return Build.VERSION.SDK_INT >= LOSSLESS_WEBP_SDK_INT;
+    }
+}
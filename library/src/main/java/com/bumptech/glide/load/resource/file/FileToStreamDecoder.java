@@ -54,6 +54,15 @@ public class FileToStreamDecoder<T> implements ResourceDecoder<File, T> {
         return "";
     }
 
+    /**
+     * Returns the wrapped {@link InputStream} decoder, used to decode disk cache entries that are read as streams.
+     *
+     * @see com.bumptech.glide.load.engine.cache.StreamingDiskCache
+     */
+    public ResourceDecoder<InputStream, T> getStreamDecoder() {
+        return streamDecoder;
+    }
+
     // Visible for testing.
     static class FileOpener {
         public InputStream open(File file) throws FileNotFoundException {
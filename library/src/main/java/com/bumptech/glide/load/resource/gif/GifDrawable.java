@@ -19,6 +19,8 @@ import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 
+import java.nio.ByteBuffer;
+
 /**
  * An animated {@link android.graphics.drawable.Drawable} that plays the frames of an animated GIF.
  */
@@ -70,6 +72,22 @@ public class GifDrawable extends GlideDrawable implements GifFrameLoader.FrameCa
     public GifDrawable(Context context, GifDecoder.BitmapProvider bitmapProvider, BitmapPool bitmapPool,
                        Transformation<Bitmap> frameTransformation, int targetFrameWidth, int targetFrameHeight,
                        GifHeader gifHeader, byte[] data, Bitmap firstFrame) {
+        this(context, bitmapProvider, bitmapPool, frameTransformation, targetFrameWidth, targetFrameHeight, gifHeader,
+                ByteBuffer.wrap(data), firstFrame);
+    }
+
+    /**
+     * Constructor for GifDrawable that plays from a buffer, for example one memory mapped from a file, rather than
+     * from an array on the heap.
+     *
+     * @see #GifDrawable(Context, GifDecoder.BitmapProvider, BitmapPool, Transformation, int, int, GifHeader, byte[],
+     * Bitmap)
+     *
+     * @param data The full bytes of the gif, which must not be modified.
+     */
+    public GifDrawable(Context context, GifDecoder.BitmapProvider bitmapProvider, BitmapPool bitmapPool,
+                       Transformation<Bitmap> frameTransformation, int targetFrameWidth, int targetFrameHeight,
+                       GifHeader gifHeader, ByteBuffer data, Bitmap firstFrame) {
         this(new GifState(gifHeader, data, context, frameTransformation, targetFrameWidth, targetFrameHeight,
                 bitmapProvider, bitmapPool, firstFrame));
     }
@@ -128,8 +146,29 @@ public class GifDrawable extends GlideDrawable implements GifFrameLoader.FrameCa
         return state.frameTransformation;
     }
 
+    /**
+     * Returns the bytes of the GIF, copying them if the drawable plays from a buffer that isn't backed by an array,
+     * see {@link #getBuffer()}.
+     */
     public byte[] getData() {
-        return state.data;
+        return decoder.getData();
+    }
+
+    /**
+     * Returns a view of the bytes of the GIF, which may be memory mapped, positioned at the start. The bytes must not
+     * be modified.
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer buffer = state.data.duplicate();
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Returns the number of bytes of the GIF held on the Java heap, zero if it's played from a memory mapped file.
+     */
+    int getHeapDataSize() {
+        return state.data.isDirect() ? 0 : state.data.capacity();
     }
 
     public int getFrameCount() {
@@ -318,7 +357,7 @@ public class GifDrawable extends GlideDrawable implements GifFrameLoader.FrameCa
     static class GifState extends ConstantState {
         private static final int GRAVITY = Gravity.FILL;
         GifHeader gifHeader;
-        byte[] data;
+        ByteBuffer data;
         Context context;
         Transformation<Bitmap> frameTransformation;
         int targetWidth;
@@ -327,7 +366,7 @@ public class GifDrawable extends GlideDrawable implements GifFrameLoader.FrameCa
         BitmapPool bitmapPool;
         Bitmap firstFrame;
 
-        public GifState(GifHeader header, byte[] data, Context context,
+        public GifState(GifHeader header, ByteBuffer data, Context context,
                 Transformation<Bitmap> frameTransformation, int targetWidth, int targetHeight,
                 GifDecoder.BitmapProvider provider, BitmapPool bitmapPool, Bitmap firstFrame) {
             if (firstFrame == null) {
@@ -7,7 +7,6 @@ import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.model.StreamEncoder;
-import com.bumptech.glide.load.resource.file.FileToStreamDecoder;
 import com.bumptech.glide.provider.DataLoadProvider;
 
 import java.io.File;
@@ -21,11 +20,11 @@ public class GifDrawableLoadProvider implements DataLoadProvider<InputStream, Gi
     private final GifResourceDecoder decoder;
     private final GifResourceEncoder encoder;
     private final StreamEncoder sourceEncoder;
-    private final FileToStreamDecoder<GifDrawable> cacheDecoder;
+    private final GifFileDecoder cacheDecoder;
 
     public GifDrawableLoadProvider(Context context, BitmapPool bitmapPool) {
         decoder = new GifResourceDecoder(context, bitmapPool);
-        cacheDecoder = new FileToStreamDecoder<GifDrawable>(decoder);
+        cacheDecoder = new GifFileDecoder(decoder);
         encoder = new GifResourceEncoder(bitmapPool);
         sourceEncoder = new StreamEncoder();
     }
@@ -0,0 +1,63 @@
+package com.bumptech.glide.load.resource.gif;
+
+import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.resource.file.FileToStreamDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decodes {@link GifDrawable}s from files, usually in the disk cache, by memory mapping them rather than reading them
+ * onto the heap.
+ *
+ * <p>
+ *     The mapped data is paged in by the OS as frames are decoded and can be dropped again under memory pressure
+ *     without counting towards the app's heap, so large GIFs cost little more than their header and frames while
+ *     they're playing. Small files are read onto the heap as before, since a mapping isn't worth it for only a few
+ *     pages.
+ * </p>
+ */
+public class GifFileDecoder implements ResourceDecoder<File, GifDrawable> {
+    // Files smaller than this are read onto the heap.
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    private final GifResourceDecoder decoder;
+    private final ResourceDecoder<File, GifDrawable> streamDecoder;
+
+    public GifFileDecoder(GifResourceDecoder decoder) {
+        this.decoder = decoder;
+        this.streamDecoder = new FileToStreamDecoder<GifDrawable>(decoder);
+    }
+
+    @Override
+    public Resource<GifDrawable> decode(File source, int width, int height) throws IOException {
+        if (source.length() < MIN_MAPPED_SIZE) {
+            return streamDecoder.decode(source, width, height);
+        }
+        return decoder.decode(map(source), width, height);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the file is closed, or evicted from the cache and deleted.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // Ignored.
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return "";
+    }
+}
@@ -0,0 +1,358 @@
+package com.bumptech.glide.load.resource.gif;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.gifdecoder.GifDecoder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.util.Util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares the decoded frames of small animated GIFs between all of the {@link GifDrawable}s that show them.
+ *
+ * <p>
+ *     Without the cache every {@link GifDrawable} decodes each of its frames itself, so a GIF shown in several places
+ *     at once, like a sticker repeated in a chat, is decoded once per place. Instead, drawables showing the same GIF
+ *     data with the same frame transformation and size play from a single ring of frames. The ring decodes each frame
+ *     once, in order and only as fast as the drawables ask for them, and then keeps all of the frames, so every
+ *     drawable can play at its own position and later loops don't decode again.
+ * </p>
+ *
+ * <p>
+ *     Only GIFs whose frames, at their full size, take up no more than a quarter of the cache's maximum size are
+ *     shared, others are decoded by each drawable as before. Rings no drawable is using are kept in least recently
+ *     used order until they're needed to make room for another ring, and their frames are returned to the
+ *     {@link BitmapPool} when they're evicted.
+ * </p>
+ *
+ * <p>
+ *     Must only be used on the main thread.
+ * </p>
+ */
+public class GifFrameCache {
+    private static final String TAG = "GifFrameCache";
+    private static final int MAX_RING_SIZE_DIVISOR = 4;
+
+    private final Map<Key, FrameRing> rings = new LinkedHashMap<Key, FrameRing>(16, 0.75f, true /*accessOrder*/);
+    private final int maxSize;
+    private int currentSize;
+
+    /**
+     * @param maxSize The maximum number of bytes the frames of all of the rings together may use.
+     */
+    public GifFrameCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of bytes used by the frames of all rings, whether or not they're being used.
+     */
+    public int getCurrentSize() {
+        return currentSize;
+    }
+
+    /**
+     * Evicts all rings that aren't being used.
+     */
+    public void clearMemory() {
+        trimToSize(0);
+    }
+
+    /**
+     * Evicts rings that aren't being used depending on the given level.
+     *
+     * @see android.content.ComponentCallbacks2#onTrimMemory(int)
+     */
+    public void trimMemory(int level) {
+        if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            clearMemory();
+        } else if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            trimToSize(currentSize / 2);
+        }
+    }
+
+    /**
+     * Returns the ring for the given GIF, or null if the GIF is too large to share or there isn't enough room left in
+     * the cache. The ring must be released with {@link #release(FrameRing)} once the caller is done with it.
+     */
+    FrameRing acquire(Context context, GifDecoder gifDecoder, Transformation<Bitmap> transformation, int width,
+            int height) {
+        Util.assertMainThread();
+        ByteBuffer data = gifDecoder.getBuffer();
+        // GifDecoder produces ARGB_8888 frames at the GIF's size, transformations usually make them smaller.
+        long ringSize = (long) gifDecoder.getFrameCount()
+                * Util.getBitmapByteSize(gifDecoder.getWidth(), gifDecoder.getHeight(), Bitmap.Config.ARGB_8888);
+        if (data == null || gifDecoder.getFrameCount() <= 1 || ringSize > maxSize / MAX_RING_SIZE_DIVISOR) {
+            return null;
+        }
+
+        Key key = new Key(data, transformation.getId(), width, height);
+        FrameRing ring = rings.get(key);
+        if (ring == null) {
+            trimToSize(maxSize - (int) ringSize);
+            if (currentSize + ringSize > maxSize) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Not enough room to share frames, size: " + ringSize + ", current size: "
+                            + currentSize);
+                }
+                return null;
+            }
+            ring = new FrameRing(context, key, gifDecoder.getFrameCount(), (int) ringSize, transformation);
+            rings.put(key, ring);
+            currentSize += ring.size;
+        }
+        ring.acquired++;
+        return ring;
+    }
+
+    void release(FrameRing ring) {
+        Util.assertMainThread();
+        if (ring.acquired <= 0) {
+            throw new IllegalStateException("Cannot release a ring that isn't acquired");
+        }
+        ring.acquired--;
+    }
+
+    private void trimToSize(int size) {
+        Iterator<FrameRing> iterator = rings.values().iterator();
+        while (currentSize > size && iterator.hasNext()) {
+            FrameRing ring = iterator.next();
+            if (ring.acquired == 0) {
+                iterator.remove();
+                currentSize -= ring.size;
+                ring.clear();
+            }
+        }
+    }
+
+    /**
+     * Receives a frame decoded by a {@link FrameRing}.
+     */
+    interface FrameCallback {
+        /**
+         * Called on the main thread with a frame that is owned by the ring and must not be recycled.
+         */
+        void onResourceReady(Bitmap resource);
+    }
+
+    /**
+     * The decoded frames of a single GIF with a single transformation and size.
+     */
+    static final class FrameRing {
+        private final Key key;
+        private final int size;
+        private final GifDecoder decoder;
+        private final Transformation<Bitmap> transformation;
+        private final BitmapPool bitmapPool;
+        private final GifFrameScheduler scheduler;
+        private final GifFrameScheduler.Frame[] frames;
+        private final List<PendingFrame> pending = new ArrayList<PendingFrame>();
+        private int decodedCount;
+        private boolean isDecoding;
+        private int acquired;
+        private boolean isCleared;
+
+        FrameRing(Context context, Key key, int frameCount, int size, Transformation<Bitmap> transformation) {
+            this.key = key;
+            this.size = size;
+            this.transformation = transformation;
+            this.frames = new GifFrameScheduler.Frame[frameCount];
+            bitmapPool = Glide.get(context).getBitmapPool();
+            scheduler = GifFrameScheduler.get();
+            decoder = new GifDecoder(new GifBitmapProvider(bitmapPool));
+            decoder.read(key.data);
+        }
+
+        /**
+         * Returns the frame at the given index if it has been decoded, or null otherwise.
+         */
+        Bitmap getFrame(int index) {
+            return index < decodedCount ? frames[index].bitmap : null;
+        }
+
+        /**
+         * Decodes frames up to and including the frame at the given index and passes that frame to the given
+         * callback.
+         */
+        void load(int index, FrameCallback cb) {
+            Bitmap frame = getFrame(index);
+            if (frame != null) {
+                cb.onResourceReady(frame);
+                return;
+            }
+            pending.add(new PendingFrame(index, cb));
+            decodeNextFrame();
+        }
+
+        /**
+         * Stops the given callback from being called with a frame it asked for.
+         */
+        void cancel(FrameCallback cb) {
+            Iterator<PendingFrame> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().cb == cb) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void decodeNextFrame() {
+            if (isDecoding || isCleared || decodedCount == frames.length) {
+                return;
+            }
+            isDecoding = true;
+            scheduler.decode(new RingFrameDecoder(this));
+        }
+
+        private void onFrameDecoded(GifFrameScheduler.Frame frame) {
+            isDecoding = false;
+            if (isCleared) {
+                if (frame != null) {
+                    frame.release();
+                }
+                decoder.clear();
+                return;
+            }
+            if (frame == null) {
+                // Like a failed load, drawables waiting for this frame stop on the last frame they showed.
+                return;
+            }
+            int index = decodedCount;
+            frames[index] = frame;
+            decodedCount++;
+
+            boolean hasLaterFrames = false;
+            List<PendingFrame> ready = new ArrayList<PendingFrame>();
+            Iterator<PendingFrame> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                PendingFrame pendingFrame = iterator.next();
+                if (pendingFrame.index == index) {
+                    ready.add(pendingFrame);
+                    iterator.remove();
+                } else if (pendingFrame.index > index) {
+                    hasLaterFrames = true;
+                }
+            }
+            for (PendingFrame pendingFrame : ready) {
+                pendingFrame.cb.onResourceReady(frame.bitmap);
+            }
+            if (hasLaterFrames) {
+                decodeNextFrame();
+            }
+        }
+
+        private void clear() {
+            isCleared = true;
+            pending.clear();
+            for (int i = 0; i < decodedCount; i++) {
+                frames[i].release();
+                frames[i] = null;
+            }
+            decodedCount = 0;
+            if (!isDecoding) {
+                decoder.clear();
+            }
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Evicted frames, size: " + size + ", key: " + key);
+            }
+        }
+    }
+
+    private static final class PendingFrame {
+        private final int index;
+        private final FrameCallback cb;
+
+        PendingFrame(int index, FrameCallback cb) {
+            this.index = index;
+            this.cb = cb;
+        }
+    }
+
+    private static final class RingFrameDecoder extends GifFrameScheduler.FrameDecoder {
+        private final FrameRing ring;
+
+        RingFrameDecoder(FrameRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        GifFrameScheduler.Frame decodeFrame() {
+            ring.decoder.advance();
+            Resource<Bitmap> resource = GifFrameScheduler.decodeNextFrame(ring.decoder, ring.transformation,
+                    ring.bitmapPool, ring.key.width, ring.key.height);
+            // Frames in the ring are shown whenever a drawable asks for them, they have no target time of their own.
+            return resource != null
+                    ? new GifFrameScheduler.Frame(ring.decoder.getCurrentFrameIndex(), 0, resource) : null;
+        }
+
+        @Override
+        void onFrameDecoded(GifFrameScheduler.Frame frame) {
+            ring.onFrameDecoded(frame);
+        }
+    }
+
+    // Visible for testing.
+    static final class Key {
+        private final ByteBuffer data;
+        private final int dataHashCode;
+        private final String transformationId;
+        private final int width;
+        private final int height;
+
+        Key(ByteBuffer data, String transformationId, int width, int height) {
+            this.data = data;
+            // GIFs loaded separately have separate but equal data, possibly one on the heap and one mapped from a file.
+            this.dataHashCode = data.hashCode();
+            this.transformationId = transformationId;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key other = (Key) o;
+                return width == other.width
+                        && height == other.height
+                        && dataHashCode == other.dataHashCode
+                        && transformationId.equals(other.transformationId)
+                        && data.equals(other.data);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = dataHashCode;
+            result = 31 * result + transformationId.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{"
+                    + "dataLength=" + data.capacity()
+                    + ", transformationId='" + transformationId + '\''
+                    + ", width=" + width
+                    + ", height=" + height
+                    + '}';
+        }
+    }
+}
@@ -2,65 +2,75 @@ package com.bumptech.glide.load.resource.gif;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
 import android.os.SystemClock;
+import android.util.Log;
 
-import com.bumptech.glide.GenericRequestBuilder;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.gifdecoder.GifDecoder;
-import com.bumptech.glide.load.Encoder;
-import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.Transformation;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.Resource;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
-import com.bumptech.glide.load.resource.NullEncoder;
-import com.bumptech.glide.request.animation.GlideAnimation;
-import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.load.resource.UnitTransformation;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.util.UUID;
-
-class GifFrameLoader {
+class GifFrameLoader implements GifFrameScheduler.Presenter, GifFrameCache.FrameCallback {
+    private static final String TAG = "GifFrameLoader";
 
     private final FrameCallback callback;
     private final GifDecoder gifDecoder;
-    private final Handler handler;
+    private final GifFrameScheduler scheduler;
+    private final BitmapPool bitmapPool;
+    private final Context context;
+    private final GifFrameCache frameCache;
+    private final int width;
+    private final int height;
 
     private boolean isRunning = false;
     private boolean isLoadPending = false;
-    private GenericRequestBuilder<GifDecoder, GifDecoder, Bitmap, Bitmap> requestBuilder;
-    private DelayTarget current;
+    // True while our decoder is in use on the worker, even if the frame it's decoding will be dropped.
+    private boolean isDecoding;
+    private Transformation<Bitmap> transformation = UnitTransformation.get();
+    private GifFrameScheduler.Frame current;
     private boolean isCleared;
+    private GifFrameCache.FrameRing ring;
+    private int pendingIndex;
+    private long pendingTargetTime;
+    // Incremented when the frames being loaded can no longer be shown.
+    private int generation;
 
     public interface FrameCallback {
         void onFrameReady(int index);
     }
 
     public GifFrameLoader(Context context, FrameCallback callback, GifDecoder gifDecoder, int width, int height) {
-        this(callback, gifDecoder, null,
-                getRequestBuilder(context, gifDecoder, width, height, Glide.get(context).getBitmapPool()));
+        this(callback, gifDecoder, GifFrameScheduler.get(), Glide.get(context).getBitmapPool(), context,
+                Glide.get(context).getGifFrameCache(), width, height);
     }
 
-    GifFrameLoader(FrameCallback callback, GifDecoder gifDecoder, Handler handler,
-            GenericRequestBuilder<GifDecoder, GifDecoder, Bitmap, Bitmap>  requestBuilder) {
-        if (handler == null) {
-            handler = new Handler(Looper.getMainLooper(), new FrameLoaderCallback());
-        }
+    // Visible for testing.
+    GifFrameLoader(FrameCallback callback, GifDecoder gifDecoder, GifFrameScheduler scheduler, BitmapPool bitmapPool,
+            Context context, GifFrameCache frameCache, int width, int height) {
         this.callback = callback;
         this.gifDecoder = gifDecoder;
-        this.handler = handler;
-        this.requestBuilder = requestBuilder;
+        this.scheduler = scheduler;
+        this.bitmapPool = bitmapPool;
+        this.context = context;
+        this.frameCache = frameCache;
+        this.width = width;
+        this.height = height;
     }
 
-    @SuppressWarnings("unchecked")
     public void setFrameTransformation(Transformation<Bitmap> transformation) {
         if (transformation == null) {
             throw new NullPointerException("Transformation must not be null");
         }
-        requestBuilder = requestBuilder.transform(transformation);
+        this.transformation = transformation;
+        if (ring != null) {
+            // Frames with the previous transformation can't be shown anymore.
+            cancelPendingFrame();
+            releaseRing();
+            releaseCurrent();
+            loadNextFrame();
+        }
     }
 
     public void start() {
@@ -79,141 +89,152 @@ class GifFrameLoader {
 
     public void clear() {
         stop();
-        if (current != null) {
-            Glide.clear(current);
-            current = null;
+        cancelPendingFrame();
+        if (ring != null) {
+            releaseRing();
         }
+        releaseCurrent();
         isCleared = true;
-        // test.
     }
 
     public Bitmap getCurrentFrame() {
-        return current != null ? current.getResource() : null;
+        return current != null ? current.bitmap : null;
     }
 
     private void loadNextFrame() {
-        if (!isRunning || isLoadPending) {
+        if (!isRunning || isLoadPending || isDecoding) {
             return;
         }
         isLoadPending = true;
-
-        gifDecoder.advance();
-        long targetTime = SystemClock.uptimeMillis() + gifDecoder.getNextDelay();
-        DelayTarget next = new DelayTarget(handler, gifDecoder.getCurrentFrameIndex(), targetTime);
-        requestBuilder
-                .signature(new FrameSignature())
-                .into(next);
-    }
-
-    // Visible for testing.
-    void onFrameReady(DelayTarget delayTarget) {
-        if (isCleared) {
-            handler.obtainMessage(FrameLoaderCallback.MSG_CLEAR, delayTarget).sendToTarget();
-            return;
+        if (ring == null && frameCache != null) {
+            ring = frameCache.acquire(context, gifDecoder, transformation, width, height);
         }
 
-        DelayTarget previous = current;
-        current = delayTarget;
-        callback.onFrameReady(delayTarget.index);
-
-        if (previous != null) {
-            handler.obtainMessage(FrameLoaderCallback.MSG_CLEAR, previous).sendToTarget();
+        if (ring != null) {
+            // Frames from the ring are only advanced through here, our own decoder doesn't decode them.
+            gifDecoder.advance();
+            pendingIndex = gifDecoder.getCurrentFrameIndex();
+            pendingTargetTime = SystemClock.uptimeMillis() + gifDecoder.getNextDelay();
+            ring.load(pendingIndex, this);
+        } else {
+            isDecoding = true;
+            scheduler.decode(new NextFrameDecoder(this, generation, transformation, SystemClock.uptimeMillis()));
         }
+    }
 
+    private void cancelPendingFrame() {
+        generation++;
+        if (ring != null) {
+            ring.cancel(this);
+        }
+        scheduler.cancel(this);
         isLoadPending = false;
-        loadNextFrame();
     }
 
-    private class FrameLoaderCallback implements Handler.Callback {
-        public static final int MSG_DELAY = 1;
-        public static final int MSG_CLEAR = 2;
+    private void releaseRing() {
+        frameCache.release(ring);
+        ring = null;
+        // Our own decoder hasn't decoded the frames it was advanced through, start again from the first frame.
+        gifDecoder.resetFrameIndex();
+    }
 
-        @Override
-        public boolean handleMessage(Message msg) {
-            if (msg.what == MSG_DELAY) {
-                GifFrameLoader.DelayTarget target = (DelayTarget) msg.obj;
-                onFrameReady(target);
-                return true;
-            } else if (msg.what == MSG_CLEAR) {
-                GifFrameLoader.DelayTarget target = (DelayTarget) msg.obj;
-                Glide.clear(target);
-            }
-            return false;
+    private void releaseCurrent() {
+        if (current != null) {
+            current.release();
+            current = null;
         }
     }
 
-    // Visible for testing.
-    static class DelayTarget extends SimpleTarget<Bitmap> {
-        private final Handler handler;
-        private final int index;
-        private final long targetTime;
-        private Bitmap resource;
-
-        public DelayTarget(Handler handler, int index, long targetTime) {
-            this.handler = handler;
-            this.index = index;
-            this.targetTime = targetTime;
-        }
+    @Override
+    public void onResourceReady(Bitmap resource) {
+        // A frame from the ring, owned by the ring.
+        scheduler.schedule(this, new GifFrameScheduler.Frame(pendingIndex, pendingTargetTime, resource));
+    }
 
-        public Bitmap getResource() {
-            return resource;
+    private void onFrameDecoded(int generation, GifFrameScheduler.Frame frame) {
+        isDecoding = false;
+        if (generation != this.generation || isCleared) {
+            if (frame != null) {
+                frame.release();
+            }
+            // We may have been restarted while the dropped frame was decoding.
+            loadNextFrame();
+            return;
         }
-
-        @Override
-        public void onResourceReady(Bitmap resource, GlideAnimation<? super Bitmap> glideAnimation) {
-            this.resource = resource;
-            Message msg = handler.obtainMessage(FrameLoaderCallback.MSG_DELAY, this);
-            handler.sendMessageAtTime(msg, targetTime);
+        if (frame == null) {
+            // Like a failed load, stop animating on the last frame that could be shown.
+            isLoadPending = false;
+            return;
         }
+        scheduler.schedule(this, frame);
     }
 
-    private static GenericRequestBuilder<GifDecoder, GifDecoder, Bitmap, Bitmap> getRequestBuilder(Context context,
-            GifDecoder gifDecoder, int width, int height, BitmapPool bitmapPool) {
-        GifFrameResourceDecoder frameResourceDecoder = new GifFrameResourceDecoder(bitmapPool);
-        GifFrameModelLoader frameLoader = new GifFrameModelLoader();
-        Encoder<GifDecoder> sourceEncoder = NullEncoder.get();
-        return Glide.with(context)
-                .using(frameLoader, GifDecoder.class)
-                .load(gifDecoder)
-                .as(Bitmap.class)
-                .sourceEncoder(sourceEncoder)
-                .decoder(frameResourceDecoder)
-                .skipMemoryCache(true)
-                .diskCacheStrategy(DiskCacheStrategy.NONE)
-                .override(width, height);
+    @Override
+    public void onFrameReady(GifFrameScheduler.Frame frame) {
+        GifFrameScheduler.Frame previous = current;
+        current = frame;
+        callback.onFrameReady(frame.index);
 
-    }
+        if (previous != null) {
+            previous.release();
+        }
 
-    // Visible for testing.
-    static class FrameSignature implements Key {
-        private final UUID uuid;
+        isLoadPending = false;
+        loadNextFrame();
+    }
 
-        public FrameSignature() {
-            this(UUID.randomUUID());
-        }
+    /**
+     * Decodes the next frame of a {@link GifFrameLoader}'s own decoder, skipping frames that are already overdue.
+     */
+    private static class NextFrameDecoder extends GifFrameScheduler.FrameDecoder {
+        private final GifFrameLoader loader;
+        private final int generation;
+        private final Transformation<Bitmap> transformation;
+        private final long startTime;
 
-        // VisibleForTesting.
-        FrameSignature(UUID uuid) {
-            this.uuid = uuid;
+        NextFrameDecoder(GifFrameLoader loader, int generation, Transformation<Bitmap> transformation,
+                long startTime) {
+            this.loader = loader;
+            this.generation = generation;
+            this.transformation = transformation;
+            this.startTime = startTime;
         }
 
         @Override
-        public boolean equals(Object o) {
-            if (o instanceof FrameSignature) {
-                FrameSignature other = (FrameSignature) o;
-                return other.uuid.equals(uuid);
+        GifFrameScheduler.Frame decodeFrame() {
+            GifDecoder decoder = loader.gifDecoder;
+            decoder.advance();
+            long targetTime = startTime + decoder.getNextDelay();
+            // Never skip the last frame so that loops are still counted.
+            int skipped = 0;
+            while (decoder.getCurrentFrameIndex() < decoder.getFrameCount() - 1) {
+                long nextTargetTime = targetTime + decoder.getDelay(decoder.getCurrentFrameIndex() + 1);
+                if (SystemClock.uptimeMillis() < nextTargetTime) {
+                    break;
+                }
+                // Decoding has fallen behind and the following frame is due already, so this frame would never be
+                // shown. Its pixels are still needed to decode the frames after it.
+                Bitmap overdue = decoder.getNextFrame();
+                if (overdue != null && !loader.bitmapPool.put(overdue)) {
+                    overdue.recycle();
+                }
+                decoder.advance();
+                targetTime = nextTargetTime;
+                skipped++;
+            }
+            if (skipped > 0 && Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Skipped " + skipped + " overdue frames");
             }
-            return false;
-        }
 
-        @Override
-        public int hashCode() {
-            return uuid.hashCode();
+            Resource<Bitmap> resource = GifFrameScheduler.decodeNextFrame(decoder, transformation, loader.bitmapPool,
+                    loader.width, loader.height);
+            return resource != null
+                    ? new GifFrameScheduler.Frame(decoder.getCurrentFrameIndex(), targetTime, resource) : null;
         }
 
         @Override
-        public void updateDiskCacheKey(MessageDigest messageDigest) throws UnsupportedEncodingException {
-            throw new UnsupportedOperationException("Not implemented");
+        void onFrameDecoded(GifFrameScheduler.Frame frame) {
+            loader.onFrameDecoded(generation, frame);
         }
     }
 }
@@ -0,0 +1,249 @@
+package com.bumptech.glide.load.resource.gif;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.gifdecoder.GifDecoder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
+import com.bumptech.glide.load.engine.executor.Prioritized;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+import com.bumptech.glide.util.Util;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Decodes the frames of {@link GifDrawable}s on a small shared worker and shows them on the main thread when they're
+ * due, without going through the request pipeline.
+ *
+ * <p>
+ *     Frames decoded through a request need a new signature, key, job and main thread hand off each. Instead frames
+ *     are decoded by {@link FrameDecoder}s on a pool of at most two background threads into bitmaps from the
+ *     {@link BitmapPool}, and all the frames waiting to be shown, from every GIF, are kept in a single queue ordered by
+ *     the time they're due. One {@link Choreographer} callback is posted for the earliest frame and shows every frame
+ *     that's due when the display is next drawn.
+ * </p>
+ *
+ * <p>
+ *     Other than {@link FrameDecoder#decodeFrame()}, must only be used on the main thread.
+ * </p>
+ */
+final class GifFrameScheduler {
+    private static final String TAG = "GifFrameScheduler";
+    private static final int MAX_WORKER_THREADS = 2;
+    private static GifFrameScheduler scheduler;
+
+    private final ExecutorService worker;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PriorityQueue<Frame> scheduled = new PriorityQueue<Frame>();
+    private final Ticker ticker = new Ticker();
+    private Choreographer choreographer;
+    private long nextTickTime = Long.MAX_VALUE;
+    private long ordering;
+
+    static synchronized GifFrameScheduler get() {
+        if (scheduler == null) {
+            int threads = Math.min(MAX_WORKER_THREADS, Runtime.getRuntime().availableProcessors());
+            scheduler = new GifFrameScheduler(new FifoPriorityThreadPoolExecutor(threads));
+        }
+        return scheduler;
+    }
+
+    // Visible for testing.
+    GifFrameScheduler(ExecutorService worker) {
+        this.worker = worker;
+    }
+
+    /**
+     * Decodes a frame on the worker and passes it to the given decoder on the main thread.
+     */
+    void decode(FrameDecoder decoder) {
+        decoder.scheduler = this;
+        worker.submit(decoder);
+    }
+
+    /**
+     * Shows the given frame with the given presenter once the frame's target time has passed.
+     */
+    void schedule(Presenter presenter, Frame frame) {
+        Util.assertMainThread();
+        frame.presenter = presenter;
+        frame.order = ordering++;
+        scheduled.add(frame);
+        updateTicker();
+    }
+
+    /**
+     * Removes and releases all frames scheduled for the given presenter.
+     */
+    void cancel(Presenter presenter) {
+        Util.assertMainThread();
+        Iterator<Frame> iterator = scheduled.iterator();
+        while (iterator.hasNext()) {
+            Frame frame = iterator.next();
+            if (frame.presenter == presenter) {
+                iterator.remove();
+                frame.release();
+            }
+        }
+    }
+
+    private void updateTicker() {
+        Frame first = scheduled.peek();
+        long tickTime = first != null ? first.targetTime : Long.MAX_VALUE;
+        if (tickTime == nextTickTime) {
+            return;
+        }
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        choreographer.removeFrameCallback(ticker);
+        nextTickTime = tickTime;
+        if (first != null) {
+            choreographer.postFrameCallbackDelayed(ticker, Math.max(0, tickTime - SystemClock.uptimeMillis()));
+        }
+    }
+
+    private void onTick() {
+        nextTickTime = Long.MAX_VALUE;
+        long now = SystemClock.uptimeMillis();
+        // Presenting a frame may schedule the presenter's next frame right away, leave those for the next pass.
+        long lastOrder = ordering;
+        Frame frame;
+        while ((frame = scheduled.peek()) != null && frame.targetTime <= now && frame.order < lastOrder) {
+            scheduled.poll();
+            frame.presenter.onFrameReady(frame);
+        }
+        updateTicker();
+    }
+
+    /**
+     * Decodes the next frame of the given decoder into a bitmap from the given pool and applies the given
+     * transformation to it. Called on the worker.
+     */
+    static Resource<Bitmap> decodeNextFrame(GifDecoder decoder, Transformation<Bitmap> transformation,
+            BitmapPool bitmapPool, int width, int height) {
+        Resource<Bitmap> decoded = BitmapResource.obtain(decoder.getNextFrame(), bitmapPool);
+        if (decoded == null) {
+            return null;
+        }
+        Resource<Bitmap> transformed = transformation.transform(decoded, width, height);
+        if (!decoded.equals(transformed)) {
+            decoded.recycle();
+        }
+        return transformed;
+    }
+
+    /**
+     * Shows frames scheduled with {@link #schedule(Presenter, Frame)}.
+     */
+    interface Presenter {
+        /**
+         * Called on the main thread once the given frame is due.
+         */
+        void onFrameReady(Frame frame);
+    }
+
+    /**
+     * Decodes a single frame on the worker with {@link #decodeFrame()} and passes it back to the main thread in
+     * {@link #onFrameDecoded(Frame)}.
+     */
+    abstract static class FrameDecoder implements Runnable, Prioritized {
+        private GifFrameScheduler scheduler;
+
+        /**
+         * Called on the worker, returns the decoded frame, or null if it couldn't be decoded.
+         */
+        abstract Frame decodeFrame();
+
+        /**
+         * Called on the main thread with the frame returned by {@link #decodeFrame()}.
+         */
+        abstract void onFrameDecoded(Frame frame);
+
+        @Override
+        public int getPriority() {
+            return Priority.NORMAL.ordinal();
+        }
+
+        @Override
+        public void run() {
+            Frame frame = null;
+            try {
+                frame = decodeFrame();
+            } catch (RuntimeException e) {
+                if (Log.isLoggable(TAG, Log.WARN)) {
+                    Log.w(TAG, "Failed to decode frame", e);
+                }
+            }
+            final Frame result = frame;
+            scheduler.mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onFrameDecoded(result);
+                }
+            });
+        }
+    }
+
+    /**
+     * A decoded frame and the time it should be shown at.
+     */
+    static final class Frame implements Comparable<Frame> {
+        final int index;
+        final long targetTime;
+        final Bitmap bitmap;
+        // Null if the frame is owned by someone else and must not be recycled by us.
+        private final Resource<Bitmap> resource;
+        private Presenter presenter;
+        private long order;
+
+        Frame(int index, long targetTime, Resource<Bitmap> resource) {
+            this(index, targetTime, resource.get(), resource);
+        }
+
+        Frame(int index, long targetTime, Bitmap bitmap) {
+            this(index, targetTime, bitmap, null);
+        }
+
+        private Frame(int index, long targetTime, Bitmap bitmap, Resource<Bitmap> resource) {
+            this.index = index;
+            this.targetTime = targetTime;
+            this.bitmap = bitmap;
+            this.resource = resource;
+        }
+
+        /**
+         * Returns the frame's bitmap to the pool if the frame owns it.
+         */
+        void release() {
+            if (resource != null) {
+                resource.recycle();
+            }
+        }
+
+        @Override
+        public int compareTo(Frame other) {
+            if (targetTime != other.targetTime) {
+                return targetTime < other.targetTime ? -1 : 1;
+            }
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+
+    private class Ticker implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onTick();
+        }
+    }
+}
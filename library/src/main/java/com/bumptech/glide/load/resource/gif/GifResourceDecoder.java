@@ -15,8 +15,14 @@ import com.bumptech.glide.load.resource.UnitTransformation;
 import com.bumptech.glide.util.Util;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 
 /**
@@ -25,6 +31,9 @@ import java.util.Queue;
  */
 public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawable> {
     private static final String TAG = "GifResourceDecoder";
+    // Streams longer than this are spooled to a file and memory mapped rather than kept on the heap.
+    private static final int MAX_HEAP_DATA_SIZE = 512 * 1024;
+    private static final int BUFFER_SIZE = 16384;
     private static final GifHeaderParserPool PARSER_POOL = new GifHeaderParserPool();
     private static final GifDecoderPool DECODER_POOL = new GifDecoderPool();
 
@@ -54,7 +63,15 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawa
 
     @Override
     public GifDrawableResource decode(InputStream source, int width, int height) {
-        byte[] data = inputStreamToBytes(source);
+        ByteBuffer data = readData(source);
+        return data != null ? decode(data, width, height) : null;
+    }
+
+    /**
+     * Decodes a GIF from the given buffer, for example one memory mapped from a file, which the returned drawable
+     * plays from without copying it onto the heap.
+     */
+    GifDrawableResource decode(ByteBuffer data, int width, int height) {
         final GifHeaderParser parser = parserPool.obtain(data);
         final GifDecoder decoder = decoderPool.obtain(provider);
         try {
@@ -65,7 +82,8 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawa
         }
     }
 
-    private GifDrawableResource decode(byte[] data, int width, int height, GifHeaderParser parser, GifDecoder decoder) {
+    private GifDrawableResource decode(ByteBuffer data, int width, int height, GifHeaderParser parser,
+            GifDecoder decoder) {
         final GifHeader header = parser.parseHeader();
         if (header.getNumFrames() <= 0 || header.getStatus() != GifDecoder.STATUS_OK) {
             // If we couldn't decode the GIF, we will end up with a frame count of 0.
@@ -85,7 +103,7 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawa
         return new GifDrawableResource(gifDrawable);
     }
 
-    private Bitmap decodeFirstFrame(GifDecoder decoder, GifHeader header, byte[] data) {
+    private Bitmap decodeFirstFrame(GifDecoder decoder, GifHeader header, ByteBuffer data) {
         decoder.setData(header, data);
         decoder.advance();
         return decoder.getNextFrame();
@@ -96,21 +114,76 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawa
         return "";
     }
 
-    private static byte[] inputStreamToBytes(InputStream is) {
-        final int bufferSize = 16384;
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bufferSize);
+    /**
+     * Reads the given stream onto the heap, or, if it's longer than {@link #MAX_HEAP_DATA_SIZE}, into a temporary
+     * file that is memory mapped and then deleted, so the mapping is the only reference left to the data.
+     */
+    private ByteBuffer readData(InputStream is) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] data = new byte[BUFFER_SIZE];
+        boolean canSpool = true;
         try {
             int nRead;
-            byte[] data = new byte[bufferSize];
             while ((nRead = is.read(data)) != -1) {
                 buffer.write(data, 0, nRead);
+                if (canSpool && buffer.size() > MAX_HEAP_DATA_SIZE) {
+                    File file = createSpoolFile();
+                    if (file == null) {
+                        canSpool = false;
+                        continue;
+                    }
+                    return spool(buffer, data, is, file);
+                }
             }
             buffer.flush();
         } catch (IOException e) {
             Log.w(TAG, "Error reading data from stream", e);
         }
-        //TODO the returned byte[] may be partial if an IOException was thrown from read
-        return buffer.toByteArray();
+        //TODO the returned data may be partial if an IOException was thrown from read
+        return ByteBuffer.wrap(buffer.toByteArray());
+    }
+
+    private File createSpoolFile() {
+        try {
+            return File.createTempFile("gif", ".tmp", context.getCacheDir());
+        } catch (IOException e) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Unable to create file to spool gif to, reading onto the heap", e);
+            }
+            return null;
+        }
+    }
+
+    private static ByteBuffer spool(ByteArrayOutputStream buffer, byte[] data, InputStream is, File file)
+            throws IOException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            OutputStream os = new FileOutputStream(file);
+            try {
+                buffer.writeTo(os);
+                int nRead;
+                while ((nRead = is.read(data)) != -1) {
+                    os.write(data, 0, nRead);
+                }
+            } finally {
+                os.close();
+            }
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the file is closed and deleted.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    // Ignored.
+                }
+            }
+            if (!file.delete() && Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Failed to delete spooled gif " + file);
+            }
+        }
     }
 
     // Visible for testing.
@@ -135,7 +208,7 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, GifDrawa
     static class GifHeaderParserPool {
         private final Queue<GifHeaderParser> pool = Util.createQueue(0);
 
-        public synchronized GifHeaderParser obtain(byte[] data) {
+        public synchronized GifHeaderParser obtain(ByteBuffer data) {
             GifHeaderParser result = pool.poll();
             if (result == null) {
                 result = new GifHeaderParser();
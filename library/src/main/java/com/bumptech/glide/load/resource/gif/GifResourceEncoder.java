@@ -11,12 +11,20 @@ import com.bumptech.glide.load.ResourceEncoder;
 import com.bumptech.glide.load.Transformation;
 import com.bumptech.glide.load.engine.Resource;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
 import com.bumptech.glide.load.resource.UnitTransformation;
 import com.bumptech.glide.load.resource.bitmap.BitmapResource;
 import com.bumptech.glide.util.LogTime;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An {@link com.bumptech.glide.load.ResourceEncoder} that can write
@@ -25,6 +33,9 @@ import java.io.OutputStream;
 public class GifResourceEncoder implements ResourceEncoder<GifDrawable> {
     private static final Factory FACTORY = new Factory();
     private static final String TAG = "GifEncoder";
+    private static final int MAX_ENCODER_THREADS = 4;
+    // Quantizes and compresses frames while the encoding thread decodes and transforms the following frames.
+    private static final ExecutorService FRAME_ENCODER_SERVICE = buildFrameEncoderService();
     private final GifDecoder.BitmapProvider provider;
     private final BitmapPool bitmapPool;
     private final Factory factory;
@@ -47,12 +58,13 @@ public class GifResourceEncoder implements ResourceEncoder<GifDrawable> {
         GifDrawable drawable = resource.get();
         Transformation<Bitmap> transformation = drawable.getFrameTransformation();
         if (transformation instanceof UnitTransformation) {
-            return writeDataDirect(drawable.getData(), os);
+            return writeDataDirect(drawable.getBuffer(), os);
         }
 
-        GifDecoder decoder = decodeHeaders(drawable.getData());
+        GifDecoder decoder = decodeHeaders(drawable.getBuffer());
 
         AnimatedGifEncoder encoder = factory.buildEncoder();
+        encoder.setExecutor(FRAME_ENCODER_SERVICE);
         if (!encoder.start(os)) {
             return false;
         }
@@ -61,12 +73,11 @@ public class GifResourceEncoder implements ResourceEncoder<GifDrawable> {
             Bitmap currentFrame = decoder.getNextFrame();
             Resource<Bitmap> transformedResource = getTransformedFrame(currentFrame, transformation, drawable);
             try {
+                // The delay applies to the frame added next.
+                encoder.setDelay(decoder.getDelay(decoder.getCurrentFrameIndex()));
                 if (!encoder.addFrame(transformedResource.get())) {
                     return false;
                 }
-                int currentFrameIndex = decoder.getCurrentFrameIndex();
-                int delay = decoder.getDelay(currentFrameIndex);
-                encoder.setDelay(delay);
 
                 decoder.advance();
             } finally {
@@ -77,17 +88,34 @@ public class GifResourceEncoder implements ResourceEncoder<GifDrawable> {
         boolean result = encoder.finish();
 
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
-            Log.v(TAG, "Encoded gif with " + decoder.getFrameCount() + " frames and " + drawable.getData().length
+            Log.v(TAG, "Encoded gif with " + decoder.getFrameCount() + " frames and " + drawable.getBuffer().capacity()
                     + " bytes in " + LogTime.getElapsedMillis(startTime) + " ms");
         }
 
         return result;
     }
 
-    private boolean writeDataDirect(byte[] data, OutputStream os) {
+    private static ExecutorService buildFrameEncoderService() {
+        int threads = Math.max(1, Math.min(MAX_ENCODER_THREADS, Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new FifoPriorityThreadPoolExecutor.DefaultThreadFactory());
+        // Encoding results is rare, don't keep the threads around in between.
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private boolean writeDataDirect(ByteBuffer data, OutputStream os) {
         boolean success = true;
         try {
-            os.write(data);
+            if (data.hasArray()) {
+                os.write(data.array(), data.arrayOffset(), data.capacity());
+            } else {
+                // Memory mapped, write it without copying it onto the heap all at once.
+                WritableByteChannel channel = Channels.newChannel(os);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
         } catch (IOException e) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Failed to write data to output stream in GifResourceEncoder", e);
@@ -97,7 +125,7 @@ public class GifResourceEncoder implements ResourceEncoder<GifDrawable> {
         return success;
     }
 
-    private GifDecoder decodeHeaders(byte[] data) {
+    private GifDecoder decodeHeaders(ByteBuffer data) {
         GifHeaderParser parser = factory.buildParser();
         parser.setData(data);
         GifHeader header = parser.parseHeader();
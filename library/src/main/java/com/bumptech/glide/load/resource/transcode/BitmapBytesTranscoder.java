@@ -4,33 +4,77 @@ import android.graphics.Bitmap;
 
 import com.bumptech.glide.load.engine.Resource;
 import com.bumptech.glide.load.resource.bytes.BytesResource;
+import com.bumptech.glide.util.PooledByteArrayOutputStream;
+import com.bumptech.glide.util.SizedByteArrayPool;
+import com.bumptech.glide.util.Util;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
 /**
  * An {@link com.bumptech.glide.load.resource.transcode.ResourceTranscoder} that converts
  * {@link android.graphics.Bitmap}s into byte arrays using
  * {@link android.graphics.Bitmap#compress(android.graphics.Bitmap.CompressFormat, int, java.io.OutputStream)}.
+ *
+ * <p>
+ *     Bitmaps are compressed into buffers from a {@link SizedByteArrayPool}, so that growing the output doesn't
+ *     allocate. The output is then copied once into an array of exactly the right length on the thread that
+ *     transcodes, and the buffer is returned to the pool. A buffer that happens to be exactly full is handed to the
+ *     {@link BytesResource} as it is and never returned to the pool, since its new owner may keep it.
+ * </p>
+ *
+ * <p>
+ *     The copy can't be avoided by handing out pooled buffers: the array is given to targets and callers that may
+ *     keep it for as long as they like, so there's no point at which it's safe to put back in the pool.
+ * </p>
  */
 public class BitmapBytesTranscoder implements ResourceTranscoder<Bitmap, byte[]> {
+    // Compressed images are usually well under an eighth of their size in memory.
+    private static final int INITIAL_SIZE_DIVISOR = 8;
+
     private final Bitmap.CompressFormat compressFormat;
     private final int quality;
+    private final SizedByteArrayPool pool;
+    // Images transcoded one after another are usually of similar sizes, start with enough room for the last one.
+    private volatile int lastSize;
 
     public BitmapBytesTranscoder() {
         this(Bitmap.CompressFormat.JPEG, 100);
     }
 
     public BitmapBytesTranscoder(Bitmap.CompressFormat compressFormat, int quality) {
+        this(compressFormat, quality, SizedByteArrayPool.get());
+    }
+
+    public BitmapBytesTranscoder(Bitmap.CompressFormat compressFormat, int quality, SizedByteArrayPool pool) {
         this.compressFormat = compressFormat;
         this.quality = quality;
+        this.pool = pool;
     }
 
     @Override
     public Resource<byte[]> transcode(Resource<Bitmap> toTranscode) {
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        toTranscode.get().compress(compressFormat, quality, os);
-        toTranscode.recycle();
-        return new BytesResource(os.toByteArray());
+        Bitmap bitmap = toTranscode.get();
+        int initialSize = lastSize > 0 ? lastSize : Util.getBitmapByteSize(bitmap) / INITIAL_SIZE_DIVISOR;
+        PooledByteArrayOutputStream os = new PooledByteArrayOutputStream(pool, initialSize);
+        try {
+            bitmap.compress(compressFormat, quality, os);
+        } catch (RuntimeException e) {
+            os.release();
+            throw e;
+        } finally {
+            toTranscode.recycle();
+        }
+        int size = os.size();
+        lastSize = size;
+        byte[] buffer = os.detachBuffer();
+        byte[] bytes;
+        if (buffer.length == size) {
+            bytes = buffer;
+        } else {
+            bytes = Arrays.copyOf(buffer, size);
+            pool.put(buffer);
+        }
+        return new BytesResource(bytes);
     }
 
     @Override
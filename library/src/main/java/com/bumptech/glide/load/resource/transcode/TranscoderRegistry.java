@@ -1,19 +1,18 @@
 package com.bumptech.glide.load.resource.transcode;
 
-import com.bumptech.glide.util.MultiClassKey;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.bumptech.glide.util.ClassPairMap;
 
 /**
  * A class that allows {@link com.bumptech.glide.load.resource.transcode.ResourceTranscoder}s to be registered and
  * retrieved by the classes they convert between.
+ *
+ * <p>
+ *     Registering a transcoder replaces the registry's immutable map of transcoders with an updated copy, so
+ *     {@link #get(Class, Class)} can be called from any thread without locking.
+ * </p>
  */
 public class TranscoderRegistry {
-    private static final MultiClassKey GET_KEY = new MultiClassKey();
-
-    private final Map<MultiClassKey, ResourceTranscoder<?, ?>> factories =
-            new HashMap<MultiClassKey, ResourceTranscoder<?, ?>>();
+    private volatile ClassPairMap<ResourceTranscoder<?, ?>> factories = ClassPairMap.empty();
 
     /**
      * Registers the given {@link com.bumptech.glide.load.resource.transcode.ResourceTranscoder} using the given
@@ -25,8 +24,9 @@ public class TranscoderRegistry {
      * @param <Z> The type of the resource that the transcoder transcodes from.
      * @param <R> The type of the resource that the transcoder transcodes to.
      */
-    public <Z, R> void register(Class<Z> decodedClass, Class<R> transcodedClass, ResourceTranscoder<Z, R> transcoder) {
-        factories.put(new MultiClassKey(decodedClass, transcodedClass), transcoder);
+    public synchronized <Z, R> void register(Class<Z> decodedClass, Class<R> transcodedClass,
+            ResourceTranscoder<Z, R> transcoder) {
+        factories = factories.with(decodedClass, transcodedClass, transcoder);
     }
 
     /**
@@ -44,11 +44,7 @@ public class TranscoderRegistry {
             // we know they're the same type (Z and R)
             return (ResourceTranscoder<Z, R>) UnitTranscoder.get();
         }
-        final ResourceTranscoder<?, ?> result;
-        synchronized (GET_KEY) {
-            GET_KEY.set(decodedClass, transcodedClass);
-            result = factories.get(GET_KEY);
-        }
+        final ResourceTranscoder<?, ?> result = factories.get(decodedClass, transcodedClass);
         if (result == null) {
             throw new IllegalArgumentException("No transcoder registered for " + decodedClass + " and "
                     + transcodedClass);
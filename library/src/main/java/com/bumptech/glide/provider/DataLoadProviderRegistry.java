@@ -1,19 +1,18 @@
 package com.bumptech.glide.provider;
 
-import com.bumptech.glide.util.MultiClassKey;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.bumptech.glide.util.ClassPairMap;
 
 /**
  * A class that allows {@link com.bumptech.glide.provider.DataLoadProvider}s to be registered and retrieved by the
  * data and resource classes they provide encoders and decoders for.
+ *
+ * <p>
+ *     Registering a provider replaces the registry's immutable map of providers with an updated copy, so
+ *     {@link #get(Class, Class)} can be called from any thread without locking.
+ * </p>
  */
 public class DataLoadProviderRegistry {
-    private static final MultiClassKey GET_KEY = new MultiClassKey();
-
-    private final Map<MultiClassKey, DataLoadProvider<?, ?>> providers =
-            new HashMap<MultiClassKey, DataLoadProvider<?, ?>>();
+    private volatile ClassPairMap<DataLoadProvider<?, ?>> providers = ClassPairMap.empty();
 
     /**
      * Registers the given {@link com.bumptech.glide.provider.DataLoadProvider} using the given classes so it can later
@@ -25,9 +24,10 @@ public class DataLoadProviderRegistry {
      * @param <T> The type of the data that the provider provides encoders and decoders for.
      * @param <Z> The type of the resource that the provider provides encoders and decoders for.
      */
-    public <T, Z> void register(Class<T> dataClass, Class<Z> resourceClass, DataLoadProvider<T, Z> provider) {
+    public synchronized <T, Z> void register(Class<T> dataClass, Class<Z> resourceClass,
+            DataLoadProvider<T, Z> provider) {
         //TODO: maybe something like DataLoadProvider<? super T, ? extends Z> may work here
-        providers.put(new MultiClassKey(dataClass, resourceClass), provider);
+        providers = providers.with(dataClass, resourceClass, provider);
     }
 
     /**
@@ -40,11 +40,7 @@ public class DataLoadProviderRegistry {
      */
     @SuppressWarnings("unchecked")
     public <T, Z> DataLoadProvider<T, Z> get(Class<T> dataClass, Class<Z> resourceClass) {
-        DataLoadProvider<?, ?> result;
-        synchronized (GET_KEY) {
-            GET_KEY.set(dataClass, resourceClass);
-            result = providers.get(GET_KEY);
-        }
+        DataLoadProvider<?, ?> result = providers.get(dataClass, resourceClass);
         if (result == null) {
             result = EmptyDataLoadProvider.get();
         }
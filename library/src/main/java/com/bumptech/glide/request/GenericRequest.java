@@ -11,11 +11,14 @@ import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.Engine;
 import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.executor.Prioritized;
 import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.resource.transcode.ResourceTranscoder;
 import com.bumptech.glide.provider.LoadProvider;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.animation.GlideAnimationFactory;
+import com.bumptech.glide.request.animation.NoAnimation;
+import com.bumptech.glide.request.target.ImageViewTarget;
 import com.bumptech.glide.request.target.SizeReadyCallback;
 import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.util.LogTime;
@@ -26,13 +29,19 @@ import java.util.Queue;
 /**
  * A {@link Request} that loads a {@link com.bumptech.glide.load.engine.Resource} into a given {@link Target}.
  *
+ * <p>
+ *     While the exact resource loads, an {@link ImageViewTarget} may show a preview, a variant of the resource in
+ *     another size that the {@link Engine} found in the memory or disk cache. The preview is replaced by the exact
+ *     resource, with the request's animation, once it's ready. Loads that skip the memory cache don't show previews.
+ * </p>
+ *
  * @param <A> The type of the model that the resource will be loaded from.
  * @param <T> The type of the data that the resource will be loaded from.
  * @param <Z> The type of the resource that will be loaded.
  * @param <R> The type of the resource that will be transcoded from the loaded resource.
  */
 public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallback,
-        ResourceCallback {
+        Engine.PreviewCallback, Prioritized {
     private static final String TAG = "GenericRequest";
     private static final Queue<GenericRequest<?, ?, ?, ?>> REQUEST_POOL = Util.createQueue(0);
     private static final double TO_MEGABYTE = 1d / (1024d * 1024d);
@@ -79,12 +88,15 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
     private int overrideWidth;
     private int overrideHeight;
     private DiskCacheStrategy diskCacheStrategy;
+    private long diskCacheTimeToLiveMillis;
 
     private Drawable placeholderDrawable;
     private Drawable errorDrawable;
     private boolean loadedFromMemoryCache;
     // doing our own type check
     private Resource<?> resource;
+    // A variant shown until the exact resource is ready.
+    private Resource<?> previewResource;
     private Engine.LoadStatus loadStatus;
     private long startTime;
     private Status status;
@@ -112,7 +124,8 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
             GlideAnimationFactory<R> animationFactory,
             int overrideWidth,
             int overrideHeight,
-            DiskCacheStrategy diskCacheStrategy) {
+            DiskCacheStrategy diskCacheStrategy,
+            long diskCacheTimeToLiveMillis) {
         @SuppressWarnings("unchecked")
         GenericRequest<A, T, Z, R> request = (GenericRequest<A, T, Z, R>) REQUEST_POOL.poll();
         if (request == null) {
@@ -141,7 +154,8 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
                 animationFactory,
                 overrideWidth,
                 overrideHeight,
-                diskCacheStrategy);
+                diskCacheStrategy,
+                diskCacheTimeToLiveMillis);
         return request;
     }
 
@@ -190,7 +204,8 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
             GlideAnimationFactory<R> animationFactory,
             int overrideWidth,
             int overrideHeight,
-            DiskCacheStrategy diskCacheStrategy) {
+            DiskCacheStrategy diskCacheStrategy,
+            long diskCacheTimeToLiveMillis) {
         this.loadProvider = loadProvider;
         this.model = model;
         this.signature = signature;
@@ -214,6 +229,7 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         this.overrideWidth = overrideWidth;
         this.overrideHeight = overrideHeight;
         this.diskCacheStrategy = diskCacheStrategy;
+        this.diskCacheTimeToLiveMillis = diskCacheTimeToLiveMillis;
         status = Status.PENDING;
 
         // We allow null models by just setting an error drawable. Null models will always have empty providers, we
@@ -284,7 +300,8 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
             target.getSize(this);
         }
 
-        if (!isComplete() && !isFailed() && canNotifyStatusChanged()) {
+        // A preview from memory may already have been shown while the size was known.
+        if (!isComplete() && !isFailed() && previewResource == null && canNotifyStatusChanged()) {
             //先将占位图加在ImageView上。
             //调用了一个target.onLoadStarted()方法，并传入了一个loading占位图，在也就说，在图片请求开始之前，
             // 会先使用这张占位图代替最终的图片显示。这也是我们在上一篇文章中学过的placeholder()和error()这两个占位图API底层的实现原理
@@ -334,6 +351,7 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         if (resource != null) {
             releaseResource(resource);
         }
+        releasePreview();
         if (canNotifyStatusChanged()) {
             target.onLoadCleared(getPlaceholderDrawable());
         }
@@ -357,6 +375,13 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         this.resource = null;
     }
 
+    private void releasePreview() {
+        if (previewResource != null) {
+            engine.release(previewResource);
+            previewResource = null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -389,6 +414,14 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         return status == Status.CANCELLED || status == Status.CLEARED;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPriority() {
+        return priority.ordinal();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -472,7 +505,7 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         loadedFromMemoryCache = true;
         //将这么上述的参数放到这个Engine中去，注意最后一个参数，回调是自己，套路
         loadStatus = engine.load(signature, width, height, dataFetcher, loadProvider, transformation, transcoder,
-                priority, isMemoryCacheable, diskCacheStrategy, this);
+                priority, isMemoryCacheable, diskCacheStrategy, diskCacheTimeToLiveMillis, this);
         loadedFromMemoryCache = resource != null;
         if (Log.isLoggable(TAG, Log.VERBOSE)) {
             logV("finished onSizeReady in " + LogTime.getElapsedMillis(startTime));
@@ -525,6 +558,7 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
 
         if (!canSetResource()) {
             releaseResource(resource);
+            releasePreview();
             // We can't set the status to complete before asking canSetResource().
             status = Status.COMPLETE;
             return;
@@ -555,6 +589,7 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
             //在这里回调，表示加载成功
             target.onResourceReady(result, animation);
         }
+        releasePreview();
 
         notifyLoadSuccess();
 
@@ -581,6 +616,39 @@ public final class GenericRequest<A, T, Z, R> implements Request, SizeReadyCallb
         if (requestListener == null || !requestListener.onException(e, model, target, isFirstReadyResource())) {
             //放置报错的图片
             setErrorPlaceholder(e);
+            if (canNotifyStatusChanged()) {
+                // The error placeholder replaced the preview.
+                releasePreview();
+            }
+        }
+    }
+
+    /**
+     * A callback method that should never be invoked directly.
+     */
+    @Override
+    public boolean canShowPreview() {
+        // Other targets, like futures, expect to be given exactly one resource.
+        return target instanceof ImageViewTarget && canSetResource();
+    }
+
+    /**
+     * A callback method that should never be invoked directly.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void onPreviewReady(Resource<?> preview) {
+        Object received = preview.get();
+        if (status != Status.RUNNING || previewResource != null || !canSetResource()
+                || received == null || !transcodeClass.isAssignableFrom(received.getClass())) {
+            engine.release(preview);
+            return;
+        }
+        previewResource = preview;
+        // The exact resource animates in over the preview, so the preview itself is shown without an animation.
+        target.onResourceReady((R) received, NoAnimation.<R>get());
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            logV("Preview ready in " + LogTime.getElapsedMillis(startTime));
         }
     }
 
@@ -0,0 +1,211 @@
+package com.bumptech.glide.request.target;
+
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.engine.executor.Prioritized;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resolves the sizes of all {@link ViewTarget}s waiting for layout in a single pre-draw pass.
+ *
+ * <p>
+ *     Rather than one {@link android.view.ViewTreeObserver.OnPreDrawListener} per waiting view, a single listener is
+ *     added to each {@link ViewTreeObserver}, so all the views already attached to a window share one listener. The
+ *     first pre-draw pass after layout checks every waiting view, in every window, and then calls the ready
+ *     {@link SizeReadyCallback}s together, ordered by their {@link Priority} if they are {@link Prioritized}, so the
+ *     loads for the most important requests are started first.
+ * </p>
+ *
+ * <p>
+ *     Views that are not yet attached to a window each have their own floating {@link ViewTreeObserver}, so each
+ *     still needs its own listener. The listeners are merged into the window's observer when the views are attached
+ *     and the first one to be called resolves all of them.
+ * </p>
+ *
+ * <p>
+ *     Waiting determiners are only held weakly, so views that are never laid out, because they're gone or never
+ *     attached, or whose Activity finishes first, aren't kept alive by the resolver.
+ * </p>
+ *
+ * <p>
+ *     Must only be used on the main thread.
+ * </p>
+ */
+final class BatchedSizeResolver {
+    private static final String TAG = "BatchedSizeResolver";
+    private static final int DEFAULT_PRIORITY = Priority.NORMAL.ordinal();
+    private static final BatchedSizeResolver INSTANCE = new BatchedSizeResolver();
+    private static final Comparator<ReadySize> PRIORITY_ORDER = new Comparator<ReadySize>() {
+        @Override
+        public int compare(ReadySize lhs, ReadySize rhs) {
+            return lhs.priority < rhs.priority ? -1 : (lhs.priority == rhs.priority ? 0 : 1);
+        }
+    };
+
+    private final List<WeakReference<ViewTarget.SizeDeterminer>> pending =
+            new ArrayList<WeakReference<ViewTarget.SizeDeterminer>>();
+    private final Map<ViewTreeObserver, PreDrawListener> listeners =
+            new WeakHashMap<ViewTreeObserver, PreDrawListener>();
+    private final List<ReadySize> ready = new ArrayList<ReadySize>();
+    private final List<ReadySize> readySizePool = new ArrayList<ReadySize>();
+    private boolean isResolving;
+
+    static BatchedSizeResolver get() {
+        return INSTANCE;
+    }
+
+    private BatchedSizeResolver() {
+        // Singleton.
+    }
+
+    /**
+     * Waits for the given determiner's view to be laid out.
+     */
+    void add(ViewTarget.SizeDeterminer sizeDeterminer) {
+        if (indexOf(sizeDeterminer) < 0) {
+            pending.add(new WeakReference<ViewTarget.SizeDeterminer>(sizeDeterminer));
+        }
+        addListener(sizeDeterminer.getView());
+    }
+
+    private int indexOf(ViewTarget.SizeDeterminer sizeDeterminer) {
+        for (int i = 0; i < pending.size(); i++) {
+            if (pending.get(i).get() == sizeDeterminer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Queues a callback to be called with the given size at the end of the current pass.
+     */
+    void addReady(SizeReadyCallback cb, int width, int height) {
+        ReadySize readySize =
+                readySizePool.isEmpty() ? new ReadySize() : readySizePool.remove(readySizePool.size() - 1);
+        readySize.cb = cb;
+        readySize.width = width;
+        readySize.height = height;
+        readySize.priority = cb instanceof Prioritized ? ((Prioritized) cb).getPriority() : DEFAULT_PRIORITY;
+        ready.add(readySize);
+    }
+
+    private void addListener(View view) {
+        ViewTreeObserver observer = view.getViewTreeObserver();
+        if (!listeners.containsKey(observer)) {
+            PreDrawListener listener = new PreDrawListener(view);
+            observer.addOnPreDrawListener(listener);
+            listeners.put(observer, listener);
+        }
+    }
+
+    private void resolve() {
+        if (isResolving) {
+            return;
+        }
+        isResolving = true;
+        try {
+            Iterator<WeakReference<ViewTarget.SizeDeterminer>> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                ViewTarget.SizeDeterminer sizeDeterminer = iterator.next().get();
+                // Determiners that have been collected belonged to targets nobody is waiting on anymore.
+                if (sizeDeterminer == null || sizeDeterminer.collectReadySizes(this)) {
+                    iterator.remove();
+                }
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Resolved " + ready.size() + " sizes in one pass, " + pending.size() + " still waiting");
+            }
+            // Stable, so callbacks with the same priority keep the order they were added in.
+            Collections.sort(ready, PRIORITY_ORDER);
+            for (int i = 0; i < ready.size(); i++) {
+                ReadySize readySize = ready.get(i);
+                readySize.cb.onSizeReady(readySize.width, readySize.height);
+                readySize.cb = null;
+                readySizePool.add(readySize);
+            }
+            ready.clear();
+        } finally {
+            isResolving = false;
+        }
+    }
+
+    private void onPreDraw(PreDrawListener listener) {
+        resolve();
+
+        // Keep the listener while views on the observer it was called from are still waiting, otherwise remove it.
+        // Views that are still waiting elsewhere get a listener on their current observer, which is the window's
+        // observer once they're attached.
+        ViewTreeObserver current = listener.getCurrentObserver();
+        boolean isStillNeeded = false;
+        for (int i = 0; i < pending.size() && current != null; i++) {
+            ViewTarget.SizeDeterminer sizeDeterminer = pending.get(i).get();
+            if (sizeDeterminer != null && sizeDeterminer.getView().getViewTreeObserver() == current) {
+                isStillNeeded = true;
+                break;
+            }
+        }
+        Iterator<PreDrawListener> iterator = listeners.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == listener) {
+                iterator.remove();
+            }
+        }
+        if (isStillNeeded) {
+            listeners.put(current, listener);
+        } else if (current != null && current.isAlive()) {
+            current.removeOnPreDrawListener(listener);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            ViewTarget.SizeDeterminer sizeDeterminer = pending.get(i).get();
+            if (sizeDeterminer != null) {
+                addListener(sizeDeterminer.getView());
+            }
+        }
+    }
+
+    private static final class ReadySize {
+        private SizeReadyCallback cb;
+        private int width;
+        private int height;
+        private int priority;
+    }
+
+    private static final class PreDrawListener implements ViewTreeObserver.OnPreDrawListener {
+        private final WeakReference<View> viewRef;
+
+        PreDrawListener(View view) {
+            viewRef = new WeakReference<View>(view);
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "OnPreDrawListener called listener=" + this);
+            }
+            INSTANCE.onPreDraw(this);
+            return true;
+        }
+
+        ViewTreeObserver getCurrentObserver() {
+            // The observer the listener was added to has usually been merged into the window's observer, so use the
+            // view's current observer.
+            View view = viewRef.get();
+            return view != null ? view.getViewTreeObserver() : null;
+        }
+    }
+}
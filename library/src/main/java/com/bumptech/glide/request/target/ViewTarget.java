@@ -4,23 +4,20 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Point;
 import android.os.Build;
-import android.util.Log;
 import android.view.Display;
 import android.view.View;
 import android.view.ViewGroup.LayoutParams;
-import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 
 import com.bumptech.glide.request.Request;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A base {@link Target} for loading {@link android.graphics.Bitmap}s into {@link View}s that provides default
  * implementations for most most methods and can determine the size of views using a
- * {@link android.view.ViewTreeObserver.OnDrawListener}.
+ * {@link android.view.ViewTreeObserver.OnPreDrawListener} shared with every other waiting view.
  *
  * <p>
  *     To detect {@link View} reuse in {@link android.widget.ListView} or any {@link android.view.ViewGroup} that reuses
@@ -38,7 +35,6 @@ import java.util.List;
  * @param <Z> The resource type this target will receive.
  */
 public abstract class ViewTarget<T extends View, Z> extends BaseTarget<Z> {
-    private static final String TAG = "ViewTarget";
     private static boolean isTagUsedAtLeastOnce = false;
     private static Integer tagId = null;
 
@@ -90,8 +86,9 @@ public abstract class ViewTarget<T extends View, Z> extends BaseTarget<Z> {
      * Determines the size of the view by first checking {@link android.view.View#getWidth()} and
      * {@link android.view.View#getHeight()}. If one or both are zero, it then checks the view's
      * {@link LayoutParams}. If one or both of the params width and height are less than or
-     * equal to zero, it then adds an {@link android.view.ViewTreeObserver.OnPreDrawListener} which waits until the view
-     * has been measured before calling the callback with the view's drawn width and height.
+     * equal to zero, it then waits for an {@link android.view.ViewTreeObserver.OnPreDrawListener}, shared with all
+     * other views waiting for layout, to be called after the view has been measured and calls the callback with the
+     * view's drawn width and height along with the callbacks of the other views in the same pass.
      *
      * @param cb {@inheritDoc}
      */
@@ -158,50 +155,43 @@ public abstract class ViewTarget<T extends View, Z> extends BaseTarget<Z> {
         return "Target for: " + view;
     }
 
-    private static class SizeDeterminer {
+    static class SizeDeterminer {
         // Some negative sizes (WRAP_CONTENT) are valid, 0 is never valid.
         private static final int PENDING_SIZE = 0;
 
         private final View view;
         private final List<SizeReadyCallback> cbs = new ArrayList<SizeReadyCallback>();
 
-        private SizeDeterminerLayoutListener layoutListener;
         private Point displayDimens;
 
         public SizeDeterminer(View view) {
             this.view = view;
         }
 
-        private void notifyCbs(int width, int height) {
-            for (SizeReadyCallback cb : cbs) {
-                cb.onSizeReady(width, height);
-            }
-            cbs.clear();
+        View getView() {
+            return view;
         }
 
-        private void checkCurrentDimens() {
+        /**
+         * Passes the waiting callbacks and the view's size to the given resolver and returns true if the view has
+         * been laid out or there are no waiting callbacks, or returns false if the view is still waiting for layout.
+         */
+        boolean collectReadySizes(BatchedSizeResolver resolver) {
             if (cbs.isEmpty()) {
-                return;
+                return true;
             }
 
             int currentWidth = getViewWidthOrParam();
             int currentHeight = getViewHeightOrParam();
             if (!isSizeValid(currentWidth) || !isSizeValid(currentHeight)) {
-                return;
+                return false;
             }
 
-            notifyCbs(currentWidth, currentHeight);
-            // Keep a reference to the layout listener and remove it here
-            // rather than having the observer remove itself because the observer
-            // we add the listener to will be almost immediately merged into
-            // another observer and will therefore never be alive. If we instead
-            // keep a reference to the listener and remove it here, we get the
-            // current view tree observer and should succeed.
-            ViewTreeObserver observer = view.getViewTreeObserver();
-            if (observer.isAlive()) {
-                observer.removeOnPreDrawListener(layoutListener);
+            for (int i = 0; i < cbs.size(); i++) {
+                resolver.addReady(cbs.get(i), currentWidth, currentHeight);
             }
-            layoutListener = null;
+            cbs.clear();
+            return true;
         }
 
         public void getSize(SizeReadyCallback cb) {
@@ -215,11 +205,8 @@ public abstract class ViewTarget<T extends View, Z> extends BaseTarget<Z> {
                 if (!cbs.contains(cb)) {
                     cbs.add(cb);
                 }
-                if (layoutListener == null) {
-                    final ViewTreeObserver observer = view.getViewTreeObserver();
-                    layoutListener = new SizeDeterminerLayoutListener(this);
-                    observer.addOnPreDrawListener(layoutListener);
-                }
+                // Resolved with every other waiting view in the next pre-draw pass.
+                BatchedSizeResolver.get().add(this);
             }
         }
 
@@ -274,25 +261,5 @@ public abstract class ViewTarget<T extends View, Z> extends BaseTarget<Z> {
         private boolean isSizeValid(int size) {
             return size > 0 || size == LayoutParams.WRAP_CONTENT;
         }
-
-        private static class SizeDeterminerLayoutListener implements ViewTreeObserver.OnPreDrawListener {
-            private final WeakReference<SizeDeterminer> sizeDeterminerRef;
-
-            public SizeDeterminerLayoutListener(SizeDeterminer sizeDeterminer) {
-                sizeDeterminerRef = new WeakReference<SizeDeterminer>(sizeDeterminer);
-            }
-
-            @Override
-            public boolean onPreDraw() {
-                if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                    Log.v(TAG, "OnGlobalLayoutListener called listener=" + this);
-                }
-                SizeDeterminer sizeDeterminer = sizeDeterminerRef.get();
-                if (sizeDeterminer != null) {
-                    sizeDeterminer.checkCurrentDimens();
-                }
-                return true;
-            }
-        }
     }
 }
@@ -0,0 +1,151 @@
+package com.bumptech.glide.util;
+
+/**
+ * An immutable map from pairs of {@link Class}es to values that can be read from any thread without locking.
+ *
+ * <p>
+ *     Entries are held in flat arrays with open addressing, so lookups compare classes by identity and don't allocate
+ *     a key like a {@link java.util.Map} with {@link MultiClassKey}s would. Adding or removing an entry returns a new
+ *     map and leaves this one unchanged, which makes the map suitable for registries that are written rarely, while
+ *     Glide is set up, and read on every request. Callers that need to update a shared map should hold it in a
+ *     volatile field and replace the field under a lock.
+ * </p>
+ *
+ * @param <V> The type of the values.
+ */
+public final class ClassPairMap<V> {
+    private static final ClassPairMap<Object> EMPTY = new ClassPairMap<Object>(new Class[0], new Class[0],
+            new Object[0], 0);
+
+    private final Class<?>[] firsts;
+    private final Class<?>[] seconds;
+    private final Object[] values;
+    private final int size;
+
+    /**
+     * Returns an empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> ClassPairMap<V> empty() {
+        return (ClassPairMap<V>) EMPTY;
+    }
+
+    private ClassPairMap(Class<?>[] firsts, Class<?>[] seconds, Object[] values, int size) {
+        this.firsts = firsts;
+        this.seconds = seconds;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns the value for the given pair of classes, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Class<?> first, Class<?> second) {
+        if (size == 0) {
+            return null;
+        }
+        int mask = firsts.length - 1;
+        for (int i = indexFor(first, second, mask); firsts[i] != null; i = (i + 1) & mask) {
+            if (firsts[i] == first && seconds[i] == second) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the map has a value for the given pair of classes.
+     */
+    public boolean containsKey(Class<?> first, Class<?> second) {
+        return get(first, second) != null;
+    }
+
+    /**
+     * Returns true if any pair of classes in the map has the given value.
+     */
+    public boolean containsValue(V value) {
+        for (int i = 0; i < values.length; i++) {
+            if (firsts[i] != null && values[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of this map in which the given pair of classes has the given value.
+     *
+     * @param first The first class, not null.
+     * @param second The second class, not null.
+     * @param value The value, not null.
+     */
+    public ClassPairMap<V> with(Class<?> first, Class<?> second, V value) {
+        if (first == null || second == null || value == null) {
+            throw new NullPointerException("Classes and value must not be null");
+        }
+        boolean isNew = get(first, second) == null;
+        return copy(isNew ? size + 1 : size, first, second, value, null, null);
+    }
+
+    /**
+     * Returns a copy of this map without a value for the given pair of classes, or this map if it has no such value.
+     */
+    public ClassPairMap<V> without(Class<?> first, Class<?> second) {
+        if (get(first, second) == null) {
+            return this;
+        }
+        return copy(size - 1, null, null, null, first, second);
+    }
+
+    private ClassPairMap<V> copy(int newSize, Class<?> addFirst, Class<?> addSecond, V addValue,
+            Class<?> removeFirst, Class<?> removeSecond) {
+        // Keep the table at most half full so that probe sequences stay short.
+        int capacity = 2;
+        while (capacity < newSize * 2) {
+            capacity <<= 1;
+        }
+        Class<?>[] newFirsts = new Class[capacity];
+        Class<?>[] newSeconds = new Class[capacity];
+        Object[] newValues = new Object[capacity];
+        for (int i = 0; i < firsts.length; i++) {
+            Class<?> first = firsts[i];
+            Class<?> second = seconds[i];
+            if (first == null || (first == removeFirst && second == removeSecond)
+                    || (first == addFirst && second == addSecond)) {
+                continue;
+            }
+            insert(newFirsts, newSeconds, newValues, first, second, values[i]);
+        }
+        if (addFirst != null) {
+            insert(newFirsts, newSeconds, newValues, addFirst, addSecond, addValue);
+        }
+        return new ClassPairMap<V>(newFirsts, newSeconds, newValues, newSize);
+    }
+
+    private static void insert(Class<?>[] firsts, Class<?>[] seconds, Object[] values, Class<?> first,
+            Class<?> second, Object value) {
+        int mask = firsts.length - 1;
+        int i = indexFor(first, second, mask);
+        while (firsts[i] != null) {
+            i = (i + 1) & mask;
+        }
+        firsts[i] = first;
+        seconds[i] = second;
+        values[i] = value;
+    }
+
+    private static int indexFor(Class<?> first, Class<?> second, int mask) {
+        int hash = 31 * System.identityHashCode(first) + System.identityHashCode(second);
+        // Spread the high bits into the low bits used to pick a slot.
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+}
@@ -0,0 +1,40 @@
+package com.bumptech.glide.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to the wrapped {@link OutputStream}.
+ *
+ * <p>
+ *     Unlike {@link FilterOutputStream}, writes of arrays are passed to the wrapped stream as is rather than one byte
+ *     at a time. Not thread safe.
+ * </p>
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    public CountingOutputStream(OutputStream os) {
+        super(os);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        count += length;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,100 @@
+package com.bumptech.glide.util;
+
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} like {@link java.io.ByteArrayOutputStream} that writes into byte arrays from a
+ * {@link SizedByteArrayPool}.
+ *
+ * <p>
+ *     When the stream grows, its contents are copied into a larger array from the pool and the smaller array is
+ *     returned to the pool. The written bytes are available without a copy through {@link #getBuffer()} and
+ *     {@link #size()}, and the buffer must be handed off with {@link #detachBuffer()} or returned to the pool with
+ *     {@link #release()} once the caller is done with the stream. Not thread safe.
+ * </p>
+ */
+public final class PooledByteArrayOutputStream extends OutputStream {
+    private final SizedByteArrayPool pool;
+    private byte[] buffer;
+    private int count;
+
+    /**
+     * @param pool The pool to obtain buffers from and return them to.
+     * @param initialSize The expected number of bytes that will be written.
+     */
+    public PooledByteArrayOutputStream(SizedByteArrayPool pool, int initialSize) {
+        this.pool = pool;
+        this.buffer = pool.get(initialSize);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Returns the number of bytes written to the stream.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the buffer holding the written bytes, which is usually longer than {@link #size()}.
+     */
+    public byte[] getBuffer() {
+        assertNotReleased();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer and stops the stream from using it, the caller becomes responsible for returning it to the
+     * pool.
+     */
+    public byte[] detachBuffer() {
+        byte[] result = getBuffer();
+        buffer = null;
+        return result;
+    }
+
+    /**
+     * Returns the buffer to the pool if it hasn't been detached already.
+     */
+    public void release() {
+        if (buffer != null) {
+            pool.put(buffer);
+            buffer = null;
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        assertNotReleased();
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Stream too large");
+        }
+        if (minCapacity <= buffer.length) {
+            return;
+        }
+        byte[] larger = pool.get(Math.max(minCapacity, buffer.length * 2));
+        System.arraycopy(buffer, 0, larger, 0, count);
+        pool.put(buffer);
+        buffer = larger;
+    }
+
+    private void assertNotReleased() {
+        if (buffer == null) {
+            throw new IllegalStateException("Stream's buffer has already been released or detached");
+        }
+    }
+}
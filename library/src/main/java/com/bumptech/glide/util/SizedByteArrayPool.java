@@ -0,0 +1,135 @@
+package com.bumptech.glide.util;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool for reusing byte arrays of varying sizes, like the output of compressing images, that hands out arrays
+ * whose lengths are powers of two.
+ *
+ * <p>
+ *     Unlike {@link ByteArrayPool}, which only holds temporary buffers of a single size, requests are rounded up to
+ *     the next size class so that outputs of similar but not identical sizes share arrays. Arrays larger than the
+ *     largest size class aren't pooled, and the arrays held by the pool together never take up more than a fixed
+ *     number of bytes.
+ * </p>
+ */
+public final class SizedByteArrayPool {
+    private static final String TAG = "SizedByteArrayPool";
+    // 16 KB.
+    private static final int MIN_SIZE_CLASS_SHIFT = 14;
+    // 4 MB.
+    private static final int MAX_SIZE_CLASS_SHIFT = 22;
+    // 8 MB.
+    private static final int MAX_SIZE = 8 * 1024 * 1024;
+    private static final SizedByteArrayPool POOL = new SizedByteArrayPool(MAX_SIZE);
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<byte[]>[] sizeClasses = new ArrayDeque[MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1];
+    private final int maxSize;
+    private int currentSize;
+
+    /**
+     * Returns a constant singleton sized byte array pool.
+     */
+    public static SizedByteArrayPool get() {
+        return POOL;
+    }
+
+    // Visible for testing.
+    SizedByteArrayPool(int maxSize) {
+        this.maxSize = maxSize;
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new ArrayDeque<byte[]>();
+        }
+    }
+
+    /**
+     * Returns a byte array at least as long as the given size, from the pool if one of the right size class is
+     * available, or otherwise a new byte array.
+     *
+     * @param minSize The minimum length of the returned array.
+     */
+    public byte[] get(int minSize) {
+        int sizeClass = getSizeClass(minSize);
+        if (sizeClass < 0) {
+            return new byte[minSize];
+        }
+        byte[] result;
+        synchronized (this) {
+            result = sizeClasses[sizeClass].poll();
+            if (result != null) {
+                currentSize -= result.length;
+            }
+        }
+        if (result == null) {
+            result = new byte[1 << (sizeClass + MIN_SIZE_CLASS_SHIFT)];
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "Created bytes, size: " + result.length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the given byte array to the pool if it belongs to one of the pool's size classes and the pool is not full,
+     * and returns true if the byte array was added and false otherwise.
+     *
+     * <p>
+     *     The caller must not use the array again after it has been added.
+     * </p>
+     *
+     * @param bytes The bytes to try to add to the pool.
+     */
+    public boolean put(byte[] bytes) {
+        int sizeClass = getSizeClass(bytes.length);
+        if (sizeClass < 0 || bytes.length != 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT)) {
+            return false;
+        }
+        synchronized (this) {
+            if (currentSize + bytes.length > maxSize) {
+                return false;
+            }
+            currentSize += bytes.length;
+            sizeClasses[sizeClass].offer(bytes);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all byte arrays from the pool.
+     */
+    public synchronized void clear() {
+        for (ArrayDeque<byte[]> sizeClass : sizeClasses) {
+            sizeClass.clear();
+        }
+        currentSize = 0;
+    }
+
+    /**
+     * Removes byte arrays from the pool depending on the given level.
+     *
+     * @see android.content.ComponentCallbacks2#onTrimMemory(int)
+     */
+    public synchronized void trimMemory(int level) {
+        if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            clear();
+        } else if (level >= android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            // Larger arrays are the least likely to be reused soon, drop those first.
+            for (int i = sizeClasses.length - 1; i >= 0 && currentSize > maxSize / 2; i--) {
+                while (currentSize > maxSize / 2 && sizeClasses[i].poll() != null) {
+                    currentSize -= 1 << (i + MIN_SIZE_CLASS_SHIFT);
+                }
+            }
+        }
+    }
+
+    private static int getSizeClass(int size) {
+        if (size > 1 << MAX_SIZE_CLASS_SHIFT) {
+            return -1;
+        }
+        int shift = size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(0, shift - MIN_SIZE_CLASS_SHIFT);
+    }
+}
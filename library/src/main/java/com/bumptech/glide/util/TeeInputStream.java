@@ -0,0 +1,113 @@
+package com.bumptech.glide.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Copies every byte read from the wrapped {@link InputStream} to an {@link OutputStream} so that data can be written
+ * somewhere else, like the disk cache, while it is being consumed.
+ *
+ * <p>
+ *     Failures writing to the {@link OutputStream} don't affect reads, they're recorded and can be checked with
+ *     {@link #isWriteFailed()}. Mark and reset are not supported since they would write the same bytes twice, callers
+ *     that need them should buffer on top of this stream. Closing this stream doesn't close either of the wrapped
+ *     streams.
+ * </p>
+ */
+public class TeeInputStream extends FilterInputStream {
+    private final OutputStream os;
+    private boolean isWriteFailed;
+
+    public TeeInputStream(InputStream in, OutputStream os) {
+        super(in);
+        this.os = os;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result != -1 && !isWriteFailed) {
+            try {
+                os.write(result);
+            } catch (IOException e) {
+                isWriteFailed = true;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+        int read = super.read(buffer, byteOffset, byteCount);
+        if (read > 0 && !isWriteFailed) {
+            try {
+                os.write(buffer, byteOffset, read);
+            } catch (IOException e) {
+                isWriteFailed = true;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        // Skipped bytes still need to be written.
+        byte[] buffer = ByteArrayPool.get().getBytes();
+        long skipped = 0;
+        try {
+            while (skipped < byteCount) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, byteCount - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+        } finally {
+            ByteArrayPool.get().releaseBytes(buffer);
+        }
+        return skipped;
+    }
+
+    /**
+     * Reads and writes any bytes remaining in the wrapped {@link InputStream}.
+     */
+    public void drain() throws IOException {
+        byte[] buffer = ByteArrayPool.get().getBytes();
+        try {
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Keep reading.
+            }
+        } finally {
+            ByteArrayPool.get().releaseBytes(buffer);
+        }
+    }
+
+    /**
+     * Returns true if writing any of the bytes read so far to the {@link OutputStream} failed.
+     */
+    public boolean isWriteFailed() {
+        return isWriteFailed;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // Not supported.
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("TeeInputStream does not support mark/reset");
+    }
+
+    @Override
+    public void close() {
+        // The wrapped streams are owned by the caller.
+    }
+}
@@ -0,0 +1,189 @@
+package com.bumptech.glide.disklrucache;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays an access log against an in memory model of {@link DiskLruCache}'s
+ * eviction so that {@link EvictionPolicy}s can be compared offline without
+ * touching the disk.
+ *
+ * <p>Each line of a log is an access: {@code <timeMillis> <key> <size>
+ * [<fetchCostMillis> [<timeToLiveMillis>]]}. An access to a key that isn't in
+ * the cache, or has expired, is a miss and inserts the key as if it had been
+ * fetched. Blank lines and lines starting with {@code #} are ignored.
+ *
+ * <p>This is a development tool, it lives in the test sources so that it isn't
+ * shipped with the library. Run it from the command line with the library's unit
+ * test classpath, a log and a max size in bytes to compare
+ * {@link EvictionPolicy#LRU} with {@link CostAwareEvictionPolicy}:
+ * <pre>java com.bumptech.glide.disklrucache.EvictionSimulator accesses.log 262144000</pre>
+ */
+public final class EvictionSimulator {
+
+  /** A single access read from a log. */
+  public static final class Access {
+    final long time;
+    final String key;
+    final long size;
+    final long fetchCostMillis;
+    final long timeToLiveMillis;
+
+    public Access(long time, String key, long size, long fetchCostMillis, long timeToLiveMillis) {
+      this.time = time;
+      this.key = key;
+      this.size = size;
+      this.fetchCostMillis = fetchCostMillis;
+      this.timeToLiveMillis = timeToLiveMillis;
+    }
+  }
+
+  /** The outcome of replaying a log. */
+  public static final class Result {
+    public int hits;
+    public int misses;
+    public long hitBytes;
+    public long missBytes;
+    /** The total fetch cost of every miss, the time spent fetching data again. */
+    public long missCostMillis;
+    public int evictions;
+
+    public double getHitRatio() {
+      int total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+      return "hits=" + hits + " misses=" + misses + " hitRatio=" + getHitRatio() + " hitBytes="
+          + hitBytes + " missBytes=" + missBytes + " missCostMillis=" + missCostMillis
+          + " evictions=" + evictions;
+    }
+  }
+
+  private static final class SimulatedEntry {
+    final long size;
+    final long fetchCostMillis;
+    final long expiresAt;
+    int accessCount = 1;
+
+    SimulatedEntry(long size, long fetchCostMillis, long expiresAt) {
+      this.size = size;
+      this.fetchCostMillis = fetchCostMillis;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private EvictionSimulator() {
+    // Utility class.
+  }
+
+  /**
+   * Replays the given accesses against a cache of the given max size evicting
+   * with the given policy.
+   */
+  public static Result simulate(List<Access> accesses, long maxSize, EvictionPolicy policy) {
+    LinkedHashMap<String, SimulatedEntry> entries =
+        new LinkedHashMap<String, SimulatedEntry>(0, 0.75f, true);
+    Result result = new Result();
+    long size = 0;
+    for (Access access : accesses) {
+      SimulatedEntry entry = entries.get(access.key);
+      if (entry != null && (entry.expiresAt == 0 || access.time < entry.expiresAt)) {
+        entry.accessCount++;
+        result.hits++;
+        result.hitBytes += entry.size;
+        continue;
+      }
+
+      if (entry != null) {
+        entries.remove(access.key);
+        size -= entry.size;
+      }
+      result.misses++;
+      result.missBytes += access.size;
+      result.missCostMillis += access.fetchCostMillis;
+      long expiresAt = access.timeToLiveMillis > 0 ? access.time + access.timeToLiveMillis : 0;
+      entries.put(access.key, new SimulatedEntry(access.size, access.fetchCostMillis, expiresAt));
+      size += access.size;
+
+      while (size > maxSize) {
+        String victim = selectEvictionVictim(entries, policy, access.time);
+        size -= entries.remove(victim).size;
+        result.evictions++;
+      }
+    }
+    return result;
+  }
+
+  // Mirrors DiskLruCache#selectEvictionVictim.
+  private static String selectEvictionVictim(LinkedHashMap<String, SimulatedEntry> entries,
+      EvictionPolicy policy, long now) {
+    String victim = null;
+    double victimWeight = Double.MAX_VALUE;
+    int examined = 0;
+    for (Map.Entry<String, SimulatedEntry> mapEntry : entries.entrySet()) {
+      if (examined++ == DiskLruCache.EVICTION_WINDOW) {
+        break;
+      }
+      SimulatedEntry entry = mapEntry.getValue();
+      if (entry.expiresAt != 0 && now >= entry.expiresAt) {
+        return mapEntry.getKey();
+      }
+      double weight = policy.getRetentionWeight(entry.size, entry.accessCount, entry.fetchCostMillis);
+      if (weight < victimWeight) {
+        victim = mapEntry.getKey();
+        victimWeight = weight;
+      }
+    }
+    return victim;
+  }
+
+  /** Reads an access log in the format described above. */
+  public static List<Access> readLog(String path) throws IOException {
+    List<Access> accesses = new ArrayList<Access>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(path), Util.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() == 0 || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.split("\\s+");
+        if (parts.length < 3) {
+          throw new IOException("unexpected access log line: " + line);
+        }
+        try {
+          accesses.add(new Access(Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2]),
+              parts.length > 3 ? Long.parseLong(parts[3]) : 0,
+              parts.length > 4 ? Long.parseLong(parts[4]) : 0));
+        } catch (NumberFormatException e) {
+          throw new IOException("unexpected access log line: " + line);
+        }
+      }
+    } finally {
+      Util.closeQuietly(reader);
+    }
+    return accesses;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("Usage: EvictionSimulator <access log> <max size in bytes>");
+      return;
+    }
+    List<Access> accesses = readLog(args[0]);
+    long maxSize = Long.parseLong(args[1]);
+    System.out.println("LRU:        " + simulate(accesses, maxSize, EvictionPolicy.LRU));
+    System.out.println("Cost aware: "
+        + simulate(accesses, maxSize, new CostAwareEvictionPolicy()));
+  }
+}
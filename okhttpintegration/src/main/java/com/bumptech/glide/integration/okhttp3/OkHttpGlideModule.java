@@ -0,0 +1,45 @@
+package com.bumptech.glide.integration.okhttp3;
+
+import android.content.Context;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.module.GlideModule;
+
+import java.io.InputStream;
+
+/**
+ * A {@link com.bumptech.glide.module.GlideModule} implementation to replace Glide's default
+ * {@link java.net.HttpURLConnection} based {@link com.bumptech.glide.load.model.ModelLoader} with an OkHttp based
+ * {@link com.bumptech.glide.load.model.ModelLoader}.
+ *
+ * <p>
+ *     If you're using gradle, this module is registered through the manifest merged from this library. Otherwise add
+ *     the following to your AndroidManifest.xml:
+ *     <pre>
+ *         {@code
+ *             <meta-data
+ *                 android:name="com.bumptech.glide.integration.okhttp3.OkHttpGlideModule"
+ *                 android:value="GlideModule" />
+ *         }
+ *     </pre>
+ *     and keep the module's name in your proguard config:
+ *     <pre>
+ *         {@code
+ *             -keep class com.bumptech.glide.integration.okhttp3.OkHttpGlideModule
+ *         }
+ *     </pre>
+ * </p>
+ */
+public class OkHttpGlideModule implements GlideModule {
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        // Do nothing.
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+        glide.register(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory());
+    }
+}
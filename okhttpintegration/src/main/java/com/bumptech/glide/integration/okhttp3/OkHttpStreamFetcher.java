@@ -0,0 +1,98 @@
+package com.bumptech.glide.integration.okhttp3;
+
+import android.util.Log;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.util.ContentLengthInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Fetches an {@link InputStream} using the okhttp library.
+ *
+ * <p>
+ *     The request is executed synchronously on the Glide thread that calls {@link #loadData(Priority)}. Glide's
+ *     source executor already orders loads by {@link Priority}, so higher priority loads reach OkHttp first, while
+ *     redirects, retries and connection reuse are left to OkHttp. {@link #cancel()} cancels the {@link Call}, which
+ *     aborts a request that is connecting or streaming.
+ * </p>
+ */
+public class OkHttpStreamFetcher implements DataFetcher<InputStream> {
+    private static final String TAG = "OkHttpFetcher";
+    private final Call.Factory client;
+    private final GlideUrl url;
+    private InputStream stream;
+    private ResponseBody responseBody;
+    private volatile Call call;
+    private volatile boolean isCancelled;
+
+    public OkHttpStreamFetcher(Call.Factory client, GlideUrl url) {
+        this.client = client;
+        this.url = url;
+    }
+
+    @Override
+    public InputStream loadData(Priority priority) throws Exception {
+        Request.Builder requestBuilder = new Request.Builder().url(url.toStringUrl());
+        for (Map.Entry<String, String> headerEntry : url.getHeaders().entrySet()) {
+            requestBuilder.addHeader(headerEntry.getKey(), headerEntry.getValue());
+        }
+        Request request = requestBuilder.build();
+
+        call = client.newCall(request);
+        // cancel() may have been called before the call existed.
+        if (isCancelled) {
+            call.cancel();
+            return null;
+        }
+        Response response = call.execute();
+        responseBody = response.body();
+        if (!response.isSuccessful()) {
+            throw new IOException("Request failed with code: " + response.code());
+        }
+
+        long contentLength = responseBody.contentLength();
+        stream = ContentLengthInputStream.obtain(responseBody.byteStream(), contentLength);
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "Fetched " + url + " over " + response.protocol());
+        }
+        return stream;
+    }
+
+    @Override
+    public void cleanup() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Ignored
+            }
+        }
+        if (responseBody != null) {
+            responseBody.close();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return url.getCacheKey();
+    }
+
+    @Override
+    public void cancel() {
+        isCancelled = true;
+        Call local = call;
+        if (local != null) {
+            local.cancel();
+        }
+    }
+}